@@ -0,0 +1,101 @@
+package com.qasystem.ai;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应并发上限（AIMD）。
+ * <p>
+ * 每次调用成功且耗时未超过阈值时上限加 1/上限（约每一轮满载调用加 1），
+ * 失败或超过阈值时乘以 backoffRatio，始终落在 [minLimit, maxLimit]。
+ * 占满时调用方排队等待，排队人数超过 maxWaiting 或等待超时即拒绝。
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxWaiting;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxWaiting,
+                                      long latencyThresholdMillis, double backoffRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxWaiting = Math.max(0, maxWaiting);
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, latencyThresholdMillis));
+        this.backoffRatio = Math.min(0.95D, Math.max(0.1D, backoffRatio));
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * 取一个并发许可，最多等待 timeoutMillis；排队已满或超时返回 false。
+     */
+    public synchronized boolean tryAcquire(long timeoutMillis) throws InterruptedException {
+        if (inFlight < (int) limit) {
+            inFlight++;
+            return true;
+        }
+        if (timeoutMillis <= 0 || waiting >= maxWaiting) {
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        waiting++;
+        try {
+            while (inFlight >= (int) limit) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * 低优先级取许可：不排队，有人排队或在途数已达上限的 share 比例时直接返回 false，
+     * 剩余的并发留给交互请求。
+     */
+    public synchronized boolean tryAcquireLowPriority(double share) {
+        int ceiling = Math.max(1, (int) (limit * share));
+        if (waiting > 0 || inFlight >= Math.min(ceiling, (int) limit)) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * 归还许可并按本次结果调整上限。
+     *
+     * @param latencyNanos 本次耗时，小于 0 表示不按耗时判断（如流式调用的总时长取决于回答长度）
+     */
+    public synchronized void release(boolean success, long latencyNanos) {
+        inFlight = Math.max(0, inFlight - 1);
+        if (!success || latencyNanos > latencyThresholdNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else {
+            limit = Math.min(maxLimit, limit + 1D / limit);
+        }
+        notifyAll();
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int waiting() {
+        return waiting;
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+}
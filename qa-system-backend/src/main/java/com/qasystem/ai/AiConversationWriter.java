@@ -0,0 +1,42 @@
+package com.qasystem.ai;
+
+import com.qasystem.entity.AiConversation;
+import com.qasystem.mapper.AiConversationMapper;
+import com.qasystem.mapper.AiSessionMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 保存一轮 AI 对话：对话记录与 ai_session 会话索引在同一事务内写入，
+ * 会话列表缓存在事务提交后才失效，避免其他请求在提交前重新加载到旧列表。
+ */
+@Component
+@RequiredArgsConstructor
+public class AiConversationWriter {
+
+    /**
+     * ai_session.last_user_message 的长度，只用于会话列表预览
+     */
+    private static final int PREVIEW_MAX_LENGTH = 500;
+
+    private final AiConversationMapper aiConversationMapper;
+    private final AiSessionMapper aiSessionMapper;
+    private final AiSessionCache aiSessionCache;
+
+    @Transactional
+    public void save(AiConversation conversation) {
+        aiConversationMapper.insert(conversation);
+        aiSessionMapper.recordTurn(conversation.getUserId(), conversation.getSessionId(),
+                conversation.getSessionTitle(), conversation.getCreatedAt(),
+                conversation.getId(), preview(conversation.getUserMessage()));
+        aiSessionCache.evict(conversation.getUserId());
+    }
+
+    private static String preview(String message) {
+        if (message == null || message.length() <= PREVIEW_MAX_LENGTH) {
+            return message;
+        }
+        return message.substring(0, PREVIEW_MAX_LENGTH);
+    }
+}
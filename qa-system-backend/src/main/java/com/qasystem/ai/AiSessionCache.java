@@ -0,0 +1,100 @@
+package com.qasystem.ai;
+
+import com.qasystem.common.cache.NearCacheInvalidator;
+import com.qasystem.entity.AiSession;
+import com.qasystem.mapper.AiSessionMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI 会话列表近端缓存：用户 -> 最近 MAX_SESSIONS 个会话（ai_session 一次索引范围扫描的结果）。
+ * <p>
+ * 会话有变化（新一轮对话、重命名、删除、收藏）时本节点失效，并通过 Redis 频道通知其他节点；
+ * 通知丢失时最多在 TTL 内看到旧列表。标题查询优先读缓存，未命中时按唯一键单行查询，不为此加载整个列表。
+ */
+@Component
+@RequiredArgsConstructor
+public class AiSessionCache {
+
+    static final String EVICT_CHANNEL = "ai:session:evict";
+
+    public static final int MAX_SESSIONS = 100;
+
+    private static final int MAX_ENTRIES = 10_000;
+    private static final long TTL_MILLIS = 10 * 60 * 1000L;
+
+    private final AiSessionMapper aiSessionMapper;
+    private final NearCacheInvalidator nearCacheInvalidator;
+
+    private NearCacheInvalidator.Channel evictChannel;
+
+    private final Map<Long, Entry> sessions = new LinkedHashMap<>(256, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private record Entry(List<AiSession> sessions, long expiresAt) {
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        evictChannel = nearCacheInvalidator.register(EVICT_CHANNEL, userId -> evictLocal(Long.parseLong(userId)));
+    }
+
+    /**
+     * 用户最近的会话（最后对话时间降序，只读）
+     */
+    public List<AiSession> recentSessions(Long userId) {
+        Entry entry = cached(userId);
+        if (entry != null) {
+            return entry.sessions();
+        }
+        List<AiSession> loaded = List.copyOf(aiSessionMapper.listRecent(userId, MAX_SESSIONS));
+        synchronized (sessions) {
+            sessions.put(userId, new Entry(loaded, System.currentTimeMillis() + TTL_MILLIS));
+        }
+        return loaded;
+    }
+
+    /**
+     * 会话标题，会话不存在时返回 null
+     */
+    public String title(Long userId, String sessionId) {
+        Entry entry = cached(userId);
+        if (entry != null) {
+            for (AiSession session : entry.sessions()) {
+                if (sessionId.equals(session.getSessionId())) {
+                    return session.getTitle();
+                }
+            }
+        }
+        return aiSessionMapper.findTitle(userId, sessionId);
+    }
+
+    /**
+     * 会话已变更：事务提交后（无事务则立即）失效本节点并广播给其他节点
+     */
+    public void evict(Long userId) {
+        evictChannel.invalidate(String.valueOf(userId));
+    }
+
+    private Entry cached(Long userId) {
+        synchronized (sessions) {
+            Entry entry = sessions.get(userId);
+            return entry != null && entry.expiresAt() >= System.currentTimeMillis() ? entry : null;
+        }
+    }
+
+    private void evictLocal(Long userId) {
+        synchronized (sessions) {
+            sessions.remove(userId);
+        }
+    }
+}
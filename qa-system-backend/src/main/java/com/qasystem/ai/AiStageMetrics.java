@@ -0,0 +1,193 @@
+package com.qasystem.ai;
+
+import com.qasystem.ai.rag.InterviewScene;
+import com.qasystem.ai.rag.RagContextResult;
+import com.qasystem.ai.rag.RagQuery;
+import com.qasystem.ai.rag.RagRetrievalMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 请求链路的分阶段耗时指标。
+ * <p>
+ * 所有 Timer / Counter 在启动时预先注册，请求路径上只做数组下标访问，不再查注册表。
+ * 只有端到端耗时与模型调用阶段（首 token、生成）按 面试场景 × 检索模式 打标签并导出百分位直方图（桶范围限定在 1ms ~ 2min），
+ * 检索、组装等子阶段只带 stage 标签、不导出直方图，控制时序数量。
+ * qa_ai_request_latency_ms 保持不带标签，按场景拆分的端到端耗时使用 qa_ai_request_latency_by_scene_ms。
+ */
+@Component
+@RequiredArgsConstructor
+public class AiStageMetrics {
+
+    static final String METRIC_STAGE_LATENCY = "qa_ai_stage_latency";
+    static final String METRIC_AI_REQUEST_LATENCY_MS = "qa_ai_request_latency_ms";
+    static final String METRIC_AI_REQUEST_LATENCY_BY_SCENE_MS = "qa_ai_request_latency_by_scene_ms";
+    private static final String METRIC_AI_TOKENS_TOTAL = "qa_ai_tokens_total";
+    private static final String METRIC_RAG_RECALL_COUNT = "qa_rag_recall_count";
+    private static final String METRIC_RAG_HIT_RATE = "qa_rag_hit_rate";
+    private static final String METRIC_RAG_NO_CONTEXT_RATE = "qa_rag_no_context_rate";
+
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofMinutes(2);
+
+    public enum Stage {
+        QUERY_BUILD("query_build", false),
+        EMBEDDING("embedding", false),
+        DENSE_SEARCH("dense_search", false),
+        KEYWORD_SEARCH("keyword_search", false),
+        FUSION("fusion", false),
+        CONTEXT_ASSEMBLY("context_assembly", false),
+        HISTORY_LOAD("history_load", false),
+        PROMPT_BUILD("prompt_build", false),
+        FIRST_TOKEN("first_token", true),
+        GENERATION("generation", true),
+        PERSISTENCE("persistence", false);
+
+        private final String code;
+        /**
+         * 模型调用阶段：按场景/模式打标签并导出直方图
+         */
+        private final boolean modelCall;
+
+        Stage(String code, boolean modelCall) {
+            this.code = code;
+            this.modelCall = modelCall;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public boolean isModelCall() {
+            return modelCall;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private Timer[][][] stageTimers;
+    private Timer requestTimer;
+    private Timer[][] requestTimers;
+    private Counter tokensCounter;
+    private Counter recallCounter;
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter noContextCounter;
+
+    @PostConstruct
+    public void register() {
+        InterviewScene[] scenes = InterviewScene.values();
+        RagRetrievalMode[] modes = RagRetrievalMode.values();
+
+        stageTimers = new Timer[Stage.values().length][scenes.length][modes.length];
+        for (Stage stage : Stage.values()) {
+            if (stage.isModelCall()) {
+                continue;
+            }
+            // 子阶段不区分场景，所有下标指向同一个 Timer
+            Timer timer = Timer.builder(METRIC_STAGE_LATENCY)
+                    .description("AI request stage latency")
+                    .tag("stage", stage.getCode())
+                    .register(meterRegistry);
+            for (Timer[] byMode : stageTimers[stage.ordinal()]) {
+                Arrays.fill(byMode, timer);
+            }
+        }
+
+        requestTimer = Timer.builder(METRIC_AI_REQUEST_LATENCY_MS)
+                .description("AI request latency")
+                .register(meterRegistry);
+        requestTimers = new Timer[scenes.length][modes.length];
+        for (InterviewScene scene : scenes) {
+            for (RagRetrievalMode mode : modes) {
+                for (Stage stage : Stage.values()) {
+                    if (!stage.isModelCall()) {
+                        continue;
+                    }
+                    stageTimers[stage.ordinal()][scene.ordinal()][mode.ordinal()] = Timer.builder(METRIC_STAGE_LATENCY)
+                            .description("AI request stage latency")
+                            .tag("stage", stage.getCode())
+                            .tag("scene", scene.getCode())
+                            .tag("mode", mode.name())
+                            .publishPercentileHistogram()
+                            .minimumExpectedValue(MIN_EXPECTED)
+                            .maximumExpectedValue(MAX_EXPECTED)
+                            .register(meterRegistry);
+                }
+                requestTimers[scene.ordinal()][mode.ordinal()] = Timer.builder(METRIC_AI_REQUEST_LATENCY_BY_SCENE_MS)
+                        .description("AI request latency by interview scene and retrieval mode")
+                        .tag("scene", scene.getCode())
+                        .tag("mode", mode.name())
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(MIN_EXPECTED)
+                        .maximumExpectedValue(MAX_EXPECTED)
+                        .register(meterRegistry);
+            }
+        }
+
+        tokensCounter = Counter.builder(METRIC_AI_TOKENS_TOTAL)
+                .description("AI token usage")
+                .register(meterRegistry);
+        recallCounter = Counter.builder(METRIC_RAG_RECALL_COUNT)
+                .description("RAG recalled candidates")
+                .register(meterRegistry);
+        hitCounter = Counter.builder(METRIC_RAG_HIT_RATE)
+                .description("RAG hit count")
+                .tag("hit", "true")
+                .register(meterRegistry);
+        missCounter = Counter.builder(METRIC_RAG_HIT_RATE)
+                .description("RAG hit count")
+                .tag("hit", "false")
+                .register(meterRegistry);
+        noContextCounter = Counter.builder(METRIC_RAG_NO_CONTEXT_RATE)
+                .description("RAG no-context count")
+                .register(meterRegistry);
+    }
+
+    public void record(Stage stage, InterviewScene scene, RagRetrievalMode mode, long elapsedNanos) {
+        stageTimers[stage.ordinal()][sceneIndex(scene)][modeIndex(mode)].record(Math.max(0L, elapsedNanos), TimeUnit.NANOSECONDS);
+    }
+
+    public void record(Stage stage, RagQuery query, long elapsedNanos) {
+        record(stage, query == null ? null : query.interviewScene(), query == null ? null : query.retrievalMode(), elapsedNanos);
+    }
+
+    public void record(Stage stage, RagContextResult ragContext, long elapsedNanos) {
+        record(stage, ragContext == null ? null : ragContext.interviewScene(),
+                ragContext == null ? null : ragContext.retrievalMode(), elapsedNanos);
+    }
+
+    /**
+     * 一次完整请求结束：总耗时、token 用量与检索命中情况
+     */
+    public void recordRequest(RagContextResult ragContext, long elapsedNanos, int tokensUsed) {
+        long elapsed = Math.max(0L, elapsedNanos);
+        requestTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        requestTimers[sceneIndex(ragContext.interviewScene())][modeIndex(ragContext.retrievalMode())]
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        tokensCounter.increment(Math.max(tokensUsed, 0));
+        recallCounter.increment(Math.max(ragContext.recallCount(), 0));
+        if (ragContext.hasContext()) {
+            hitCounter.increment();
+        } else {
+            missCounter.increment();
+            noContextCounter.increment();
+        }
+    }
+
+    private int sceneIndex(InterviewScene scene) {
+        return (scene == null ? InterviewScene.GENERAL : scene).ordinal();
+    }
+
+    private int modeIndex(RagRetrievalMode mode) {
+        return (mode == null ? RagRetrievalMode.NONE : mode).ordinal();
+    }
+}
@@ -0,0 +1,381 @@
+package com.qasystem.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qasystem.ai.rag.RagContextResult;
+import com.qasystem.config.AiAssistantProperties;
+import com.qasystem.config.LangChainConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 相同问题的 AI 请求合并（single-flight）。
+ * <p>
+ * 只用于没有历史的新会话：问题（规范化后）、场景、知识库、知识点与当前模型都相同的请求，在第一个请求（leader）计算期间到达的，
+ * 直接挂到它上面共享检索结果与回答；流式请求会先补发已生成的部分，再实时收到后续 token。每个用户的对话记录仍由调用方各自保存。
+ * <p>
+ * 跨节点：leader 用 Redis 短锁 ai:flight:lock:{key} 占位，生成中的文本按帧追加到 ai:flight:text:{key} 并在 ai:flight 频道广播，
+ * 完成后把结果写入 ai:flight:result:{key} 再广播完成。其他节点拿不到锁时订阅等待，超时或 leader 失败时由调用方自行计算。
+ * Redis 不可用时退化为只在本节点合并。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnswerSingleFlight {
+
+    private static final String CHANNEL = "ai:flight";
+    private static final String LOCK_PREFIX = "ai:flight:lock:";
+    private static final String TEXT_PREFIX = "ai:flight:text:";
+    private static final String RESULT_PREFIX = "ai:flight:result:";
+    private static final long RESULT_TTL_MILLIS = 60 * 1000L;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * 追加一帧并广播，消息带上该帧在全文中的字节偏移，订阅方据此去重、发现缺帧。
+     * ARGV[1]=帧, ARGV[2]=频道, ARGV[3]=flight key, ARGV[4]=TTL毫秒
+     */
+    private static final DefaultRedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            local len = redis.call('APPEND', KEYS[1], ARGV[1])
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            redis.call('PUBLISH', ARGV[2], 't\\n' .. ARGV[3] .. '\\n' .. (len - string.len(ARGV[1])) .. '\\n' .. ARGV[1])
+            return len
+            """, Long.class);
+
+    /**
+     * 只删除自己持有的锁
+     */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final ObjectMapper objectMapper;
+    private final LangChainConfig langChainConfig;
+    private final AiAssistantProperties aiAssistantProperties;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService aiStreamFrameScheduler;
+    private final ThreadPoolTaskExecutor aiStreamFrameExecutor;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private Counter leaderCounter;
+    private Counter followerCounter;
+    private Counter remoteFollowerCounter;
+
+    /**
+     * 共享的计算结果
+     *
+     * @param answer     模型回答（未附参考来源，由各调用方按检索结果追加）
+     * @param tokensUsed leader 实际消耗的 token
+     */
+    public record SharedAnswer(RagContextResult ragContext, String answer, int tokensUsed) {
+    }
+
+    /**
+     * join 的结果
+     *
+     * @param leader 本请求是否为实际计算者（决定 token 用量记在谁头上）
+     */
+    public record Joined(CompletableFuture<SharedAnswer> answer, boolean leader) {
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) ->
+                onRemoteMessage(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(CHANNEL));
+        leaderCounter = Counter.builder("qa_ai_single_flight_total").tag("role", "leader").register(meterRegistry);
+        followerCounter = Counter.builder("qa_ai_single_flight_total").tag("role", "follower").register(meterRegistry);
+        remoteFollowerCounter = Counter.builder("qa_ai_single_flight_total").tag("role", "remote_follower").register(meterRegistry);
+    }
+
+    /**
+     * 合并键：sha256(规范化问题, 场景, 知识库, 知识点, 当前模型配置)
+     */
+    public String keyOf(String message, String messageType, String knowledgeBaseId, String knowledgePoint) {
+        String normalized = WHITESPACE.matcher(Normalizer.normalize(message, Normalizer.Form.NFKC))
+                .replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+        return sha256(String.join("\u0001", List.of(
+                normalized,
+                nullToEmpty(messageType),
+                nullToEmpty(knowledgeBaseId),
+                nullToEmpty(knowledgePoint),
+                langChainConfig.activeModelConfigKey())));
+    }
+
+    /**
+     * 加入（或发起）一次计算。
+     *
+     * @param onToken 接收回答文本的增量（会先补发已生成的部分），非流式调用传 null
+     * @param compute 成为 leader 时执行的计算，参数为增量文本的发布入口；在调用线程上同步启动
+     */
+    public Joined join(String key,
+                       Consumer<String> onToken,
+                       Function<Consumer<String>, CompletableFuture<SharedAnswer>> compute) {
+        Flight created = new Flight();
+        Flight existing = flights.putIfAbsent(key, created);
+        if (existing != null) {
+            followerCounter.increment();
+            existing.subscribe(onToken);
+            return new Joined(existing.result, false);
+        }
+
+        created.result.whenComplete((answer, error) -> flights.remove(key, created));
+        created.subscribe(onToken);
+        if (!tryLock(key)) {
+            remoteFollowerCounter.increment();
+            followRemote(key, created);
+            return new Joined(created.result, false);
+        }
+
+        leaderCounter.increment();
+        lead(key, created, compute);
+        return new Joined(created.result, true);
+    }
+
+    private void lead(String key, Flight flight, Function<Consumer<String>, CompletableFuture<SharedAnswer>> compute) {
+        TokenFrameBuffer remoteFrames = new TokenFrameBuffer(frame -> publishFrame(key, frame), aiStreamFrameScheduler, aiStreamFrameExecutor,
+                aiAssistantProperties.getStreamFrameMaxChars(), aiAssistantProperties.getStreamFrameWindowMillis());
+        CompletableFuture<SharedAnswer> task;
+        try {
+            task = compute.apply(token -> {
+                flight.emit(token);
+                remoteFrames.append(token);
+            });
+        } catch (RuntimeException ex) {
+            task = CompletableFuture.failedFuture(ex);
+        }
+        task.whenComplete((answer, error) -> {
+            remoteFrames.flush();
+            if (error == null) {
+                publishResult(key, answer);
+                flight.result.complete(answer);
+            } else {
+                publishControl("e", key);
+                flight.result.completeExceptionally(error);
+            }
+            unlock(key);
+        });
+    }
+
+    private void followRemote(String key, Flight flight) {
+        flight.remote = true;
+        long timeoutMillis = waitTimeoutMillis();
+        aiStreamFrameScheduler.schedule(() -> {
+            if (!flight.result.isDone()) {
+                flight.result.completeExceptionally(new TimeoutException("等待其他节点的相同请求超时"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        // 先订阅（flight 已在表中），再读已有结果与已生成文本，避免漏掉中间的消息
+        try {
+            SharedAnswer done = readResult(key);
+            if (done != null) {
+                flight.completeRemote(done);
+                return;
+            }
+            String text = stringRedisTemplate.opsForValue().get(TEXT_PREFIX + key);
+            if (text != null && !text.isEmpty()) {
+                flight.acceptRemote(0L, text);
+            }
+        } catch (Exception ex) {
+            log.warn("Read shared AI answer failed. key={}, reason={}", key, ex.getMessage());
+        }
+    }
+
+    private void onRemoteMessage(String body) {
+        String[] parts = body.split("\n", 4);
+        if (parts.length < 2) {
+            return;
+        }
+        Flight flight = flights.get(parts[1]);
+        if (flight == null || !flight.remote) {
+            return;
+        }
+        switch (parts[0]) {
+            case "t" -> {
+                if (parts.length == 4) {
+                    flight.acceptRemote(Long.parseLong(parts[2]), parts[3]);
+                }
+            }
+            case "d" -> {
+                SharedAnswer answer = readResult(parts[1]);
+                if (answer != null) {
+                    flight.completeRemote(answer);
+                } else {
+                    flight.result.completeExceptionally(new IllegalStateException("共享回答已过期"));
+                }
+            }
+            case "e" -> flight.result.completeExceptionally(new IllegalStateException("相同请求在其他节点失败"));
+            default -> {
+            }
+        }
+    }
+
+    private boolean tryLock(String key) {
+        try {
+            Boolean locked = stringRedisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_PREFIX + key, nodeId, waitTimeoutMillis(), TimeUnit.MILLISECONDS);
+            return !Boolean.FALSE.equals(locked);
+        } catch (Exception ex) {
+            log.debug("Single-flight lock unavailable, dedupe on this node only. reason={}", ex.getMessage());
+            return true;
+        }
+    }
+
+    private void unlock(String key) {
+        try {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(LOCK_PREFIX + key), nodeId);
+            stringRedisTemplate.delete(TEXT_PREFIX + key);
+        } catch (Exception ex) {
+            log.debug("Release single-flight lock failed, expire by TTL. key={}, reason={}", key, ex.getMessage());
+        }
+    }
+
+    private void publishFrame(String key, String frame) {
+        try {
+            stringRedisTemplate.execute(APPEND_SCRIPT, List.of(TEXT_PREFIX + key),
+                    frame, CHANNEL, key, String.valueOf(waitTimeoutMillis()));
+        } catch (Exception ex) {
+            log.debug("Publish shared AI frame failed. key={}, reason={}", key, ex.getMessage());
+        }
+    }
+
+    private void publishResult(String key, SharedAnswer answer) {
+        try {
+            stringRedisTemplate.opsForValue().set(RESULT_PREFIX + key, objectMapper.writeValueAsString(answer),
+                    RESULT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+            publishControl("d", key);
+        } catch (Exception ex) {
+            log.debug("Publish shared AI answer failed. key={}, reason={}", key, ex.getMessage());
+        }
+    }
+
+    private void publishControl(String type, String key) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, type + "\n" + key);
+        } catch (Exception ex) {
+            log.debug("Publish single-flight signal failed. key={}, reason={}", key, ex.getMessage());
+        }
+    }
+
+    private SharedAnswer readResult(String key) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(RESULT_PREFIX + key);
+            return json == null ? null : objectMapper.readValue(json, SharedAnswer.class);
+        } catch (Exception ex) {
+            log.warn("Load shared AI answer failed. key={}, reason={}", key, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 等待共享结果的上限，同时也是锁与中间文本的过期时间
+     */
+    public long waitTimeoutMillis() {
+        return Math.max(1000L, aiAssistantProperties.getLlmCallTimeoutMillis()) + 30_000L;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value.trim();
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+
+    /**
+     * 一次进行中的计算：已生成的文本、订阅者与最终结果
+     */
+    private static final class Flight {
+
+        private final CompletableFuture<SharedAnswer> result = new CompletableFuture<>();
+        private final StringBuilder text = new StringBuilder();
+        private final List<Consumer<String>> listeners = new ArrayList<>();
+
+        /**
+         * 结果来自其他节点
+         */
+        private volatile boolean remote;
+
+        /**
+         * 已收到的远端文本字节数；出现缺帧后不再按帧追加，等完成时用结果补齐
+         */
+        private long remoteBytes;
+        private boolean remoteGap;
+
+        synchronized void subscribe(Consumer<String> listener) {
+            if (listener == null) {
+                return;
+            }
+            if (!text.isEmpty()) {
+                listener.accept(text.toString());
+            }
+            listeners.add(listener);
+        }
+
+        synchronized void emit(String token) {
+            if (token == null || token.isEmpty()) {
+                return;
+            }
+            text.append(token);
+            for (Consumer<String> listener : listeners) {
+                listener.accept(token);
+            }
+        }
+
+        synchronized void acceptRemote(long offset, String frame) {
+            if (remoteGap || offset < remoteBytes) {
+                return;
+            }
+            if (offset > remoteBytes) {
+                remoteGap = true;
+                return;
+            }
+            remoteBytes += frame.getBytes(StandardCharsets.UTF_8).length;
+            emit(frame);
+        }
+
+        synchronized void completeRemote(SharedAnswer answer) {
+            String full = answer.answer() == null ? "" : answer.answer();
+            if (full.startsWith(text.toString())) {
+                emit(full.substring(text.length()));
+            }
+            result.complete(answer);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.qasystem.ai;
+
+import com.qasystem.config.LocalAiProviderProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多供应商对话模型路由。
+ * <p>
+ * 每个可用供应商一个客户端，按供应商统计 EWMA 延迟与错误率：每次请求选熔断未打开、得分（延迟 × (1 + 4 × 错误率)）最低的供应商，
+ * 尚无样本的按优先级排在前面；调用失败时换下一个供应商，最多尝试 failover.retry-count 个。
+ * 连续失败达到 failover.failure-threshold 次后熔断；此后每隔 failover.health-check-interval 秒放行一个真实请求作为探测（半开），
+ * 成功即恢复，失败则重新计时，不额外发送消耗额度的探测请求。探测请求失败时照常切换到其他供应商。
+ * 全部熔断时仍按优先级尝试，不直接拒绝。
+ * <p>
+ * 开启 failover.hedge-delay-millis 时，同步调用超过该时长未返回会向次优供应商再发一次，先成功的结果生效；
+ * 对冲线程数有上限，线程用满时本次不对冲，按普通的顺序切换处理。
+ * 流式调用只在首个 token 之前切换供应商，不做对冲。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatModelRouter {
+
+    /**
+     * 对冲线程上限，用满时直接拒绝，调用方退回不对冲的调用
+     */
+    private static final int HEDGE_MAX_THREADS = 16;
+
+    private final LocalAiProviderProperties localAiProviderProperties;
+
+    private volatile List<Route> routes = List.of();
+
+    private ThreadPoolExecutor hedgeExecutor;
+
+    /**
+     * 一个供应商的客户端及其健康统计
+     *
+     * @param rank 配置顺序（优先级），得分相同时靠前者优先
+     */
+    public record Route(String name, int rank, ChatLanguageModel chatModel,
+                       StreamingChatLanguageModel streamingModel, ProviderHealth health) {
+
+        public Route(String name, int rank, ChatLanguageModel chatModel, StreamingChatLanguageModel streamingModel) {
+            this(name, rank, chatModel, streamingModel, new ProviderHealth(name));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger index = new AtomicInteger();
+        hedgeExecutor = new ThreadPoolExecutor(0, HEDGE_MAX_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ai-provider-hedge-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * 设置参与路由的供应商（按优先级排好序）。整体替换，已取到旧列表的请求继续在旧客户端上完成
+     */
+    public void setRoutes(List<Route> routes) {
+        this.routes = List.copyOf(routes);
+    }
+
+    public List<Route> routes() {
+        return routes;
+    }
+
+    public ChatLanguageModel chatModel() {
+        return this::generate;
+    }
+
+    public StreamingChatLanguageModel streamingModel() {
+        return this::generateStream;
+    }
+
+    private Response<AiMessage> generate(List<ChatMessage> messages) {
+        List<Route> candidates = candidates(false);
+        if (candidates.isEmpty()) {
+            throw notConfigured();
+        }
+        int attempts = attempts(candidates);
+        int hedgeDelay = defaultInt(failover().getHedgeDelayMillis(), 0);
+        int next = 0;
+        if (hedgeDelay > 0 && attempts > 1) {
+            try {
+                return generateHedged(candidates.get(0), candidates.get(1), messages, hedgeDelay);
+            } catch (RejectedExecutionException ex) {
+                log.debug("AI hedge pool full, call providers in order");
+            } catch (RuntimeException ex) {
+                log.warn("AI hedged call failed, try remaining providers. reason={}", ex.getMessage());
+                next = 2;
+            }
+        }
+
+        RuntimeException last = null;
+        for (int i = next; i < attempts; i++) {
+            Route route = candidates.get(i);
+            try {
+                return call(route, messages);
+            } catch (RuntimeException ex) {
+                last = ex;
+                log.warn("AI provider call failed, attempt={}/{}, provider={}, reason={}",
+                        i + 1, attempts, route.name(), ex.getMessage());
+            }
+        }
+        throw last != null ? last : new IllegalStateException("AI provider call failed");
+    }
+
+    private Response<AiMessage> generateHedged(Route primary, Route backup, List<ChatMessage> messages, int hedgeDelay) {
+        CompletableFuture<Response<AiMessage>> first = CompletableFuture.supplyAsync(() -> call(primary, messages), hedgeExecutor);
+        try {
+            return first.get(hedgeDelay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            log.debug("AI provider slow, send hedged request. primary={}, backup={}", primary.name(), backup.name());
+        } catch (ExecutionException ex) {
+            // 主供应商在对冲前就失败了，直接切到次优供应商
+            log.warn("AI provider call failed, switch provider. provider={}, reason={}",
+                    primary.name(), ex.getCause().getMessage());
+            return call(backup, messages);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("AI模型调用被中断", ex);
+        }
+
+        CompletableFuture<Response<AiMessage>> second;
+        try {
+            second = CompletableFuture.supplyAsync(() -> call(backup, messages), hedgeExecutor);
+        } catch (RejectedExecutionException ex) {
+            // 对冲线程已满：不再对冲，等主供应商结果，失败再切到次优供应商
+            log.debug("AI hedge pool full, wait for primary provider. primary={}", primary.name());
+            try {
+                return first.join();
+            } catch (CompletionException failed) {
+                log.warn("AI provider call failed, switch provider. provider={}, reason={}",
+                        primary.name(), failed.getCause().getMessage());
+                return call(backup, messages);
+            }
+        }
+        CompletableFuture<Response<AiMessage>> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger(2);
+        for (CompletableFuture<Response<AiMessage>> future : List.of(first, second)) {
+            future.whenComplete((response, error) -> {
+                if (error == null) {
+                    winner.complete(response);
+                } else if (failures.decrementAndGet() == 0) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            return winner.join();
+        } catch (CompletionException ex) {
+            throw unwrap(ex.getCause());
+        }
+    }
+
+    private Response<AiMessage> call(Route route, List<ChatMessage> messages) {
+        long startNanos = System.nanoTime();
+        try {
+            Response<AiMessage> response = route.chatModel().generate(messages);
+            route.health().recordSuccess(elapsedMillis(startNanos), false);
+            return response;
+        } catch (RuntimeException ex) {
+            route.health().recordFailure(failureThreshold());
+            throw ex;
+        }
+    }
+
+    private void generateStream(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        List<Route> candidates = candidates(true);
+        if (candidates.isEmpty()) {
+            handler.onError(notConfigured());
+            return;
+        }
+        streamAttempt(candidates, 0, attempts(candidates), messages, handler);
+    }
+
+    private void streamAttempt(List<Route> candidates, int index, int attempts,
+                               List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        Route route = candidates.get(index);
+        long startNanos = System.nanoTime();
+        AtomicBoolean emitted = new AtomicBoolean();
+        AtomicBoolean failed = new AtomicBoolean();
+        try {
+            route.streamingModel().generate(messages, new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    if (emitted.compareAndSet(false, true)) {
+                        route.health().recordSuccess(elapsedMillis(startNanos), true);
+                    }
+                    handler.onNext(token);
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    if (emitted.compareAndSet(false, true)) {
+                        route.health().recordSuccess(elapsedMillis(startNanos), true);
+                    }
+                    handler.onComplete(response);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    if (failed.compareAndSet(false, true)) {
+                        route.health().recordFailure(failureThreshold());
+                        retryStreamOrFail(candidates, index, attempts, emitted.get(), messages, handler, error);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            if (failed.compareAndSet(false, true)) {
+                route.health().recordFailure(failureThreshold());
+                retryStreamOrFail(candidates, index, attempts, emitted.get(), messages, handler, ex);
+            }
+        }
+    }
+
+    private void retryStreamOrFail(List<Route> candidates, int index, int attempts, boolean emitted,
+                                   List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler, Throwable error) {
+        // 已经输出过 token 时不能换供应商重来，只能把错误交给调用方
+        if (!emitted && index + 1 < attempts) {
+            log.warn("AI provider stream failed before first token, switch provider. provider={}, reason={}",
+                    candidates.get(index).name(), error.getMessage());
+            streamAttempt(candidates, index + 1, attempts, messages, handler);
+            return;
+        }
+        handler.onError(error);
+    }
+
+    /**
+     * 熔断未打开的按得分排序；到了探测时间的熔断供应商排在最前，用本次请求探测；全部熔断时按优先级返回全部
+     */
+    private List<Route> candidates(boolean streaming) {
+        List<Route> current = routes;
+        List<Route> available = new ArrayList<>(current.size());
+        Route probe = null;
+        long probeIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, defaultInt(failover().getHealthCheckInterval(), 30)));
+        for (Route route : current) {
+            if (!route.health().isOpen()) {
+                available.add(route);
+            } else if (probe == null && route.health().tryHalfOpen(probeIntervalMillis)) {
+                probe = route;
+            }
+        }
+        if (available.isEmpty()) {
+            return current;
+        }
+        available.sort(Comparator.<Route>comparingDouble(route -> route.health().score(streaming))
+                .thenComparingInt(Route::rank));
+        if (probe != null) {
+            log.info("AI provider circuit half-open, probe with a live request. provider={}", probe.name());
+            available.add(0, probe);
+        }
+        return available;
+    }
+
+    private int attempts(List<Route> candidates) {
+        return Math.min(candidates.size(), Math.max(1, defaultInt(failover().getRetryCount(), 3)));
+    }
+
+    private int failureThreshold() {
+        return Math.max(1, defaultInt(failover().getFailureThreshold(), 5));
+    }
+
+    private LocalAiProviderProperties.FailoverProperties failover() {
+        return localAiProviderProperties.getFailover();
+    }
+
+    private static int defaultInt(Integer value, int defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static IllegalStateException notConfigured() {
+        return new IllegalStateException(
+                "AI provider is not configured. Set a DB active model, local ai.providers[], "
+                        + "or langchain4j.open-ai.* before calling AI endpoints."
+        );
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        return error instanceof RuntimeException runtime ? runtime : new RuntimeException(error);
+    }
+
+    /**
+     * 单个供应商的 EWMA 延迟、错误率与熔断状态
+     */
+    public static class ProviderHealth {
+
+        private static final double ALPHA = 0.3D;
+
+        private final String name;
+        private double latencyMillis;
+        private double firstTokenMillis;
+        private boolean latencySampled;
+        private boolean firstTokenSampled;
+        private double errorRate;
+        private int consecutiveFailures;
+        private boolean open;
+        private long lastProbeAt;
+
+        ProviderHealth(String name) {
+            this.name = name;
+        }
+
+        synchronized void recordSuccess(long elapsedMillis, boolean firstToken) {
+            if (firstToken) {
+                firstTokenMillis = firstTokenSampled ? ALPHA * elapsedMillis + (1 - ALPHA) * firstTokenMillis : elapsedMillis;
+                firstTokenSampled = true;
+            } else {
+                latencyMillis = latencySampled ? ALPHA * elapsedMillis + (1 - ALPHA) * latencyMillis : elapsedMillis;
+                latencySampled = true;
+            }
+            errorRate = (1 - ALPHA) * errorRate;
+            consecutiveFailures = 0;
+            if (open) {
+                open = false;
+                log.info("AI provider circuit closed. provider={}", name);
+            }
+        }
+
+        synchronized void recordFailure(int failureThreshold) {
+            errorRate = ALPHA + (1 - ALPHA) * errorRate;
+            consecutiveFailures++;
+            if (open) {
+                // 探测失败，重新计时
+                lastProbeAt = System.currentTimeMillis();
+            } else if (consecutiveFailures >= failureThreshold) {
+                open = true;
+                lastProbeAt = System.currentTimeMillis();
+                log.warn("AI provider circuit opened. provider={}, consecutiveFailures={}", name, consecutiveFailures);
+            }
+        }
+
+        public synchronized boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * 熔断打开且距上次探测已超过 intervalMillis 时返回 true，并占用本轮探测机会（每个间隔只放行一个请求）
+         */
+        synchronized boolean tryHalfOpen(long intervalMillis) {
+            long now = System.currentTimeMillis();
+            if (!open || now - lastProbeAt < intervalMillis) {
+                return false;
+            }
+            lastProbeAt = now;
+            return true;
+        }
+
+        /**
+         * 越小越优先；还没有成功样本时，未失败过的为 0（让新供应商先被尝试），失败过的排最后
+         */
+        public synchronized double score(boolean streaming) {
+            boolean sampled = streaming ? firstTokenSampled : latencySampled;
+            if (!sampled) {
+                return errorRate > 0 ? Double.MAX_VALUE : 0D;
+            }
+            return (streaming ? firstTokenMillis : latencyMillis) * (1 + 4 * errorRate);
+        }
+
+        public synchronized double errorRate() {
+            return errorRate;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.qasystem.ai;
+
+import com.qasystem.config.AiAssistantProperties;
+import com.qasystem.entity.AiConversation;
+import com.qasystem.mapper.AiConversationMapper;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI 会话记忆：最近几轮保留原文，更早的轮次折叠进滚动摘要，整体控制在 token 预算内。
+ * <p>
+ * 摘要存放在 Redis Hash ai:summary:{userId}:{sessionId}（text 为摘要，covered 为已折叠的最后一条记录ID）。
+ * 每轮回答完成后在后台线程检查：未折叠的轮次多于 memory-recent-turns 时，把较早的部分连同旧摘要交给模型生成新摘要；
+ * 请求路径上只读取摘要，从不调用模型生成摘要。同一会话同时只有一个摘要任务，队列满时跳过，下一轮再补。
+ * 摘要调用经 {@link LlmExecutor} 以后台优先级提交，与回答共用并发上限，繁忙时被拒绝，下一轮再补。
+ * 摘要过期或丢失时从数据库按ID分批重新折叠。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationMemoryManager {
+
+    private static final String SUMMARY_PREFIX = "ai:summary:";
+    private static final long SUMMARY_TTL_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * 单次折叠的轮数上限，积压更多时分多轮完成
+     */
+    private static final int FOLD_BATCH = 20;
+
+    /**
+     * 送去摘要的单条消息截断长度
+     */
+    private static final int FOLD_MESSAGE_MAX_CHARS = 1500;
+
+    /**
+     * 只在新摘要覆盖到更新的记录时写入，避免并发任务用旧结果覆盖新结果。
+     * ARGV[1]=摘要, ARGV[2]=覆盖到的记录ID, ARGV[3]=TTL毫秒
+     */
+    private static final DefaultRedisScript<Long> SAVE_SCRIPT = new DefaultRedisScript<>("""
+            local covered = tonumber(redis.call('HGET', KEYS[1], 'covered') or '0')
+            if tonumber(ARGV[2]) <= covered then return 0 end
+            redis.call('HSET', KEYS[1], 'text', ARGV[1], 'covered', ARGV[2])
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return 1
+            """, Long.class);
+
+    private final ConversationWindowStore conversationWindowStore;
+    private final AiConversationMapper conversationMapper;
+    private final ChatLanguageModel chatLanguageModel;
+    private final LlmExecutor llmExecutor;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final AiAssistantProperties aiAssistantProperties;
+
+    /**
+     * 本节点正在摘要的会话
+     */
+    private final Set<String> summarizing = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor summaryExecutor;
+
+    /**
+     * 组装好的历史
+     *
+     * @param summary 更早轮次的摘要，可能为空
+     * @param turns   原文保留的轮次（按时间升序）
+     */
+    public record Memory(String summary, List<ConversationWindowStore.Turn> turns) {
+    }
+
+    private record Summary(String text, long coveredId) {
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger index = new AtomicInteger();
+        summaryExecutor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(200), runnable -> {
+            Thread thread = new Thread(runnable, "ai-memory-summary-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        summaryExecutor.shutdownNow();
+    }
+
+    /**
+     * 在 tokenBudget 内组装历史：先放摘要，再从最新一轮往前放尚未折叠的轮次，放不下的更早轮次不再携带
+     */
+    public Memory load(Long userId, String sessionId, int tokenBudget) {
+        Summary summary = aiAssistantProperties.isMemorySummaryEnabled() ? readSummary(userId, sessionId) : null;
+        long coveredId = summary == null ? 0L : summary.coveredId();
+        int remaining = Math.max(0, tokenBudget);
+
+        String summaryText = null;
+        if (summary != null && StringUtils.hasText(summary.text())) {
+            // 摘要最多占一半预算，其余留给原文
+            summaryText = truncateToTokens(summary.text(), remaining / 2);
+            if (StringUtils.hasText(summaryText)) {
+                remaining -= PromptTokenEstimator.estimateMessage(summaryText);
+            }
+        }
+
+        List<ConversationWindowStore.Turn> window = conversationWindowStore.recentTurns(userId, sessionId);
+        List<ConversationWindowStore.Turn> kept = new ArrayList<>();
+        for (int i = window.size() - 1; i >= 0; i--) {
+            ConversationWindowStore.Turn turn = window.get(i);
+            if (turn.id() != null && turn.id() <= coveredId) {
+                break;
+            }
+            int cost = PromptTokenEstimator.estimateMessage(turn.userMessage())
+                    + PromptTokenEstimator.estimateMessage(turn.aiResponse());
+            if (cost > remaining) {
+                break;
+            }
+            kept.add(turn);
+            remaining -= cost;
+        }
+        Collections.reverse(kept);
+        return new Memory(StringUtils.hasText(summaryText) ? summaryText : null, kept);
+    }
+
+    /**
+     * 本轮回答已保存：必要时在后台把较早的轮次折叠进摘要
+     */
+    public void onTurnCompleted(Long userId, String sessionId) {
+        if (!aiAssistantProperties.isMemorySummaryEnabled()) {
+            return;
+        }
+        String key = buildKey(userId, sessionId);
+        if (!summarizing.add(key)) {
+            return;
+        }
+        try {
+            summaryExecutor.execute(() -> {
+                try {
+                    fold(userId, sessionId);
+                } catch (LlmExecutor.RejectedException ex) {
+                    log.debug("summary shed by llm executor, retry next turn. key={}", key);
+                } catch (Exception ex) {
+                    log.warn("fold conversation summary failed, retry next turn. key={}, reason={}", key, ex.getMessage());
+                } finally {
+                    summarizing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            summarizing.remove(key);
+            log.debug("summary executor busy, skip this turn. key={}", key);
+        }
+    }
+
+    public void evict(Long userId, String sessionId) {
+        try {
+            stringRedisTemplate.delete(buildKey(userId, sessionId));
+        } catch (Exception ex) {
+            log.warn("delete conversation summary failed. userId={}, sessionId={}, reason={}",
+                    userId, sessionId, ex.getMessage());
+        }
+    }
+
+    private void fold(Long userId, String sessionId) {
+        int keep = Math.max(1, aiAssistantProperties.getMemoryRecentTurns());
+        Summary summary = readSummary(userId, sessionId);
+        long coveredId = summary == null ? 0L : summary.coveredId();
+        List<AiConversation> pending = conversationMapper.getSessionTurnsAfter(userId, sessionId, coveredId, FOLD_BATCH + keep);
+        if (pending == null || pending.size() <= keep) {
+            return;
+        }
+        List<AiConversation> toFold = pending.subList(0, Math.min(FOLD_BATCH, pending.size() - keep));
+        String text = summarize(summary == null ? null : summary.text(), toFold);
+        if (!StringUtils.hasText(text)) {
+            return;
+        }
+        long newCoveredId = toFold.get(toFold.size() - 1).getId();
+        stringRedisTemplate.execute(SAVE_SCRIPT, List.of(buildKey(userId, sessionId)),
+                text, String.valueOf(newCoveredId), String.valueOf(SUMMARY_TTL_MILLIS));
+        log.debug("conversation summary folded. userId={}, sessionId={}, turns={}, coveredId={}",
+                userId, sessionId, toFold.size(), newCoveredId);
+    }
+
+    private String summarize(String previous, List<AiConversation> turns) {
+        int maxChars = Math.max(100, aiAssistantProperties.getMemorySummaryMaxChars());
+        StringBuilder input = new StringBuilder();
+        if (StringUtils.hasText(previous)) {
+            input.append("【已有摘要】\n").append(previous).append("\n\n");
+        }
+        input.append("【新增对话】\n");
+        for (AiConversation turn : turns) {
+            input.append("用户：").append(clip(turn.getUserMessage())).append('\n');
+            input.append("助手：").append(clip(turn.getAiResponse())).append('\n');
+        }
+
+        List<ChatMessage> messages = List.of(
+                new SystemMessage("你是对话摘要助手。把已有摘要和新增对话合并成一段新的摘要，"
+                        + "保留用户的目标与背景、已讨论的知识点和结论、用户的薄弱点与未解决的问题，删去寒暄和重复内容。"
+                        + "不超过" + maxChars + "字，只输出摘要正文。"),
+                new UserMessage(input.toString())
+        );
+        Response<AiMessage> response = llmExecutor.generate(chatLanguageModel, messages, LlmExecutor.Priority.BACKGROUND);
+        if (response == null || response.content() == null || !StringUtils.hasText(response.content().text())) {
+            return null;
+        }
+        String text = response.content().text().trim();
+        return text.length() > maxChars ? text.substring(0, maxChars) : text;
+    }
+
+    private Summary readSummary(Long userId, String sessionId) {
+        try {
+            List<Object> values = stringRedisTemplate.opsForHash().multiGet(buildKey(userId, sessionId),
+                    List.of("text", "covered"));
+            if (values == null || values.get(0) == null) {
+                return null;
+            }
+            return new Summary(String.valueOf(values.get(0)), Long.parseLong(String.valueOf(values.get(1))));
+        } catch (Exception ex) {
+            log.warn("load conversation summary failed, use recent turns only. userId={}, sessionId={}, reason={}",
+                    userId, sessionId, ex.getMessage());
+            return null;
+        }
+    }
+
+    private static String clip(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() > FOLD_MESSAGE_MAX_CHARS ? text.substring(0, FOLD_MESSAGE_MAX_CHARS) + "..." : text;
+    }
+
+    private static String truncateToTokens(String text, int maxTokens) {
+        if (PromptTokenEstimator.estimate(text) <= maxTokens) {
+            return text;
+        }
+        // 按估算比例截断，中文约一字一个 token
+        int end = Math.max(0, Math.min(text.length(), maxTokens));
+        while (end > 0 && PromptTokenEstimator.estimate(text.substring(0, end)) > maxTokens) {
+            end = end * 9 / 10;
+        }
+        return text.substring(0, end);
+    }
+
+    private String buildKey(Long userId, String sessionId) {
+        return SUMMARY_PREFIX + userId + ":" + sessionId;
+    }
+}
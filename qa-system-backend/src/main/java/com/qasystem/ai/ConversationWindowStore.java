@@ -0,0 +1,160 @@
+package com.qasystem.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qasystem.config.AiAssistantProperties;
+import com.qasystem.entity.AiConversation;
+import com.qasystem.mapper.AiConversationMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * AI 会话最近轮次窗口（Redis）。
+ * <p>
+ * key 为 ai:window:{userId}:{sessionId}，是一个 ZSET：score 为 ai_conversation 记录ID，member 为一轮对话的紧凑 JSON
+ * （只含记录ID、用户消息与 AI 回答），另有 score=-1 的 __loaded__ 标记表示已用数据库最近的若干轮初始化过。
+ * 每轮结束后无论是否初始化都写入；未初始化时读取走 LIMIT 查询重建，并与期间追加的轮次合并（按记录ID去重），
+ * 因此查库与追加并发时不会漏轮次。只保留最近 max-history-size 轮，不会加载整个会话。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversationWindowStore {
+
+    private static final String KEY_PREFIX = "ai:window:";
+    private static final long TTL_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 未初始化返回 nil；否则按记录ID倒序返回至多 ARGV[1] 轮
+     */
+    private static final DefaultRedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            if not redis.call('ZSCORE', KEYS[1], '__loaded__') then return false end
+            return redis.call('ZREVRANGEBYSCORE', KEYS[1], '+inf', 0, 'LIMIT', 0, ARGV[1])
+            """, List.class);
+
+    /**
+     * ARGV[1]=窗口条数, ARGV[2]=TTL毫秒, ARGV[3]=是否写入初始化标记, 之后为成对的 记录ID, 本轮 JSON
+     */
+    private static final DefaultRedisScript<Long> MERGE_SCRIPT = new DefaultRedisScript<>("""
+            for i = 4, #ARGV, 2 do
+              redis.call('ZREMRANGEBYSCORE', KEYS[1], ARGV[i], ARGV[i])
+              redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            if ARGV[3] == '1' then
+              redis.call('ZADD', KEYS[1], -1, '__loaded__')
+            end
+            local first = 0
+            if redis.call('ZSCORE', KEYS[1], '__loaded__') then first = 1 end
+            redis.call('ZREMRANGEBYRANK', KEYS[1], first, -(tonumber(ARGV[1]) + 1))
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final AiConversationMapper conversationMapper;
+    private final AiAssistantProperties aiAssistantProperties;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 一轮对话
+     *
+     * @param id ai_conversation 记录ID，用于判断是否已被折叠进摘要
+     */
+    public record Turn(Long id, String userMessage, String aiResponse) {
+    }
+
+    /**
+     * 最近的若干轮（按时间升序），至多 max-history-size 轮
+     */
+    public List<Turn> recentTurns(Long userId, String sessionId) {
+        int window = windowSize();
+        String key = buildKey(userId, sessionId);
+        try {
+            List<?> cached = stringRedisTemplate.execute(READ_SCRIPT, List.of(key), String.valueOf(window));
+            if (cached != null) {
+                List<Turn> turns = new ArrayList<>(cached.size());
+                for (Object json : cached) {
+                    turns.add(objectMapper.readValue(String.valueOf(json), Turn.class));
+                }
+                Collections.reverse(turns);
+                return turns;
+            }
+        } catch (Exception ex) {
+            log.warn("load conversation window from redis failed, fallback db. key={}, reason={}", key, ex.getMessage());
+        }
+
+        List<Turn> turns = loadFromDb(userId, sessionId, window);
+        merge(key, turns, true);
+        return turns;
+    }
+
+    /**
+     * 追加本轮对话；窗口未初始化时也写入，初始化时与数据库结果合并
+     */
+    public void append(Long userId, String sessionId, Long conversationId, String userMessage, String aiResponse) {
+        if (conversationId == null) {
+            // 没有记录ID无法去重，丢弃窗口由下次读取重建
+            evict(userId, sessionId);
+            return;
+        }
+        merge(buildKey(userId, sessionId), List.of(new Turn(conversationId, userMessage, aiResponse)), false);
+    }
+
+    public void evict(Long userId, String sessionId) {
+        delete(buildKey(userId, sessionId));
+    }
+
+    private void delete(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception ex) {
+            log.warn("delete conversation window failed, expires by TTL. key={}, reason={}", key, ex.getMessage());
+        }
+    }
+
+    private List<Turn> loadFromDb(Long userId, String sessionId, int window) {
+        List<AiConversation> rows = conversationMapper.getRecentSessionTurns(userId, sessionId, window);
+        if (rows == null || rows.isEmpty()) {
+            return List.of();
+        }
+        List<Turn> turns = new ArrayList<>(rows.size());
+        for (AiConversation row : rows) {
+            turns.add(new Turn(row.getId(), row.getUserMessage(), row.getAiResponse()));
+        }
+        // 查询按时间倒序，窗口按时间升序
+        Collections.reverse(turns);
+        return turns;
+    }
+
+    private void merge(String key, List<Turn> turns, boolean markLoaded) {
+        try {
+            List<String> args = new ArrayList<>(3 + turns.size() * 2);
+            args.add(String.valueOf(windowSize()));
+            args.add(String.valueOf(TTL_MILLIS));
+            args.add(markLoaded ? "1" : "0");
+            for (Turn turn : turns) {
+                args.add(String.valueOf(turn.id()));
+                args.add(objectMapper.writeValueAsString(turn));
+            }
+            stringRedisTemplate.execute(MERGE_SCRIPT, List.of(key), args.toArray());
+        } catch (Exception ex) {
+            // 写入失败时丢弃窗口，避免之后读到缺轮次的历史
+            log.warn("write conversation window failed, drop it. key={}, reason={}", key, ex.getMessage());
+            delete(key);
+        }
+    }
+
+    private int windowSize() {
+        return Math.max(1, aiAssistantProperties.getMaxHistorySize());
+    }
+
+    private String buildKey(Long userId, String sessionId) {
+        return KEY_PREFIX + userId + ":" + sessionId;
+    }
+}
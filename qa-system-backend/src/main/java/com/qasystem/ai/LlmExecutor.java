@@ -0,0 +1,285 @@
+package com.qasystem.ai;
+
+import com.qasystem.config.AiAssistantProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对话模型调用隔离舱。
+ * <p>
+ * 模型调用在独立线程池上执行，并发数由 {@link AdaptiveConcurrencyLimiter} 按调用结果自适应调整；
+ * 占满时请求短暂排队，排队已满或超时立即拒绝，由调用方走降级回答，不让慢供应商拖住全部 Web 线程。
+ * 重试退避通过延迟调度完成，不在请求线程上 sleep；重试不排队，拿不到许可直接失败。
+ * 重试只由一层负责：配置了多个供应商时失败由 {@link ChatModelRouter} 切换供应商，这里不再重试；
+ * 只有一个供应商时由这里重试，模型客户端自身始终不重试。
+ * 后台调用（如会话摘要）按 {@link Priority#BACKGROUND} 提交：不排队、不重试，
+ * 在途数达到上限的 BACKGROUND_SHARE 比例后即被拒绝，始终给交互请求留出余量。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LlmExecutor {
+
+    private static final String METRIC_IN_FLIGHT = "qa_ai_llm_in_flight";
+    private static final String METRIC_QUEUED = "qa_ai_llm_queued";
+    private static final String METRIC_LIMIT = "qa_ai_llm_concurrency_limit";
+    private static final String METRIC_REJECTED = "qa_ai_llm_rejected_total";
+
+    /**
+     * 后台调用最多占用的并发比例
+     */
+    private static final double BACKGROUND_SHARE = 0.5D;
+
+    private final AiAssistantProperties aiAssistantProperties;
+    private final ChatModelRouter chatModelRouter;
+    private final MeterRegistry meterRegistry;
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private ThreadPoolExecutor executor;
+    private Counter queueFullCounter;
+    private Counter queueTimeoutCounter;
+    private Counter backgroundShedCounter;
+
+    /**
+     * 调用优先级
+     */
+    public enum Priority {
+        /**
+         * 用户在等的请求：可排队，失败按配置重试
+         */
+        INTERACTIVE,
+        /**
+         * 后台任务：不排队、不重试，只用交互请求剩下的并发
+         */
+        BACKGROUND
+    }
+
+    /**
+     * 排队已满、排队超时或调用超时，调用方应直接降级
+     */
+    public static class RejectedException extends RuntimeException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        limiter = new AdaptiveConcurrencyLimiter(
+                aiAssistantProperties.getLlmInitialConcurrency(),
+                aiAssistantProperties.getLlmMinConcurrency(),
+                aiAssistantProperties.getLlmMaxConcurrency(),
+                aiAssistantProperties.getLlmQueueCapacity(),
+                aiAssistantProperties.getLlmLatencyThresholdMillis(),
+                aiAssistantProperties.getLlmBackoffRatio());
+
+        // 并发已由 limiter 控制，线程数只需覆盖上限
+        int threads = Math.max(1, aiAssistantProperties.getLlmMaxConcurrency());
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ai-llm-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder(METRIC_IN_FLIGHT, limiter, AdaptiveConcurrencyLimiter::inFlight).register(meterRegistry);
+        Gauge.builder(METRIC_QUEUED, limiter, AdaptiveConcurrencyLimiter::waiting).register(meterRegistry);
+        Gauge.builder(METRIC_LIMIT, limiter, AdaptiveConcurrencyLimiter::limit).register(meterRegistry);
+        queueFullCounter = Counter.builder(METRIC_REJECTED).tag("reason", "queue_full").register(meterRegistry);
+        queueTimeoutCounter = Counter.builder(METRIC_REJECTED).tag("reason", "queue_timeout").register(meterRegistry);
+        backgroundShedCounter = Counter.builder(METRIC_REJECTED).tag("reason", "background_shed").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 同步调用（含重试），最多等待 llm-call-timeout-millis
+     */
+    public Response<AiMessage> generate(ChatLanguageModel model, List<ChatMessage> messages) {
+        return generate(model, messages, Priority.INTERACTIVE);
+    }
+
+    public Response<AiMessage> generate(ChatLanguageModel model, List<ChatMessage> messages, Priority priority) {
+        CompletableFuture<Response<AiMessage>> future = generateAsync(model, messages, priority);
+        try {
+            return future.get(Math.max(1000L, aiAssistantProperties.getLlmCallTimeoutMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            // 取消后续重试；不中断底层调用，许可在其结束时归还，limiter 据此感知供应商变慢
+            future.cancel(false);
+            throw new RejectedException("AI模型调用超时");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("AI模型调用被中断", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+        }
+    }
+
+    public CompletableFuture<Response<AiMessage>> generateAsync(ChatLanguageModel model, List<ChatMessage> messages) {
+        return generateAsync(model, messages, Priority.INTERACTIVE);
+    }
+
+    public CompletableFuture<Response<AiMessage>> generateAsync(ChatLanguageModel model, List<ChatMessage> messages,
+                                                                Priority priority) {
+        CompletableFuture<Response<AiMessage>> result = new CompletableFuture<>();
+        attempt(model, messages, priority, 1, result);
+        return result;
+    }
+
+    /**
+     * 流式调用：取到许可后开始生成，完成或出错时归还；拿不到许可抛 {@link RejectedException}
+     */
+    public void stream(StreamingChatLanguageModel model, List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        acquire(aiAssistantProperties.getLlmQueueTimeoutMillis());
+        AtomicBoolean released = new AtomicBoolean();
+        try {
+            model.generate(messages, new StreamingResponseHandler<>() {
+                @Override
+                public void onNext(String token) {
+                    handler.onNext(token);
+                }
+
+                @Override
+                public void onComplete(Response<AiMessage> response) {
+                    if (released.compareAndSet(false, true)) {
+                        // 流式总时长取决于回答长度，只按成败调整
+                        limiter.release(true, -1L);
+                    }
+                    handler.onComplete(response);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    if (released.compareAndSet(false, true)) {
+                        limiter.release(false, -1L);
+                    }
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException ex) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(false, -1L);
+            }
+            throw ex;
+        }
+    }
+
+    private void attempt(ChatLanguageModel model, List<ChatMessage> messages, Priority priority, int attempt,
+                         CompletableFuture<Response<AiMessage>> result) {
+        try {
+            if (priority == Priority.BACKGROUND) {
+                acquireBackground();
+            } else {
+                // 首次调用可排队，重试不排队
+                acquire(attempt == 1 ? aiAssistantProperties.getLlmQueueTimeoutMillis() : 0L);
+            }
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                boolean success = false;
+                try {
+                    Response<AiMessage> response = model.generate(messages);
+                    success = true;
+                    result.complete(response);
+                } catch (Exception ex) {
+                    retryOrFail(model, messages, priority, attempt, result, ex);
+                } finally {
+                    limiter.release(success, System.nanoTime() - startNanos);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            limiter.release(false, -1L);
+            result.completeExceptionally(new RejectedException("AI服务繁忙，请稍后重试"));
+        }
+    }
+
+    private void retryOrFail(ChatLanguageModel model, List<ChatMessage> messages, Priority priority, int attempt,
+                             CompletableFuture<Response<AiMessage>> result, Exception ex) {
+        int maxAttempts = maxAttempts(priority);
+        log.warn("AI generate failed, attempt={}/{}, reason={}", attempt, maxAttempts, ex.getMessage());
+        if (attempt >= maxAttempts || result.isDone()) {
+            result.completeExceptionally(ex);
+            return;
+        }
+        long backoffMillis = Math.max(100L, aiAssistantProperties.getRetryBackoffMillis()) * attempt;
+        try {
+            CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS, executor)
+                    .execute(() -> attempt(model, messages, priority, attempt + 1, result));
+        } catch (RejectedExecutionException rejected) {
+            result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * 后台调用不重试；多个供应商时路由已按供应商逐个切换过，再重试会把调用次数成倍放大
+     */
+    private int maxAttempts(Priority priority) {
+        if (priority == Priority.BACKGROUND || chatModelRouter.routes().size() > 1) {
+            return 1;
+        }
+        return Math.max(1, aiAssistantProperties.getMaxRequestRetries() + 1);
+    }
+
+    private void acquireBackground() {
+        if (limiter.tryAcquireLowPriority(BACKGROUND_SHARE)) {
+            return;
+        }
+        backgroundShedCounter.increment();
+        throw new RejectedException("AI服务繁忙，后台任务稍后重试");
+    }
+
+    private void acquire(long queueTimeoutMillis) {
+        long startNanos = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = limiter.tryAcquire(queueTimeoutMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待AI调用许可被中断", ex);
+        }
+        if (acquired) {
+            return;
+        }
+        // 等满超时的是排队超时，立即返回的是排队已满
+        if (queueTimeoutMillis > 0 && System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis)) {
+            queueTimeoutCounter.increment();
+        } else {
+            queueFullCounter.increment();
+        }
+        log.warn("AI call shed. inFlight={}, queued={}, limit={}", limiter.inFlight(), limiter.waiting(), limiter.limit());
+        throw new RejectedException("AI服务繁忙，请稍后重试");
+    }
+}
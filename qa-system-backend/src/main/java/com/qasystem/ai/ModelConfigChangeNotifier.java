@@ -0,0 +1,52 @@
+package com.qasystem.ai;
+
+import com.qasystem.common.cache.NearCacheInvalidator;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 模型配置变更通知。
+ * <p>
+ * 激活模型或修改当前激活的配置后，事务提交时（无事务则立即）通知本节点的监听者重建模型客户端，
+ * 并通过 Redis 频道通知其他节点做同样的事。通知丢失的节点保持旧客户端，直到下一次变更或重启。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ModelConfigChangeNotifier {
+
+    static final String RELOAD_CHANNEL = "ai:model:reload";
+
+    private final NearCacheInvalidator nearCacheInvalidator;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private NearCacheInvalidator.Channel reloadChannel;
+
+    @PostConstruct
+    public void subscribe() {
+        reloadChannel = nearCacheInvalidator.register(RELOAD_CHANNEL, ignored -> fireLocal());
+    }
+
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void notifyChanged() {
+        reloadChannel.invalidate("");
+    }
+
+    private void fireLocal() {
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (Exception ex) {
+                log.error("AI model reload failed, keep current model", ex);
+            }
+        }
+    }
+}
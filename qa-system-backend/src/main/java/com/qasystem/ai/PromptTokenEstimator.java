@@ -0,0 +1,52 @@
+package com.qasystem.ai;
+
+/**
+ * 提示词 token 数粗略估算，用于控制上下文预算，不追求与具体模型的分词器一致。
+ * <p>
+ * 中日韩字符按每字 1 个 token，其余字符按每 4 个 1 个 token，每条消息另加少量固定开销。
+ */
+public final class PromptTokenEstimator {
+
+    /**
+     * 每条消息的角色标记等固定开销
+     */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private PromptTokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 估算一条消息（含固定开销）
+     */
+    public static int estimateMessage(String text) {
+        return estimate(text) + MESSAGE_OVERHEAD;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL
+                || (codePoint >= 0x3000 && codePoint <= 0x303F)
+                || (codePoint >= 0xFF00 && codePoint <= 0xFFEF);
+    }
+}
@@ -0,0 +1,70 @@
+package com.qasystem.ai;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 按模型供应商划分的令牌桶限流器。
+ * <p>
+ * 每个供应商一个桶，容量等于每秒许可数（允许一秒内的突发），按时间匀速补充。
+ */
+public class ProviderRateLimiter {
+
+    private final ToDoubleFunction<String> permitsPerSecond;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public ProviderRateLimiter(ToDoubleFunction<String> permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * 阻塞等待一个许可，超时返回 false。
+     */
+    public boolean acquire(String provider, long timeout, TimeUnit unit) throws InterruptedException {
+        String key = provider == null ? "default" : provider;
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(Math.max(0.1D, permitsPerSecond.applyAsDouble(k))));
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            long waitNanos = bucket.tryAcquire();
+            if (waitNanos == 0) {
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(waitNanos, remaining));
+        }
+    }
+
+    private static final class Bucket {
+
+        private final double capacity;
+        private final double nanosPerPermit;
+        private double available;
+        private long lastRefill;
+
+        private Bucket(double permitsPerSecond) {
+            this.capacity = Math.max(1D, permitsPerSecond);
+            this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+            this.available = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        /**
+         * 取到许可返回 0，否则返回距下一个许可的纳秒数。
+         */
+        private synchronized long tryAcquire() {
+            long now = System.nanoTime();
+            available = Math.min(capacity, available + (now - lastRefill) / nanosPerPermit);
+            lastRefill = now;
+            if (available >= 1D) {
+                available -= 1D;
+                return 0;
+            }
+            return Math.max(1L, (long) ((1D - available) * nanosPerPermit));
+        }
+    }
+}
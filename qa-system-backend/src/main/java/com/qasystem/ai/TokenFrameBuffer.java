@@ -0,0 +1,130 @@
+package com.qasystem.ai;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 流式回答的 token 合帧。
+ * <p>
+ * token 先攒在缓冲区里，攒够 maxChars 个字符立即切出一帧；不够时最多等 windowMillis（从缓冲区收到第一个 token 算起）。
+ * 切帧在锁内进行，切出的帧按顺序排队，由 sinkExecutor 串行推给 sink：定时线程与模型回调线程只切帧、不做 IO，
+ * 一个慢的 SSE 连接或 Redis 调用不会拖住其他流的定时切帧。最后一帧由调用方在完成时 {@link #flush()}，
+ * 该方法在调用线程上推完所有已切出的帧后才返回。
+ */
+public class TokenFrameBuffer {
+
+    private final Consumer<String> sink;
+    private final ScheduledExecutorService scheduler;
+    private final Executor sinkExecutor;
+    private final int maxChars;
+    private final long windowMillis;
+
+    private final StringBuilder buffer = new StringBuilder();
+    private final Queue<String> frames = new ArrayDeque<>();
+    private boolean flushScheduled;
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    /**
+     * 同一时刻只有一个线程在推帧，保证帧的先后顺序
+     */
+    private final Object sinkLock = new Object();
+
+    public TokenFrameBuffer(Consumer<String> sink, ScheduledExecutorService scheduler, Executor sinkExecutor,
+                            int maxChars, long windowMillis) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+        this.sinkExecutor = sinkExecutor;
+        this.maxChars = Math.max(1, maxChars);
+        this.windowMillis = Math.max(0L, windowMillis);
+    }
+
+    public void append(String token) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            buffer.append(token);
+            if (buffer.length() < maxChars && windowMillis > 0 && (flushScheduled || scheduleCut())) {
+                return;
+            }
+            cut();
+        }
+        handOff();
+    }
+
+    /**
+     * 切出剩余内容并在调用线程上推完所有已切出的帧
+     */
+    public void flush() {
+        synchronized (this) {
+            cut();
+        }
+        drain();
+    }
+
+    private void cutAndHandOff() {
+        synchronized (this) {
+            cut();
+        }
+        handOff();
+    }
+
+    /**
+     * 安排定时切帧；定时线程已关闭时返回 false，由调用方立即切帧。调用方持有 this 锁
+     */
+    private boolean scheduleCut() {
+        try {
+            scheduler.schedule(this::cutAndHandOff, windowMillis, TimeUnit.MILLISECONDS);
+            flushScheduled = true;
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * 调用方持有 this 锁
+     */
+    private void cut() {
+        flushScheduled = false;
+        if (buffer.isEmpty()) {
+            return;
+        }
+        frames.add(buffer.toString());
+        buffer.setLength(0);
+    }
+
+    private void handOff() {
+        if (!drainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sinkExecutor.execute(() -> {
+                drainScheduled.set(false);
+                drain();
+            });
+        } catch (RejectedExecutionException ex) {
+            // 推帧线程池已关闭：留在队列里，由完成时的 flush 推出
+            drainScheduled.set(false);
+        }
+    }
+
+    private void drain() {
+        synchronized (sinkLock) {
+            String frame;
+            while ((frame = nextFrame()) != null) {
+                sink.accept(frame);
+            }
+        }
+    }
+
+    private synchronized String nextFrame() {
+        return frames.poll();
+    }
+}
@@ -1,5 +1,6 @@
 package com.qasystem.ai.rag;
 
+import com.qasystem.ai.AiStageMetrics;
 import com.qasystem.config.RagProperties;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,6 +18,7 @@ public class RagPipelineService {
     private final RagContextAssembler ragContextAssembler;
     private final RagQueryFactory ragQueryFactory;
     private final RagProperties ragProperties;
+    private final AiStageMetrics aiStageMetrics;
 
     public RagContextResult buildContext(String userQuestion) {
         return buildContext(userQuestion, null, null, null);
@@ -34,14 +36,19 @@ public class RagPipelineService {
             return RagContextResult.empty();
         }
 
+        long startNanos = System.nanoTime();
         RagQuery query = ragQueryFactory.build(userQuestion, knowledgeBaseId, knowledgePoint, messageType);
+        aiStageMetrics.record(AiStageMetrics.Stage.QUERY_BUILD, query, System.nanoTime() - startNanos);
         if (!ragProperties.isEnabled() || !query.useRag()) {
             return RagContextResult.empty(query);
         }
 
         try {
             List<RagCandidate> candidates = ragRetriever.retrieve(query, ragProperties.getTopK());
-            return ragContextAssembler.assemble(query, candidates, ragProperties.getMaxContextLength());
+            long assembleStart = System.nanoTime();
+            RagContextResult result = ragContextAssembler.assemble(query, candidates, ragProperties.getMaxContextLength());
+            aiStageMetrics.record(AiStageMetrics.Stage.CONTEXT_ASSEMBLY, query, System.nanoTime() - assembleStart);
+            return result;
         } catch (Exception ex) {
             log.warn("RAG pipeline execute failed, fallback to no-context. reason={}", ex.getMessage());
             return RagContextResult.empty(query);
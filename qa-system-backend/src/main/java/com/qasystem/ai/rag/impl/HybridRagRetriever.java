@@ -1,5 +1,6 @@
 package com.qasystem.ai.rag.impl;
 
+import com.qasystem.ai.AiStageMetrics;
 import com.qasystem.ai.rag.RagCandidate;
 import com.qasystem.ai.rag.RagQuery;
 import com.qasystem.ai.rag.RagRetriever;
@@ -27,6 +28,7 @@ public class HybridRagRetriever implements RagRetriever {
     private final MilvusRagRetriever milvusRagRetriever;
     private final KeywordRagRetriever keywordRagRetriever;
     private final RagProperties ragProperties;
+    private final AiStageMetrics aiStageMetrics;
 
     @Override
     public List<RagCandidate> retrieve(RagQuery query, int topK) {
@@ -58,16 +60,19 @@ public class HybridRagRetriever implements RagRetriever {
             return List.of();
         }
 
+        long fusionStart = System.nanoTime();
         Map<String, CandidateAccumulator> merged = new LinkedHashMap<>();
         mergeCandidates(merged, denseCandidates);
         mergeCandidates(merged, keywordCandidates);
 
         Set<String> queryTokens = tokenize(query.question());
-        return merged.values().stream()
+        List<RagCandidate> fused = merged.values().stream()
                 .map(accumulator -> accumulator.toCandidate(queryTokens))
                 .sorted(Comparator.comparingDouble(RagCandidate::score).reversed())
                 .limit(topK)
                 .toList();
+        aiStageMetrics.record(AiStageMetrics.Stage.FUSION, query, System.nanoTime() - fusionStart);
+        return fused;
     }
 
     private void mergeCandidates(Map<String, CandidateAccumulator> merged, List<RagCandidate> candidates) {
@@ -1,5 +1,6 @@
 package com.qasystem.ai.rag.impl;
 
+import com.qasystem.ai.AiStageMetrics;
 import com.qasystem.ai.rag.RagCandidate;
 import com.qasystem.ai.rag.RagMetadataRepository;
 import com.qasystem.ai.rag.RagQuery;
@@ -18,17 +19,21 @@ public class KeywordRagRetriever implements RagRetriever {
 
     private final RagMetadataRepository ragMetadataRepository;
     private final RagProperties ragProperties;
+    private final AiStageMetrics aiStageMetrics;
 
     @Override
     public List<RagCandidate> retrieve(RagQuery query, int topK) {
         if (query == null || topK <= 0 || query.keywords() == null || query.keywords().isEmpty()) {
             return List.of();
         }
-        return ragMetadataRepository.searchChunks(
+        long startNanos = System.nanoTime();
+        List<RagCandidate> candidates = ragMetadataRepository.searchChunks(
                 query.effectiveKnowledgeBaseId(ragProperties.getDefaultKnowledgeBase()),
                 query.keywords(),
                 query.effectiveKnowledgePointCode(),
                 topK
         );
+        aiStageMetrics.record(AiStageMetrics.Stage.KEYWORD_SEARCH, query, System.nanoTime() - startNanos);
+        return candidates;
     }
 }
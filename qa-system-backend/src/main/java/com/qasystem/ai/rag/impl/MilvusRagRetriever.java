@@ -1,5 +1,6 @@
 package com.qasystem.ai.rag.impl;
 
+import com.qasystem.ai.AiStageMetrics;
 import com.qasystem.ai.rag.InterviewKnowledgePoint;
 import com.qasystem.ai.rag.RagCandidate;
 import com.qasystem.ai.rag.RagMetadataRepository;
@@ -36,6 +37,7 @@ public class MilvusRagRetriever implements RagRetriever {
     private final RagProperties ragProperties;
     private final RagVectorStoreProvider ragVectorStoreProvider;
     private final RagMetadataRepository ragMetadataRepository;
+    private final AiStageMetrics aiStageMetrics;
 
     @Lazy
     private final EmbeddingModel ragEmbeddingModel;
@@ -48,7 +50,9 @@ public class MilvusRagRetriever implements RagRetriever {
 
         String knowledgeBaseId = query.effectiveKnowledgeBaseId(ragProperties.getDefaultKnowledgeBase());
         try {
+            long embedStart = System.nanoTime();
             Embedding queryEmbedding = ragEmbeddingModel.embed(query.question()).content();
+            aiStageMetrics.record(AiStageMetrics.Stage.EMBEDDING, query, System.nanoTime() - embedStart);
             EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
                     .queryEmbedding(queryEmbedding)
                     .maxResults(topK)
@@ -56,7 +60,9 @@ public class MilvusRagRetriever implements RagRetriever {
                     .filter(buildFilter(knowledgeBaseId, query.effectiveKnowledgePointCode()))
                     .build();
 
+            long searchStart = System.nanoTime();
             EmbeddingSearchResult<TextSegment> result = ragVectorStoreProvider.getStore().search(request);
+            aiStageMetrics.record(AiStageMetrics.Stage.DENSE_SEARCH, query, System.nanoTime() - searchStart);
             if (result == null || result.matches() == null || result.matches().isEmpty()) {
                 return List.of();
             }
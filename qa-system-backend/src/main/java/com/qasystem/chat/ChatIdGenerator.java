@@ -0,0 +1,185 @@
+package com.qasystem.chat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天消息ID生成器（雪花算法）：40 位毫秒时间 | 5 位节点号 | 8 位毫秒内序号。
+ * <p>
+ * 总长 53 位，不超过 JS Number 的安全整数范围，前端按数字处理ID不会丢精度；40 位毫秒可用到 2058 年。
+ * 写后落库模式下消息在内存中分配ID，ID 随时间递增，与游标分页按ID倒序一致；
+ * 生成的ID远大于数据库自增ID，关闭该模式后自增会从最大ID之后继续，不会冲突。
+ * <p>
+ * 节点号从 Redis 租用：每个节点号对应一个带 TTL 的 chat:id:worker:{节点号}，SET NX 成功即占用，
+ * 后台按 TTL 的 1/3 续期，正常关闭时释放。租约丢失（如 Redis 重启后被其他节点占用）时重新租用空闲节点号；
+ * 32 个节点号都被占用或 Redis 不可用时随机选取并告警。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatIdGenerator {
+
+    /**
+     * 2024-01-01T00:00:00Z
+     */
+    private static final long EPOCH_MILLIS = 1704067200000L;
+    private static final int WORKER_BITS = 5;
+    private static final int SEQUENCE_BITS = 8;
+    private static final long MAX_WORKER = (1L << WORKER_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private static final String WORKER_KEY_PREFIX = "chat:id:worker:";
+    private static final Duration LEASE_TTL = Duration.ofSeconds(60);
+
+    /**
+     * 仍由本节点持有时续期并返回 1，否则返回 0；ARGV[1]=租约标识，ARGV[2]=TTL毫秒
+     */
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              redis.call('PEXPIRE', KEYS[1], ARGV[2])
+              return 1
+            end
+            return 0
+            """, Long.class);
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final String leaseToken = UUID.randomUUID().toString();
+    private ScheduledExecutorService leaseRenewer;
+
+    private long workerId;
+    private volatile boolean leased;
+    private long lastMillis = -1L;
+    private long sequence;
+
+    @PostConstruct
+    public void init() {
+        Long acquired = acquireWorker(ThreadLocalRandom.current().nextLong(MAX_WORKER + 1));
+        if (acquired != null) {
+            workerId = acquired;
+            leased = true;
+        } else {
+            workerId = ThreadLocalRandom.current().nextLong(MAX_WORKER + 1);
+            log.warn("No chat id worker lease available, use random worker {}", workerId);
+        }
+        leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-id-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = LEASE_TTL.toMillis() / 3;
+        leaseRenewer.scheduleWithFixedDelay(this::renewLease, period, period, TimeUnit.MILLISECONDS);
+        log.info("Chat message id generator ready, worker={}, leased={}", workerId, leased);
+    }
+
+    @PreDestroy
+    public void stop() {
+        leaseRenewer.shutdownNow();
+        if (!leased) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(workerKey(currentWorker())), leaseToken);
+        } catch (Exception e) {
+            log.warn("Release chat id worker lease failed, it expires after TTL. reason={}", e.getMessage());
+        }
+    }
+
+    public synchronized long nextId() {
+        long now = System.currentTimeMillis();
+        if (now < lastMillis) {
+            // 时钟回拨时沿用上一毫秒，避免ID倒退
+            now = lastMillis;
+        }
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                // 本毫秒序号用完，借用下一毫秒
+                now = lastMillis + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = now;
+        return ((now - EPOCH_MILLIS) << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    /**
+     * 续期当前租约；租约已丢失或启动时未租到时重新租用，优先沿用当前节点号
+     */
+    private void renewLease() {
+        long current = currentWorker();
+        try {
+            if (leased) {
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, List.of(workerKey(current)),
+                        leaseToken, String.valueOf(LEASE_TTL.toMillis()));
+                if (renewed != null && renewed == 1L) {
+                    return;
+                }
+                leased = false;
+                log.warn("Chat id worker lease lost, re-acquire. worker={}", current);
+            }
+            Long acquired = acquireWorker(current);
+            if (acquired == null) {
+                return;
+            }
+            if (acquired != current) {
+                log.warn("Chat id worker switched. from={}, to={}", current, acquired);
+            }
+            synchronized (this) {
+                workerId = acquired;
+            }
+            leased = true;
+        } catch (Exception e) {
+            log.warn("Renew chat id worker lease failed, retry next round. worker={}, reason={}", current, e.getMessage());
+        }
+    }
+
+    /**
+     * 从 start 开始依次尝试 SET NX 各节点号
+     *
+     * @return 租到的节点号；全部被占用或 Redis 不可用时返回 null
+     */
+    private Long acquireWorker(long start) {
+        try {
+            for (long i = 0; i <= MAX_WORKER; i++) {
+                long candidate = (start + i) & MAX_WORKER;
+                if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                        .setIfAbsent(workerKey(candidate), leaseToken, LEASE_TTL))) {
+                    return candidate;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Acquire chat id worker lease failed. reason={}", e.getMessage());
+        }
+        return null;
+    }
+
+    private synchronized long currentWorker() {
+        return workerId;
+    }
+
+    private static String workerKey(long worker) {
+        return WORKER_KEY_PREFIX + worker;
+    }
+}
@@ -0,0 +1,271 @@
+package com.qasystem.chat;
+
+import com.qasystem.config.ChatProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户收件箱：每个用户一个单调递增的序号和一个有界的 Redis Stream。
+ * <p>
+ * 需要可靠送达的推送（私聊、群聊、撤回、好友申请）先写入接收方收件箱，帧里带上该用户的序号 seq，再实时投递。
+ * 客户端记录收到的最大 seq，断线重连后发送 {"type":"SYNC","lastSeq":n}，只补发 n 之后的帧；
+ * 客户端按批发送 {"type":"ACK","seq":n}，服务端合并后定期记录确认序号。
+ * <p>
+ * 数据结构（{userId} 即 hash tag，同一用户的键在 Redis Cluster 下落在同一个槽）：
+ * <ul>
+ *   <li>chat:seq:{userId} —— 用户序号，不过期</li>
+ *   <li>chat:inbox:{userId} —— Stream，条目ID即 "{seq}-0"，字段 ts（写入毫秒时间）与 frame（完整帧文本）；
+ *       只按条数近似裁剪，整个 key 在最后一次写入后 TTL 过期。确认不裁剪收件箱：
+ *       同一用户的多个设备各自同步，一个设备的确认不能删掉另一个设备还没收到的帧</li>
+ *   <li>chat:ack:{userId} —— 各设备确认过的最大序号，客户端未带 lastSeq 时作为起点</li>
+ * </ul>
+ * 写入收件箱按接收方逐个执行脚本（每个脚本只碰同一用户的键），一批接收方通过管道一次往返发出。
+ * 补发区间已被裁剪或过期时不补发部分数据，而是返回 resync=true，由客户端走 REST 重新加载。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatInbox {
+
+    private static final String SEQ_PREFIX = "chat:seq:";
+    private static final String INBOX_PREFIX = "chat:inbox:";
+    private static final String ACK_PREFIX = "chat:ack:";
+
+    /**
+     * 单次管道处理的接收方上限，大群分批写入
+     */
+    private static final int APPEND_BATCH = 500;
+
+    /**
+     * KEYS[1]=序号, KEYS[2]=收件箱；ARGV[1]=帧去掉开头 '{' 的部分, ARGV[2]=保留条数, ARGV[3]=TTL毫秒, ARGV[4]=当前毫秒
+     */
+    private static final String APPEND_SCRIPT = """
+            local seq = redis.call('INCR', KEYS[1])
+            redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[2], seq .. '-0',
+              'ts', ARGV[4], 'frame', '{"seq":' .. seq .. ',' .. ARGV[1])
+            redis.call('PEXPIRE', KEYS[2], ARGV[3])
+            return seq
+            """;
+
+    /**
+     * KEYS[1]=确认序号；ARGV[1]=确认序号, ARGV[2]=TTL毫秒
+     */
+    private static final String ACK_SCRIPT = """
+            local cur = tonumber(redis.call('GET', KEYS[1]) or '0')
+            if tonumber(ARGV[1]) <= cur then return 0 end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return 1
+            """;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ChatMessageRouter messageRouter;
+    private final ChatProperties chatProperties;
+
+    /**
+     * 待落库的确认：用户 -> 窗口内收到的最大序号
+     */
+    private final Map<Long, Long> pendingAcks = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService ackFlusher;
+
+    /**
+     * 补发结果
+     *
+     * @param frames 需补发的帧（按 seq 升序）
+     * @param seq    当前最新序号
+     * @param resync 补发区间已不完整，客户端需重新加载
+     */
+    public record SyncResult(List<TextMessage> frames, long seq, boolean resync) {
+    }
+
+    @PostConstruct
+    public void start() {
+        ackFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-inbox-ack");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(200L, chatProperties.getInboxAckFlushMillis());
+        ackFlusher.scheduleWithFixedDelay(this::flushAcksQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ackFlusher.shutdown();
+        flushAcksQuietly();
+    }
+
+    /**
+     * 写入接收方收件箱并实时投递；帧正文只序列化一次，每个接收方只是在开头拼上自己的序号。
+     * 收件箱写入失败时退化为不带序号的直接投递。
+     */
+    public void publish(Collection<Long> userIds, Object frame) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        TextMessage encoded;
+        try {
+            encoded = messageRouter.encode(frame);
+        } catch (IllegalStateException e) {
+            log.error("序列化聊天推送失败", e.getCause());
+            return;
+        }
+        List<Long> receivers = new ArrayList<>(new LinkedHashSet<>(userIds));
+        String body = encoded.getPayload().substring(1);
+        for (int from = 0; from < receivers.size(); from += APPEND_BATCH) {
+            List<Long> batch = receivers.subList(from, Math.min(from + APPEND_BATCH, receivers.size()));
+            Map<Long, TextMessage> frames;
+            try {
+                frames = append(batch, body);
+            } catch (Exception e) {
+                log.warn("Append chat inbox failed, deliver without seq. users={}, reason={}",
+                        batch.size(), e.getMessage());
+                messageRouter.deliver(batch, encoded);
+                continue;
+            }
+            messageRouter.deliverEach(frames);
+        }
+    }
+
+    public void publish(Long userId, Object frame) {
+        publish(List.of(userId), frame);
+    }
+
+    /**
+     * 取 lastSeq 之后的帧；lastSeq 为空时从已确认的序号开始，都没有则只返回当前序号
+     */
+    public SyncResult sync(Long userId, Long lastSeq) {
+        long current = parseLong(stringRedisTemplate.opsForValue().get(key(SEQ_PREFIX, userId)));
+        Long from = lastSeq;
+        if (from == null) {
+            String acked = stringRedisTemplate.opsForValue().get(key(ACK_PREFIX, userId));
+            if (acked == null) {
+                return new SyncResult(List.of(), current, false);
+            }
+            from = parseLong(acked);
+        }
+        if (from >= current) {
+            return new SyncResult(List.of(), current, from > current);
+        }
+
+        int max = Math.max(1, chatProperties.getInboxMaxLength());
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().range(
+                key(INBOX_PREFIX, userId), Range.closed((from + 1) + "-0", "+"), Limit.limit().count(max));
+        long cutoff = System.currentTimeMillis() - chatProperties.getInboxTtlMillis();
+        List<TextMessage> frames = new ArrayList<>();
+        long expected = from + 1;
+        if (records != null) {
+            for (MapRecord<String, Object, Object> record : records) {
+                long seq = record.getId().getTimestamp();
+                if (seq != expected || parseLong(record.getValue().get("ts")) < cutoff) {
+                    break;
+                }
+                frames.add(new TextMessage(String.valueOf(record.getValue().get("frame"))));
+                expected++;
+            }
+        }
+        // 中间缺号（已裁剪、已过期）或超过补发上限时，不补发残缺的区间
+        if (expected <= current) {
+            return new SyncResult(List.of(), current, true);
+        }
+        return new SyncResult(frames, current, false);
+    }
+
+    /**
+     * 记录客户端确认，定期合并写入
+     */
+    public void ack(Long userId, long seq) {
+        if (seq > 0) {
+            pendingAcks.merge(userId, seq, Math::max);
+        }
+    }
+
+    private Map<Long, TextMessage> append(List<Long> userIds, String body) {
+        byte[] script = APPEND_SCRIPT.getBytes(StandardCharsets.UTF_8);
+        byte[] frameBody = bytes(body);
+        byte[] maxLength = bytes(String.valueOf(Math.max(1, chatProperties.getInboxMaxLength())));
+        byte[] ttl = bytes(String.valueOf(chatProperties.getInboxTtlMillis()));
+        byte[] now = bytes(String.valueOf(System.currentTimeMillis()));
+        List<Object> seqs = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long userId : userIds) {
+                connection.scriptingCommands().eval(script, ReturnType.INTEGER, 2,
+                        bytes(key(SEQ_PREFIX, userId)), bytes(key(INBOX_PREFIX, userId)), frameBody, maxLength, ttl, now);
+            }
+            return null;
+        });
+        if (seqs == null || seqs.size() != userIds.size()) {
+            throw new IllegalStateException("unexpected inbox script reply");
+        }
+        Map<Long, TextMessage> frames = new LinkedHashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            frames.put(userIds.get(i), new TextMessage("{\"seq\":" + seqs.get(i) + "," + body));
+        }
+        return frames;
+    }
+
+    private void flushAcksQuietly() {
+        if (pendingAcks.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> batch = new LinkedHashMap<>();
+        for (Long userId : List.copyOf(pendingAcks.keySet())) {
+            Long seq = pendingAcks.remove(userId);
+            if (seq != null) {
+                batch.put(userId, seq);
+            }
+        }
+        byte[] script = ACK_SCRIPT.getBytes(StandardCharsets.UTF_8);
+        byte[] ttl = bytes(String.valueOf(chatProperties.getInboxTtlMillis()));
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                batch.forEach((userId, seq) -> connection.scriptingCommands().eval(script, ReturnType.INTEGER, 1,
+                        bytes(key(ACK_PREFIX, userId)), bytes(String.valueOf(seq)), ttl));
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Flush chat inbox acks failed, retry next round. users={}, reason={}", batch.size(), e.getMessage());
+            batch.forEach(this::ack);
+        }
+    }
+
+    private long parseLong(Object value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static String key(String prefix, Long userId) {
+        return prefix + "{" + userId + "}";
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,616 @@
+package com.qasystem.chat;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qasystem.config.ChatProperties;
+import com.qasystem.entity.ChatGroupMessage;
+import com.qasystem.entity.ChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 聊天消息写后落库日志（qa.chat.write-behind-enabled 开启时使用）。
+ * <p>
+ * 发送消息时只在 Redis 中原子写入一条日志即返回，由后台线程按批多行写入 chat_message / chat_group_message。
+ * 数据结构：
+ * <ul>
+ *   <li>chat:wb:msg —— Hash，字段 P:{消息ID} / G:{消息ID} 为发送时的消息 JSON（之后不再改写）；
+ *       {字段}:read 为已读时间（毫秒）、{字段}:recalled 为撤回后的内容、{字段}:v 为修改版本号，落库确认后一并删除</li>
+ *   <li>chat:wb:conv:P:{小ID}:{大ID} / chat:wb:conv:G:{群ID} —— ZSET，会话内未落库的消息ID，供历史查询合并</li>
+ *   <li>chat:wb:log —— Stream，每条消息一个条目，消费组 chat-wb 保证节点宕机后由其他节点接手</li>
+ *   <li>chat:wb:dead —— Stream，投递次数达到 qa.chat.write-behind-max-deliveries 仍未落库的条目，
+ *       消息本身保留在 chat:wb:msg 中，排查后把条目重新 XADD 到 chat:wb:log 即可重放</li>
+ * </ul>
+ * 未落库期间的撤回、已读各自只写一个字段并递增版本号（脚本内完成），并发修改互不覆盖；
+ * 落库后按"版本号未变才删除"的方式确认，落库与修改并发时条目保持未确认，下一轮按新值再写一次（ON DUPLICATE KEY UPDATE）。
+ * 日志的持久性取决于 Redis 的 AOF 配置。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatMessageLog {
+
+    private static final String MSG_KEY = "chat:wb:msg";
+    private static final String CONV_PREFIX = "chat:wb:conv:";
+    private static final String LOG_KEY = "chat:wb:log";
+    private static final String DEAD_KEY = "chat:wb:dead";
+    private static final String GROUP = "chat-wb";
+    private static final String FIELD = "f";
+    private static final String READ = ":read";
+    private static final String RECALLED = ":recalled";
+    private static final String VERSION = ":v";
+
+    /**
+     * KEYS[1]=消息Hash, KEYS[2]=会话ZSET, KEYS[3]=日志Stream；ARGV[1]=字段, ARGV[2]=JSON, ARGV[3]=消息ID
+     */
+    private static final DefaultRedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('ZADD', KEYS[2], ARGV[3], ARGV[3])
+            redis.call('XADD', KEYS[3], '*', 'f', ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * 仅在消息尚未落库时修改一个属性并递增版本号；ARGV[1]=字段, ARGV[2]=属性后缀, ARGV[3]=值, ARGV[4]=1 表示已有值时保留
+     */
+    private static final DefaultRedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end
+            local attr = ARGV[1] .. ARGV[2]
+            if ARGV[4] == '1' then
+              if redis.call('HSETNX', KEYS[1], attr, ARGV[3]) == 0 then return 1 end
+            else
+              redis.call('HSET', KEYS[1], attr, ARGV[3])
+            end
+            redis.call('HINCRBY', KEYS[1], ARGV[1] .. ':v', 1)
+            return 1
+            """, Long.class);
+
+    /**
+     * KEYS[1]=消息Hash, KEYS[2..]=各消息的会话ZSET；ARGV 为三元组 字段, 落库时的版本号, 消息ID。
+     * 版本号未变的删除，返回落库后又被修改过的字段
+     */
+    private static final DefaultRedisScript<List> COMMIT_SCRIPT = new DefaultRedisScript<>("""
+            local changed = {}
+            local k = 2
+            for i = 1, #ARGV, 3 do
+              local f = ARGV[i]
+              if redis.call('HEXISTS', KEYS[1], f) == 1 then
+                if (redis.call('HGET', KEYS[1], f .. ':v') or '0') == ARGV[i + 1] then
+                  redis.call('HDEL', KEYS[1], f, f .. ':read', f .. ':recalled', f .. ':v')
+                  redis.call('ZREM', KEYS[k], ARGV[i + 2])
+                else
+                  changed[#changed + 1] = f
+                end
+              end
+              k = k + 1
+            end
+            return changed
+            """, List.class);
+
+    private static final String PRIVATE_COLUMNS = "(id, conversation_id, sender_id, receiver_id, content, type, media_url, "
+            + "media_thumbnail, media_duration, media_size, forward_from_id, forward_from_user, reply_to_id, "
+            + "is_read, read_time, is_recalled, create_time, deleted)";
+    private static final String PRIVATE_UPSERT_TAIL = " ON DUPLICATE KEY UPDATE content = VALUES(content), "
+            + "is_read = VALUES(is_read), read_time = VALUES(read_time), is_recalled = VALUES(is_recalled)";
+    private static final String GROUP_COLUMNS = "(id, group_id, sender_id, content, type, media_url, media_thumbnail, "
+            + "media_duration, media_size, forward_from_id, forward_from_user, reply_to_id, at_user_ids, at_all, "
+            + "is_recalled, read_count, create_time, deleted)";
+    private static final String GROUP_UPSERT_TAIL = " ON DUPLICATE KEY UPDATE content = VALUES(content), "
+            + "is_recalled = VALUES(is_recalled), read_count = VALUES(read_count)";
+    private static final int COLUMN_COUNT = 18;
+    private static final int STATE_WIDTH = 4;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatProperties chatProperties;
+
+    private final String consumerName = UUID.randomUUID().toString();
+
+    /**
+     * 日志只保存数据库字段，发送者等展示字段不写入
+     */
+    private ObjectMapper logMapper;
+    private volatile boolean groupReady;
+    private ScheduledExecutorService flusher;
+
+    @JsonIgnoreProperties({"sender", "replyMessage", "atUsers"})
+    private interface DatabaseFieldsOnly {
+    }
+
+    /**
+     * 一条待落库的消息，version 为读取时的修改版本号
+     */
+    private record Entry(RecordId recordId, String field, String version, Object message) {
+    }
+
+    @PostConstruct
+    public void start() {
+        logMapper = objectMapper.copy()
+                .addMixIn(ChatMessage.class, DatabaseFieldsOnly.class)
+                .addMixIn(ChatGroupMessage.class, DatabaseFieldsOnly.class);
+        // 未开启时同样启动，把之前开启期间遗留的日志写完
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(50L, chatProperties.getWriteBehindFlushIntervalMillis());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+
+    public boolean isEnabled() {
+        return chatProperties.isWriteBehindEnabled();
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 写入日志，ID 与创建时间须已由调用方分配
+     */
+    public void appendPrivate(ChatMessage message) {
+        append(privateField(message.getId()), privateConvKey(message.getSenderId(), message.getReceiverId()),
+                message.getId(), message);
+    }
+
+    public void appendGroup(ChatGroupMessage message) {
+        append(groupField(message.getId()), groupConvKey(message.getGroupId()), message.getId(), message);
+    }
+
+    /**
+     * 撤回尚未落库的消息；返回 false 表示已落库，调用方应直接更新数据库
+     */
+    public boolean recallPrivate(Long messageId, String content) {
+        return update(privateField(messageId), RECALLED, content, false);
+    }
+
+    /**
+     * 把 senderId 发给 readerId 的未落库消息标记为已读（已读时间保留第一次的），返回标记的条数
+     */
+    public int markPrivateRead(Long readerId, Long senderId) {
+        List<ChatMessage> messages = pendingPrivate(readerId, senderId, null, -1);
+        String now = String.valueOf(System.currentTimeMillis());
+        int marked = 0;
+        for (ChatMessage message : messages) {
+            if (readerId.equals(message.getReceiverId()) && !Boolean.TRUE.equals(message.getIsRead())
+                    && update(privateField(message.getId()), READ, now, true)) {
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    // ==================== 读取 ====================
+
+    /**
+     * 未落库的私聊消息，不存在（或已落库）时返回 null
+     */
+    public ChatMessage findPrivate(Long messageId) {
+        List<Object> values = loadValues(List.of(privateField(messageId)));
+        return restore(values, 0, ChatMessage.class);
+    }
+
+    /**
+     * 两人之间未落库、ID 小于 beforeId（为空则不限）的消息，按ID倒序，limit 小于 0 表示全部
+     */
+    public List<ChatMessage> pendingPrivate(Long userId1, Long userId2, Long beforeId, int limit) {
+        return pending(privateConvKey(userId1, userId2), "P:", beforeId, limit, ChatMessage.class);
+    }
+
+    public List<ChatGroupMessage> pendingGroup(Long groupId, Long beforeId, int limit) {
+        return pending(groupConvKey(groupId), "G:", beforeId, limit, ChatGroupMessage.class);
+    }
+
+    // ==================== 落库 ====================
+
+    private void flushQuietly() {
+        try {
+            ensureGroup();
+            claimStale();
+            deadLetter();
+            // 先重试本节点未确认的条目（落库失败或落库期间被修改），再读新条目
+            flushBatch(ReadOffset.from("0"));
+            while (flushBatch(ReadOffset.lastConsumed()) >= batchSize()) {
+                // 积压时连续处理，直到读到不满一批
+            }
+        } catch (Exception e) {
+            if (String.valueOf(e.getMessage()).contains("NOGROUP")) {
+                groupReady = false;
+            }
+            log.warn("Flush chat write-behind log failed, retry next round. reason={}", e.getMessage());
+        }
+    }
+
+    private int flushBatch(ReadOffset offset) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                Consumer.from(GROUP, consumerName),
+                StreamReadOptions.empty().count(batchSize()),
+                StreamOffset.create(LOG_KEY, offset));
+        if (records == null || records.isEmpty()) {
+            return 0;
+        }
+        flush(records);
+        return records.size();
+    }
+
+    /**
+     * 认领其他节点（已宕机或卡住）长时间未确认的条目，下一次读取本节点未确认条目时处理
+     */
+    private void claimStale() {
+        long idleMillis = chatProperties.getWriteBehindClaimIdleMillis();
+        PendingMessages pending = stringRedisTemplate.opsForStream().pending(
+                LOG_KEY, GROUP, Range.unbounded(), batchSize());
+        List<RecordId> stale = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (!consumerName.equals(message.getConsumerName())
+                    && message.getElapsedTimeSinceLastDelivery().toMillis() >= idleMillis) {
+                stale.add(message.getId());
+            }
+        }
+        if (!stale.isEmpty()) {
+            stringRedisTemplate.opsForStream().claim(LOG_KEY, GROUP, consumerName,
+                    Duration.ofMillis(idleMillis), stale.toArray(new RecordId[0]));
+            log.info("Claimed {} stale chat write-behind entries", stale.size());
+        }
+    }
+
+    /**
+     * 本节点未确认、投递次数已达上限的条目（落库一直失败或无法解析）移入死信 Stream，不再无限重试
+     */
+    private void deadLetter() {
+        int maxDeliveries = Math.max(1, chatProperties.getWriteBehindMaxDeliveries());
+        PendingMessages pending = stringRedisTemplate.opsForStream().pending(
+                LOG_KEY, Consumer.from(GROUP, consumerName), Range.unbounded(), batchSize());
+        List<RecordId> exhausted = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getTotalDeliveryCount() < maxDeliveries) {
+                continue;
+            }
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().range(
+                    LOG_KEY, Range.closed(message.getIdAsString(), message.getIdAsString()));
+            String field = records == null || records.isEmpty() ? "" : String.valueOf(records.get(0).getValue().get(FIELD));
+            stringRedisTemplate.opsForStream().add(DEAD_KEY, Map.of(
+                    FIELD, field,
+                    "id", message.getIdAsString(),
+                    "deliveries", String.valueOf(message.getTotalDeliveryCount())));
+            exhausted.add(message.getId());
+            log.error("Move chat write-behind entry to dead letter after {} deliveries. field={}",
+                    message.getTotalDeliveryCount(), field);
+        }
+        if (!exhausted.isEmpty()) {
+            RecordId[] ids = exhausted.toArray(new RecordId[0]);
+            stringRedisTemplate.opsForStream().acknowledge(LOG_KEY, GROUP, ids);
+            stringRedisTemplate.opsForStream().delete(LOG_KEY, ids);
+        }
+    }
+
+    private void flush(List<MapRecord<String, Object, Object>> records) {
+        List<String> fields = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            fields.add(String.valueOf(record.getValue().get(FIELD)));
+        }
+        List<Object> values = loadValues(fields);
+
+        List<RecordId> done = new ArrayList<>();
+        List<Entry> privates = new ArrayList<>();
+        List<Entry> groups = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            RecordId recordId = records.get(i).getId();
+            String field = fields.get(i);
+            if (values.get(i * STATE_WIDTH) == null) {
+                // 已由其他节点落库确认
+                done.add(recordId);
+                continue;
+            }
+            String version = version(values, i);
+            try {
+                if (field.startsWith("P:")) {
+                    privates.add(new Entry(recordId, field, version, restore(values, i, ChatMessage.class)));
+                    continue;
+                }
+                if (field.startsWith("G:")) {
+                    groups.add(new Entry(recordId, field, version, restore(values, i, ChatGroupMessage.class)));
+                    continue;
+                }
+            } catch (IllegalStateException e) {
+                log.error("Malformed chat write-behind entry, keep pending until dead-lettered. field={}", field);
+                continue;
+            }
+            log.warn("Drop malformed chat write-behind entry: {}", field);
+            done.add(recordId);
+        }
+
+        List<Entry> written = new ArrayList<>();
+        written.addAll(upsert(privates, "INSERT INTO chat_message " + PRIVATE_COLUMNS + " VALUES ",
+                PRIVATE_UPSERT_TAIL, entry -> privateRow((ChatMessage) entry.message())));
+        written.addAll(upsert(groups, "INSERT INTO chat_group_message " + GROUP_COLUMNS + " VALUES ",
+                GROUP_UPSERT_TAIL, entry -> groupRow((ChatGroupMessage) entry.message())));
+
+        Set<String> changed = commit(written);
+        for (Entry entry : written) {
+            if (!changed.contains(entry.field())) {
+                done.add(entry.recordId());
+            }
+        }
+        if (!done.isEmpty()) {
+            RecordId[] ids = done.toArray(new RecordId[0]);
+            stringRedisTemplate.opsForStream().acknowledge(LOG_KEY, GROUP, ids);
+            stringRedisTemplate.opsForStream().delete(LOG_KEY, ids);
+        }
+    }
+
+    /**
+     * 多行写入；整批失败时逐行重试，仍失败的条目保持未确认，返回写入成功的条目
+     */
+    private List<Entry> upsert(List<Entry> entries, String head, String tail,
+                               Function<Entry, Object[]> rowOf) {
+        if (entries.isEmpty()) {
+            return List.of();
+        }
+        try {
+            List<Object> args = new ArrayList<>(entries.size() * COLUMN_COUNT);
+            for (Entry entry : entries) {
+                args.addAll(List.of(rowOf.apply(entry)));
+            }
+            jdbcTemplate.update(head + placeholders(entries.size()) + tail, args.toArray());
+            return entries;
+        } catch (Exception e) {
+            log.warn("Batch flush chat messages failed, retry row by row. rows={}, reason={}",
+                    entries.size(), e.getMessage());
+        }
+        List<Entry> written = new ArrayList<>();
+        for (Entry entry : entries) {
+            try {
+                jdbcTemplate.update(head + placeholders(1) + tail, rowOf.apply(entry));
+                written.add(entry);
+            } catch (Exception e) {
+                log.error("Flush chat message failed, keep pending. field={}, reason={}", entry.field(), e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    private Set<String> commit(List<Entry> written) {
+        if (written.isEmpty()) {
+            return Set.of();
+        }
+        List<String> keys = new ArrayList<>(written.size() + 1);
+        List<String> args = new ArrayList<>(written.size() * 3);
+        keys.add(MSG_KEY);
+        for (Entry entry : written) {
+            if (entry.message() instanceof ChatMessage message) {
+                keys.add(privateConvKey(message.getSenderId(), message.getReceiverId()));
+                args.add(entry.field());
+                args.add(entry.version());
+                args.add(String.valueOf(message.getId()));
+            } else {
+                ChatGroupMessage message = (ChatGroupMessage) entry.message();
+                keys.add(groupConvKey(message.getGroupId()));
+                args.add(entry.field());
+                args.add(entry.version());
+                args.add(String.valueOf(message.getId()));
+            }
+        }
+        List<?> changed = stringRedisTemplate.execute(COMMIT_SCRIPT, keys, args.toArray());
+        Set<String> fields = new HashSet<>();
+        if (changed != null) {
+            changed.forEach(field -> fields.add(String.valueOf(field)));
+        }
+        return fields;
+    }
+
+    private void ensureGroup() {
+        if (groupReady) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute((RedisCallback<Object>) connection -> connection.streamCommands()
+                    .xGroupCreate(bytes(LOG_KEY), GROUP, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")
+                    && (e.getCause() == null || !String.valueOf(e.getCause().getMessage()).contains("BUSYGROUP"))) {
+                throw e;
+            }
+        }
+        groupReady = true;
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void append(String field, String convKey, Long id, Object message) {
+        stringRedisTemplate.execute(APPEND_SCRIPT, List.of(MSG_KEY, convKey, LOG_KEY),
+                field, write(message), String.valueOf(id));
+    }
+
+    private boolean update(String field, String attribute, String value, boolean keepExisting) {
+        Long updated = stringRedisTemplate.execute(UPDATE_SCRIPT, List.of(MSG_KEY),
+                field, attribute, value, keepExisting ? "1" : "0");
+        return updated != null && updated == 1L;
+    }
+
+    /**
+     * 每条消息依次读取 JSON、已读时间、撤回内容、版本号，共 STATE_WIDTH 个值
+     */
+    private List<Object> loadValues(List<String> fields) {
+        List<Object> hashFields = new ArrayList<>(fields.size() * STATE_WIDTH);
+        for (String field : fields) {
+            hashFields.add(field);
+            hashFields.add(field + READ);
+            hashFields.add(field + RECALLED);
+            hashFields.add(field + VERSION);
+        }
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(MSG_KEY, hashFields);
+        return values != null ? values : Collections.nCopies(hashFields.size(), null);
+    }
+
+    /**
+     * 第 index 条消息：发送时的 JSON 叠加之后的已读、撤回；消息已落库时返回 null
+     */
+    private <T> T restore(List<Object> values, int index, Class<T> type) {
+        int base = index * STATE_WIDTH;
+        T message = parse(values.get(base), type);
+        if (message == null) {
+            return null;
+        }
+        Object readAt = values.get(base + 1);
+        Object recalled = values.get(base + 2);
+        if (message instanceof ChatMessage chat) {
+            if (readAt != null) {
+                chat.setIsRead(true);
+                chat.setReadTime(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(Long.parseLong(readAt.toString())), ZoneId.systemDefault()));
+            }
+            if (recalled != null) {
+                chat.setIsRecalled(true);
+                chat.setContent(recalled.toString());
+            }
+        }
+        return message;
+    }
+
+    private static String version(List<Object> values, int index) {
+        Object version = values.get(index * STATE_WIDTH + 3);
+        return version == null ? "0" : version.toString();
+    }
+
+    private <T> List<T> pending(String convKey, String fieldPrefix, Long beforeId, int limit, Class<T> type) {
+        double max = beforeId == null ? Double.POSITIVE_INFINITY : beforeId - 1;
+        Set<String> ids = limit < 0
+                ? stringRedisTemplate.opsForZSet().reverseRangeByScore(convKey, Double.NEGATIVE_INFINITY, max)
+                : stringRedisTemplate.opsForZSet().reverseRangeByScore(convKey, Double.NEGATIVE_INFINITY, max, 0, limit);
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> fields = new ArrayList<>(ids.size());
+        ids.forEach(id -> fields.add(fieldPrefix + id));
+        List<Object> values = loadValues(fields);
+        List<T> messages = new ArrayList<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            T message = restore(values, i, type);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private Object[] privateRow(ChatMessage m) {
+        return new Object[]{m.getId(), m.getConversationId(), m.getSenderId(), m.getReceiverId(), m.getContent(),
+                m.getType(), m.getMediaUrl(), m.getMediaThumbnail(), m.getMediaDuration(), m.getMediaSize(),
+                m.getForwardFromId(), m.getForwardFromUser(), m.getReplyToId(), Boolean.TRUE.equals(m.getIsRead()),
+                timestamp(m.getReadTime()), Boolean.TRUE.equals(m.getIsRecalled()), timestamp(m.getCreateTime()),
+                m.getDeleted() == null ? 0 : m.getDeleted()};
+    }
+
+    private Object[] groupRow(ChatGroupMessage m) {
+        return new Object[]{m.getId(), m.getGroupId(), m.getSenderId(), m.getContent(), m.getType(), m.getMediaUrl(),
+                m.getMediaThumbnail(), m.getMediaDuration(), m.getMediaSize(), m.getForwardFromId(),
+                m.getForwardFromUser(), m.getReplyToId(), m.getAtUserIds(), Boolean.TRUE.equals(m.getAtAll()),
+                Boolean.TRUE.equals(m.getIsRecalled()), m.getReadCount() == null ? 0 : m.getReadCount(),
+                timestamp(m.getCreateTime()), m.getDeleted() == null ? 0 : m.getDeleted()};
+    }
+
+    private static String placeholders(int rows) {
+        String row = "(" + "?, ".repeat(COLUMN_COUNT - 1) + "?)";
+        StringBuilder sql = new StringBuilder(rows * (row.length() + 2));
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    private String write(Object message) {
+        try {
+            return logMapper.writeValueAsString(message);
+        } catch (Exception e) {
+            throw new IllegalStateException("serialize chat message failed", e);
+        }
+    }
+
+    private <T> T parse(Object value, Class<T> type) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return logMapper.readValue(String.valueOf(value), type);
+        } catch (Exception e) {
+            throw new IllegalStateException("parse chat write-behind entry failed", e);
+        }
+    }
+
+    private int batchSize() {
+        return Math.max(1, chatProperties.getWriteBehindBatchSize());
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return time == null ? null : Timestamp.valueOf(time);
+    }
+
+    private static String privateField(Long messageId) {
+        return "P:" + messageId;
+    }
+
+    private static String groupField(Long messageId) {
+        return "G:" + messageId;
+    }
+
+    private static String privateConvKey(Long userId1, Long userId2) {
+        return CONV_PREFIX + "P:" + Math.min(userId1, userId2) + ":" + Math.max(userId1, userId2);
+    }
+
+    private static String groupConvKey(Long groupId) {
+        return CONV_PREFIX + "G:" + groupId;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
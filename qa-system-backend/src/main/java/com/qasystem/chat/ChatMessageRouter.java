@@ -0,0 +1,159 @@
+package com.qasystem.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聊天消息集群路由。
+ * <p>
+ * 每个节点订阅自己的频道 chat:route:{nodeId}。投递时先按 {@link ChatPresenceRegistry} 找到用户所在节点，
+ * 本节点的用户直接写本地会话，其他节点按节点合并为一条消息发布到对应频道，由该节点写给自己的会话。
+ * 帧只序列化一次：本节点所有会话共享同一个 TextMessage，跨节点转发的是同一份文本，接收节点不再解析帧内容。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatMessageRouter {
+
+    static final String ROUTE_CHANNEL_PREFIX = "chat:route:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final ChatPresenceRegistry presenceRegistry;
+    private final ChatSessionRegistry sessionRegistry;
+    private final ObjectMapper objectMapper;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String[] lines = new String(message.getBody(), StandardCharsets.UTF_8).split("\n");
+            if (lines.length < 2 || lines.length % 2 != 0) {
+                log.warn("Ignore malformed chat route message, lines={}", lines.length);
+                return;
+            }
+            for (int i = 0; i < lines.length; i += 2) {
+                TextMessage frame = new TextMessage(lines[i + 1]);
+                for (String userId : lines[i].split(",")) {
+                    try {
+                        sessionRegistry.send(Long.parseLong(userId), frame);
+                    } catch (NumberFormatException e) {
+                        log.warn("Ignore malformed chat route receiver: {}", userId);
+                    }
+                }
+            }
+        }, new ChannelTopic(ROUTE_CHANNEL_PREFIX + presenceRegistry.nodeId()));
+    }
+
+    /**
+     * 把帧编码为不可变的 TextMessage，可投递给任意多个接收方而不再序列化
+     */
+    public TextMessage encode(Object frame) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsString(frame));
+        } catch (Exception e) {
+            throw new IllegalStateException("序列化聊天推送失败", e);
+        }
+    }
+
+    /**
+     * 投递给单个用户（可能在任意节点）
+     */
+    public void deliver(Long userId, Object frame) {
+        deliver(List.of(userId), frame);
+    }
+
+    /**
+     * 投递给一组用户（可能分布在多个节点）；不在线的用户直接忽略
+     */
+    public void deliver(Collection<Long> userIds, Object frame) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        TextMessage message;
+        try {
+            message = encode(frame);
+        } catch (IllegalStateException e) {
+            log.error("序列化聊天推送失败", e.getCause());
+            return;
+        }
+        deliver(userIds, message);
+    }
+
+    /**
+     * 投递已编码的帧：本节点会话共享同一个 TextMessage，其他节点收到的是同一份文本
+     */
+    public void deliver(Collection<Long> userIds, TextMessage message) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        // 同一用户可能同时连在多个节点上，本地写完仍要查其他节点
+        for (Long userId : userIds) {
+            sessionRegistry.send(userId, message);
+        }
+        for (Map.Entry<String, List<Long>> entry : presenceRegistry.locate(userIds).entrySet()) {
+            if (!presenceRegistry.nodeId().equals(entry.getKey())) {
+                StringBuilder envelope = new StringBuilder(message.getPayloadLength() + entry.getValue().size() * 12);
+                appendRecord(envelope, entry.getValue(), message.getPayload());
+                publish(entry.getKey(), envelope, entry.getValue().size());
+            }
+        }
+    }
+
+    /**
+     * 每个接收方一个帧（如带各自序号的帧）；仍只做一次在线查询，每个节点一条转发消息
+     */
+    public void deliverEach(Map<Long, TextMessage> framesByUser) {
+        if (framesByUser == null || framesByUser.isEmpty()) {
+            return;
+        }
+        framesByUser.forEach(sessionRegistry::send);
+        for (Map.Entry<String, List<Long>> entry : presenceRegistry.locate(framesByUser.keySet()).entrySet()) {
+            if (presenceRegistry.nodeId().equals(entry.getKey())) {
+                continue;
+            }
+            StringBuilder envelope = new StringBuilder();
+            for (Long userId : entry.getValue()) {
+                appendRecord(envelope, List.of(userId), framesByUser.get(userId).getPayload());
+            }
+            publish(entry.getKey(), envelope, entry.getValue().size());
+        }
+    }
+
+    /**
+     * 跨节点消息格式：若干条 "接收方ID,接收方ID\n帧文本\n" 记录，帧原样转发，接收节点不解析。
+     * 帧是紧凑 JSON，字符串内的换行已转义，不会与分隔符冲突。
+     */
+    private void appendRecord(StringBuilder envelope, List<Long> userIds, String payload) {
+        if (!envelope.isEmpty()) {
+            envelope.append('\n');
+        }
+        for (int i = 0; i < userIds.size(); i++) {
+            if (i > 0) {
+                envelope.append(',');
+            }
+            envelope.append(userIds.get(i));
+        }
+        envelope.append('\n').append(payload);
+    }
+
+    private void publish(String nodeId, CharSequence envelope, int receivers) {
+        try {
+            stringRedisTemplate.convertAndSend(ROUTE_CHANNEL_PREFIX + nodeId, envelope.toString());
+        } catch (Exception e) {
+            log.warn("Publish chat route message failed, node={}, users={}, reason={}",
+                    nodeId, receivers, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.qasystem.chat;
+
+import com.qasystem.config.ChatProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在线状态推送：只推给好友，并在一个短窗口内合并。
+ * <p>
+ * 窗口内同一用户的多次上下线只保留最后状态；与上次推送的状态相同则不推送，
+ * 因此刷新页面、网络抖动造成的断开重连不会向好友连续推送。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatPresenceNotifier {
+
+    private final ChatMessageRouter messageRouter;
+    private final FriendGraphCache friendGraphCache;
+    private final ChatProperties chatProperties;
+
+    /**
+     * 窗口内待推送的最新状态
+     */
+    private final Map<Long, Boolean> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点上次推送出去的状态；只在刷新线程上读写
+     */
+    private final Map<Long, Boolean> announced = new HashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-presence-notify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long window = Math.max(50L, chatProperties.getPresenceCoalesceMillis());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+    }
+
+    /**
+     * 记录状态变化，在下一个窗口结束时推送
+     */
+    public void onPresenceChange(Long userId, boolean online) {
+        pending.put(userId, online);
+    }
+
+    private void flushQuietly() {
+        for (Long userId : Set.copyOf(pending.keySet())) {
+            Boolean online = pending.remove(userId);
+            if (online == null || online.equals(announced.get(userId))) {
+                continue;
+            }
+            try {
+                Set<Long> watchers = friendGraphCache.watchersOf(userId);
+                if (!watchers.isEmpty()) {
+                    messageRouter.deliver(watchers, messageRouter.encode(Map.of(
+                            "type", "ONLINE_STATUS",
+                            "userId", userId,
+                            "online", online
+                    )));
+                }
+                if (online) {
+                    announced.put(userId, true);
+                } else {
+                    // 离线后不再保留，避免记录无限增长
+                    announced.remove(userId);
+                }
+            } catch (Exception e) {
+                log.warn("Push chat presence failed, userId={}, online={}, reason={}", userId, online, e.getMessage());
+            }
+        }
+    }
+}
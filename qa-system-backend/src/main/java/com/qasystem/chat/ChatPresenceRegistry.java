@@ -0,0 +1,253 @@
+package com.qasystem.chat;
+
+import com.qasystem.config.ChatProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群在线状态：记录每个用户连在哪些节点上。
+ * <p>
+ * 数据结构：
+ * <ul>
+ *   <li>chat:presence:{userId} —— Hash，字段为节点ID，值为该节点最近一次心跳的毫秒时间戳；整个 key 带 TTL</li>
+ *   <li>chat:online —— Set，集群在线用户ID，读取时按心跳校验并清理</li>
+ * </ul>
+ * 每个节点定时为本节点上的用户续期；节点宕机后其心跳不再更新，超过 TTL 即不再视为在线，
+ * 即使同一用户在其他节点上的连接仍在续期整个 key。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatPresenceRegistry {
+
+    private static final String PRESENCE_PREFIX = "chat:presence:";
+    private static final String ONLINE_KEY = "chat:online";
+
+    /**
+     * 移除本节点字段；该用户已没有任何节点时删除 key 并移出在线集合。
+     */
+    private static final DefaultRedisScript<Long> OFFLINE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            if redis.call('HLEN', KEYS[1]) == 0 then
+              redis.call('DEL', KEYS[1])
+              redis.call('SREM', KEYS[2], ARGV[2])
+              return 1
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ChatSessionRegistry sessionRegistry;
+    private final ChatProperties chatProperties;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void start() {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-presence-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000L, chatProperties.getPresenceHeartbeatMillis());
+        heartbeat.scheduleWithFixedDelay(this::heartbeatQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdown();
+        for (Long userId : sessionRegistry.localUserIds()) {
+            offline(userId);
+        }
+    }
+
+    /**
+     * 本节点ID，也是本节点投递频道的后缀
+     */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 用户在本节点上线
+     */
+    public void online(Long userId) {
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                touch(connection, userId, System.currentTimeMillis());
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Register chat presence failed, userId={}, reason={}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 用户在本节点已没有会话
+     *
+     * @return 用户在整个集群都已离线
+     */
+    public boolean offline(Long userId) {
+        try {
+            Long gone = stringRedisTemplate.execute(OFFLINE_SCRIPT,
+                    List.of(PRESENCE_PREFIX + userId, ONLINE_KEY), nodeId, String.valueOf(userId));
+            return gone != null && gone == 1L;
+        } catch (Exception e) {
+            log.warn("Unregister chat presence failed, entry expires by TTL. userId={}, reason={}",
+                    userId, e.getMessage());
+            return true;
+        }
+    }
+
+    public boolean isOnline(Long userId) {
+        if (sessionRegistry.isLocal(userId)) {
+            return true;
+        }
+        return !locate(List.of(userId)).isEmpty();
+    }
+
+    /**
+     * 批量查询在线状态（一次管道往返）
+     */
+    public Set<Long> filterOnline(Collection<Long> userIds) {
+        Set<Long> online = new LinkedHashSet<>();
+        locate(userIds).values().forEach(online::addAll);
+        return online;
+    }
+
+    /**
+     * 集群在线用户；顺带清理已超时但未被正常移除的用户（如节点宕机）
+     */
+    public Set<Long> getOnlineUserIds() {
+        Set<String> members;
+        try {
+            members = stringRedisTemplate.opsForSet().members(ONLINE_KEY);
+        } catch (Exception e) {
+            log.warn("Load chat online users failed, fallback to local sessions. reason={}", e.getMessage());
+            return sessionRegistry.localUserIds();
+        }
+        List<Long> candidates = new ArrayList<>();
+        if (members != null) {
+            for (String member : members) {
+                try {
+                    candidates.add(Long.parseLong(member));
+                } catch (NumberFormatException ignored) {
+                    // 非法成员直接忽略
+                }
+            }
+        }
+        Set<Long> online = filterOnline(candidates);
+        Object[] stale = candidates.stream()
+                .filter(userId -> !online.contains(userId))
+                .map(String::valueOf)
+                .toArray();
+        if (stale.length > 0) {
+            try {
+                stringRedisTemplate.opsForSet().remove(ONLINE_KEY, stale);
+            } catch (Exception ignored) {
+                // 下次读取时再清理
+            }
+        }
+        return online;
+    }
+
+    /**
+     * 按节点分组用户：节点ID -> 该节点上在线的用户。只返回心跳未超时的节点。
+     */
+    public Map<String, List<Long>> locate(Collection<Long> userIds) {
+        Map<String, List<Long>> byNode = new HashMap<>();
+        if (userIds == null || userIds.isEmpty()) {
+            return byNode;
+        }
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        List<Object> replies;
+        try {
+            replies = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long userId : ids) {
+                    connection.hashCommands().hGetAll(bytes(PRESENCE_PREFIX + userId));
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Locate chat presence failed, deliver to local sessions only. reason={}", e.getMessage());
+            for (Long userId : ids) {
+                if (sessionRegistry.isLocal(userId)) {
+                    byNode.computeIfAbsent(nodeId, k -> new ArrayList<>()).add(userId);
+                }
+            }
+            return byNode;
+        }
+
+        long deadline = System.currentTimeMillis() - chatProperties.getPresenceTtlMillis();
+        for (int i = 0; i < ids.size(); i++) {
+            if (!(replies.get(i) instanceof Map<?, ?> nodes)) {
+                continue;
+            }
+            for (Map.Entry<?, ?> entry : nodes.entrySet()) {
+                if (parseMillis(entry.getValue()) >= deadline) {
+                    byNode.computeIfAbsent(String.valueOf(entry.getKey()), k -> new ArrayList<>()).add(ids.get(i));
+                }
+            }
+        }
+        return byNode;
+    }
+
+    private void heartbeatQuietly() {
+        Set<Long> local = sessionRegistry.localUserIds();
+        if (local.isEmpty()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long userId : local) {
+                    touch(connection, userId, now);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Chat presence heartbeat failed, users={}, reason={}", local.size(), e.getMessage());
+        }
+    }
+
+    private void touch(RedisConnection connection, Long userId, long now) {
+        byte[] key = bytes(PRESENCE_PREFIX + userId);
+        connection.hashCommands().hSet(key, bytes(nodeId), bytes(String.valueOf(now)));
+        connection.keyCommands().pExpire(key, chatProperties.getPresenceTtlMillis());
+        connection.setCommands().sAdd(bytes(ONLINE_KEY), bytes(String.valueOf(userId)));
+    }
+
+    private long parseMillis(Object value) {
+        try {
+            return Long.parseLong(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,170 @@
+package com.qasystem.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qasystem.config.ChatProperties;
+import com.qasystem.entity.ChatGroupMessage;
+import com.qasystem.entity.ChatMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 会话最近消息缓存（Redis），打开聊天窗口时直接返回最新的 N 条，不查 MySQL。
+ * <p>
+ * 每个会话一个 ZSET：chat:recent:P:{小ID}:{大ID} / chat:recent:G:{群ID}，score 为消息ID，member 为消息 JSON，
+ * 另有 score=-1 的 __loaded__ 标记表示已用数据库最新 N 条初始化过。
+ * 新消息无论是否初始化都写入，初始化时与之合并（按消息ID去重），因此查库与新消息并发时不会漏消息。
+ * 只保留最新 N 条；翻更早的记录走数据库游标分页。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatRecentMessageCache {
+
+    private static final String KEY_PREFIX = "chat:recent:";
+
+    private static final DefaultRedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            if not redis.call('ZSCORE', KEYS[1], '__loaded__') then return false end
+            return redis.call('ZREVRANGEBYSCORE', KEYS[1], '+inf', 0, 'LIMIT', 0, ARGV[1])
+            """, List.class);
+
+    /**
+     * ARGV[1]=保留条数, ARGV[2]=TTL毫秒, ARGV[3]=是否写入初始化标记, 之后为成对的 消息ID, 消息JSON
+     */
+    private static final DefaultRedisScript<Long> MERGE_SCRIPT = new DefaultRedisScript<>("""
+            for i = 4, #ARGV, 2 do
+              redis.call('ZREMRANGEBYSCORE', KEYS[1], ARGV[i], ARGV[i])
+              redis.call('ZADD', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            if ARGV[3] == '1' then
+              redis.call('ZADD', KEYS[1], -1, '__loaded__')
+            end
+            local first = 0
+            if redis.call('ZSCORE', KEYS[1], '__loaded__') then first = 1 end
+            redis.call('ZREMRANGEBYRANK', KEYS[1], first, -(tonumber(ARGV[1]) + 1))
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ChatProperties chatProperties;
+
+    /**
+     * 缓存保留的条数，0 表示关闭
+     */
+    public int capacity() {
+        return Math.max(0, chatProperties.getRecentMessageCacheSize());
+    }
+
+    // ==================== 私聊 ====================
+
+    /**
+     * 两人之间最新的 size 条消息（按ID倒序）；未初始化、超出缓存容量或 Redis 不可用时返回 null
+     */
+    public List<ChatMessage> recentPrivate(Long userId1, Long userId2, int size) {
+        return read(privateKey(userId1, userId2), size, ChatMessage.class);
+    }
+
+    /**
+     * 用数据库查出的最新消息（按ID倒序，至多 capacity 条）初始化
+     */
+    public void fillPrivate(Long userId1, Long userId2, List<ChatMessage> newestFirst) {
+        merge(privateKey(userId1, userId2), newestFirst, ChatMessage::getId, true);
+    }
+
+    public void onPrivateMessage(ChatMessage message) {
+        merge(privateKey(message.getSenderId(), message.getReceiverId()), List.of(message), ChatMessage::getId, false);
+    }
+
+    /**
+     * 已读状态、撤回等变化：直接丢弃该会话缓存，下次打开时重新初始化
+     */
+    public void invalidatePrivate(Long userId1, Long userId2) {
+        delete(privateKey(userId1, userId2));
+    }
+
+    // ==================== 群聊 ====================
+
+    public List<ChatGroupMessage> recentGroup(Long groupId, int size) {
+        return read(groupKey(groupId), size, ChatGroupMessage.class);
+    }
+
+    public void fillGroup(Long groupId, List<ChatGroupMessage> newestFirst) {
+        merge(groupKey(groupId), newestFirst, ChatGroupMessage::getId, true);
+    }
+
+    public void onGroupMessage(ChatGroupMessage message) {
+        merge(groupKey(message.getGroupId()), List.of(message), ChatGroupMessage::getId, false);
+    }
+
+    public void invalidateGroup(Long groupId) {
+        delete(groupKey(groupId));
+    }
+
+    // ==================== 私有方法 ====================
+
+    private <T> List<T> read(String key, int size, Class<T> type) {
+        if (size <= 0 || size > capacity()) {
+            return null;
+        }
+        try {
+            List<?> members = stringRedisTemplate.execute(READ_SCRIPT, List.of(key), String.valueOf(size));
+            if (members == null) {
+                return null;
+            }
+            List<T> messages = new ArrayList<>(members.size());
+            for (Object member : members) {
+                messages.add(objectMapper.readValue(String.valueOf(member), type));
+            }
+            return messages;
+        } catch (Exception e) {
+            log.warn("Read recent chat messages failed, fallback to DB. key={}, reason={}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private <T> void merge(String key, List<T> messages, Function<T, Long> idOf, boolean markLoaded) {
+        int capacity = capacity();
+        if (capacity == 0 || (messages.isEmpty() && !markLoaded)) {
+            return;
+        }
+        try {
+            List<String> args = new ArrayList<>(3 + messages.size() * 2);
+            args.add(String.valueOf(capacity));
+            args.add(String.valueOf(chatProperties.getRecentMessageCacheTtlMillis()));
+            args.add(markLoaded ? "1" : "0");
+            for (T message : messages) {
+                args.add(String.valueOf(idOf.apply(message)));
+                args.add(objectMapper.writeValueAsString(message));
+            }
+            stringRedisTemplate.execute(MERGE_SCRIPT, List.of(key), args.toArray());
+        } catch (Exception e) {
+            // 写入失败时丢弃该会话缓存，避免之后读到缺消息的列表
+            log.warn("Write recent chat messages failed, drop cache. key={}, reason={}", key, e.getMessage());
+            delete(key);
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("Drop recent chat messages failed, expires by TTL. key={}, reason={}", key, e.getMessage());
+        }
+    }
+
+    private static String privateKey(Long userId1, Long userId2) {
+        return KEY_PREFIX + "P:" + Math.min(userId1, userId2) + ":" + Math.max(userId1, userId2);
+    }
+
+    private static String groupKey(Long groupId) {
+        return KEY_PREFIX + "G:" + groupId;
+    }
+}
@@ -0,0 +1,134 @@
+package com.qasystem.chat;
+
+import com.qasystem.common.websocket.QueuedWebSocketSender;
+import com.qasystem.common.websocket.QueuedWebSocketSession;
+import com.qasystem.config.ChatProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本节点上的聊天 WebSocket 会话。
+ * <p>
+ * 同一用户可以同时保持多个会话（多标签页、多设备），推送会写给其全部会话。
+ * 每个会话有独立的有界发送队列（{@link QueuedWebSocketSession}），由聊天专用的 {@link QueuedWebSocketSender}
+ * 按会话顺序发送，投递方只入队不阻塞；慢消费者被断开并计数（qa_chat_ws_slow_consumer_dropped）。
+ * <p>
+ * 只记录连在本节点的会话；用户在哪个节点在线由 {@link ChatPresenceRegistry} 记录，
+ * 跨节点投递由 {@link ChatMessageRouter} 完成。
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatSessionRegistry {
+
+    private static final String METRIC_SLOW_CONSUMER_DROPPED = "qa_chat_ws_slow_consumer_dropped";
+    private static final String METRIC_LOCAL_SESSIONS = "qa_chat_ws_local_sessions";
+
+    private final ChatProperties chatProperties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Long, Set<QueuedWebSocketSession>> userSessions = new ConcurrentHashMap<>();
+
+    private QueuedWebSocketSender sender;
+
+    @PostConstruct
+    public void start() {
+        Counter slowConsumerDropped = Counter.builder(METRIC_SLOW_CONSUMER_DROPPED)
+                .description("Chat WebSocket sessions closed for exceeding send time or buffer limits")
+                .register(meterRegistry);
+        sender = new QueuedWebSocketSender("chat-ws", chatProperties.getWsWriterThreads(),
+                chatProperties.getWsSendTimeLimitMillis(), chatProperties.getWsSendBufferSizeLimit(),
+                slowConsumerDropped::increment);
+        Gauge.builder(METRIC_LOCAL_SESSIONS, sender, QueuedWebSocketSender::size)
+                .description("Chat WebSocket sessions connected to this node")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sender.shutdown();
+    }
+
+    /**
+     * 登记会话
+     *
+     * @return 是否为该用户在本节点上的第一个会话
+     */
+    public boolean register(Long userId, WebSocketSession session) {
+        QueuedWebSocketSession outbound = sender.open(session);
+        boolean[] first = {false};
+        userSessions.compute(userId, (id, sessions) -> {
+            if (sessions == null) {
+                sessions = ConcurrentHashMap.newKeySet();
+                first[0] = true;
+            }
+            sessions.add(outbound);
+            return sessions;
+        });
+        return first[0];
+    }
+
+    /**
+     * 注销会话
+     *
+     * @return 本节点上该用户已没有会话（会话本就不在册时返回 false，避免重复处理）
+     */
+    public boolean unregister(Long userId, WebSocketSession session) {
+        QueuedWebSocketSession outbound = sender.close(session);
+        if (outbound == null) {
+            return false;
+        }
+        boolean[] last = {false};
+        userSessions.computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(outbound);
+            last[0] = sessions.isEmpty();
+            return last[0] ? null : sessions;
+        });
+        return last[0];
+    }
+
+    public boolean isLocal(Long userId) {
+        Set<QueuedWebSocketSession> sessions = userSessions.get(userId);
+        return sessions != null && sessions.stream().anyMatch(QueuedWebSocketSession::isOpen);
+    }
+
+    public Set<Long> localUserIds() {
+        return new HashSet<>(userSessions.keySet());
+    }
+
+    /**
+     * 向本节点上该用户的所有会话发送已编码的帧（只入队）
+     *
+     * @return 是否至少有一个会话接收了该帧
+     */
+    public boolean send(Long userId, TextMessage frame) {
+        Set<QueuedWebSocketSession> sessions = userSessions.get(userId);
+        if (sessions == null) {
+            return false;
+        }
+        boolean sent = false;
+        for (QueuedWebSocketSession outbound : sessions) {
+            sent |= outbound.offer(frame);
+        }
+        return sent;
+    }
+
+    /**
+     * 只发给指定会话（如连接确认、PONG）
+     */
+    public boolean send(WebSocketSession session, TextMessage frame) {
+        QueuedWebSocketSession outbound = sender.get(session);
+        return outbound != null && outbound.offer(frame);
+    }
+}
@@ -0,0 +1,418 @@
+package com.qasystem.chat;
+
+import com.qasystem.config.ChatProperties;
+import com.qasystem.entity.ChatConversation;
+import com.qasystem.mapper.ChatConversationMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天未读数与最后消息摘要（Redis 为准，定期批量回写数据库）。
+ * <p>
+ * 数据结构：
+ * <ul>
+ *   <li>chat:unread:{userId} —— Hash，字段 P:{对方ID} / G:{群ID} 为会话未读数，
+ *       __total__ 为总未读数，__loaded__ 表示已用数据库中的未读数初始化过；每次写入续期 TTL</li>
+ *   <li>chat:preview:P:{小ID}:{大ID} / chat:preview:G:{群ID} —— String，值为 "毫秒时间戳|摘要"，
+ *       私聊双方与群成员共享；每次写入续期 TTL</li>
+ *   <li>chat:conv:dirty —— Set，待回写的会话：U:{userId}:{字段} 回写未读数（私聊连同摘要），G:{群ID} 回写群摘要</li>
+ * </ul>
+ * 用户的未读 Hash 首次被读取时才用数据库值初始化；初始化前到达的 HINCRBY 会累加在数据库值之上，不会丢失。
+ * 回写前与清零前同样会先确保已初始化，避免把只含增量的值或清零前的旧值写回数据库。
+ * <p>
+ * 长期不活跃的用户和会话在 TTL 后从 Redis 过期：未读 Hash 缺失时按上面的规则从数据库重新初始化，
+ * 摘要缺失时直接使用会话行中已回写的 last_message / last_message_time。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatUnreadStore {
+
+    private static final String UNREAD_PREFIX = "chat:unread:";
+    private static final String PREVIEW_PREFIX = "chat:preview:";
+    private static final String DIRTY_KEY = "chat:conv:dirty";
+    private static final String TOTAL_FIELD = "__total__";
+    private static final String LOADED_FIELD = "__loaded__";
+
+    /**
+     * ARGV[1]=TTL毫秒，其后为成对的 字段, 数据库未读数
+     */
+    private static final DefaultRedisScript<Long> SEED_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], '__loaded__') == 1 then return 0 end
+            for i = 2, #ARGV, 2 do
+              redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+              redis.call('HINCRBY', KEYS[1], '__total__', ARGV[i + 1])
+            end
+            redis.call('HSET', KEYS[1], '__loaded__', 1)
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * 清零（ARGV[2]=0）或删除（ARGV[2]=1）一个会话字段，并同步扣减总数；ARGV[3]=TTL毫秒。
+     */
+    private static final DefaultRedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>("""
+            local v = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+            if ARGV[2] == '1' then
+              redis.call('HDEL', KEYS[1], ARGV[1])
+            elseif v ~= 0 then
+              redis.call('HSET', KEYS[1], ARGV[1], 0)
+            end
+            if v ~= 0 then
+              redis.call('HINCRBY', KEYS[1], '__total__', -v)
+              redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            end
+            return v
+            """, Long.class);
+
+    private static final String UPDATE_UNREAD_SQL =
+            "UPDATE chat_conversation SET unread_count = ? WHERE user_id = ? AND target_id = ? AND type = ?";
+    private static final String UPDATE_PRIVATE_PREVIEW_SQL =
+            "UPDATE chat_conversation SET last_message = ?, last_message_time = ? WHERE user_id = ? AND target_id = ? AND type = 'PRIVATE'";
+    private static final String UPDATE_GROUP_PREVIEW_SQL =
+            "UPDATE chat_conversation SET last_message = ?, last_message_time = ? WHERE target_id = ? AND type = 'GROUP'";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ChatConversationMapper conversationMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatProperties chatProperties;
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-unread-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(200L, chatProperties.getUnreadFlushIntervalMillis());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 私聊新消息：接收方未读 +1，发送方未读清零，刷新双方共享的摘要
+     */
+    public void onPrivateMessage(Long senderId, Long receiverId, String preview, LocalDateTime time) {
+        String receiverField = conversationField("PRIVATE", senderId);
+        String senderField = conversationField("PRIVATE", receiverId);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            increment(connection, receiverId, receiverField);
+            setPreview(connection, privatePreviewField(senderId, receiverId), encodePreview(preview, time));
+            connection.setCommands().sAdd(bytes(DIRTY_KEY),
+                    bytes(userDirty(receiverId, receiverField)), bytes(userDirty(senderId, senderField)));
+            return null;
+        });
+        reset(senderId, "PRIVATE", receiverId);
+    }
+
+    /**
+     * 群新消息：除发送者外所有成员未读 +1（一次管道往返），发送者未读清零，刷新群摘要
+     */
+    public void onGroupMessage(Long groupId, Long senderId, Collection<Long> memberIds, String preview, LocalDateTime time) {
+        String field = conversationField("GROUP", groupId);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            setPreview(connection, field, encodePreview(preview, time));
+            List<byte[]> dirty = new ArrayList<>(memberIds.size() + 1);
+            dirty.add(bytes(field));
+            for (Long memberId : memberIds) {
+                if (!memberId.equals(senderId)) {
+                    increment(connection, memberId, field);
+                    dirty.add(bytes(userDirty(memberId, field)));
+                }
+            }
+            connection.setCommands().sAdd(bytes(DIRTY_KEY), dirty.toArray(new byte[0][]));
+            return null;
+        });
+        reset(senderId, "GROUP", groupId);
+    }
+
+    /**
+     * 会话已读：未读清零
+     */
+    public void reset(Long userId, String type, Long targetId) {
+        String field = conversationField(type, targetId);
+        // 未初始化时脚本找不到字段、不会清零，回写时又会把数据库里的旧未读数写回，所以先初始化
+        if (!stringRedisTemplate.opsForHash().hasKey(unreadKey(userId), LOADED_FIELD)) {
+            ensureLoaded(userId, conversationMapper.findByUserId(userId));
+        }
+        stringRedisTemplate.execute(RESET_SCRIPT, List.of(unreadKey(userId)), field, "0", ttlMillis());
+        stringRedisTemplate.opsForSet().add(DIRTY_KEY, userDirty(userId, field));
+    }
+
+    /**
+     * 会话已删除（退群、被踢、解散）：移除字段并扣减总数，不再回写
+     */
+    public void remove(Collection<Long> userIds, String type, Long targetId) {
+        String field = conversationField(type, targetId);
+        for (Long userId : userIds) {
+            stringRedisTemplate.execute(RESET_SCRIPT, List.of(unreadKey(userId)), field, "1", ttlMillis());
+        }
+    }
+
+    // ==================== 读取 ====================
+
+    public int getTotalUnread(Long userId) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(unreadKey(userId), List.of(LOADED_FIELD, TOTAL_FIELD));
+        if (values.get(0) == null) {
+            ensureLoaded(userId, conversationMapper.findByUserId(userId));
+            values = stringRedisTemplate.opsForHash().multiGet(unreadKey(userId), List.of(LOADED_FIELD, TOTAL_FIELD));
+        }
+        return Math.max(0, parseInt(values.get(1)));
+    }
+
+    /**
+     * 用 Redis 中的未读数和摘要覆盖会话行，并按置顶、最后消息时间重新排序
+     */
+    public void overlay(Long userId, List<ChatConversation> conversations) {
+        if (conversations.isEmpty()) {
+            return;
+        }
+        ensureLoaded(userId, conversations);
+        Map<Object, Object> unread = stringRedisTemplate.opsForHash().entries(unreadKey(userId));
+        List<String> previewKeys = new ArrayList<>(conversations.size());
+        for (ChatConversation conv : conversations) {
+            previewKeys.add(previewKey("PRIVATE".equals(conv.getType())
+                    ? privatePreviewField(userId, conv.getTargetId())
+                    : conversationField(conv.getType(), conv.getTargetId())));
+        }
+        // 摘要已过期时保留会话行中回写过的值
+        List<String> previews = stringRedisTemplate.opsForValue().multiGet(previewKeys);
+
+        for (int i = 0; i < conversations.size(); i++) {
+            ChatConversation conv = conversations.get(i);
+            Object count = unread.get(conversationField(conv.getType(), conv.getTargetId()));
+            if (count != null) {
+                conv.setUnreadCount(Math.max(0, parseInt(count)));
+            }
+            String value = previews == null ? null : previews.get(i);
+            if (value != null) {
+                int split = value.indexOf('|');
+                LocalDateTime time = LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(Long.parseLong(value.substring(0, split))), ZoneId.systemDefault());
+                if (conv.getLastMessageTime() == null || !time.isBefore(conv.getLastMessageTime())) {
+                    conv.setLastMessageTime(time);
+                    conv.setLastMessage(value.substring(split + 1));
+                }
+            }
+        }
+        conversations.sort(Comparator
+                .comparing((ChatConversation c) -> Boolean.TRUE.equals(c.getIsTop())).reversed()
+                .thenComparing(ChatConversation::getLastMessageTime, Comparator.nullsLast(Comparator.reverseOrder())));
+    }
+
+    // ==================== 回写 ====================
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception ex) {
+            log.warn("Flush chat unread state failed, will retry next round. reason={}", ex.getMessage());
+        }
+    }
+
+    /**
+     * 从脏集合取出一批会话，把 Redis 中的当前值批量写回 chat_conversation；写库失败时放回脏集合
+     */
+    void flush() {
+        List<String> entries = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, chatProperties.getUnreadFlushBatchSize());
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        try {
+            writeBack(entries);
+        } catch (RuntimeException ex) {
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, entries.toArray(new String[0]));
+            throw ex;
+        }
+    }
+
+    private void writeBack(List<String> entries) {
+        Map<Long, List<String>> fieldsByUser = new HashMap<>();
+        List<Long> groupIds = new ArrayList<>();
+        for (String entry : entries) {
+            if (entry.startsWith("G:")) {
+                groupIds.add(Long.parseLong(entry.substring(2)));
+            } else if (entry.startsWith("U:")) {
+                int split = entry.indexOf(':', 2);
+                fieldsByUser.computeIfAbsent(Long.parseLong(entry.substring(2, split)), k -> new ArrayList<>())
+                        .add(entry.substring(split + 1));
+            }
+        }
+
+        List<Object[]> unreadArgs = new ArrayList<>();
+        List<Object[]> privatePreviewArgs = new ArrayList<>();
+        Set<String> privatePreviewFields = new HashSet<>();
+        for (Map.Entry<Long, List<String>> userEntry : fieldsByUser.entrySet()) {
+            Long userId = userEntry.getKey();
+            if (!stringRedisTemplate.opsForHash().hasKey(unreadKey(userId), LOADED_FIELD)) {
+                ensureLoaded(userId, conversationMapper.findByUserId(userId));
+            }
+            List<Object> values = stringRedisTemplate.opsForHash().multiGet(unreadKey(userId), new ArrayList<>(userEntry.getValue()));
+            for (int i = 0; i < userEntry.getValue().size(); i++) {
+                String field = userEntry.getValue().get(i);
+                Object value = values.get(i);
+                if (value == null) {
+                    continue; // 会话已删除
+                }
+                String type = field.startsWith("G:") ? "GROUP" : "PRIVATE";
+                long targetId = Long.parseLong(field.substring(2));
+                unreadArgs.add(new Object[]{Math.max(0, parseInt(value)), userId, targetId, type});
+                if ("PRIVATE".equals(type)) {
+                    privatePreviewFields.add(privatePreviewField(userId, targetId));
+                    privatePreviewArgs.add(new Object[]{userId, targetId});
+                }
+            }
+        }
+
+        Map<String, String> previews = loadPreviews(privatePreviewFields, groupIds);
+        List<Object[]> privatePreviewUpdates = new ArrayList<>();
+        for (Object[] args : privatePreviewArgs) {
+            String preview = previews.get(privatePreviewField((Long) args[0], (Long) args[1]));
+            if (preview != null) {
+                privatePreviewUpdates.add(previewArgs(preview, args[0], args[1]));
+            }
+        }
+        List<Object[]> groupPreviewUpdates = new ArrayList<>();
+        for (Long groupId : groupIds) {
+            String preview = previews.get(conversationField("GROUP", groupId));
+            if (preview != null) {
+                groupPreviewUpdates.add(previewArgs(preview, groupId));
+            }
+        }
+
+        if (!unreadArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_UNREAD_SQL, unreadArgs);
+        }
+        if (!privatePreviewUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_PRIVATE_PREVIEW_SQL, privatePreviewUpdates);
+        }
+        if (!groupPreviewUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_GROUP_PREVIEW_SQL, groupPreviewUpdates);
+        }
+        log.debug("Flushed chat unread state. unread={}, privatePreview={}, groupPreview={}",
+                unreadArgs.size(), privatePreviewUpdates.size(), groupPreviewUpdates.size());
+    }
+
+    private Map<String, String> loadPreviews(Set<String> privateFields, List<Long> groupIds) {
+        List<String> fields = new ArrayList<>(privateFields);
+        groupIds.forEach(groupId -> fields.add(conversationField("GROUP", groupId)));
+        Map<String, String> result = new HashMap<>();
+        if (fields.isEmpty()) {
+            return result;
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(fields.stream().map(ChatUnreadStore::previewKey).toList());
+        for (int i = 0; values != null && i < fields.size(); i++) {
+            if (values.get(i) != null) {
+                result.put(fields.get(i), values.get(i));
+            }
+        }
+        return result;
+    }
+
+    private Object[] previewArgs(String preview, Object... where) {
+        int split = preview.indexOf('|');
+        Object[] args = new Object[2 + where.length];
+        args[0] = preview.substring(split + 1);
+        args[1] = new Timestamp(Long.parseLong(preview.substring(0, split)));
+        System.arraycopy(where, 0, args, 2, where.length);
+        return args;
+    }
+
+    // ==================== 内部 ====================
+
+    /**
+     * 用数据库中的未读数初始化用户的未读 Hash（已初始化则跳过），与期间到达的增量相加
+     */
+    private void ensureLoaded(Long userId, List<ChatConversation> conversations) {
+        List<String> args = new ArrayList<>(conversations.size() * 2 + 1);
+        args.add(ttlMillis());
+        for (ChatConversation conv : conversations) {
+            args.add(conversationField(conv.getType(), conv.getTargetId()));
+            args.add(String.valueOf(conv.getUnreadCount() == null ? 0 : conv.getUnreadCount()));
+        }
+        stringRedisTemplate.execute(SEED_SCRIPT, List.of(unreadKey(userId)), args.toArray());
+    }
+
+    private void increment(RedisConnection connection, Long userId, String field) {
+        byte[] key = bytes(unreadKey(userId));
+        connection.hashCommands().hIncrBy(key, bytes(field), 1);
+        connection.hashCommands().hIncrBy(key, bytes(TOTAL_FIELD), 1);
+        connection.keyCommands().pExpire(key, chatProperties.getUnreadTtlMillis());
+    }
+
+    private void setPreview(RedisConnection connection, String field, String value) {
+        connection.stringCommands().pSetEx(bytes(previewKey(field)), chatProperties.getUnreadTtlMillis(), bytes(value));
+    }
+
+    private String ttlMillis() {
+        return String.valueOf(chatProperties.getUnreadTtlMillis());
+    }
+
+    private static String unreadKey(Long userId) {
+        return UNREAD_PREFIX + userId;
+    }
+
+    private static String previewKey(String field) {
+        return PREVIEW_PREFIX + field;
+    }
+
+    private static String conversationField(String type, Long targetId) {
+        return ("GROUP".equals(type) ? "G:" : "P:") + targetId;
+    }
+
+    private static String privatePreviewField(Long userA, Long userB) {
+        return "P:" + Math.min(userA, userB) + ":" + Math.max(userA, userB);
+    }
+
+    private static String userDirty(Long userId, String field) {
+        return "U:" + userId + ":" + field;
+    }
+
+    private static String encodePreview(String preview, LocalDateTime time) {
+        long millis = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return millis + "|" + Objects.toString(preview, "");
+    }
+
+    private static int parseInt(Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
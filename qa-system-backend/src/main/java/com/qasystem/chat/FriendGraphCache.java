@@ -0,0 +1,79 @@
+package com.qasystem.chat;
+
+import com.qasystem.common.cache.NearCacheInvalidator;
+import com.qasystem.mapper.FriendMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 好友关系近端缓存：用户 -> 关注其在线状态的好友（把他加为好友且未拉黑的用户）。
+ * <p>
+ * 在线状态推送只发给这些用户。好友关系变更时本节点失效，并通过 Redis 频道通知其他节点；
+ * 通知丢失时最多在 TTL 内按旧关系推送。
+ */
+@Component
+@RequiredArgsConstructor
+public class FriendGraphCache {
+
+    static final String EVICT_CHANNEL = "chat:friend-graph:evict";
+
+    private static final int MAX_ENTRIES = 10_000;
+    private static final long TTL_MILLIS = 10 * 60 * 1000L;
+
+    private final FriendMapper friendMapper;
+    private final NearCacheInvalidator nearCacheInvalidator;
+
+    private NearCacheInvalidator.Channel evictChannel;
+
+    private final Map<Long, Entry> watchers = new LinkedHashMap<>(256, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private record Entry(Set<Long> watcherIds, long expiresAt) {
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        evictChannel = nearCacheInvalidator.register(EVICT_CHANNEL, userId -> evictLocal(Long.parseLong(userId)));
+    }
+
+    /**
+     * 关注该用户在线状态的用户ID（只读）
+     */
+    public Set<Long> watchersOf(Long userId) {
+        synchronized (watchers) {
+            Entry entry = watchers.get(userId);
+            if (entry != null && entry.expiresAt() >= System.currentTimeMillis()) {
+                return entry.watcherIds();
+            }
+        }
+        Set<Long> loaded = Set.copyOf(friendMapper.findUserIdsByFriendId(userId));
+        synchronized (watchers) {
+            watchers.put(userId, new Entry(loaded, System.currentTimeMillis() + TTL_MILLIS));
+        }
+        return loaded;
+    }
+
+    /**
+     * 好友关系已变更：事务提交后（无事务则立即）失效本节点并广播给其他节点
+     */
+    public void evict(Long... userIds) {
+        for (Long userId : userIds) {
+            evictChannel.invalidate(String.valueOf(userId));
+        }
+    }
+
+    private void evictLocal(Long userId) {
+        synchronized (watchers) {
+            watchers.remove(userId);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.qasystem.common.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 进程内近端缓存的跨节点失效广播。
+ * <p>
+ * 每个缓存注册一个 Redis 频道和本地失效动作；{@link Channel#invalidate(String)} 在事务提交后（无事务则立即）
+ * 执行本地失效，并把 "nodeId:key" 发布到频道，其他节点收到后对同一 key 执行失效，发送方忽略自己的消息。
+ * 广播失败只记日志，其他节点依赖各自缓存的 TTL 或下一次变更。整体重建的缓存 key 传空串。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NearCacheInvalidator {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 订阅频道；其他节点发来的失效消息交给 onInvalidate（参数为 key）
+     */
+    public Channel register(String channel, Consumer<String> onInvalidate) {
+        Channel registered = new Channel(channel, onInvalidate);
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int split = body.indexOf(':');
+            if (split <= 0) {
+                log.warn("Ignore malformed near-cache invalidation. channel={}, body={}", channel, body);
+                return;
+            }
+            if (!nodeId.equals(body.substring(0, split))) {
+                registered.invalidateLocal(body.substring(split + 1));
+            }
+        }, new ChannelTopic(channel));
+        return registered;
+    }
+
+    /**
+     * 一个缓存的失效频道
+     */
+    public final class Channel {
+
+        private final String name;
+        private final Consumer<String> onInvalidate;
+
+        private Channel(String name, Consumer<String> onInvalidate) {
+            this.name = name;
+            this.onInvalidate = onInvalidate;
+        }
+
+        /**
+         * 数据已变更：事务提交后（无事务则立即）失效本节点并广播给其他节点
+         */
+        public void invalidate(String key) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        invalidateAndBroadcast(key);
+                    }
+                });
+                return;
+            }
+            invalidateAndBroadcast(key);
+        }
+
+        private void invalidateAndBroadcast(String key) {
+            invalidateLocal(key);
+            try {
+                stringRedisTemplate.convertAndSend(name, nodeId + ":" + key);
+            } catch (Exception ex) {
+                log.warn("Broadcast near-cache invalidation failed, other nodes rely on TTL or next change. "
+                        + "channel={}, key={}, reason={}", name, key, ex.getMessage());
+            }
+        }
+
+        private void invalidateLocal(String key) {
+            try {
+                onInvalidate.accept(key);
+            } catch (Exception ex) {
+                log.error("Near-cache invalidation failed. channel={}, key={}", name, key, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.qasystem.common.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一组 WebSocket 会话共用的发送线程：写线程池、关闭线程池与发送时限看门狗。
+ * <p>
+ * 每个使用方（聊天、文档降重）各建一个实例，线程、发送限制和慢消费者计数互不影响。
+ * 会话用 {@link #open} 包装成 {@link QueuedWebSocketSession}，连接关闭时用 {@link #close} 移除。
+ * 看门狗按发送时限的 1/4 周期检查正在进行的写操作，超时的会话由关闭线程断开，不等下一次投递。
+ */
+@Slf4j
+public class QueuedWebSocketSender {
+
+    private final String name;
+    private final long sendTimeLimitMillis;
+    private final int bufferSizeLimit;
+    private final Runnable onSlowConsumer;
+
+    private final Map<String, QueuedWebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor writer;
+    private final ThreadPoolExecutor closer;
+    private final ScheduledExecutorService watchdog;
+
+    /**
+     * @param name           线程名前缀，如 chat-ws
+     * @param onSlowConsumer 会话因超过发送时限或缓冲上限被断开时调用（用于计数）
+     */
+    public QueuedWebSocketSender(String name, int writerThreads, long sendTimeLimitMillis,
+                                 int bufferSizeLimit, Runnable onSlowConsumer) {
+        this.name = name;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.onSlowConsumer = onSlowConsumer;
+
+        int threads = Math.max(1, writerThreads);
+        AtomicInteger sequence = new AtomicInteger();
+        // 队列里是"某会话有待发送帧"的信号，每个会话同时至多一个，数量受会话数限制
+        writer = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> daemon(runnable, name + "-writer-" + sequence.incrementAndGet()));
+        // 关闭要等正在阻塞的写操作（最多一个发送时限），与写线程池分开
+        closer = new ThreadPoolExecutor(2, 2, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> daemon(runnable, name + "-closer-" + sequence.incrementAndGet()));
+        closer.allowCoreThreadTimeOut(true);
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, name + "-watchdog"));
+        long period = Math.max(100L, sendTimeLimitMillis / 4);
+        watchdog.scheduleWithFixedDelay(this::checkSendTimes, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public QueuedWebSocketSession open(WebSocketSession session) {
+        QueuedWebSocketSession queued = new QueuedWebSocketSession(session, writer, closer,
+                sendTimeLimitMillis, bufferSizeLimit, onSlowConsumer);
+        sessions.put(session.getId(), queued);
+        return queued;
+    }
+
+    public QueuedWebSocketSession get(WebSocketSession session) {
+        return sessions.get(session.getId());
+    }
+
+    public QueuedWebSocketSession close(WebSocketSession session) {
+        return sessions.remove(session.getId());
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public void shutdown() {
+        watchdog.shutdownNow();
+        writer.shutdown();
+        closer.shutdown();
+    }
+
+    private void checkSendTimes() {
+        long now = System.currentTimeMillis();
+        try {
+            sessions.values().forEach(queued -> queued.checkSendTime(now));
+        } catch (Exception ex) {
+            log.warn("WebSocket send watchdog failed. sender={}, reason={}", name, ex.getMessage());
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String threadName) {
+        Thread thread = new Thread(runnable, threadName);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
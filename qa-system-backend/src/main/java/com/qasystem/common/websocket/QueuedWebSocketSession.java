@@ -0,0 +1,175 @@
+package com.qasystem.common.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个 WebSocket 会话的发送队列，由 {@link QueuedWebSocketSender} 创建。
+ * <p>
+ * 限制语义与 ConcurrentWebSocketSessionDecorator 相同（单次发送时限 + 待发送缓冲上限），
+ * 区别是真正的写操作始终在写线程池上按顺序执行，投递方只入队，不会被慢客户端阻塞。
+ * 超过任一限制即视为慢消费者：丢弃队列并关闭会话，由客户端重连。
+ * <p>
+ * 单次阻塞写由容器的发送超时兜底（Tomcat 按会话设置为发送时限），一个卡住的客户端最多占用写线程这么久；
+ * 发送时限另由看门狗线程定期检查（{@link #checkSendTime}），超时即在关闭线程池上关闭会话，不依赖下一次投递，也不占用写线程。
+ */
+@Slf4j
+public final class QueuedWebSocketSession {
+
+    /**
+     * Tomcat 阻塞发送超时的会话属性（毫秒，Long）
+     */
+    private static final String BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    private final WebSocketSession session;
+    private final Executor writer;
+    private final Executor closer;
+    private final long sendTimeLimitMillis;
+    private final int bufferSizeLimit;
+    private final Runnable onSlowConsumer;
+
+    private final Queue<TextMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferSize = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean dropped = new AtomicBoolean();
+
+    /**
+     * 当前这次写操作的开始时间，0 表示空闲
+     */
+    private volatile long sendStartMillis;
+
+    QueuedWebSocketSession(WebSocketSession session, Executor writer, Executor closer, long sendTimeLimitMillis,
+                           int bufferSizeLimit, Runnable onSlowConsumer) {
+        this.session = session;
+        this.writer = writer;
+        this.closer = closer;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.onSlowConsumer = onSlowConsumer;
+        limitBlockingSend(session, sendTimeLimitMillis);
+    }
+
+    private static void limitBlockingSend(WebSocketSession session, long sendTimeLimitMillis) {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            jakarta.websocket.Session standard = nativeSession.getNativeSession(jakarta.websocket.Session.class);
+            if (standard != null) {
+                standard.getUserProperties().put(BLOCKING_SEND_TIMEOUT, sendTimeLimitMillis);
+            }
+        }
+    }
+
+    public WebSocketSession session() {
+        return session;
+    }
+
+    public boolean isOpen() {
+        return !dropped.get() && session.isOpen();
+    }
+
+    /**
+     * 入队，立即返回
+     *
+     * @return 是否已入队（会话已关闭或被判定为慢消费者时返回 false）
+     */
+    public boolean offer(TextMessage frame) {
+        if (!isOpen()) {
+            return false;
+        }
+        if (!checkSendTime(System.currentTimeMillis())) {
+            return false;
+        }
+        if (bufferSize.addAndGet(frame.getPayloadLength()) > bufferSizeLimit) {
+            drop("buffer size limit " + bufferSizeLimit + " exceeded");
+            return false;
+        }
+        queue.add(frame);
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * 当前写操作超过发送时限时断开会话（投递方与看门狗都会调用）
+     *
+     * @return 会话是否仍可用
+     */
+    boolean checkSendTime(long nowMillis) {
+        long started = sendStartMillis;
+        if (started > 0 && nowMillis - started > sendTimeLimitMillis) {
+            drop("send time limit " + sendTimeLimitMillis + "ms exceeded");
+            return false;
+        }
+        return !dropped.get();
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writer.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+            drop("writer rejected");
+        }
+    }
+
+    private void drain() {
+        try {
+            TextMessage frame;
+            while (!dropped.get() && (frame = queue.poll()) != null) {
+                bufferSize.addAndGet(-frame.getPayloadLength());
+                sendStartMillis = System.currentTimeMillis();
+                try {
+                    session.sendMessage(frame);
+                } catch (Exception e) {
+                    log.warn("WebSocket 推送失败, sessionId={}, reason={}", session.getId(), e.getMessage());
+                    dropped.set(true);
+                    closeQuietly(CloseStatus.SERVER_ERROR);
+                    return;
+                } finally {
+                    sendStartMillis = 0;
+                }
+            }
+        } finally {
+            draining.set(false);
+            // 释放标记与新帧入队之间可能有竞争，补一次检查
+            if (!dropped.get() && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private void drop(String reason) {
+        if (!dropped.compareAndSet(false, true)) {
+            return;
+        }
+        queue.clear();
+        bufferSize.set(0);
+        onSlowConsumer.run();
+        log.warn("Drop slow WebSocket consumer, sessionId={}, reason={}", session.getId(), reason);
+        // 关闭可能要等正在阻塞的写操作，放在独立的关闭线程上，不占用写线程，也不阻塞投递方和看门狗
+        try {
+            closer.execute(() -> closeQuietly(CloseStatus.SESSION_NOT_RELIABLE));
+        } catch (RejectedExecutionException e) {
+            closeQuietly(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    private void closeQuietly(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception ignored) {
+            // 连接已断开
+        }
+    }
+}
@@ -31,6 +31,61 @@ public class AiAssistantProperties {
      */
     private long retryBackoffMillis = 400;
 
+    /**
+     * 模型调用并发上限的初始值，运行中按调用结果在最小值与最大值之间自适应调整（AIMD）。
+     */
+    private int llmInitialConcurrency = 8;
+
+    /**
+     * 模型调用并发上限的最小值。
+     */
+    private int llmMinConcurrency = 2;
+
+    /**
+     * 模型调用并发上限的最大值，也是模型调用线程池的线程数。
+     */
+    private int llmMaxConcurrency = 32;
+
+    /**
+     * 并发占满时最多排队等待的请求数，超出后直接降级。
+     */
+    private int llmQueueCapacity = 50;
+
+    /**
+     * 排队等待并发许可的最长毫秒数。
+     */
+    private long llmQueueTimeoutMillis = 2000;
+
+    /**
+     * 单次调用耗时超过该值视为供应商过载，并发上限按 llm-backoff-ratio 收缩。
+     */
+    private long llmLatencyThresholdMillis = 20000;
+
+    /**
+     * 失败或过慢时并发上限的收缩比例。
+     */
+    private double llmBackoffRatio = 0.75;
+
+    /**
+     * 请求等待模型回答（含重试）的最长毫秒数，超时后返回降级回答。
+     */
+    private long llmCallTimeoutMillis = 90000;
+
+    /**
+     * 流式回答合帧：攒够该字符数立即推送一帧。
+     */
+    private int streamFrameMaxChars = 32;
+
+    /**
+     * 流式回答合帧：不够字符数时最多等待的毫秒数，0 表示逐 token 推送。
+     */
+    private long streamFrameWindowMillis = 50;
+
+    /**
+     * 是否合并进行中的相同问题（仅限没有历史的新会话），共享检索与模型回答。
+     */
+    private boolean singleFlightEnabled = true;
+
     /**
      * 用户输入最大长度。
      */
@@ -41,6 +96,26 @@ public class AiAssistantProperties {
      */
     private int sessionTitleMaxLength = 30;
 
+    /**
+     * 单次请求提示词的 token 预算（估算值），系统提示、检索片段与当前问题之外的部分留给摘要和历史。
+     */
+    private int promptTokenBudget = 6000;
+
+    /**
+     * 原文保留的最近轮数，更早的轮次在回答完成后异步折叠进会话摘要。
+     */
+    private int memoryRecentTurns = 4;
+
+    /**
+     * 会话摘要的最大字数。
+     */
+    private int memorySummaryMaxChars = 800;
+
+    /**
+     * 是否开启滚动摘要；关闭时只按 token 预算截取最近的轮次。
+     */
+    private boolean memorySummaryEnabled = true;
+
     /**
      * 分类到推荐资源的映射，可通过配置覆盖。
      * key 为 QuestionCategory.code。
@@ -0,0 +1,63 @@
+package com.qasystem.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 🤖 AI 流式对话异步配置
+ *
+ * 🎯 作用：
+ * 流式对话接口立即返回 SseEmitter，检索、组装提示词以及回答完成后的保存、缓存、指标都放到独立线程池执行，
+ * 不占用 Web 线程，也不阻塞模型的回调线程。
+ *
+ * ⚠️ 注意：
+ * 队列满时直接拒绝（不在提交线程上执行，避免占用 Web 线程或模型回调线程），由调用方给前端推 error 事件。
+ * aiStreamFrameScheduler 只负责按时间窗口切帧，切出的帧交给 aiStreamFrameExecutor 按流串行推送
+ * （SSE 写入、共享回答的 Redis 广播），定时线程本身不做 IO，单线程足够。
+ */
+@Configuration
+public class AiAsyncConfig {
+
+    @Bean(name = "aiStreamExecutor")
+    public ThreadPoolTaskExecutor aiStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("ai-stream-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 每条流同时至多排一个推帧任务，队列长度受在途流数限制
+     */
+    @Bean(name = "aiStreamFrameExecutor")
+    public ThreadPoolTaskExecutor aiStreamFrameExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(8);
+        executor.setThreadNamePrefix("ai-stream-sink-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(5);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "aiStreamFrameScheduler", destroyMethod = "shutdownNow")
+    public ScheduledExecutorService aiStreamFrameScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-stream-frame");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
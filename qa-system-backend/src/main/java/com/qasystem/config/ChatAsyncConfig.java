@@ -0,0 +1,35 @@
+package com.qasystem.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 💬 聊天异步推送配置
+ *
+ * 🎯 作用：
+ * 群消息等需要推给大量在线用户的 WebSocket 推送，在事务提交后交给独立线程池执行，
+ * 发送接口的耗时不再随群人数增长。
+ *
+ * ⚠️ 注意：
+ * 队列满时由提交线程自己执行推送（CallerRunsPolicy），宁可变慢也不丢消息。
+ */
+@Configuration
+public class ChatAsyncConfig {
+
+    @Bean(name = "chatFanoutExecutor")
+    public ThreadPoolTaskExecutor chatFanoutExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(10_000);
+        executor.setThreadNamePrefix("chat-fanout-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+}
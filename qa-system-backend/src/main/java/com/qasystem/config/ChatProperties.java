@@ -0,0 +1,109 @@
+package com.qasystem.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 聊天模块配置。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "qa.chat")
+public class ChatProperties {
+
+    /**
+     * 未读数/最后消息从 Redis 回写数据库的间隔（毫秒）。
+     */
+    private long unreadFlushIntervalMillis = 2000;
+
+    /**
+     * 单次回写从脏集合中取出的会话数上限。
+     */
+    private int unreadFlushBatchSize = 500;
+
+    /**
+     * 未读 Hash 与最后消息摘要在 Redis 中的存活时间（毫秒），每次写入时续期；过期后从数据库重建。
+     */
+    private long unreadTtlMillis = 604_800_000L;
+
+    /**
+     * 在线状态（用户 -> 节点）的存活时间（毫秒），节点宕机后最多在该时间内仍被视为在线。
+     */
+    private long presenceTtlMillis = 60_000;
+
+    /**
+     * 本节点为在线用户续期在线状态的间隔（毫秒），应明显小于 presenceTtlMillis。
+     */
+    private long presenceHeartbeatMillis = 20_000;
+
+    /**
+     * 聊天 WebSocket 单次发送的最长时间（毫秒），超过后该会话被视为慢消费者断开。
+     */
+    private long wsSendTimeLimitMillis = 10_000;
+
+    /**
+     * 聊天 WebSocket 单会话待发送缓冲上限（字符数），超过后该会话被视为慢消费者断开。
+     */
+    private int wsSendBufferSizeLimit = 512 * 1024;
+
+    /**
+     * 聊天 WebSocket 写线程数，所有会话共用。
+     */
+    private int wsWriterThreads = 8;
+
+    /**
+     * 在线状态推送的合并窗口（毫秒），窗口内的多次上下线只推送最后状态。
+     */
+    private long presenceCoalesceMillis = 1000;
+
+    /**
+     * 每个会话在 Redis 中缓存的最近消息条数，0 表示不缓存。
+     */
+    private int recentMessageCacheSize = 50;
+
+    /**
+     * 最近消息缓存的存活时间（毫秒），会话有新消息时续期。
+     */
+    private long recentMessageCacheTtlMillis = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 每个用户收件箱最多保留的帧数，断线期间超过该数量时重连需重新加载。
+     */
+    private int inboxMaxLength = 1000;
+
+    /**
+     * 收件箱帧的保留时间（毫秒）。
+     */
+    private long inboxTtlMillis = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * 客户端确认合并写入 Redis 的间隔（毫秒）。
+     */
+    private long inboxAckFlushMillis = 1000;
+
+    /**
+     * 是否开启消息写后落库：发送时只写 Redis 日志并立即推送，由后台线程批量写入数据库。
+     */
+    private boolean writeBehindEnabled = false;
+
+    /**
+     * 写后落库日志的刷新间隔（毫秒）。
+     */
+    private long writeBehindFlushIntervalMillis = 500;
+
+    /**
+     * 写后落库单次多行写入的消息条数上限。
+     */
+    private int writeBehindBatchSize = 500;
+
+    /**
+     * 其他节点的日志条目超过该时间（毫秒）仍未确认时由本节点接手。
+     */
+    private long writeBehindClaimIdleMillis = 60_000;
+
+    /**
+     * 日志条目投递（落库尝试）达到该次数仍未成功时移入死信 Stream，不再重试。
+     */
+    private int writeBehindMaxDeliveries = 10;
+}
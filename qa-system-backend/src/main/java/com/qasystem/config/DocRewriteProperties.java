@@ -0,0 +1,98 @@
+package com.qasystem.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 文档批量降重配置。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "qa.doc.rewrite")
+public class DocRewriteProperties {
+
+    /**
+     * 单个批量任务同时在途的段落数。
+     */
+    private int batchConcurrency = 4;
+
+    /**
+     * 全局改写线程数，所有批量任务共享。
+     */
+    private int workerThreads = 16;
+
+    /**
+     * 单次批量改写的段落数上限。
+     */
+    private int maxBatchParagraphs = 200;
+
+    /**
+     * 单段失败后的重试次数（不含首轮）。
+     */
+    private int maxRetries = 2;
+
+    /**
+     * 重试退避毫秒数，按重试次数线性递增。
+     */
+    private long retryBackoffMillis = 500;
+
+    /**
+     * 等待限流令牌的最长毫秒数，超时视为本次调用失败。
+     */
+    private long rateLimitTimeoutMillis = 30_000;
+
+    /**
+     * 未单独配置的供应商每秒允许的请求数。
+     */
+    private double defaultPermitsPerSecond = 5;
+
+    /**
+     * 按供应商名称配置的每秒请求数，例如 siliconflow: 3。
+     */
+    private Map<String, Double> providerPermitsPerSecond = new HashMap<>();
+
+    /**
+     * 降重 WebSocket 单次发送时限（毫秒），超过即断开慢客户端。
+     */
+    private long wsSendTimeLimitMillis = 10_000;
+
+    /**
+     * 降重 WebSocket 每个会话待发送缓冲上限（字节）。
+     */
+    private int wsSendBufferSizeLimit = 512 * 1024;
+
+    /**
+     * 降重 WebSocket 写线程数，与聊天推送的写线程分开。
+     */
+    private int wsWriterThreads = 2;
+
+    private final CacheProperties cache = new CacheProperties();
+
+    public double permitsPerSecond(String provider) {
+        Double permits = provider == null ? null : providerPermitsPerSecond.get(provider);
+        return permits != null && permits > 0 ? permits : defaultPermitsPerSecond;
+    }
+
+    @Data
+    public static class CacheProperties {
+
+        /**
+         * 是否启用改写结果缓存。
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓存条目存活时间（小时）。
+         */
+        private long ttlHours = 168;
+
+        /**
+         * 缓存条目上限，超出后淘汰最早写入的条目。
+         */
+        private long maxEntries = 50_000;
+    }
+}
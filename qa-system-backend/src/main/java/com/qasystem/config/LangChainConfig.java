@@ -1,11 +1,14 @@
 package com.qasystem.config;
 
+import com.qasystem.ai.ChatModelRouter;
+import com.qasystem.ai.ModelConfigChangeNotifier;
 import com.qasystem.entity.AiModelConfig;
 import com.qasystem.service.AiModelConfigService;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,9 +22,12 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 
 @Slf4j
@@ -36,6 +42,8 @@ public class LangChainConfig {
     private final AiModelConfigService aiModelConfigService;
     private final LocalAiProviderProperties localAiProviderProperties;
     private final JdbcTemplate jdbcTemplate;
+    private final ChatModelRouter chatModelRouter;
+    private final ModelConfigChangeNotifier modelConfigChangeNotifier;
 
     @Value("${langchain4j.open-ai.api-key:}")
     private String openAiApiKey;
@@ -57,13 +65,92 @@ public class LangChainConfig {
 
     private volatile RuntimeModelConfig resolvedRuntimeConfig;
 
+    private boolean routesInitialized;
+    private Map<RuntimeModelConfig, ChatModelRouter.Route> builtRoutes = Map.of();
+
+    @PostConstruct
+    public void subscribeReload() {
+        modelConfigChangeNotifier.addListener(this::reloadModels);
+    }
+
+    /**
+     * 模型 Bean 是路由的门面，激活配置变化时只替换路由里的客户端，注入方无需重建
+     */
     @Bean
     public ChatLanguageModel chatLanguageModel() {
-        RuntimeModelConfig config = resolveRuntimeConfig();
-        if (!config.isComplete()) {
-            return buildDisabledChatModel();
+        initRoutes();
+        return chatModelRouter.chatModel();
+    }
+
+    @Bean
+    public StreamingChatLanguageModel streamingChatLanguageModel() {
+        initRoutes();
+        return chatModelRouter.streamingModel();
+    }
+
+    /**
+     * 重新读取激活配置并原子替换客户端。
+     * 已经开始的请求继续用旧客户端完成；配置未变的供应商沿用原客户端（连接池）和健康统计。
+     */
+    public synchronized void reloadModels() {
+        RuntimeModelConfig previous = resolvedRuntimeConfig;
+        RuntimeModelConfig current = loadRuntimeConfig(false);
+        resolvedRuntimeConfig = current;
+        if (current.equals(previous) && routesInitialized) {
+            log.debug("AI model config unchanged, skip reload.");
+            return;
+        }
+        applyRoutes(current);
+        log.info("AI model reloaded. provider={}, model={}", current.provider(), current.modelName());
+    }
+
+    private synchronized void initRoutes() {
+        if (!routesInitialized) {
+            applyRoutes(resolveRuntimeConfig());
+        }
+    }
+
+    /**
+     * 主配置（数据库激活配置 / 首个本地供应商 / yml）排第一，其余启用且完整的本地供应商按优先级随后，交给路由按健康度选择。
+     */
+    private void applyRoutes(RuntimeModelConfig primary) {
+        routesInitialized = true;
+        if (!primary.isComplete()) {
+            chatModelRouter.setRoutes(List.of());
+            builtRoutes = Map.of();
+            return;
+        }
+
+        List<RuntimeModelConfig> configs = new ArrayList<>();
+        configs.add(primary);
+        for (RuntimeModelConfig config : resolveLocalProviders()) {
+            if (!config.configId().equals(primary.configId())) {
+                configs.add(config);
+            }
+        }
+
+        Map<RuntimeModelConfig, ChatModelRouter.Route> built = new HashMap<>();
+        List<ChatModelRouter.Route> routes = new ArrayList<>(configs.size());
+        for (int i = 0; i < configs.size(); i++) {
+            RuntimeModelConfig config = configs.get(i);
+            ChatModelRouter.Route reused = builtRoutes.get(config);
+            ChatModelRouter.Route route = reused != null
+                    ? new ChatModelRouter.Route(config.provider(), i, reused.chatModel(), reused.streamingModel(), reused.health())
+                    : new ChatModelRouter.Route(config.provider(), i,
+                    buildChatModel(config), buildStreamingChatModel(config));
+            routes.add(route);
+            built.put(config, route);
         }
+        chatModelRouter.setRoutes(routes);
+        builtRoutes = built;
+        log.info("AI chat model routes ready. providers={}",
+                routes.stream().map(ChatModelRouter.Route::name).toList());
+    }
 
+    /**
+     * 客户端不重试：单供应商由 LlmExecutor 重试，多供应商由路由切换
+     */
+    private ChatLanguageModel buildChatModel(RuntimeModelConfig config) {
         return OpenAiChatModel.builder()
                 .apiKey(config.apiKey())
                 .baseUrl(config.baseUrl())
@@ -71,19 +158,13 @@ public class LangChainConfig {
                 .temperature(config.temperature())
                 .maxTokens(config.maxTokens())
                 .timeout(Duration.ofSeconds(config.timeoutSeconds()))
-                .maxRetries(2)
+                .maxRetries(0)
                 .logRequests(false)
                 .logResponses(false)
                 .build();
     }
 
-    @Bean
-    public StreamingChatLanguageModel streamingChatLanguageModel() {
-        RuntimeModelConfig config = resolveRuntimeConfig();
-        if (!config.isComplete()) {
-            return buildDisabledStreamingChatModel();
-        }
-
+    private StreamingChatLanguageModel buildStreamingChatModel(RuntimeModelConfig config) {
         return OpenAiStreamingChatModel.builder()
                 .apiKey(config.apiKey())
                 .baseUrl(config.baseUrl())
@@ -96,6 +177,21 @@ public class LangChainConfig {
                 .build();
     }
 
+    /**
+     * 当前模型客户端所用的供应商名称，供按供应商限流等场景使用。
+     */
+    public String activeProviderName() {
+        return resolveRuntimeConfig().provider();
+    }
+
+    /**
+     * 当前模型配置的标识（配置来源/ID + 模型名），模型输出相关的缓存以此区分。
+     */
+    public String activeModelConfigKey() {
+        RuntimeModelConfig config = resolveRuntimeConfig();
+        return config.configId() + "/" + config.modelName();
+    }
+
     private RuntimeModelConfig resolveRuntimeConfig() {
         RuntimeModelConfig cached = resolvedRuntimeConfig;
         if (cached != null) {
@@ -103,43 +199,42 @@ public class LangChainConfig {
         }
 
         synchronized (this) {
-            if (resolvedRuntimeConfig != null) {
-                return resolvedRuntimeConfig;
-            }
-
-            RuntimeModelConfig databaseConfig = resolveFromDatabase();
-            if (databaseConfig != null) {
-                log.info("Use AI model config from database. provider={}, model={}",
-                        databaseConfig.provider(), databaseConfig.modelName());
-                resolvedRuntimeConfig = databaseConfig;
-                return databaseConfig;
+            if (resolvedRuntimeConfig == null) {
+                resolvedRuntimeConfig = loadRuntimeConfig(failFastOnMissingModel);
             }
+            return resolvedRuntimeConfig;
+        }
+    }
 
-            RuntimeModelConfig localProviderConfig = resolveFromLocalProviders();
-            if (localProviderConfig != null) {
-                log.info("Use AI model config from local ai.providers. provider={}, model={}",
-                        localProviderConfig.provider(), localProviderConfig.modelName());
-                resolvedRuntimeConfig = localProviderConfig;
-                return localProviderConfig;
-            }
+    private RuntimeModelConfig loadRuntimeConfig(boolean failFast) {
+        RuntimeModelConfig databaseConfig = resolveFromDatabase();
+        if (databaseConfig != null) {
+            log.info("Use AI model config from database. provider={}, model={}",
+                    databaseConfig.provider(), databaseConfig.modelName());
+            return databaseConfig;
+        }
 
-            RuntimeModelConfig ymlConfig = resolveFromApplicationYml();
-            if (ymlConfig != null) {
-                log.info("Use AI model config from application.yml. model={}", ymlConfig.modelName());
-                resolvedRuntimeConfig = ymlConfig;
-                return ymlConfig;
-            }
+        RuntimeModelConfig localProviderConfig = resolveFromLocalProviders();
+        if (localProviderConfig != null) {
+            log.info("Use AI model config from local ai.providers. provider={}, model={}",
+                    localProviderConfig.provider(), localProviderConfig.modelName());
+            return localProviderConfig;
+        }
 
-            String message = "AI provider is not configured. Configure one of: active ai_model_config, "
-                    + "local ai.providers[], or langchain4j.open-ai.*";
-            if (failFastOnMissingModel) {
-                throw new IllegalStateException(message);
-            }
+        RuntimeModelConfig ymlConfig = resolveFromApplicationYml();
+        if (ymlConfig != null) {
+            log.info("Use AI model config from application.yml. model={}", ymlConfig.modelName());
+            return ymlConfig;
+        }
 
-            log.warn("{} Application will start with AI features disabled.", message);
-            resolvedRuntimeConfig = RuntimeModelConfig.unavailable();
-            return resolvedRuntimeConfig;
+        String message = "AI provider is not configured. Configure one of: active ai_model_config, "
+                + "local ai.providers[], or langchain4j.open-ai.*";
+        if (failFast) {
+            throw new IllegalStateException(message);
         }
+
+        log.warn("{} AI features are disabled.", message);
+        return RuntimeModelConfig.unavailable();
     }
 
     private RuntimeModelConfig resolveFromDatabase() {
@@ -155,6 +250,7 @@ public class LangChainConfig {
             }
 
             RuntimeModelConfig config = new RuntimeModelConfig(
+                    "db:" + activeConfig.getId(),
                     trim(activeConfig.getProvider()),
                     trim(activeConfig.getApiKey()),
                     trim(activeConfig.getBaseUrl()),
@@ -176,13 +272,21 @@ public class LangChainConfig {
     }
 
     private RuntimeModelConfig resolveFromLocalProviders() {
+        List<RuntimeModelConfig> configs = resolveLocalProviders();
+        return configs.isEmpty() ? null : configs.get(0);
+    }
+
+    /**
+     * 启用且配置完整的本地供应商，按优先级排序
+     */
+    private List<RuntimeModelConfig> resolveLocalProviders() {
         if (!localAiProviderProperties.isEnable()) {
-            return null;
+            return List.of();
         }
 
         List<LocalAiProviderProperties.ProviderProperties> providers = localAiProviderProperties.getProviders();
         if (providers == null || providers.isEmpty()) {
-            return null;
+            return List.of();
         }
 
         return providers.stream()
@@ -191,12 +295,12 @@ public class LangChainConfig {
                 .sorted(Comparator.comparingInt(this::providerPriority))
                 .map(this::toRuntimeModelConfig)
                 .filter(Objects::nonNull)
-                .findFirst()
-                .orElse(null);
+                .toList();
     }
 
     private RuntimeModelConfig toRuntimeModelConfig(LocalAiProviderProperties.ProviderProperties provider) {
         RuntimeModelConfig config = new RuntimeModelConfig(
+                "local:" + trim(provider.getName()),
                 trim(provider.getName()),
                 trim(provider.getApiKey()),
                 trim(provider.getBaseUrl()),
@@ -216,6 +320,7 @@ public class LangChainConfig {
 
     private RuntimeModelConfig resolveFromApplicationYml() {
         RuntimeModelConfig config = new RuntimeModelConfig(
+                "yml",
                 "openai-compatible",
                 trim(openAiApiKey),
                 trim(openAiBaseUrl),
@@ -228,30 +333,6 @@ public class LangChainConfig {
         return config.isComplete() ? config : null;
     }
 
-    private ChatLanguageModel buildDisabledChatModel() {
-        return messages -> {
-            throw buildMissingConfigException();
-        };
-    }
-
-    private StreamingChatLanguageModel buildDisabledStreamingChatModel() {
-        return (messages, handler) -> {
-            IllegalStateException exception = buildMissingConfigException();
-            if (handler != null) {
-                handler.onError(exception);
-                return;
-            }
-            throw exception;
-        };
-    }
-
-    private IllegalStateException buildMissingConfigException() {
-        return new IllegalStateException(
-                "AI provider is not configured. Set a DB active model, local ai.providers[], "
-                        + "or langchain4j.open-ai.* before calling AI endpoints."
-        );
-    }
-
     private int providerPriority(LocalAiProviderProperties.ProviderProperties provider) {
         return provider.getPriority() == null ? Integer.MAX_VALUE : provider.getPriority();
     }
@@ -298,6 +379,7 @@ public class LangChainConfig {
     }
 
     private record RuntimeModelConfig(
+            String configId,
             String provider,
             String apiKey,
             String baseUrl,
@@ -309,6 +391,7 @@ public class LangChainConfig {
 
         private static RuntimeModelConfig unavailable() {
             return new RuntimeModelConfig(
+                    "disabled",
                     "disabled",
                     "",
                     "",
@@ -37,5 +37,9 @@ public class LocalAiProviderProperties {
         private Integer healthCheckInterval = 30;
         private Integer retryCount = 3;
         private Integer retryInterval = 1000;
+        /**
+         * 同步调用超过该毫秒数未返回时向次优供应商再发一次，0 表示不对冲
+         */
+        private Integer hedgeDelayMillis = 0;
     }
 }
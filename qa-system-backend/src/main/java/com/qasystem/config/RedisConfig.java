@@ -14,6 +14,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 // Redis操作模板
 import org.springframework.data.redis.core.RedisTemplate;
+// Redis发布/订阅监听容器
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 // Redis序列化器
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -178,6 +180,30 @@ public class RedisConfig {
         return template;
     }
     
+    /**
+     * 📡 创建Redis消息监听容器 - 节点间发布/订阅通知的统一入口
+     * 
+     * 📖 功能说明：
+     * 多实例部署时，某个节点修改了内存中的缓存数据（如敏感词自动机），
+     * 需要通知其他节点同步刷新。各业务组件通过本容器订阅自己的频道，
+     * 共享同一条订阅连接，避免每个组件各自占用一条Redis连接。
+     * 
+     * 📋 使用示例：
+     * ```java
+     * container.addMessageListener((message, pattern) -> reload(), new ChannelTopic("xxx:reload"));
+     * stringRedisTemplate.convertAndSend("xxx:reload", nodeId);
+     * ```
+     * 
+     * @param factory Redis连接工厂
+     * @return 消息监听容器，随Spring容器启动和关闭
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory factory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        return container;
+    }
+
     // ==================== 使用示例 ====================
     // 在Service类中注入并使用：
     // @Autowired
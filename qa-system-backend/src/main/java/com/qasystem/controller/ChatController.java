@@ -229,6 +229,20 @@ public class ChatController {
         return Result.success(chatService.getPrivateMessages(userId, targetId, page, size));
     }
 
+    /**
+     * 游标分页获取私聊消息记录（按消息ID倒序）
+     * 首次不传 beforeId，向上翻页时传当前最早一条消息的ID
+     */
+    @GetMapping("/messages/private/{targetId}/history")
+    public Result<List<ChatMessage>> getPrivateMessagesBefore(
+            Authentication authentication,
+            @PathVariable Long targetId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int size) {
+        Long userId = getUserId(authentication);
+        return Result.success(chatService.getPrivateMessagesBefore(userId, targetId, beforeId, size));
+    }
+
     /**
      * 标记消息已读
      */
@@ -400,6 +414,18 @@ public class ChatController {
         return Result.success(chatService.getGroupMessages(groupId, page, size));
     }
 
+    /**
+     * 游标分页获取群消息记录（按消息ID倒序）
+     * 首次不传 beforeId，向上翻页时传当前最早一条消息的ID
+     */
+    @GetMapping("/messages/group/{groupId}/history")
+    public Result<List<ChatGroupMessage>> getGroupMessagesBefore(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") int size) {
+        return Result.success(chatService.getGroupMessagesBefore(groupId, beforeId, size));
+    }
+
     /**
      * 设置/取消管理员
      */
@@ -1,6 +1,7 @@
 package com.qasystem.controller;
 
 import com.qasystem.common.response.Result;
+import com.qasystem.dto.DocBatchRewriteRequest;
 import com.qasystem.entity.DocRewriteVersion;
 import com.qasystem.service.DocService;
 import jakarta.validation.Valid;
@@ -17,6 +18,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 📄 文档查重与AI降重控制器 - 用户侧接口
@@ -301,6 +303,29 @@ public class DocController {
         return Result.success(result);
     }
 
+    /**
+     * 📚 批量AI降重并保存为新版本
+     *
+     * 📍 请求路径：POST /api/v1/doc/{documentId}/batch-rewrite
+     *
+     * 🎯 功能：并行改写选中的段落（paragraphIds / minSimilarity，都为空时改写全文），
+     * 全部完成后整体保存为一个 DocRewriteVersion 并返回。
+     *
+     * 💡 需要逐段查看进度时，改用文档降重 WebSocket 发送 {"action":"batch",...}。
+     *
+     * ⚠️ 注意：请求在改写完成后才返回，段落较多时耗时较长；
+     * 单段失败会保留原文，全部失败时返回错误且不保存版本。
+     */
+    @PostMapping("/{documentId}/batch-rewrite")
+    public CompletableFuture<Result<DocRewriteVersion>> batchRewrite(@PathVariable Long documentId,
+                                                                     @Valid @RequestBody DocBatchRewriteRequest request,
+                                                                     Authentication authentication) {
+        Long userId = getUserId(authentication);
+        request.setDocumentId(documentId);
+        // 改写在独立线程池上执行，不占用请求线程
+        return docService.batchRewrite(userId, request, null).thenApply(Result::success);
+    }
+
     /**
      * 💾 保存文档版本
      * 
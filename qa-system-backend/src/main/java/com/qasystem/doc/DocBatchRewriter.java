@@ -0,0 +1,162 @@
+package com.qasystem.doc;
+
+import com.qasystem.ai.ProviderRateLimiter;
+import com.qasystem.config.DocRewriteProperties;
+import com.qasystem.config.LangChainConfig;
+import com.qasystem.entity.DocParagraph;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.output.Response;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 批量降重执行器。
+ * <p>
+ * 所有批量任务共享一个固定大小的线程池；单个任务最多同时改写 batchConcurrency 个段落，
+ * 每次模型调用前按当前供应商取限流令牌，失败的段落按退避重试，重试耗尽后记为失败而不中断整批。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocBatchRewriter {
+
+    private final DocRewriteProperties properties;
+    private final LangChainConfig langChainConfig;
+
+    private ThreadPoolExecutor executor;
+    private ProviderRateLimiter rateLimiter;
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, properties.getWorkerThreads());
+        AtomicInteger sequence = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "doc-rewrite-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        rateLimiter = new ProviderRateLimiter(properties::permitsPerSecond);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 并行改写给定段落，结果按入参顺序返回；每个段落完成时（无论成败）回调一次 onParagraph。
+     *
+     * @param concurrency 本次同时在途的段落数，为空时取 batchConcurrency，且不超过它
+     * @param model       原文 -> 模型响应，由调用方负责组装提示词
+     */
+    public CompletableFuture<List<ParagraphRewriteResult>> rewrite(List<DocParagraph> paragraphs, Integer concurrency,
+                                                                  Function<String, Response<AiMessage>> model,
+                                                                  Consumer<ParagraphRewriteResult> onParagraph) {
+        if (paragraphs.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        String provider = langChainConfig.activeProviderName();
+        ParagraphRewriteResult[] results = new ParagraphRewriteResult[paragraphs.size()];
+        AtomicInteger cursor = new AtomicInteger();
+        int limit = Math.max(1, properties.getBatchConcurrency());
+        if (concurrency != null) {
+            limit = Math.min(limit, Math.max(1, concurrency));
+        }
+        int workers = Math.min(limit, paragraphs.size());
+
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[workers];
+        for (int w = 0; w < workers; w++) {
+            lanes[w] = CompletableFuture.runAsync(() -> {
+                int i;
+                while ((i = cursor.getAndIncrement()) < results.length) {
+                    ParagraphRewriteResult result = rewriteOne(paragraphs.get(i), provider, model);
+                    results[i] = result;
+                    notifyParagraph(onParagraph, result);
+                }
+            }, executor);
+        }
+        return CompletableFuture.allOf(lanes).thenApply(ignored -> Arrays.asList(results));
+    }
+
+    private ParagraphRewriteResult rewriteOne(DocParagraph paragraph, String provider,
+                                              Function<String, Response<AiMessage>> model) {
+        String text = paragraph.getOriginalText();
+        if (text == null || text.isBlank()) {
+            return new ParagraphRewriteResult(paragraph.getId(), paragraph.getParagraphIndex(), text, text, 0, 0, null);
+        }
+
+        int maxAttempts = Math.max(0, properties.getMaxRetries()) + 1;
+        String lastError = null;
+        int attempt = 0;
+        while (attempt < maxAttempts) {
+            attempt++;
+            try {
+                if (!rateLimiter.acquire(provider, properties.getRateLimitTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                    lastError = "等待模型限流超时";
+                    continue;
+                }
+                Response<AiMessage> response = model.apply(text);
+                String rewritten = response.content() == null ? null : response.content().text();
+                if (rewritten == null || rewritten.isBlank()) {
+                    throw new IllegalStateException("模型返回空内容");
+                }
+                return new ParagraphRewriteResult(paragraph.getId(), paragraph.getParagraphIndex(), text,
+                        rewritten.trim(), tokenUsage(response), attempt, null);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                lastError = "改写任务被中断";
+                break;
+            } catch (Exception ex) {
+                lastError = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
+                log.warn("Batch rewrite attempt failed. paragraphId={}, attempt={}/{}, reason={}",
+                        paragraph.getId(), attempt, maxAttempts, lastError);
+                if (attempt < maxAttempts && !backoff(attempt)) {
+                    break;
+                }
+            }
+        }
+        return new ParagraphRewriteResult(paragraph.getId(), paragraph.getParagraphIndex(), text, null, 0, attempt, lastError);
+    }
+
+    private boolean backoff(int attempt) {
+        try {
+            Thread.sleep(properties.getRetryBackoffMillis() * attempt);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void notifyParagraph(Consumer<ParagraphRewriteResult> onParagraph, ParagraphRewriteResult result) {
+        if (onParagraph == null) {
+            return;
+        }
+        try {
+            onParagraph.accept(result);
+        } catch (Exception ex) {
+            log.warn("Batch rewrite paragraph callback failed. paragraphId={}", result.paragraphId(), ex);
+        }
+    }
+
+    private int tokenUsage(Response<AiMessage> response) {
+        if (response.tokenUsage() == null || response.tokenUsage().totalTokenCount() == null) {
+            return 0;
+        }
+        return response.tokenUsage().totalTokenCount();
+    }
+}
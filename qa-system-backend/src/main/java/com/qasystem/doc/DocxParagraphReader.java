@@ -0,0 +1,143 @@
+package com.qasystem.doc;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * .docx 段落读取：顺序扫描 zip 条目，只解析 word/document.xml，其余条目（media 等）直接跳过。
+ * <p>
+ * 输出 body 直属段落和表格单元格内的段落（按文档顺序，嵌套表格同样展开），与 .doc 路径一致；
+ * 段落文本规则对齐 {@code XWPFParagraph#getText()}：拼接 w:t，w:tab 记为制表符，
+ * w:br / w:cr 记为换行，忽略 w:instrText / w:delText 以及文本框内的嵌套段落。
+ */
+final class DocxParagraphReader {
+
+    private static final String MAIN_DOCUMENT_PART = "word/document.xml";
+    private static final String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private DocxParagraphReader() {
+    }
+
+    static void read(InputStream in, Consumer<String> sink) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (MAIN_DOCUMENT_PART.equals(entry.getName())) {
+                parseDocumentXml(zip, sink);
+                return;
+            }
+        }
+        throw new IOException("未找到Word正文部件 " + MAIN_DOCUMENT_PART);
+    }
+
+    private static void parseDocumentXml(InputStream in, Consumer<String> sink) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(in, "UTF-8");
+            int depth = 0;
+            int bodyDepth = -1;
+            // 所在表格单元格(w:tc)的深度，单元格的直属段落与 body 直属段落同样输出
+            Deque<Integer> cellDepths = new ArrayDeque<>();
+            // 当前 body 直属段落所在深度；-1 表示不在段落中
+            int paragraphDepth = -1;
+            // 段落内嵌套段落（文本框）层数，嵌套内容不计入外层段落
+            int nestedParagraphs = 0;
+            boolean inText = false;
+            StringBuilder paragraph = new StringBuilder();
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (!W_NS.equals(reader.getNamespaceURI())) {
+                        continue;
+                    }
+                    String name = reader.getLocalName();
+                    if (bodyDepth < 0) {
+                        if ("body".equals(name)) {
+                            bodyDepth = depth;
+                        }
+                        continue;
+                    }
+                    if (paragraphDepth < 0) {
+                        if ("tc".equals(name)) {
+                            cellDepths.push(depth);
+                        } else if ("p".equals(name) && (depth == bodyDepth + 1
+                                || (!cellDepths.isEmpty() && depth == cellDepths.peek() + 1))) {
+                            paragraphDepth = depth;
+                            paragraph.setLength(0);
+                        }
+                        continue;
+                    }
+                    if ("p".equals(name)) {
+                        nestedParagraphs++;
+                    } else if (nestedParagraphs == 0) {
+                        switch (name) {
+                            case "t" -> inText = true;
+                            case "tab", "ptab" -> paragraph.append('\t');
+                            case "br", "cr" -> paragraph.append('\n');
+                            case "noBreakHyphen" -> paragraph.append('-');
+                            default -> {
+                            }
+                        }
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (inText) {
+                        paragraph.append(reader.getText());
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (!cellDepths.isEmpty() && depth == cellDepths.peek()) {
+                        cellDepths.pop();
+                    }
+                    if (paragraphDepth > 0 && W_NS.equals(reader.getNamespaceURI())) {
+                        String name = reader.getLocalName();
+                        if ("t".equals(name)) {
+                            inText = false;
+                        } else if ("p".equals(name)) {
+                            if (depth == paragraphDepth) {
+                                sink.accept(paragraph.toString());
+                                paragraph.setLength(0);
+                                paragraphDepth = -1;
+                            } else {
+                                nestedParagraphs--;
+                            }
+                        }
+                    }
+                    if (depth == bodyDepth) {
+                        return;
+                    }
+                    depth--;
+                }
+            }
+        } catch (XMLStreamException ex) {
+            throw new IOException("Word正文解析失败: " + ex.getMessage(), ex);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // 关闭解析器不影响已输出的段落
+                }
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+}
@@ -0,0 +1,19 @@
+package com.qasystem.doc;
+
+/**
+ * 批量降重中单个段落的改写结果；error 非空表示重试耗尽后仍失败。
+ */
+public record ParagraphRewriteResult(
+        Long paragraphId,
+        Integer paragraphIndex,
+        String originalText,
+        String rewrittenText,
+        int tokensUsed,
+        int attempts,
+        String error
+) {
+
+    public boolean succeeded() {
+        return error == null;
+    }
+}
@@ -0,0 +1,131 @@
+package com.qasystem.doc;
+
+import com.qasystem.config.DocRewriteProperties;
+import com.qasystem.config.LangChainConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 按内容寻址的降重结果缓存（Redis，多节点共享）。
+ * <p>
+ * 键为 sha256(规范化原文, 风格, 当前模型配置)，同一段落换风格或换模型都不会命中旧结果。
+ * 条目带 TTL，另用一个按写入时间排序的 ZSET 做条数上限，超出时淘汰最早写入的条目；
+ * 写入、续期、登记索引和淘汰在一个 Lua 脚本里完成，并发写入不会留下无 TTL 或不在索引里的条目。
+ * 所有键带同一个 hash tag，Redis Cluster 下落在同一个槽，脚本里删除淘汰条目不会跨槽。
+ * Redis 不可用时按未命中处理，不影响改写本身。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RewriteCache {
+
+    private static final String ENTRY_PREFIX = "doc:rewrite:{cache}:";
+    private static final String INDEX_KEY = "doc:rewrite:{cache}-index";
+    private static final String FIELD_TEXT = "text";
+    private static final String FIELD_TOKENS = "tokens";
+
+    /**
+     * KEYS[1]=条目, KEYS[2]=索引；ARGV[1]=改写结果, ARGV[2]=token数, ARGV[3]=TTL毫秒, ARGV[4]=当前毫秒, ARGV[5]=条数上限
+     * 先清掉索引里已过期的键，再按写入时间淘汰超出上限的条目
+     */
+    private static final DefaultRedisScript<Long> PUT_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('HSET', KEYS[1], 'text', ARGV[1], 'tokens', ARGV[2])
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            redis.call('ZADD', KEYS[2], ARGV[4], KEYS[1])
+            redis.call('ZREMRANGEBYSCORE', KEYS[2], 0, tonumber(ARGV[4]) - tonumber(ARGV[3]))
+            local excess = redis.call('ZCARD', KEYS[2]) - tonumber(ARGV[5])
+            if excess <= 0 then return 0 end
+            local oldest = redis.call('ZRANGE', KEYS[2], 0, excess - 1)
+            for _, key in ipairs(oldest) do
+              redis.call('DEL', key)
+            end
+            redis.call('ZREM', KEYS[2], unpack(oldest))
+            return #oldest
+            """, Long.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final DocRewriteProperties docRewriteProperties;
+    private final LangChainConfig langChainConfig;
+
+    /**
+     * 缓存的改写结果；tokensUsed 为首次生成时消耗的 token 数，即命中后节省的量。
+     */
+    public record Entry(String rewrittenText, int tokensUsed) {
+    }
+
+    public Optional<Entry> get(String text, String style) {
+        if (!docRewriteProperties.getCache().isEnabled() || text == null || text.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(entryKey(text, style));
+            Object rewritten = fields.get(FIELD_TEXT);
+            if (rewritten == null) {
+                return Optional.empty();
+            }
+            Object tokens = fields.get(FIELD_TOKENS);
+            return Optional.of(new Entry(rewritten.toString(), tokens == null ? 0 : Integer.parseInt(tokens.toString())));
+        } catch (Exception ex) {
+            log.warn("Read rewrite cache failed, treat as miss. reason={}", ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void put(String text, String style, String rewrittenText, int tokensUsed) {
+        DocRewriteProperties.CacheProperties cache = docRewriteProperties.getCache();
+        if (!cache.isEnabled() || text == null || text.isBlank() || rewrittenText == null || rewrittenText.isBlank()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(PUT_SCRIPT, List.of(entryKey(text, style), INDEX_KEY),
+                    rewrittenText,
+                    String.valueOf(tokensUsed),
+                    String.valueOf(TimeUnit.HOURS.toMillis(cache.getTtlHours())),
+                    String.valueOf(System.currentTimeMillis()),
+                    String.valueOf(cache.getMaxEntries()));
+        } catch (Exception ex) {
+            log.warn("Write rewrite cache failed. reason={}", ex.getMessage());
+        }
+    }
+
+    private String entryKey(String text, String style) {
+        String normalizedStyle = style == null ? "" : style.trim().toUpperCase(Locale.ROOT);
+        return ENTRY_PREFIX + sha256(String.join("\u0001", List.of(
+                normalize(text), normalizedStyle, langChainConfig.activeModelConfigKey())));
+    }
+
+    /**
+     * 规范化原文：全角转半角（NFKC）、合并连续空白、去掉首尾空白，
+     * 使仅有排版差异的相同段落命中同一条缓存。
+     */
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
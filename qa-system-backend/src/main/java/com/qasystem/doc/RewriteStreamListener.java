@@ -0,0 +1,21 @@
+package com.qasystem.doc;
+
+import java.util.Map;
+
+/**
+ * 流式AI降重回调。回调发生在模型客户端的回调线程上，实现方不应在其中执行阻塞操作。
+ */
+public interface RewriteStreamListener {
+
+    /**
+     * 模型每生成一个片段回调一次。
+     */
+    void onToken(String token);
+
+    /**
+     * 生成结束，敏感词检测与操作日志已完成；result 与 {@code DocService#rewriteText} 返回结构一致。
+     */
+    void onComplete(Map<String, Object> result);
+
+    void onError(Throwable error);
+}
@@ -0,0 +1,155 @@
+package com.qasystem.doc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * 敏感词 Aho-Corasick 自动机（构建后不可变，可在多线程间共享）。
+ * <p>
+ * 匹配不区分大小写，对文本只做一次线性扫描即可找出全部命中词，耗时与词库规模无关。
+ */
+public final class SensitiveWordMatcher {
+
+    private static final SensitiveWordMatcher EMPTY = new SensitiveWordMatcher(List.of());
+
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> failLinks = new ArrayList<>();
+    /**
+     * 输出链接：沿失败链最近的一个终止状态，-1 表示没有。
+     */
+    private final List<Integer> outputLinks = new ArrayList<>();
+    /**
+     * 终止状态对应的原始敏感词（同一小写形式可能对应多个原词）。
+     */
+    private final List<List<String>> outputs = new ArrayList<>();
+    private final int wordCount;
+
+    private SensitiveWordMatcher(Collection<String> words) {
+        newState();
+        int count = 0;
+        for (String word : words) {
+            if (word == null || word.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            String key = word.toLowerCase();
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                Integer next = transitions.get(state).get(c);
+                if (next == null) {
+                    next = newState();
+                    transitions.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (outputs.get(state) == null) {
+                outputs.set(state, new ArrayList<>(1));
+            }
+            outputs.get(state).add(word);
+            count++;
+        }
+        this.wordCount = count;
+        buildFailLinks();
+    }
+
+    public static SensitiveWordMatcher empty() {
+        return EMPTY;
+    }
+
+    public static SensitiveWordMatcher build(Collection<String> words) {
+        return words == null || words.isEmpty() ? EMPTY : new SensitiveWordMatcher(words);
+    }
+
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * 返回命中的原始敏感词，按首次命中顺序去重。
+     */
+    public List<String> findAll(String text) {
+        if (text == null || text.isEmpty() || wordCount == 0) {
+            return List.of();
+        }
+        Set<String> hits = new LinkedHashSet<>();
+        String content = text.toLowerCase();
+        int state = 0;
+        for (int i = 0; i < content.length(); i++) {
+            state = step(state, content.charAt(i));
+            int out = outputs.get(state) != null ? state : outputLinks.get(state);
+            while (out > 0) {
+                hits.addAll(outputs.get(out));
+                out = outputLinks.get(out);
+            }
+        }
+        return List.copyOf(hits);
+    }
+
+    /**
+     * 命中任意一个敏感词即返回。
+     */
+    public boolean containsAny(String text) {
+        if (text == null || text.isEmpty() || wordCount == 0) {
+            return false;
+        }
+        String content = text.toLowerCase();
+        int state = 0;
+        for (int i = 0; i < content.length(); i++) {
+            state = step(state, content.charAt(i));
+            if (outputs.get(state) != null || outputLinks.get(state) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            Integer next = transitions.get(state).get(c);
+            if (next != null) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failLinks.get(state);
+        }
+    }
+
+    private int newState() {
+        transitions.add(new HashMap<>(4));
+        failLinks.add(0);
+        outputLinks.add(-1);
+        outputs.add(null);
+        return transitions.size() - 1;
+    }
+
+    private void buildFailLinks() {
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(0).values()) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                int child = edge.getValue();
+                int fail = failLinks.get(state);
+                while (fail > 0 && !transitions.get(fail).containsKey(edge.getKey())) {
+                    fail = failLinks.get(fail);
+                }
+                Integer target = transitions.get(fail).get(edge.getKey());
+                int childFail = target != null && target != child ? target : 0;
+                failLinks.set(child, childFail);
+                outputLinks.set(child, outputs.get(childFail) != null ? childFail : outputLinks.get(childFail));
+                queue.add(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.qasystem.doc;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.qasystem.common.cache.NearCacheInvalidator;
+import com.qasystem.entity.DocSensitiveWord;
+import com.qasystem.mapper.DocSensitiveWordMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 持有当前生效的敏感词自动机。
+ * <p>
+ * 首次使用时从库中加载启用词构建；词库变更后本节点重建并原子替换，
+ * 同时通过 Redis 频道通知其他节点各自重建。匹配路径不再访问数据库。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SensitiveWordMatcherHolder {
+
+    static final String RELOAD_CHANNEL = "doc:sensitive-word:reload";
+
+    private final DocSensitiveWordMapper docSensitiveWordMapper;
+    private final NearCacheInvalidator nearCacheInvalidator;
+
+    private final AtomicReference<SensitiveWordMatcher> current = new AtomicReference<>();
+    private NearCacheInvalidator.Channel reloadChannel;
+
+    @PostConstruct
+    public void subscribe() {
+        reloadChannel = nearCacheInvalidator.register(RELOAD_CHANNEL, ignored -> reload());
+    }
+
+    public SensitiveWordMatcher get() {
+        SensitiveWordMatcher matcher = current.get();
+        if (matcher != null) {
+            return matcher;
+        }
+        synchronized (this) {
+            matcher = current.get();
+            if (matcher == null) {
+                matcher = reload();
+            }
+            return matcher;
+        }
+    }
+
+    /**
+     * 词库已变更：事务提交后（无事务则立即）重建本节点自动机并广播给其他节点。
+     */
+    public void onWordsChanged() {
+        reloadChannel.invalidate("");
+    }
+
+    /**
+     * 重建失败时保留旧自动机，避免一次数据库抖动让过滤整体失效。
+     */
+    private SensitiveWordMatcher reload() {
+        try {
+            List<String> words = docSensitiveWordMapper.selectList(new LambdaQueryWrapper<DocSensitiveWord>()
+                            .select(DocSensitiveWord::getWord)
+                            .eq(DocSensitiveWord::getEnabled, true))
+                    .stream()
+                    .map(DocSensitiveWord::getWord)
+                    .filter(Objects::nonNull)
+                    .toList();
+            SensitiveWordMatcher matcher = SensitiveWordMatcher.build(words);
+            current.set(matcher);
+            log.info("敏感词自动机已重建, 词数={}", matcher.size());
+            return matcher;
+        } catch (Exception ex) {
+            SensitiveWordMatcher previous = current.get();
+            log.error("敏感词自动机重建失败，{}", previous != null ? "继续使用旧词库" : "暂按空词库处理", ex);
+            return previous != null ? previous : SensitiveWordMatcher.empty();
+        }
+    }
+}
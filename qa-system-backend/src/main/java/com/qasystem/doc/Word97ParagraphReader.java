@@ -0,0 +1,220 @@
+package com.qasystem.doc;
+
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.LittleEndian;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * .doc（Word 97-2003）段落读取：只读取 WordDocument 与 0Table/1Table 两个流，按 FIB 中的
+ * 片段表（Clx/PlcPcd）还原正文字符，不触碰存放图片的 Data 流和 ObjectPool。
+ * <p>
+ * 段落以 \r 分隔，表格单元格结束符(0x07)和分页符(0x0C)同样视为段落结束，
+ * 因此单元格内容按文档顺序作为段落输出（与 .docx 路径一致），行结束符产生的空段落由调用方过滤；
+ * 域代码只保留域结果，其余控制字符丢弃。
+ */
+final class Word97ParagraphReader {
+
+    private static final int FIB_MAGIC = 0xA5EC;
+    private static final int FIB_MIN_VERSION = 101;
+    private static final int FLAG_ENCRYPTED = 0x0100;
+    private static final int FLAG_WHICH_TABLE_STREAM = 0x0200;
+    private static final int FIB_LW_CCP_TEXT = 3;
+    private static final int FIB_FC_LCB_CLX = 33;
+    private static final int CLX_PRC = 0x01;
+    private static final int CLX_PCDT = 0x02;
+    private static final int PCD_SIZE = 8;
+    private static final int COMPRESSED_FLAG = 0x40000000;
+    private static final int FC_MASK = 0x3FFFFFFF;
+    private static final int MAX_STREAM_LENGTH = 64 * 1024 * 1024;
+
+    private static final Charset CP1252 = Charset.forName("windows-1252");
+
+    private Word97ParagraphReader() {
+    }
+
+    static void read(Path file, Consumer<String> sink) throws IOException {
+        try (POIFSFileSystem fs = new POIFSFileSystem(file.toFile(), true)) {
+            DirectoryNode root = fs.getRoot();
+            if (!root.hasEntry("WordDocument")) {
+                throw new IOException("不是有效的Word 97-2003文档");
+            }
+            byte[] wordDocument = readStream(root, "WordDocument");
+
+            if (wordDocument.length < 64 || LittleEndian.getUShort(wordDocument, 0) != FIB_MAGIC) {
+                throw new IOException("Word文档头损坏");
+            }
+            if (LittleEndian.getUShort(wordDocument, 2) < FIB_MIN_VERSION) {
+                throw new IOException("不支持Word 95及更早版本的文档");
+            }
+            int flags = LittleEndian.getUShort(wordDocument, 0x0A);
+            if ((flags & FLAG_ENCRYPTED) != 0) {
+                throw new IOException("不支持加密的Word文档");
+            }
+
+            // FibBase(32) | csw | fibRgW | cslw | fibRgLw | cbRgFcLcb | fibRgFcLcb
+            int csw = LittleEndian.getUShort(wordDocument, 32);
+            int offset = 34 + csw * 2;
+            int cslw = LittleEndian.getUShort(wordDocument, offset);
+            int rgLwStart = offset + 2;
+            int ccpText = LittleEndian.getInt(wordDocument, rgLwStart + FIB_LW_CCP_TEXT * 4);
+            offset = rgLwStart + cslw * 4;
+            int cbRgFcLcb = LittleEndian.getUShort(wordDocument, offset);
+            if (cbRgFcLcb <= FIB_FC_LCB_CLX) {
+                throw new IOException("Word文档缺少片段表");
+            }
+            int fcLcbStart = offset + 2 + FIB_FC_LCB_CLX * 8;
+            int fcClx = LittleEndian.getInt(wordDocument, fcLcbStart);
+            int lcbClx = LittleEndian.getInt(wordDocument, fcLcbStart + 4);
+
+            String tableName = (flags & FLAG_WHICH_TABLE_STREAM) != 0 ? "1Table" : "0Table";
+            if (!root.hasEntry(tableName)) {
+                throw new IOException("Word文档缺少 " + tableName + " 流");
+            }
+            byte[] table = readStream(root, tableName);
+            if (fcClx < 0 || lcbClx <= 0 || fcClx + lcbClx > table.length) {
+                throw new IOException("Word文档片段表越界");
+            }
+
+            emitText(wordDocument, table, fcClx, lcbClx, ccpText, new ParagraphSplitter(sink));
+        }
+    }
+
+    private static void emitText(byte[] wordDocument, byte[] table, int fcClx, int lcbClx,
+                                 int ccpText, ParagraphSplitter splitter) throws IOException {
+        int pos = fcClx;
+        int end = fcClx + lcbClx;
+        while (pos < end && table[pos] == CLX_PRC) {
+            pos += 3 + LittleEndian.getShort(table, pos + 1);
+        }
+        if (pos >= end || table[pos] != CLX_PCDT) {
+            throw new IOException("Word文档片段表格式错误");
+        }
+
+        int lcb = LittleEndian.getInt(table, pos + 1);
+        int plcStart = pos + 5;
+        int pieceCount = (lcb - 4) / (4 + PCD_SIZE);
+        int pcdStart = plcStart + (pieceCount + 1) * 4;
+        int remaining = ccpText;
+
+        for (int i = 0; i < pieceCount && remaining > 0; i++) {
+            int cpStart = LittleEndian.getInt(table, plcStart + i * 4);
+            int cpEnd = LittleEndian.getInt(table, plcStart + (i + 1) * 4);
+            int length = Math.min(cpEnd - cpStart, remaining);
+            if (length <= 0) {
+                continue;
+            }
+            remaining -= length;
+
+            int fcValue = LittleEndian.getInt(table, pcdStart + i * PCD_SIZE + 2);
+            boolean compressed = (fcValue & COMPRESSED_FLAG) != 0;
+            int fc = fcValue & FC_MASK;
+            String text;
+            if (compressed) {
+                int start = fc / 2;
+                checkRange(wordDocument, start, length);
+                text = new String(wordDocument, start, length, CP1252);
+            } else {
+                checkRange(wordDocument, fc, length * 2);
+                text = new String(wordDocument, fc, length * 2, StandardCharsets.UTF_16LE);
+            }
+            splitter.accept(text);
+        }
+        splitter.finish();
+    }
+
+    private static void checkRange(byte[] data, int start, int length) throws IOException {
+        if (start < 0 || length < 0 || start + length > data.length) {
+            throw new IOException("Word文档正文片段越界");
+        }
+    }
+
+    private static byte[] readStream(DirectoryNode root, String name) throws IOException {
+        try (DocumentInputStream in = root.createDocumentInputStream(name)) {
+            return IOUtils.toByteArray(in, in.available(), MAX_STREAM_LENGTH);
+        }
+    }
+
+    /**
+     * 将片段字符流切分为段落，并处理域代码与特殊控制字符。
+     */
+    private static final class ParagraphSplitter {
+
+        private static final char FIELD_BEGIN = 0x13;
+        private static final char FIELD_SEPARATOR = 0x14;
+        private static final char FIELD_END = 0x15;
+
+        private final Consumer<String> sink;
+        private final StringBuilder paragraph = new StringBuilder();
+        // 每层域是否仍处于指令区（0x13 与 0x14 之间）
+        private final Deque<Boolean> fields = new ArrayDeque<>();
+        private int instructionDepth;
+
+        private ParagraphSplitter(Consumer<String> sink) {
+            this.sink = sink;
+        }
+
+        private void accept(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case FIELD_BEGIN -> {
+                        fields.push(Boolean.TRUE);
+                        instructionDepth++;
+                    }
+                    case FIELD_SEPARATOR -> {
+                        if (!fields.isEmpty() && fields.peek()) {
+                            fields.pop();
+                            fields.push(Boolean.FALSE);
+                            instructionDepth--;
+                        }
+                    }
+                    case FIELD_END -> {
+                        if (!fields.isEmpty() && fields.pop()) {
+                            instructionDepth--;
+                        }
+                    }
+                    default -> {
+                        if (instructionDepth == 0) {
+                            append(c);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void append(char c) {
+            switch (c) {
+                case '\r', 0x07, 0x0C -> flush();
+                case 0x0B -> paragraph.append('\n');
+                case '\t' -> paragraph.append('\t');
+                case 0x1E -> paragraph.append('-');
+                default -> {
+                    if (c >= 0x20) {
+                        paragraph.append(c);
+                    }
+                }
+            }
+        }
+
+        private void flush() {
+            sink.accept(paragraph.toString());
+            paragraph.setLength(0);
+        }
+
+        private void finish() {
+            if (!paragraph.isEmpty()) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.qasystem.doc;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Word 段落流式读取入口。
+ * <p>
+ * 按文件头魔数而不是扩展名分派：OOXML(.docx) 直接从 zip 流中 StAX 解析 word/document.xml，
+ * OLE2(.doc) 只读取 WordDocument / Table 两个流的片段表。两条路径都不会加载图片等嵌入资源，
+ * 峰值内存只与正文文字量相关。
+ */
+@Slf4j
+@Component
+public class WordParagraphReader {
+
+    /**
+     * 段落编号口径，随文档保存：1 = 只含正文段落（早期解析器），2 = 正文与表格单元格段落按文档顺序编号。
+     * 导出时按文档保存的口径回填段落，旧文档不会错位。
+     */
+    public static final int PARSER_VERSION = 2;
+
+    public static final int PARSER_VERSION_BODY_ONLY = 1;
+
+    /**
+     * 读取全部非空段落（已去除首尾空白）。
+     */
+    public List<String> readParagraphs(MultipartFile file) throws IOException {
+        List<String> paragraphs = new ArrayList<>();
+        readParagraphs(file, paragraphs::add);
+        return paragraphs;
+    }
+
+    /**
+     * 逐段回调非空段落文本（已去除首尾空白），回调顺序即文档顺序。
+     */
+    public void readParagraphs(MultipartFile file, Consumer<String> sink) throws IOException {
+        Consumer<String> emitter = raw -> {
+            String text = raw == null ? "" : raw.trim();
+            if (!text.isEmpty()) {
+                sink.accept(text);
+            }
+        };
+
+        try (InputStream in = FileMagic.prepareToCheckMagic(file.getInputStream())) {
+            FileMagic magic = FileMagic.valueOf(in);
+            switch (magic) {
+                case OOXML -> DocxParagraphReader.read(in, emitter);
+                case OLE2 -> readOle2(in, emitter);
+                default -> throw new IOException("无法识别的Word文件格式: " + magic);
+            }
+        }
+    }
+
+    /**
+     * OLE2 复合文档需要随机访问，先落到临时文件再按需读取流，避免整份文件驻留堆内存。
+     */
+    private void readOle2(InputStream in, Consumer<String> emitter) throws IOException {
+        Path tempFile = Files.createTempFile("doc-upload-", ".doc");
+        try {
+            Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            Word97ParagraphReader.read(tempFile, emitter);
+        } finally {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException ex) {
+                log.warn("删除临时文件失败: {}", tempFile, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.qasystem.dto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DocBatchRewriteRequest - 整篇/多段落批量AI降重请求
+ *
+ * 🎯 作用：一次性对文档中选中的多个段落并行改写，改写完成后整体保存为一个新版本。
+ *
+ * 📝 字段说明：
+ * - documentId: 文档ID（REST 接口取路径参数）
+ * - paragraphIds: 要改写的段落ID，为空时按 minSimilarity 选择
+ * - minSimilarity: 只改写重复率不低于该值的段落（0~1，0.3 即重复率 30%），paragraphIds 与它都为空时改写全文
+ * - concurrency: 本次同时在途的段落数（1~16），不超过 qa.doc.rewrite.batch-concurrency，为空时取该配置
+ * - style: 改写风格，同单段改写
+ * - remark: 保存版本时的备注
+ * - forceRefresh: 跳过改写缓存，全部重新生成
+ *
+ * 💬 请求示例：
+ * {
+ *   "documentId": 100,
+ *   "minSimilarity": 0.3,
+ *   "style": "ACADEMIC",
+ *   "remark": "批量降重"
+ * }
+ */
+@Data
+public class DocBatchRewriteRequest {
+
+    private Long documentId;
+
+    private List<Long> paragraphIds;
+
+    @DecimalMin(value = "0", message = "重复率阈值须在 0~1 之间")
+    @DecimalMax(value = "1", message = "重复率阈值须在 0~1 之间")
+    private Double minSimilarity;
+
+    @Min(value = 1, message = "并发数不能小于 1")
+    @Max(value = 16, message = "并发数不能大于 16")
+    private Integer concurrency;
+
+    private String style = "ACADEMIC";
+
+    private String remark;
+
+    private boolean forceRefresh;
+}
@@ -66,4 +66,10 @@ public class DocRewriteRequest {
      * - LOGIC_ENHANCE: 逻辑增强，优化条理结构
      */
     private String style = "ACADEMIC";
+
+    /**
+     * 是否跳过改写缓存（默认false）
+     * 相同原文+风格会直接返回上次的改写结果；对结果不满意、想重新生成时传 true
+     */
+    private boolean forceRefresh;
 }
@@ -0,0 +1,45 @@
+package com.qasystem.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI会话索引实体类（每个会话一行，对话内容仍在 ai_conversation）
+ */
+@Data
+@TableName("ai_session")
+public class AiSession {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /** 用户ID */
+    private Long userId;
+
+    /** 会话ID */
+    private String sessionId;
+
+    /** 会话标题 */
+    private String title;
+
+    /** 最后一轮对话时间 */
+    private LocalDateTime lastAt;
+
+    /** 对话轮数 */
+    private Integer turnCount;
+
+    /** 会话内是否有收藏的回答 */
+    private Boolean isBookmarked;
+
+    /** 最新一轮对话记录ID */
+    private Long lastConversationId;
+
+    /** 最新一轮用户消息（截断，会话列表预览用） */
+    private String lastUserMessage;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
@@ -47,6 +47,11 @@ public class DocDocument {
      */
     private String algorithmDetail;
 
+    /**
+     * 段落编号口径（见 WordParagraphReader.PARSER_VERSION），1 表示只含正文段落
+     */
+    private Integer parserVersion;
+
     /**
      * 创建时间
      */
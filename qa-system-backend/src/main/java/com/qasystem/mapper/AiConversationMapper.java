@@ -24,9 +24,10 @@ import java.util.List;
  * 🏗️ 技术架构：
  * - 继承自MyBatis-Plus的BaseMapper<AiConversation>
  * - BaseMapper提供基础的增删改查方法
- * - 我们添加了2个自定义SQL查询方法：
+ * - 我们添加了3个自定义SQL查询方法：
  *   1. getSessionHistory：查询某个会话的完整历史
- *   2. getUserSessions：查询用户的所有会话列表
+ *   2. getRecentSessionTurns / getSessionTurnsAfter：只读取部分轮次，供对话上下文和滚动摘要使用
+ * - 会话列表改由 AiSessionMapper 读 ai_session 表，不再在这里对 ai_conversation 做 GROUP BY
  * 
  * 📊 对应数据库表: ai_conversation
  * 
@@ -78,73 +79,40 @@ public interface AiConversationMapper extends BaseMapper<AiConversation> {
      */
     @Select("SELECT * FROM ai_conversation WHERE user_id = #{userId} AND session_id = #{sessionId} ORDER BY created_at ASC")
     List<AiConversation> getSessionHistory(Long userId, String sessionId);
-    
+
     /**
-     * 获取用户的所有会话列表
-     * 
+     * 获取会话最近的若干轮对话（按时间降序）
+     *
      * 🎯 方法作用：
-     * 查询某个用户的所有对话会话，每个会话只返回最新的一条记录。
-     * 就像在ChatGPT左侧边栏中显示的对话列表，每个对话显示标题和最后一次交互时间。
-     * 
-     * 🔍 查询逻辑详解：
-     * 
-     * 这是一个复杂SQL，使用了子查询和内连接：
-     * 
-     * 1. 子查询（t2）：
-     *    - 对用户的所有对话按session_id分组
-     *    - 找出每个会话中最新的一条记录的时间（MAX(created_at)）
-     * 
-     * 2. 主查询（t1）：
-     *    - 查询ai_conversation表
-     *    - 通过INNER JOIN关联子查询结果
-     *    - 只选择每个会话中最新的那条记录
-     * 
-     * 3. 排序和限制：
-     *    - 按created_at降序排列（最新的会话在前）
-     *    - LIMIT #{limit}限制返回数量（例如20个最近的会话）
-     * 
-     * 📝 使用场景：
-     * 1. 对话列表页面：显示用户的所有对话
-     * 2. 侧边栏导航：就像ChatGPT左侧的对话列表
-     * 3. 对话管理：用户可以选择、删除、重命名对话
-     * 
-     * 📝 返回数据示例：
-     * [
-     *   {sessionId: "uuid-1", sessionTitle: "如何学习Java", userMessage: "我是初学者...", createdAt: "2024-01-20"},
-     *   {sessionId: "uuid-2", sessionTitle: "高等数学问题", userMessage: "请问导数...", createdAt: "2024-01-19"},
-     *   {sessionId: "uuid-3", sessionTitle: "编程练习", userMessage: "写一个排序算法", createdAt: "2024-01-18"}
-     * ]
-     * 
+     * 构建 AI 上下文只需要最近 max-history-size 轮，用 LIMIT 取最新的几条，
+     * 不像 getSessionHistory 那样把整个会话读出来；只查询用户问题和AI回答两列。
+     *
+     * 🔍 走 idx_user_session_created(user_id, session_id, created_at) 倒序扫描，会话再长也只读 limit 行。
+     *
      * @param userId 用户ID
-     * @param limit 返回数量限制（例如20）
-     * @return List<AiConversation> 会话列表（每个会话只返回最新一条）
-     *         - 按时间降序排列（最新的在最前）
-     *         - 包含sessionId, sessionTitle, userMessage, createdAt等字段
-     * 
-     * ⚠️ 注意事项：
-     * 1. 这是一个复杂SQL，使用了子查询和JOIN，执行效率需要关注
-     * 2. 建议在session_id和user_id上创建索引以提高性能
-     * 3. limit参数应该有合理的范围限制（1-100）
-     * 4. 如果用户有大量对话，建议使用分页查询
-     * 5. sessionTitle通常是第一条消息的简要总结，用于显示在列表中
+     * @param sessionId 会话标识
+     * @param limit 最多返回的轮数
+     * @return 最近的对话记录（最新的在前）
+     */
+    @Select("SELECT id, user_message, ai_response, created_at FROM ai_conversation "
+            + "WHERE user_id = #{userId} AND session_id = #{sessionId} "
+            + "ORDER BY created_at DESC, id DESC LIMIT #{limit}")
+    List<AiConversation> getRecentSessionTurns(Long userId, String sessionId, int limit);
+
+    /**
+     * 获取会话中ID大于 afterId 的若干轮对话（按ID升序）
+     *
+     * 🎯 方法作用：
+     * 滚动摘要在后台把尚未折叠的较早轮次合并进摘要时使用，只查询用户问题和AI回答两列。
+     *
+     * @param userId 用户ID
+     * @param sessionId 会话标识
+     * @param afterId 已折叠进摘要的最后一条记录ID，0 表示从头开始
+     * @param limit 最多返回的轮数
+     * @return 对话记录（最早的在前）
      */
-    @Select("""
-        SELECT 
-            t1.id,
-            t1.session_id,
-            t1.session_title,
-            t1.user_message,
-            t1.created_at
-        FROM ai_conversation t1
-        INNER JOIN (
-            SELECT session_id, MAX(created_at) as max_created_at
-            FROM ai_conversation
-            WHERE user_id = #{userId}
-            GROUP BY session_id
-        ) t2 ON t1.session_id = t2.session_id AND t1.created_at = t2.max_created_at
-        WHERE t1.user_id = #{userId}
-        ORDER BY t1.created_at DESC
-        LIMIT #{limit}
-    """)
-    List<AiConversation> getUserSessions(Long userId, Integer limit);
+    @Select("SELECT id, user_message, ai_response FROM ai_conversation "
+            + "WHERE user_id = #{userId} AND session_id = #{sessionId} AND id > #{afterId} "
+            + "ORDER BY id ASC LIMIT #{limit}")
+    List<AiConversation> getSessionTurnsAfter(Long userId, String sessionId, long afterId, int limit);
 }
@@ -0,0 +1,69 @@
+package com.qasystem.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.qasystem.entity.AiSession;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * AiSessionMapper接口 - AI会话索引数据访问层
+ *
+ * 🎯 作用说明：
+ * ai_session 表每个会话一行（标题、最后对话时间、轮数、收藏标记、最新一轮的记录ID与用户消息），
+ * 侧边栏会话列表和保存对话时的标题查询都只读这张表，不再对 ai_conversation 做 GROUP BY 自连接。
+ *
+ * 🔍 索引：
+ * - uk_user_session(user_id, session_id)：按会话定位，标题查询、upsert 都走它
+ * - idx_user_last_at(user_id, last_at, ...)：会话列表按 last_at 倒序范围扫描，最多回表 limit 行取预览列
+ *
+ * ⚠️ 注意：
+ * 这张表由 AiAssistantService 在保存对话、重命名、删除会话、收藏时增量维护，
+ * 不要绕过 service 直接改 ai_conversation 的会话数据。
+ */
+@Mapper
+public interface AiSessionMapper extends BaseMapper<AiSession> {
+
+    /**
+     * 用户最近的会话（按最后对话时间降序），走 idx_user_last_at 范围扫描
+     */
+    @Select("SELECT session_id, title, last_at, turn_count, is_bookmarked, last_conversation_id, last_user_message "
+            + "FROM ai_session WHERE user_id = #{userId} ORDER BY last_at DESC LIMIT #{limit}")
+    List<AiSession> listRecent(Long userId, int limit);
+
+    /**
+     * 会话标题，会话不存在时返回 null
+     */
+    @Select("SELECT title FROM ai_session WHERE user_id = #{userId} AND session_id = #{sessionId}")
+    String findTitle(Long userId, String sessionId);
+
+    /**
+     * 记录新的一轮对话：会话不存在则以 title 新建，已存在则轮数加一并推进最后对话时间（已有标题不变）；
+     * 最新一轮的记录ID与用户消息只在记录ID更大时覆盖（预览列先于记录ID赋值，比较的是旧值）
+     */
+    @Insert("INSERT INTO ai_session (user_id, session_id, title, last_at, turn_count, is_bookmarked, "
+            + "last_conversation_id, last_user_message) "
+            + "VALUES (#{userId}, #{sessionId}, #{title}, #{lastAt}, 1, 0, #{conversationId}, #{userMessage}) "
+            + "ON DUPLICATE KEY UPDATE turn_count = turn_count + 1, last_at = GREATEST(last_at, VALUES(last_at)), "
+            + "title = IFNULL(title, VALUES(title)), "
+            + "last_user_message = IF(VALUES(last_conversation_id) > IFNULL(last_conversation_id, 0), "
+            + "VALUES(last_user_message), last_user_message), "
+            + "last_conversation_id = GREATEST(IFNULL(last_conversation_id, 0), VALUES(last_conversation_id))")
+    int recordTurn(Long userId, String sessionId, String title, LocalDateTime lastAt,
+                   Long conversationId, String userMessage);
+
+    @Update("UPDATE ai_session SET title = #{title} WHERE user_id = #{userId} AND session_id = #{sessionId}")
+    int updateTitle(Long userId, String sessionId, String title);
+
+    /**
+     * 按会话内回答的收藏情况重算收藏标记
+     */
+    @Update("UPDATE ai_session SET is_bookmarked = EXISTS ("
+            + "SELECT 1 FROM ai_conversation c WHERE c.user_id = #{userId} AND c.session_id = #{sessionId} AND c.is_bookmarked = 1"
+            + ") WHERE user_id = #{userId} AND session_id = #{sessionId}")
+    int refreshBookmarked(Long userId, String sessionId);
+}
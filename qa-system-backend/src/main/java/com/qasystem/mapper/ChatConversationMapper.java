@@ -42,14 +42,4 @@ public interface ChatConversationMapper extends BaseMapper<ChatConversation> {
                 .eq(ChatConversation::getTargetId, groupId)
                 .eq(ChatConversation::getType, "GROUP"));
     }
-
-    /**
-     * 获取用户总未读数
-     */
-    default int getTotalUnreadCount(Long userId) {
-        List<ChatConversation> list = selectList(new LambdaQueryWrapper<ChatConversation>()
-                .eq(ChatConversation::getUserId, userId)
-                .gt(ChatConversation::getUnreadCount, 0));
-        return list.stream().mapToInt(ChatConversation::getUnreadCount).sum();
-    }
 }
@@ -23,6 +23,15 @@ public interface ChatGroupMemberMapper extends BaseMapper<ChatGroupMember> {
                 .orderByAsc(ChatGroupMember::getJoinTime));
     }
 
+    /**
+     * 只取群成员的用户ID，用于消息推送
+     */
+    default List<Long> findUserIdsByGroupId(Long groupId) {
+        return selectObjs(new LambdaQueryWrapper<ChatGroupMember>()
+                .select(ChatGroupMember::getUserId)
+                .eq(ChatGroupMember::getGroupId, groupId));
+    }
+
     /**
      * 获取用户加入的群
      */
@@ -7,6 +7,8 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.qasystem.entity.ChatGroupMessage;
 import org.apache.ibatis.annotations.Mapper;
 
+import java.util.List;
+
 /**
  * 群消息Mapper
  */
@@ -23,6 +25,20 @@ public interface ChatGroupMessageMapper extends BaseMapper<ChatGroupMessage> {
                 .orderByDesc(ChatGroupMessage::getCreateTime));
     }
 
+    /**
+     * 游标分页获取群消息（按ID倒序，不统计总数），走 idx_group_id_id(group_id, id)
+     *
+     * @param beforeId 只取ID小于该值的消息，为空取最新的
+     */
+    default List<ChatGroupMessage> findByGroupIdBefore(Long groupId, Long beforeId, int limit) {
+        return selectList(new LambdaQueryWrapper<ChatGroupMessage>()
+                .eq(ChatGroupMessage::getGroupId, groupId)
+                .eq(ChatGroupMessage::getIsRecalled, false)
+                .lt(beforeId != null, ChatGroupMessage::getId, beforeId)
+                .orderByDesc(ChatGroupMessage::getId)
+                .last("LIMIT " + limit));
+    }
+
     /**
      * 获取群最新消息
      */
@@ -6,6 +6,8 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.qasystem.entity.ChatMessage;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
 
@@ -37,6 +39,35 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
                 .orderByDesc(ChatMessage::getCreateTime));
     }
 
+    /**
+     * 游标分页获取两人之间的消息（按ID倒序，不统计总数）
+     * 两个方向各自走 idx_sender_receiver_id(sender_id, receiver_id, id) 取前 limit 条再合并，
+     * 避免 OR 条件导致的全索引扫描；翻得越深也不会变慢。
+     *
+     * @param beforeId 只取ID小于该值的消息，为空取最新的
+     */
+    @Select("""
+            <script>
+            SELECT * FROM (
+                (SELECT * FROM chat_message
+                 WHERE sender_id = #{userId1} AND receiver_id = #{userId2} AND is_recalled = 0 AND deleted = 0
+                 <if test="beforeId != null">AND id &lt; #{beforeId}</if>
+                 ORDER BY id DESC LIMIT #{limit})
+                UNION
+                (SELECT * FROM chat_message
+                 WHERE sender_id = #{userId2} AND receiver_id = #{userId1} AND is_recalled = 0 AND deleted = 0
+                 <if test="beforeId != null">AND id &lt; #{beforeId}</if>
+                 ORDER BY id DESC LIMIT #{limit})
+            ) t
+            ORDER BY id DESC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<ChatMessage> findMessagesBetweenUsersBefore(@Param("userId1") Long userId1,
+                                                     @Param("userId2") Long userId2,
+                                                     @Param("beforeId") Long beforeId,
+                                                     @Param("limit") int limit);
+
     /**
      * 标记消息为已读
      */
@@ -5,7 +5,10 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.qasystem.entity.Friend;
 import org.apache.ibatis.annotations.Mapper;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 好友关系Mapper
@@ -23,6 +26,16 @@ public interface FriendMapper extends BaseMapper<Friend> {
                 .orderByDesc(Friend::getUpdateTime));
     }
 
+    /**
+     * 把该用户加为好友（且未拉黑）的用户ID，用于推送该用户的在线状态
+     */
+    default List<Long> findUserIdsByFriendId(Long friendId) {
+        return selectObjs(new LambdaQueryWrapper<Friend>()
+                .select(Friend::getUserId)
+                .eq(Friend::getFriendId, friendId)
+                .eq(Friend::getStatus, "ACCEPTED"));
+    }
+
     /**
      * 检查是否是好友关系
      */
@@ -33,6 +46,21 @@ public interface FriendMapper extends BaseMapper<Friend> {
                 .eq(Friend::getStatus, "ACCEPTED")) > 0;
     }
 
+    /**
+     * candidateIds 中已是该用户好友的ID（一次查询，用于批量标记好友关系）
+     */
+    default Set<Long> findFriendIdsAmong(Long userId, Collection<Long> candidateIds) {
+        if (candidateIds == null || candidateIds.isEmpty()) {
+            return Set.of();
+        }
+        List<Long> friendIds = selectObjs(new LambdaQueryWrapper<Friend>()
+                .select(Friend::getFriendId)
+                .eq(Friend::getUserId, userId)
+                .eq(Friend::getStatus, "ACCEPTED")
+                .in(Friend::getFriendId, candidateIds));
+        return new HashSet<>(friendIds);
+    }
+
     /**
      * 获取好友关系
      */
@@ -5,7 +5,10 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.qasystem.entity.FriendRequest;
 import org.apache.ibatis.annotations.Mapper;
 
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 好友申请Mapper
@@ -49,4 +52,34 @@ public interface FriendRequestMapper extends BaseMapper<FriendRequest> {
                 .eq(FriendRequest::getToUserId, toUserId)
                 .eq(FriendRequest::getStatus, "PENDING"));
     }
+
+    /**
+     * fromUserId 发给 toUserIds 中哪些人的申请仍待处理（一次查询）
+     */
+    default Set<Long> findPendingToUserIds(Long fromUserId, Collection<Long> toUserIds) {
+        if (toUserIds == null || toUserIds.isEmpty()) {
+            return Set.of();
+        }
+        List<Long> ids = selectObjs(new LambdaQueryWrapper<FriendRequest>()
+                .select(FriendRequest::getToUserId)
+                .eq(FriendRequest::getFromUserId, fromUserId)
+                .in(FriendRequest::getToUserId, toUserIds)
+                .eq(FriendRequest::getStatus, "PENDING"));
+        return new HashSet<>(ids);
+    }
+
+    /**
+     * fromUserIds 中哪些人发给 toUserId 的申请仍待处理（一次查询）
+     */
+    default Set<Long> findPendingFromUserIds(Long toUserId, Collection<Long> fromUserIds) {
+        if (fromUserIds == null || fromUserIds.isEmpty()) {
+            return Set.of();
+        }
+        List<Long> ids = selectObjs(new LambdaQueryWrapper<FriendRequest>()
+                .select(FriendRequest::getFromUserId)
+                .eq(FriendRequest::getToUserId, toUserId)
+                .in(FriendRequest::getFromUserId, fromUserIds)
+                .eq(FriendRequest::getStatus, "PENDING"));
+        return new HashSet<>(ids);
+    }
 }
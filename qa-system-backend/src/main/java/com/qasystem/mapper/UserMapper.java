@@ -3,7 +3,10 @@ package com.qasystem.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.qasystem.entity.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -197,5 +200,49 @@ public interface UserMapper extends BaseMapper<User> {
                 .eq(User::getEmail, email))
         );
     }
-}
 
+    /**
+     * 按用户名/姓名前缀搜索用户（聊天加好友）
+     *
+     * 🎯 方法作用：
+     * 搜索框每输入一个字都可能调用，所以只做前缀匹配（LIKE 'kw%'），
+     * 用户名、姓名两个方向各自走自己的索引取前 limit 条再合并，避免 '%kw%' 与 OR 条件导致的全表扫描。
+     * 中文姓名常按名字（不含姓）搜索，传入 phrase 时再走 idx_real_name_ngram 全文索引匹配姓名中任意位置。
+     *
+     * ⚠️ 注意事项：
+     * 1. prefix 需由调用方转义 % 和 _
+     * 2. 只查询搜索结果需要展示的字段，不返回密码
+     * 3. ngram 分词长度为 2，phrase 至少 2 个字才有意义，更短时传 null
+     *
+     * @param prefix    已转义的关键词
+     * @param phrase    全文检索短语（已去掉双引号），为 null 时只做前缀匹配
+     * @param excludeId 排除的用户ID（搜索人自己）
+     * @param limit     返回条数上限
+     */
+    @Select("""
+            <script>
+            SELECT * FROM (
+                (SELECT id, username, real_name, avatar, role FROM `user`
+                 WHERE username LIKE CONCAT(#{prefix}, '%') AND id &lt;&gt; #{excludeId} AND deleted = 0
+                 ORDER BY username LIMIT #{limit})
+                UNION
+                (SELECT id, username, real_name, avatar, role FROM `user`
+                 WHERE real_name LIKE CONCAT(#{prefix}, '%') AND id &lt;&gt; #{excludeId} AND deleted = 0
+                 ORDER BY real_name LIMIT #{limit})
+                <if test="phrase != null">
+                UNION
+                (SELECT id, username, real_name, avatar, role FROM `user`
+                 WHERE MATCH(real_name) AGAINST(CONCAT('"', #{phrase}, '"') IN BOOLEAN MODE)
+                   AND id &lt;&gt; #{excludeId} AND deleted = 0
+                 LIMIT #{limit})
+                </if>
+            ) t
+            ORDER BY username
+            LIMIT #{limit}
+            </script>
+            """)
+    List<User> searchByPrefix(@Param("prefix") String prefix,
+                              @Param("phrase") String phrase,
+                              @Param("excludeId") Long excludeId,
+                              @Param("limit") int limit);
+}
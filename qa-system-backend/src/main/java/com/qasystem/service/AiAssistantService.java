@@ -5,7 +5,16 @@ import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qasystem.ai.AiConversationWriter;
+import com.qasystem.ai.AiSessionCache;
+import com.qasystem.ai.AiStageMetrics;
+import com.qasystem.ai.AnswerSingleFlight;
+import com.qasystem.ai.ConversationMemoryManager;
+import com.qasystem.ai.ConversationWindowStore;
+import com.qasystem.ai.LlmExecutor;
+import com.qasystem.ai.PromptTokenEstimator;
 import com.qasystem.ai.QuestionCategory;
+import com.qasystem.ai.TokenFrameBuffer;
 import com.qasystem.ai.rag.InterviewSceneRouter;
 import com.qasystem.ai.rag.RagContextResult;
 import com.qasystem.ai.rag.RagPipelineService;
@@ -13,7 +22,9 @@ import com.qasystem.config.AiAssistantProperties;
 import com.qasystem.dto.AiChatRequest;
 import com.qasystem.dto.AiChatResponse;
 import com.qasystem.entity.AiConversation;
+import com.qasystem.entity.AiSession;
 import com.qasystem.mapper.AiConversationMapper;
+import com.qasystem.mapper.AiSessionMapper;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
@@ -22,25 +33,29 @@ import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.output.Response;
-import io.micrometer.core.instrument.Counter;
-import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -51,26 +66,28 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConversation> {
 
-    private static final String CACHE_KEY_PREFIX = "ai:conversation:";
-    private static final int CACHE_EXPIRE_HOURS = 24;
     private static final int DEFAULT_SESSION_LIMIT = 20;
-    private static final int MAX_SESSION_LIMIT = 100;
+    private static final int MAX_SESSION_LIMIT = AiSessionCache.MAX_SESSIONS;
 
-    private static final String METRIC_AI_REQUEST_LATENCY_MS = "qa_ai_request_latency_ms";
-    private static final String METRIC_AI_TOKENS_TOTAL = "qa_ai_tokens_total";
-    private static final String METRIC_RAG_RECALL_COUNT = "qa_rag_recall_count";
-    private static final String METRIC_RAG_HIT_RATE = "qa_rag_hit_rate";
-    private static final String METRIC_RAG_NO_CONTEXT_RATE = "qa_rag_no_context_rate";
 
     private final ChatLanguageModel chatLanguageModel;
     private final StreamingChatLanguageModel streamingChatLanguageModel;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final ConversationWindowStore conversationWindowStore;
+    private final ConversationMemoryManager conversationMemoryManager;
+    private final LlmExecutor llmExecutor;
+    private final AnswerSingleFlight answerSingleFlight;
+    private final AiStageMetrics aiStageMetrics;
     private final AiConversationMapper conversationMapper;
+    private final AiSessionMapper aiSessionMapper;
+    private final AiSessionCache aiSessionCache;
+    private final AiConversationWriter aiConversationWriter;
     private final RagPipelineService ragPipelineService;
     private final AiAssistantProperties aiAssistantProperties;
-    private final MeterRegistry meterRegistry;
     private final ObjectMapper objectMapper;
     private final InterviewSceneRouter interviewSceneRouter;
+    private final ThreadPoolTaskExecutor aiStreamExecutor;
+    private final ScheduledExecutorService aiStreamFrameScheduler;
+    private final ThreadPoolTaskExecutor aiStreamFrameExecutor;
 
     private final Map<QuestionCategory, List<AiAssistantProperties.RecommendationItem>> fallbackRecommendationRules =
             buildFallbackRecommendationRules();
@@ -80,33 +97,18 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
         String message = normalizeMessage(request.getMessage());
         String sessionId = resolveSessionId(request.getSessionId());
         QuestionCategory category = QuestionCategory.detect(message);
-        RagContextResult ragContext = ragPipelineService.buildContext(
-                message,
-                request.getKnowledgeBaseId(),
-                request.getKnowledgePoint(),
-                request.getMessageType()
-        );
-
-        int tokensUsed = 0;
-        String aiResponse;
-
-        try {
-            List<ChatMessage> messages = buildConversationHistory(userId, sessionId, message, ragContext);
-            Response<AiMessage> response = generateWithRetry(messages);
-            aiResponse = safeModelResponse(response);
-            tokensUsed = extractTokenUsage(response);
-        } catch (Exception ex) {
-            log.error("AI chat failed, use degraded response. userId={}, sessionId={}", userId, sessionId, ex);
-            aiResponse = buildFallbackAnswer(ragContext);
-        }
 
-        aiResponse = appendCitations(aiResponse, ragContext);
+        AnswerSingleFlight.SharedAnswer answer = answer(userId, sessionId, message, request);
+        RagContextResult ragContext = answer.ragContext();
+        int tokensUsed = answer.tokensUsed();
+        String aiResponse = appendCitations(answer.answer(), ragContext);
 
         List<AiChatResponse.ResourceRecommendation> recommendations = null;
         if (Boolean.TRUE.equals(request.getNeedRecommendation())) {
             recommendations = generateRecommendations(message, category);
         }
 
+        long persistStart = System.nanoTime();
         AiConversation conversation = saveConversation(
                 userId,
                 sessionId,
@@ -118,7 +120,9 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
                 tokensUsed
         );
 
-        cacheConversationHistory(userId, sessionId);
+        conversationWindowStore.append(userId, sessionId, conversation.getId(), message, aiResponse);
+        aiStageMetrics.record(AiStageMetrics.Stage.PERSISTENCE, ragContext, System.nanoTime() - persistStart);
+        conversationMemoryManager.onTurnCompleted(userId, sessionId);
         recordMetrics(startNanos, tokensUsed, ragContext);
 
         return AiChatResponse.builder()
@@ -136,11 +140,65 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
                 .build();
     }
 
-    public SseEmitter chatStream(Long userId, AiChatRequest request) {
-        long startNanos = System.nanoTime();
-        String message = normalizeMessage(request.getMessage());
-        String sessionId = resolveSessionId(request.getSessionId());
-        QuestionCategory category = QuestionCategory.detect(message);
+    /**
+     * 模型调用被限流或失败：携带本请求自己的降级回答。以异常结束合并计算，降级回答不会共享给合并进来的请求
+     */
+    private static final class AnswerDegradedException extends RuntimeException {
+
+        private final AnswerSingleFlight.SharedAnswer fallback;
+
+        private AnswerDegradedException(AnswerSingleFlight.SharedAnswer fallback, Throwable cause) {
+            super(cause.getMessage(), cause);
+            this.fallback = fallback;
+        }
+    }
+
+    /**
+     * 没有历史的新会话先尝试与进行中的相同请求合并；合并失败（超时、leader 被限流或出错）时自行计算
+     */
+    private AnswerSingleFlight.SharedAnswer answer(Long userId, String sessionId, String message, AiChatRequest request) {
+        if (!isShareable(userId, sessionId, request)) {
+            return generateAnswer(userId, sessionId, message, request);
+        }
+        String key = answerSingleFlight.keyOf(message, request.getMessageType(),
+                request.getKnowledgeBaseId(), request.getKnowledgePoint());
+        AnswerSingleFlight.Joined joined = answerSingleFlight.join(key, null,
+                publish -> CompletableFuture.completedFuture(generateModelAnswer(userId, sessionId, message, request)));
+        try {
+            AnswerSingleFlight.SharedAnswer shared = joined.answer()
+                    .get(answerSingleFlight.waitTimeoutMillis(), TimeUnit.MILLISECONDS);
+            // token 只记在实际调用模型的请求上
+            return joined.leader() ? shared : new AnswerSingleFlight.SharedAnswer(shared.ragContext(), shared.answer(), 0);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("AI请求被中断", ex);
+        } catch (ExecutionException ex) {
+            if (joined.leader()) {
+                if (ex.getCause() instanceof AnswerDegradedException degraded) {
+                    return degraded.fallback;
+                }
+                throw ex.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(ex.getCause());
+            }
+            log.warn("Shared AI answer failed, compute locally. userId={}, reason={}", userId, ex.getCause().getMessage());
+        } catch (TimeoutException ex) {
+            log.warn("Shared AI answer timeout, compute locally. userId={}", userId);
+        }
+        return generateAnswer(userId, sessionId, message, request);
+    }
+
+    private AnswerSingleFlight.SharedAnswer generateAnswer(Long userId, String sessionId, String message, AiChatRequest request) {
+        try {
+            return generateModelAnswer(userId, sessionId, message, request);
+        } catch (AnswerDegradedException ex) {
+            return ex.fallback;
+        }
+    }
+
+    /**
+     * 检索并调用模型；模型被限流或失败时抛出带降级回答的 {@link AnswerDegradedException}
+     */
+    private AnswerSingleFlight.SharedAnswer generateModelAnswer(Long userId, String sessionId, String message,
+                                                               AiChatRequest request) {
         RagContextResult ragContext = ragPipelineService.buildContext(
                 message,
                 request.getKnowledgeBaseId(),
@@ -148,88 +206,291 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
                 request.getMessageType()
         );
 
+        try {
+            List<ChatMessage> messages = buildConversationHistory(userId, sessionId, message, ragContext);
+            long generationStart = System.nanoTime();
+            Response<AiMessage> response = llmExecutor.generate(chatLanguageModel, messages);
+            aiStageMetrics.record(AiStageMetrics.Stage.GENERATION, ragContext, System.nanoTime() - generationStart);
+            return new AnswerSingleFlight.SharedAnswer(ragContext, safeModelResponse(response), extractTokenUsage(response));
+        } catch (LlmExecutor.RejectedException ex) {
+            log.warn("AI chat shed, use degraded response. userId={}, sessionId={}, reason={}", userId, sessionId, ex.getMessage());
+            throw new AnswerDegradedException(degradedAnswer(ragContext), ex);
+        } catch (Exception ex) {
+            log.error("AI chat failed, use degraded response. userId={}, sessionId={}", userId, sessionId, ex);
+            throw new AnswerDegradedException(degradedAnswer(ragContext), ex);
+        }
+    }
+
+    private AnswerSingleFlight.SharedAnswer degradedAnswer(RagContextResult ragContext) {
+        return new AnswerSingleFlight.SharedAnswer(ragContext, buildFallbackAnswer(ragContext), 0);
+    }
+
+    /**
+     * 只有不带历史的请求才能共享回答，带历史时提示词因人而异
+     */
+    private boolean isShareable(Long userId, String sessionId, AiChatRequest request) {
+        if (!aiAssistantProperties.isSingleFlightEnabled()) {
+            return false;
+        }
+        return !StringUtils.hasText(request.getSessionId())
+                || conversationWindowStore.recentTurns(userId, sessionId).isEmpty();
+    }
+
+    /**
+     * 流式对话：先推 session 事件并立即返回，检索与生成在 aiStreamExecutor 上异步进行，
+     * 期间推送 progress 事件；token 按时间/长度窗口合帧后以 message 事件推送，完成后推 done。
+     */
+    public SseEmitter chatStream(Long userId, AiChatRequest request) {
+        long startNanos = System.nanoTime();
+        String message = normalizeMessage(request.getMessage());
+        String sessionId = resolveSessionId(request.getSessionId());
+
         SseEmitter emitter = new SseEmitter(300000L);
-        StringBuilder fullResponse = new StringBuilder();
+        emitter.onTimeout(() -> {
+            log.warn("SSE timeout, userId={}, sessionId={}", userId, sessionId);
+            emitter.complete();
+        });
 
         try {
-            List<ChatMessage> messages = buildConversationHistory(userId, sessionId, message, ragContext);
             emitter.send(SseEmitter.event().name("session").data(Map.of("sessionId", sessionId)));
+            aiStreamExecutor.execute(() -> streamAnswer(userId, request, message, sessionId, startNanos, emitter));
+        } catch (RejectedExecutionException ex) {
+            log.warn("SSE stream rejected, executor saturated. userId={}, sessionId={}", userId, sessionId);
+            rejectStream(emitter);
+        } catch (Exception ex) {
+            log.error("SSE init failed", ex);
+            emitter.completeWithError(ex);
+        }
+        return emitter;
+    }
 
-            streamingChatLanguageModel.generate(messages, new StreamingResponseHandler<>() {
-
-                @Override
-                public void onNext(String token) {
-                    try {
-                        fullResponse.append(token);
-                        emitter.send(SseEmitter.event().name("message").data(token));
-                    } catch (Exception ex) {
-                        log.error("SSE send token failed", ex);
-                        emitter.completeWithError(ex);
-                    }
+    private void streamAnswer(Long userId,
+                              AiChatRequest request,
+                              String message,
+                              String sessionId,
+                              long startNanos,
+                              SseEmitter emitter) {
+        try {
+            sendEvent(emitter, "progress", Map.of("stage", "retrieving"));
+            QuestionCategory category = QuestionCategory.detect(message);
+            TokenFrameBuffer frames = new TokenFrameBuffer(
+                    frame -> sendEvent(emitter, "message", frame),
+                    aiStreamFrameScheduler,
+                    aiStreamFrameExecutor,
+                    aiAssistantProperties.getStreamFrameMaxChars(),
+                    aiAssistantProperties.getStreamFrameWindowMillis()
+            );
+            Consumer<RagContextResult> onRetrieved = ragContext -> sendEvent(emitter, "progress", Map.of(
+                    "stage", "generating",
+                    "interviewScene", ragContext.sceneCode(),
+                    "retrievalMode", ragContext.retrievalMode().name(),
+                    "ragRecallCount", ragContext.recallCount()
+            ));
+
+            CompletableFuture<AnswerSingleFlight.SharedAnswer> answer;
+            AtomicBoolean computed = new AtomicBoolean(true);
+            if (isShareable(userId, sessionId, request)) {
+                // 相同问题进行中时直接订阅它的 token 流
+                String key = answerSingleFlight.keyOf(message, request.getMessageType(),
+                        request.getKnowledgeBaseId(), request.getKnowledgePoint());
+                AtomicBoolean received = new AtomicBoolean();
+                AnswerSingleFlight.Joined joined = answerSingleFlight.join(key, token -> {
+                            received.set(true);
+                            frames.append(token);
+                        },
+                        publish -> generateStreaming(userId, sessionId, message, request, onRetrieved, publish));
+                answer = joined.answer();
+                if (!joined.leader()) {
+                    computed.set(false);
+                    // leader 被限流、失败或等待超时且还没收到任何 token 时自行计算，不共享 leader 的降级回答
+                    answer = answer.exceptionallyComposeAsync(error -> {
+                        if (received.get()) {
+                            return CompletableFuture.failedFuture(error);
+                        }
+                        log.warn("Shared AI stream failed, compute locally. userId={}, reason={}", userId, error.getMessage());
+                        computed.set(true);
+                        return generateStreaming(userId, sessionId, message, request, onRetrieved, frames::append);
+                    }, aiStreamExecutor);
                 }
+            } else {
+                answer = generateStreaming(userId, sessionId, message, request, onRetrieved, frames::append);
+            }
 
-                @Override
-                public void onComplete(Response<AiMessage> response) {
-                    try {
-                        int tokensUsed = extractTokenUsage(response);
-                        String finalResponse = appendCitations(fullResponse.toString(), ragContext);
-                        AiConversation conversation = saveConversation(
-                                userId,
-                                sessionId,
-                                message,
-                                finalResponse,
-                                ragContext.sceneCode(),
-                                category.getDisplayName(),
-                                null,
-                                tokensUsed
-                        );
-                        cacheConversationHistory(userId, sessionId);
-                        recordMetrics(startNanos, tokensUsed, ragContext);
-
-                        emitter.send(SseEmitter.event().name("done").data(Map.of(
-                                "conversationId", conversation.getId(),
-                                "category", category.getDisplayName(),
-                                "content", finalResponse,
-                                "interviewScene", ragContext.sceneCode(),
-                                "interviewSceneLabel", ragContext.sceneLabel(),
-                                "retrievalMode", ragContext.retrievalMode().name(),
-                                "ragRecallCount", ragContext.recallCount(),
-                                "routeReason", StringUtils.hasText(ragContext.routeReason()) ? ragContext.routeReason() : ""
-                        )));
-                        emitter.complete();
-                    } catch (Exception ex) {
-                        log.error("SSE complete callback failed", ex);
-                        emitter.completeWithError(ex);
-                    }
+            // 保存、缓存与指标不占用模型的回调线程
+            answer.whenCompleteAsync((shared, error) -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof AnswerDegradedException degraded) {
+                    // 降级回答只推给本请求，作为一次完整回答推送并保存
+                    shared = degraded.fallback;
+                    frames.append(shared.answer());
+                    cause = null;
                 }
-
-                @Override
-                public void onError(Throwable error) {
-                    log.error("SSE stream failed", error);
-                    try {
-                        emitter.send(SseEmitter.event().name("error").data(Map.of("error", "AI服务暂时不可用，请稍后重试")));
-                    } catch (Exception ex) {
-                        log.error("SSE send error event failed", ex);
-                    }
-                    emitter.completeWithError(error);
+                frames.flush();
+                if (cause != null) {
+                    log.error("SSE stream failed, userId={}, sessionId={}", userId, sessionId, cause);
+                    sendEvent(emitter, "error", Map.of("error", "AI服务暂时不可用，请稍后重试"));
+                    emitter.completeWithError(cause);
+                    return;
+                }
+                completeStream(userId, sessionId, message, category, shared.ragContext(), shared.answer(),
+                        computed.get() ? shared.tokensUsed() : 0, startNanos, emitter);
+            }, aiStreamExecutor).exceptionally(error -> {
+                // 收尾任务被线程池拒绝时不会执行，在当前线程推完已生成的内容后结束流
+                if (error instanceof RejectedExecutionException || error.getCause() instanceof RejectedExecutionException) {
+                    log.warn("SSE stream completion rejected, executor saturated. userId={}, sessionId={}", userId, sessionId);
+                    frames.flush();
+                    rejectStream(emitter);
                 }
+                return null;
             });
         } catch (Exception ex) {
-            log.error("SSE init failed", ex);
+            log.error("SSE stream failed before generation, userId={}, sessionId={}", userId, sessionId, ex);
+            sendEvent(emitter, "error", Map.of("error", "AI服务暂时不可用，请稍后重试"));
             emitter.completeWithError(ex);
         }
+    }
 
-        emitter.onTimeout(() -> {
-            log.warn("SSE timeout, userId={}, sessionId={}", userId, sessionId);
+    /**
+     * 检索、组装提示词后开始流式生成；token 交给 onToken，生成结束时返回的 future 完成
+     */
+    private CompletableFuture<AnswerSingleFlight.SharedAnswer> generateStreaming(Long userId,
+                                                                               String sessionId,
+                                                                               String message,
+                                                                               AiChatRequest request,
+                                                                               Consumer<RagContextResult> onRetrieved,
+                                                                               Consumer<String> onToken) {
+        RagContextResult ragContext = ragPipelineService.buildContext(
+                message,
+                request.getKnowledgeBaseId(),
+                request.getKnowledgePoint(),
+                request.getMessageType()
+        );
+        onRetrieved.accept(ragContext);
+        List<ChatMessage> messages = buildConversationHistory(userId, sessionId, message, ragContext);
+
+        CompletableFuture<AnswerSingleFlight.SharedAnswer> result = new CompletableFuture<>();
+        StringBuilder fullResponse = new StringBuilder();
+        long generationStart = System.nanoTime();
+        StreamingResponseHandler<AiMessage> handler = new StreamingResponseHandler<>() {
+
+            private boolean firstTokenSeen;
+
+            @Override
+            public void onNext(String token) {
+                if (!firstTokenSeen) {
+                    firstTokenSeen = true;
+                    aiStageMetrics.record(AiStageMetrics.Stage.FIRST_TOKEN, ragContext, System.nanoTime() - generationStart);
+                }
+                fullResponse.append(token);
+                onToken.accept(token);
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                aiStageMetrics.record(AiStageMetrics.Stage.GENERATION, ragContext, System.nanoTime() - generationStart);
+                result.complete(new AnswerSingleFlight.SharedAnswer(ragContext, fullResponse.toString(),
+                        extractTokenUsage(response)));
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                result.completeExceptionally(error);
+            }
+        };
+
+        try {
+            llmExecutor.stream(streamingChatLanguageModel, messages, handler);
+        } catch (LlmExecutor.RejectedException ex) {
+            // 模型调用已饱和：以降级异常结束，由调用方把降级回答推给本请求；不经过 handler，不计入生成耗时
+            log.warn("SSE chat shed, use degraded response. userId={}, sessionId={}", userId, sessionId);
+            result.completeExceptionally(new AnswerDegradedException(degradedAnswer(ragContext), ex));
+        }
+        return result;
+    }
+
+    private void completeStream(Long userId,
+                                String sessionId,
+                                String message,
+                                QuestionCategory category,
+                                RagContextResult ragContext,
+                                String answer,
+                                int tokensUsed,
+                                long startNanos,
+                                SseEmitter emitter) {
+        try {
+            String finalResponse = appendCitations(answer, ragContext);
+            long persistStart = System.nanoTime();
+            AiConversation conversation = saveConversation(
+                    userId,
+                    sessionId,
+                    message,
+                    finalResponse,
+                    ragContext.sceneCode(),
+                    category.getDisplayName(),
+                    null,
+                    tokensUsed
+            );
+            conversationWindowStore.append(userId, sessionId, conversation.getId(), message, finalResponse);
+            aiStageMetrics.record(AiStageMetrics.Stage.PERSISTENCE, ragContext, System.nanoTime() - persistStart);
+            conversationMemoryManager.onTurnCompleted(userId, sessionId);
+            recordMetrics(startNanos, tokensUsed, ragContext);
+
+            emitter.send(SseEmitter.event().name("done").data(Map.of(
+                    "conversationId", conversation.getId(),
+                    "category", category.getDisplayName(),
+                    "content", finalResponse,
+                    "interviewScene", ragContext.sceneCode(),
+                    "interviewSceneLabel", ragContext.sceneLabel(),
+                    "retrievalMode", ragContext.retrievalMode().name(),
+                    "ragRecallCount", ragContext.recallCount(),
+                    "routeReason", StringUtils.hasText(ragContext.routeReason()) ? ragContext.routeReason() : ""
+            )));
             emitter.complete();
-        });
+        } catch (Exception ex) {
+            log.error("SSE complete callback failed", ex);
+            emitter.completeWithError(ex);
+        }
+    }
 
-        return emitter;
+    /**
+     * 推送一个事件；客户端已断开时只记录，不影响后续保存
+     */
+    /**
+     * 流式线程池已满：推 error 事件并结束，由前端提示稍后重试
+     */
+    private void rejectStream(SseEmitter emitter) {
+        sendEvent(emitter, "error", Map.of("error", "AI服务繁忙，请稍后重试"));
+        emitter.complete();
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (Exception ex) {
+            log.debug("SSE send {} failed, client may have disconnected. reason={}", name, ex.getMessage());
+        }
     }
 
     public List<AiConversation> getUserSessions(Long userId, Integer limit) {
         int safeLimit = limit == null ? DEFAULT_SESSION_LIMIT : Math.max(1, Math.min(limit, MAX_SESSION_LIMIT));
-        return conversationMapper.getUserSessions(userId, safeLimit);
+        return aiSessionCache.recentSessions(userId).stream()
+                .limit(safeLimit)
+                .map(this::toSessionItem)
+                .toList();
+    }
+
+    /**
+     * 会话列表沿用原来的返回结构：最新一轮的记录ID与用户消息放在 id / userMessage，最后对话时间放在 createdAt
+     */
+    private AiConversation toSessionItem(AiSession session) {
+        AiConversation item = new AiConversation();
+        item.setId(session.getLastConversationId());
+        item.setSessionId(session.getSessionId());
+        item.setUserMessage(session.getLastUserMessage());
+        item.setSessionTitle(session.getTitle());
+        item.setIsBookmarked(session.getIsBookmarked());
+        item.setCreatedAt(session.getLastAt());
+        return item;
     }
 
     public List<AiConversation> getSessionHistory(Long userId, String sessionId) {
@@ -251,6 +512,8 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
         AiConversation conversation = getOwnedConversation(userId, conversationId);
         conversation.setIsBookmarked(Boolean.TRUE.equals(isBookmarked));
         updateById(conversation);
+        aiSessionMapper.refreshBookmarked(userId, conversation.getSessionId());
+        aiSessionCache.evict(userId);
     }
 
     public List<AiConversation> getBookmarkedConversations(Long userId) {
@@ -281,8 +544,13 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
         if (!removed) {
             throw new RuntimeException("删除会话失败");
         }
+        aiSessionMapper.delete(new LambdaQueryWrapper<AiSession>()
+                .eq(AiSession::getUserId, userId)
+                .eq(AiSession::getSessionId, sessionId));
+        aiSessionCache.evict(userId);
 
-        removeConversationCache(userId, sessionId);
+        conversationWindowStore.evict(userId, sessionId);
+        conversationMemoryManager.evict(userId, sessionId);
     }
 
     @Transactional
@@ -308,14 +576,15 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
         if (!updated) {
             throw new RuntimeException("会话重命名失败");
         }
-
-        removeConversationCache(userId, sessionId);
+        aiSessionMapper.updateTitle(userId, sessionId, safeTitle);
+        aiSessionCache.evict(userId);
     }
 
     private List<ChatMessage> buildConversationHistory(Long userId,
                                                        String sessionId,
                                                        String currentMessage,
                                                        RagContextResult ragContext) {
+        long startNanos = System.nanoTime();
         List<ChatMessage> messages = new ArrayList<>();
         messages.add(new SystemMessage(buildSystemPrompt()));
         messages.add(new SystemMessage(buildInterviewPrompt(ragContext)));
@@ -325,68 +594,35 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
                     + "\n\n请优先依据这些信息回答，并明确区分已知事实与推断。"));
         }
 
-        List<AiConversation> history = loadConversationHistory(userId, sessionId);
-        int maxHistorySize = Math.max(1, aiAssistantProperties.getMaxHistorySize());
-        int start = Math.max(0, history.size() - maxHistorySize);
+        // 系统提示、检索片段和当前问题之外的预算留给摘要与历史
+        int fixedTokens = PromptTokenEstimator.estimateMessage(currentMessage);
+        for (ChatMessage fixed : messages) {
+            fixedTokens += PromptTokenEstimator.estimateMessage(((SystemMessage) fixed).text());
+        }
+        int historyBudget = Math.max(0, aiAssistantProperties.getPromptTokenBudget() - fixedTokens);
+        long historyStart = System.nanoTime();
+        ConversationMemoryManager.Memory memory = conversationMemoryManager.load(userId, sessionId, historyBudget);
+        long historyNanos = System.nanoTime() - historyStart;
+        aiStageMetrics.record(AiStageMetrics.Stage.HISTORY_LOAD, ragContext, historyNanos);
+        if (StringUtils.hasText(memory.summary())) {
+            messages.add(new SystemMessage("【此前对话摘要】\n" + memory.summary()));
+        }
 
-        for (int i = start; i < history.size(); i++) {
-            AiConversation conversation = history.get(i);
-            if (StringUtils.hasText(conversation.getUserMessage())) {
-                messages.add(new UserMessage(conversation.getUserMessage()));
+        for (ConversationWindowStore.Turn turn : memory.turns()) {
+            if (StringUtils.hasText(turn.userMessage())) {
+                messages.add(new UserMessage(turn.userMessage()));
             }
-            if (StringUtils.hasText(conversation.getAiResponse())) {
-                messages.add(new AiMessage(conversation.getAiResponse()));
+            if (StringUtils.hasText(turn.aiResponse())) {
+                messages.add(new AiMessage(turn.aiResponse()));
             }
         }
 
         messages.add(new UserMessage(currentMessage));
+        // 组装提示词的耗时不含历史加载
+        aiStageMetrics.record(AiStageMetrics.Stage.PROMPT_BUILD, ragContext, System.nanoTime() - startNanos - historyNanos);
         return messages;
     }
 
-    private List<AiConversation> loadConversationHistory(Long userId, String sessionId) {
-        String cacheKey = buildCacheKey(userId, sessionId);
-        try {
-            @SuppressWarnings("unchecked")
-            List<AiConversation> cached = (List<AiConversation>) redisTemplate.opsForValue().get(cacheKey);
-            if (cached != null) {
-                return cached;
-            }
-        } catch (Exception ex) {
-            log.warn("load conversation history from redis failed, fallback db. key={}, reason={}", cacheKey, ex.getMessage());
-        }
-        List<AiConversation> history = conversationMapper.getSessionHistory(userId, sessionId);
-        return history == null ? List.of() : history;
-    }
-
-    private Response<AiMessage> generateWithRetry(List<ChatMessage> messages) {
-        int maxAttempts = Math.max(1, aiAssistantProperties.getMaxRequestRetries() + 1);
-        RuntimeException lastException = null;
-
-        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
-            try {
-                return chatLanguageModel.generate(messages);
-            } catch (Exception ex) {
-                lastException = new RuntimeException(ex);
-                log.warn("AI generate failed, attempt={}/{}, reason={}", attempt, maxAttempts, ex.getMessage());
-                if (attempt < maxAttempts) {
-                    sleepBackoff(attempt);
-                }
-            }
-        }
-
-        throw lastException != null ? lastException : new RuntimeException("AI模型调用失败");
-    }
-
-    private void sleepBackoff(int attempt) {
-        long backoffMillis = Math.max(100L, aiAssistantProperties.getRetryBackoffMillis()) * attempt;
-        try {
-            Thread.sleep(backoffMillis);
-        } catch (InterruptedException interruptedException) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("重试等待被中断", interruptedException);
-        }
-    }
-
     private String buildSystemPrompt() {
         return """
                 你是高强度实习面试辅导助手。
@@ -543,20 +779,14 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
         conversation.setCreatedAt(now);
         conversation.setUpdatedAt(now);
 
-        save(conversation);
+        aiConversationWriter.save(conversation);
         return conversation;
     }
 
     private String resolveSessionTitle(Long userId, String sessionId, String userMessage) {
-        AiConversation existed = getOne(new LambdaQueryWrapper<AiConversation>()
-                .select(AiConversation::getSessionTitle)
-                .eq(AiConversation::getUserId, userId)
-                .eq(AiConversation::getSessionId, sessionId)
-                .orderByAsc(AiConversation::getId)
-                .last("LIMIT 1"));
-
-        if (existed != null && StringUtils.hasText(existed.getSessionTitle())) {
-            return existed.getSessionTitle();
+        String existed = aiSessionCache.title(userId, sessionId);
+        if (StringUtils.hasText(existed)) {
+            return existed;
         }
         return buildSessionTitle(userMessage);
     }
@@ -585,28 +815,6 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
         }
     }
 
-    private void cacheConversationHistory(Long userId, String sessionId) {
-        String cacheKey = buildCacheKey(userId, sessionId);
-        try {
-            List<AiConversation> history = conversationMapper.getSessionHistory(userId, sessionId);
-            redisTemplate.opsForValue().set(cacheKey, history, CACHE_EXPIRE_HOURS, TimeUnit.HOURS);
-        } catch (Exception ex) {
-            log.warn("cache conversation history failed. key={}, reason={}", cacheKey, ex.getMessage());
-        }
-    }
-
-    private void removeConversationCache(Long userId, String sessionId) {
-        try {
-            redisTemplate.delete(buildCacheKey(userId, sessionId));
-        } catch (Exception ex) {
-            log.warn("delete conversation cache failed. userId={}, sessionId={}, reason={}", userId, sessionId, ex.getMessage());
-        }
-    }
-
-    private String buildCacheKey(Long userId, String sessionId) {
-        return CACHE_KEY_PREFIX + userId + ":" + sessionId;
-    }
-
     private AiConversation getOwnedConversation(Long userId, Long conversationId) {
         if (conversationId == null) {
             throw new RuntimeException("对话ID不能为空");
@@ -666,32 +874,6 @@ public class AiAssistantService extends ServiceImpl<AiConversationMapper, AiConv
     }
 
     private void recordMetrics(long startNanos, int tokensUsed, RagContextResult ragContext) {
-        Timer.builder(METRIC_AI_REQUEST_LATENCY_MS)
-                .description("AI request latency")
-                .register(meterRegistry)
-                .record(Duration.ofNanos(System.nanoTime() - startNanos));
-
-        Counter.builder(METRIC_AI_TOKENS_TOTAL)
-                .description("AI token usage")
-                .register(meterRegistry)
-                .increment(Math.max(tokensUsed, 0));
-
-        Counter.builder(METRIC_RAG_RECALL_COUNT)
-                .description("RAG recalled candidates")
-                .register(meterRegistry)
-                .increment(Math.max(ragContext.recallCount(), 0));
-
-        Counter.builder(METRIC_RAG_HIT_RATE)
-                .description("RAG hit count")
-                .tag("hit", String.valueOf(ragContext.hasContext()))
-                .register(meterRegistry)
-                .increment();
-
-        if (!ragContext.hasContext()) {
-            Counter.builder(METRIC_RAG_NO_CONTEXT_RATE)
-                    .description("RAG no-context count")
-                    .register(meterRegistry)
-                    .increment();
-        }
+        aiStageMetrics.recordRequest(ragContext, System.nanoTime() - startNanos, tokensUsed);
     }
 }
@@ -99,6 +99,13 @@ public interface ChatService {
      */
     IPage<ChatMessage> getPrivateMessages(Long userId, Long targetId, int page, int size);
 
+    /**
+     * 游标分页获取私聊消息记录（按消息ID倒序，不统计总数）
+     *
+     * @param beforeId 上一页最早一条消息的ID，为空取最新的
+     */
+    List<ChatMessage> getPrivateMessagesBefore(Long userId, Long targetId, Long beforeId, int size);
+
     /**
      * 标记消息已读
      */
@@ -168,6 +175,13 @@ public interface ChatService {
      */
     IPage<ChatGroupMessage> getGroupMessages(Long groupId, int page, int size);
 
+    /**
+     * 游标分页获取群消息记录（按消息ID倒序，不统计总数）
+     *
+     * @param beforeId 上一页最早一条消息的ID，为空取最新的
+     */
+    List<ChatGroupMessage> getGroupMessagesBefore(Long groupId, Long beforeId, int size);
+
     /**
      * 设置/取消管理员
      */
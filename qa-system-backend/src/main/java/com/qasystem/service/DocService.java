@@ -1,5 +1,8 @@
 package com.qasystem.service;
 
+import com.qasystem.doc.ParagraphRewriteResult;
+import com.qasystem.doc.RewriteStreamListener;
+import com.qasystem.dto.DocBatchRewriteRequest;
 import com.qasystem.dto.DocRewriteRequest;
 import com.qasystem.dto.SaveDocVersionRequest;
 import com.qasystem.entity.DocRewriteVersion;
@@ -7,6 +10,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * DocService - 文档查重与AI降重服务接口
@@ -88,6 +93,43 @@ public interface DocService {
      */
     Map<String, Object> rewriteText(Long userId, DocRewriteRequest request);
 
+    /**
+     * 流式AI改写/降重指定文本
+     * 
+     * 🎯 功能：与 rewriteText() 相同的改写，但模型每生成一段文字就立即回调，
+     * 方法本身提交请求后立即返回，不占用调用线程等待整段生成完成。
+     * 
+     * @param userId 用户ID
+     * @param request 改写请求，包含原文、改写风格等
+     * @param listener 流式回调：onToken 逐段推送；onComplete 在敏感词检测和操作日志完成后回调，
+     *                 结果结构与 rewriteText() 一致
+     * 
+     * 💬 使用场景：
+     * - 文档降重 WebSocket 中边生成边展示改写结果
+     */
+    void rewriteTextStream(Long userId, DocRewriteRequest request, RewriteStreamListener listener);
+
+    /**
+     * 批量AI降重：并行改写文档中选中的段落，并将结果整体保存为一个新版本
+     * 
+     * 🎯 功能：
+     * - 按 paragraphIds / minSimilarity 选择段落（都为空时改写全文）
+     * - 在共享线程池上并行改写，单任务并发数与供应商限流由 qa.doc.rewrite.* 配置
+     * - 单段失败会按退避重试，重试耗尽后保留原文，不影响其他段落
+     * - 全部完成后在一个事务内保存 DocRewriteVersion 并记录操作日志
+     * 
+     * @param userId 用户ID
+     * @param request 批量改写请求
+     * @param onParagraph 每个段落完成（成功或失败）时回调，运行在改写线程上
+     * @return 保存后的版本；段落全部失败时以异常结束
+     * 
+     * 💬 使用场景：
+     * - 文档降重 WebSocket 中逐段推送批量改写进度
+     * - REST 接口一次性提交整篇降重
+     */
+    CompletableFuture<DocRewriteVersion> batchRewrite(Long userId, DocBatchRewriteRequest request,
+                                                     Consumer<ParagraphRewriteResult> onParagraph);
+
     /**
      * 保存文档版本
      * 
@@ -7,6 +7,7 @@ import com.qasystem.dto.UserProfileDTO;
 import com.qasystem.entity.*;
 import com.qasystem.mapper.*;
 import com.qasystem.service.AdminService;
+import com.qasystem.user.UserBatchLoader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -38,6 +39,7 @@ public class AdminServiceImpl implements AdminService {
     private final AnswerMapper answerMapper;
     private final PasswordEncoder passwordEncoder;
     private final com.qasystem.common.util.RedisUtil redisUtil;
+    private final UserBatchLoader userBatchLoader;
 
     /** 📊 获取系统统计数据：用户数、问题数、回答数等 */
     @Override
@@ -190,6 +192,7 @@ public class AdminServiceImpl implements AdminService {
         
         user.setStatus(status);
         userMapper.updateById(user);
+        userBatchLoader.evict(userId);
         
         log.info("用户状态已更新: userId={}, status={}", userId, status);
     }
@@ -205,6 +208,7 @@ public class AdminServiceImpl implements AdminService {
         
         // 删除用户（逻辑删除）
         userMapper.deleteById(userId);
+        userBatchLoader.evict(userId);
         
         // 删除关联的学生或教师信息
         if ("STUDENT".equals(user.getRole())) {
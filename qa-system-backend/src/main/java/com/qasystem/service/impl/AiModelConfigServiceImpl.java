@@ -2,6 +2,7 @@ package com.qasystem.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.qasystem.ai.ModelConfigChangeNotifier;
 import com.qasystem.entity.AiModelConfig;
 import com.qasystem.mapper.AiModelConfigMapper;
 import com.qasystem.service.AiModelConfigService;
@@ -33,6 +34,7 @@ import java.util.Map;
 public class AiModelConfigServiceImpl implements AiModelConfigService {
 
     private final AiModelConfigMapper aiModelConfigMapper;
+    private final ModelConfigChangeNotifier modelConfigChangeNotifier;
 
     @Override
     public List<AiModelConfig> listAll() {
@@ -90,6 +92,8 @@ public class AiModelConfigServiceImpl implements AiModelConfigService {
             throw new RuntimeException("模型配置不存在");
         }
 
+        // 合并会覆盖 isActive，先记下修改前是否正在使用
+        boolean wasActive = Boolean.TRUE.equals(existed.getIsActive());
         mergeConfig(existed, config);
         validateConfigCompleteness(existed);
         existed.setUpdatedAt(LocalDateTime.now());
@@ -97,6 +101,9 @@ public class AiModelConfigServiceImpl implements AiModelConfigService {
 
         if (Boolean.TRUE.equals(config.getIsActive())) {
             setActive(existed.getId());
+        } else if (wasActive) {
+            // 修改或停用了正在使用的配置，同样需要重建模型客户端
+            modelConfigChangeNotifier.notifyChanged();
         }
         return existed;
     }
@@ -133,6 +140,7 @@ public class AiModelConfigServiceImpl implements AiModelConfigService {
         if (affected == 0) {
             throw new RuntimeException("激活模型失败");
         }
+        modelConfigChangeNotifier.notifyChanged();
     }
 
     @Override
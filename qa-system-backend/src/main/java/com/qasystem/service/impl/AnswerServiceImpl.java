@@ -12,16 +12,18 @@ import com.qasystem.entity.Teacher;
 import com.qasystem.entity.User;
 import com.qasystem.mapper.AnswerMapper;
 import com.qasystem.mapper.QuestionMapper;
-import com.qasystem.mapper.TeacherMapper;
 import com.qasystem.mapper.UserMapper;
 import com.qasystem.service.AnswerService;
+import com.qasystem.user.UserBatchLoader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -41,8 +43,8 @@ public class AnswerServiceImpl implements AnswerService {
     private final AnswerMapper answerMapper;
     private final QuestionMapper questionMapper;
     private final UserMapper userMapper;
-    private final TeacherMapper teacherMapper;
     private final RedisUtil redisUtil;
+    private final UserBatchLoader userBatchLoader;
     private final ObjectMapper objectMapper;
 
     private static final String QUESTION_CACHE_KEY = "question:";
@@ -51,8 +53,11 @@ public class AnswerServiceImpl implements AnswerService {
     @Override
     public List<AnswerDTO> getAnswersByQuestionId(Long questionId) {
         List<Answer> answers = answerMapper.findByQuestionId(questionId);
+        List<Long> teacherIds = answers.stream().map(Answer::getTeacherId).collect(Collectors.toList());
+        Map<Long, User> teachers = userBatchLoader.loadMany(teacherIds);
+        Map<Long, Teacher> teacherInfos = userBatchLoader.loadTeachers(teacherIds);
         return answers.stream()
-                .map(this::convertToDTO)
+                .map(answer -> convertToDTO(answer, teachers, teacherInfos))
                 .collect(Collectors.toList());
     }
 
@@ -206,20 +211,27 @@ public class AnswerServiceImpl implements AnswerService {
         log.info("采纳回答成功: id={}, questionId={}", id, answer.getQuestionId());
     }
 
-    /** 🔄 转换为DTO：关联查询教师信息，反序列化图片列表 */
+    /** 🔄 转换单个回答为DTO */
     private AnswerDTO convertToDTO(Answer answer) {
+        List<Long> teacherIds = Collections.singletonList(answer.getTeacherId());
+        return convertToDTO(answer, userBatchLoader.loadMany(teacherIds), userBatchLoader.loadTeachers(teacherIds));
+    }
+
+    /** 🔄 转换为DTO：教师信息由调用方批量加载后传入，反序列化图片列表 */
+    private AnswerDTO convertToDTO(Answer answer, Map<Long, User> teachers, Map<Long, Teacher> teacherInfos) {
         AnswerDTO dto = new AnswerDTO();
         BeanUtils.copyProperties(answer, dto);
 
         // 获取教师信息
-        User teacher = userMapper.selectById(answer.getTeacherId());
+        User teacher = teachers.get(answer.getTeacherId());
         if (teacher != null) {
             dto.setTeacherName(teacher.getRealName());
             
             // 获取教师职称
-            teacherMapper.findByUserId(answer.getTeacherId()).ifPresent(t -> {
+            Teacher t = teacherInfos.get(answer.getTeacherId());
+            if (t != null) {
                 dto.setTeacherTitle(t.getTitle());
-            });
+            }
         }
 
         // 解析图片列表
@@ -1,19 +1,32 @@
 package com.qasystem.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.qasystem.chat.ChatIdGenerator;
+import com.qasystem.chat.ChatMessageLog;
+import com.qasystem.chat.ChatRecentMessageCache;
+import com.qasystem.chat.ChatUnreadStore;
+import com.qasystem.chat.FriendGraphCache;
 import com.qasystem.entity.*;
 import com.qasystem.mapper.*;
 import com.qasystem.service.ChatService;
+import com.qasystem.user.UserBatchLoader;
+import com.qasystem.user.UserSearchCache;
 import com.qasystem.websocket.ChatWebSocketHandler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +37,16 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ChatServiceImpl implements ChatService {
 
+    /**
+     * 游标分页单页上限
+     */
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
+    /**
+     * 本地缓存的私聊会话ID上限
+     */
+    private static final int MAX_CACHED_CONVERSATIONS = 10_000;
+
     private final FriendMapper friendMapper;
     private final FriendRequestMapper friendRequestMapper;
     private final ChatConversationMapper conversationMapper;
@@ -33,7 +56,26 @@ public class ChatServiceImpl implements ChatService {
     private final ChatGroupMessageMapper groupMessageMapper;
     private final EmojiMapper emojiMapper;
     private final UserMapper userMapper;
+    private final UserBatchLoader userBatchLoader;
+    private final UserSearchCache userSearchCache;
     private final ChatWebSocketHandler webSocketHandler;
+    private final ThreadPoolTaskExecutor chatFanoutExecutor;
+    private final ChatUnreadStore chatUnreadStore;
+    private final FriendGraphCache friendGraphCache;
+    private final ChatRecentMessageCache recentMessageCache;
+    private final ChatMessageLog messageLog;
+    private final ChatIdGenerator chatIdGenerator;
+
+    /**
+     * 写后落库模式下的私聊会话ID：发送方:接收方 -> 发送方会话ID（双方会话均已存在时才记录，私聊会话不会被删除）
+     */
+    private final Map<String, Long> privateConversationIds = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75F, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_CACHED_CONVERSATIONS;
+                }
+            });
 
     // ==================== 在线状态 ====================
 
@@ -104,6 +146,7 @@ public class ChatServiceImpl implements ChatService {
             // 安全插入好友关系（忽略重复键错误）
             safeInsertFriend(fromUserId, toUserId);
             safeInsertFriend(toUserId, fromUserId);
+            friendGraphCache.evict(fromUserId, toUserId);
             
             log.info("处理好友申请完成: {} <-> {}", fromUserId, toUserId);
         }
@@ -171,11 +214,14 @@ public class ChatServiceImpl implements ChatService {
         log.info("查询到{}条好友记录", friends.size());
         
         List<Map<String, Object>> result = new ArrayList<>();
+        List<Long> friendIds = friends.stream().map(Friend::getFriendId).collect(Collectors.toList());
+        Map<Long, User> users = userBatchLoader.loadMany(friendIds);
+        Set<Long> onlineFriends = webSocketHandler.filterOnline(friendIds);
 
         for (Friend friend : friends) {
             log.info("处理好友关系: userId={}, friendId={}, status={}", 
                     friend.getUserId(), friend.getFriendId(), friend.getStatus());
-            User user = userMapper.selectById(friend.getFriendId());
+            User user = users.get(friend.getFriendId());
             if (user != null) {
                 Map<String, Object> item = new HashMap<>();
                 item.put("friendshipId", friend.getId());
@@ -185,7 +231,7 @@ public class ChatServiceImpl implements ChatService {
                 item.put("avatar", user.getAvatar());
                 item.put("remark", friend.getRemark());
                 item.put("groupName", friend.getGroupName());
-                item.put("online", webSocketHandler.isOnline(user.getId()));
+                item.put("online", onlineFriends.contains(user.getId()));
                 result.add(item);
             }
         }
@@ -197,8 +243,10 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public List<FriendRequest> getFriendRequests(Long userId) {
         List<FriendRequest> requests = friendRequestMapper.findReceivedRequests(userId);
+        Map<Long, User> users = userBatchLoader.loadMany(
+                requests.stream().map(FriendRequest::getFromUserId).collect(Collectors.toList()));
         for (FriendRequest request : requests) {
-            request.setFromUser(userMapper.selectById(request.getFromUserId()));
+            request.setFromUser(users.get(request.getFromUserId()));
         }
         return requests;
     }
@@ -218,6 +266,7 @@ public class ChatServiceImpl implements ChatService {
         friendMapper.delete(new LambdaQueryWrapper<Friend>()
                 .eq(Friend::getUserId, friendId)
                 .eq(Friend::getFriendId, userId));
+        friendGraphCache.evict(userId, friendId);
 
         log.info("用户{}删除了好友{}", userId, friendId);
     }
@@ -279,18 +328,23 @@ public class ChatServiceImpl implements ChatService {
         }
         friend.setStatus("BLOCKED");
         friendMapper.updateById(friend);
+        // 拉黑后不再接收对方的在线状态
+        friendGraphCache.evict(friendId);
         log.info("用户{}拉黑了好友{}", userId, friendId);
     }
 
     @Override
     public List<Map<String, Object>> searchUsers(Long userId, String keyword) {
-        List<User> users = userMapper.selectList(new LambdaQueryWrapper<User>()
-                .ne(User::getId, userId)
-                .and(w -> w
-                        .like(User::getUsername, keyword)
-                        .or()
-                        .like(User::getRealName, keyword))
-                .last("LIMIT 20"));
+        if (keyword == null || keyword.isBlank()) {
+            return new ArrayList<>();
+        }
+        List<User> users = userSearchCache.search(userId, keyword);
+
+        // 好友关系、我发出的申请、对方发来的申请各一次批量查询
+        List<Long> userIds = users.stream().map(User::getId).collect(Collectors.toList());
+        Set<Long> friendIds = friendMapper.findFriendIdsAmong(userId, userIds);
+        Set<Long> requestedIds = friendRequestMapper.findPendingToUserIds(userId, userIds);
+        Set<Long> requesterIds = friendRequestMapper.findPendingFromUserIds(userId, userIds);
 
         return users.stream().map(user -> {
             Map<String, Object> item = new HashMap<>();
@@ -299,19 +353,9 @@ public class ChatServiceImpl implements ChatService {
             item.put("realName", user.getRealName());
             item.put("avatar", user.getAvatar());
             item.put("role", user.getRole());
-            
-            // 检查好友关系状态
-            boolean isFriend = friendMapper.isFriend(userId, user.getId());
-            item.put("isFriend", isFriend);
-            
-            // 检查是否有待处理的好友申请（我发给对方的）
-            FriendRequest pendingRequest = friendRequestMapper.findExistingRequest(userId, user.getId());
-            item.put("hasPendingRequest", pendingRequest != null);
-            
-            // 检查是否有对方发给我的申请
-            FriendRequest receivedRequest = friendRequestMapper.findExistingRequest(user.getId(), userId);
-            item.put("hasReceivedRequest", receivedRequest != null);
-            
+            item.put("isFriend", friendIds.contains(user.getId()));
+            item.put("hasPendingRequest", requestedIds.contains(user.getId()));
+            item.put("hasReceivedRequest", requesterIds.contains(user.getId()));
             return item;
         }).collect(Collectors.toList());
     }
@@ -321,12 +365,27 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public List<ChatConversation> getConversationList(Long userId) {
         List<ChatConversation> conversations = conversationMapper.findByUserId(userId);
-        
+        // 未读数和最后消息以 Redis 为准
+        chatUnreadStore.overlay(userId, conversations);
+
+        // 按类型收集目标ID，用户和群各一次批量查询
+        List<Long> userIds = new ArrayList<>();
+        List<Long> groupIds = new ArrayList<>();
+        for (ChatConversation conv : conversations) {
+            if ("PRIVATE".equals(conv.getType())) {
+                userIds.add(conv.getTargetId());
+            } else if ("GROUP".equals(conv.getType())) {
+                groupIds.add(conv.getTargetId());
+            }
+        }
+        Map<Long, User> users = userBatchLoader.loadMany(userIds);
+        Map<Long, ChatGroup> groups = loadGroups(groupIds);
+
         for (ChatConversation conv : conversations) {
             if ("PRIVATE".equals(conv.getType())) {
-                conv.setTargetUser(userMapper.selectById(conv.getTargetId()));
+                conv.setTargetUser(users.get(conv.getTargetId()));
             } else if ("GROUP".equals(conv.getType())) {
-                conv.setGroup(groupMapper.selectById(conv.getTargetId()));
+                conv.setGroup(groups.get(conv.getTargetId()));
             }
         }
         
@@ -338,8 +397,10 @@ public class ChatServiceImpl implements ChatService {
     public void toggleConversationTop(Long userId, Long conversationId, Boolean isTop) {
         ChatConversation conversation = conversationMapper.selectById(conversationId);
         if (conversation != null && conversation.getUserId().equals(userId)) {
-            conversation.setIsTop(isTop);
-            conversationMapper.updateById(conversation);
+            // 只更新置顶字段，未读数和最后消息由 ChatUnreadStore 回写，整行更新会覆盖掉
+            conversationMapper.update(null, new LambdaUpdateWrapper<ChatConversation>()
+                    .set(ChatConversation::getIsTop, isTop)
+                    .eq(ChatConversation::getId, conversationId));
             log.info("用户{}{}会话{}", userId, isTop ? "置顶" : "取消置顶", conversationId);
         }
     }
@@ -348,13 +409,22 @@ public class ChatServiceImpl implements ChatService {
     @Transactional
     public ChatMessage sendPrivateMessage(Long senderId, Long receiverId, String content, String type,
                                           String mediaUrl, String mediaThumbnail, Integer mediaDuration, Long mediaSize) {
-        // 获取或创建会话
-        ChatConversation senderConv = getOrCreatePrivateConversation(senderId, receiverId);
-        ChatConversation receiverConv = getOrCreatePrivateConversation(receiverId, senderId);
+        // 获取或创建会话（写后落库模式下先查本地缓存）
+        String conversationKey = senderId + ":" + receiverId;
+        Long conversationId = messageLog.isEnabled() ? privateConversationIds.get(conversationKey) : null;
+        if (conversationId == null) {
+            ChatConversation senderConv = getOrCreatePrivateConversation(senderId, receiverId);
+            getOrCreatePrivateConversation(receiverId, senderId);
+            conversationId = senderConv.getId();
+            if (messageLog.isEnabled()) {
+                Long createdId = conversationId;
+                afterCommit(() -> privateConversationIds.put(conversationKey, createdId));
+            }
+        }
 
         // 创建消息
         ChatMessage message = new ChatMessage();
-        message.setConversationId(senderConv.getId());
+        message.setConversationId(conversationId);
         message.setSenderId(senderId);
         message.setReceiverId(receiverId);
         message.setContent(content);
@@ -365,18 +435,30 @@ public class ChatServiceImpl implements ChatService {
         message.setMediaSize(mediaSize);
         message.setIsRead(false);
         message.setIsRecalled(false);
-        messageMapper.insert(message);
+        if (messageLog.isEnabled()) {
+            // 写后落库：本地分配ID，提交后写入日志（先于推送），由后台批量写入数据库
+            message.setId(chatIdGenerator.nextId());
+            message.setCreateTime(LocalDateTime.now());
+            message.setDeleted(0);
+            afterCommit(() -> appendPrivateOrInsert(message));
+        } else {
+            messageMapper.insert(message);
+        }
 
-        // 更新会话
+        // 更新会话未读数和最后消息（Redis，提交后执行）
         String lastMsg = getLastMessagePreview(type, content);
-        updateConversation(senderConv, lastMsg, 0);
-        updateConversation(receiverConv, lastMsg, receiverConv.getUnreadCount() + 1);
+        LocalDateTime sentAt = LocalDateTime.now();
+        afterCommit(() -> updateUnreadState(
+                () -> chatUnreadStore.onPrivateMessage(senderId, receiverId, lastMsg, sentAt)));
 
         // 设置发送者信息
-        message.setSender(userMapper.selectById(senderId));
+        message.setSender(userBatchLoader.load(senderId));
 
-        // WebSocket推送给接收方
-        webSocketHandler.sendPrivateMessage(receiverId, message);
+        // 提交后写入最近消息缓存并推送给接收方
+        afterCommit(() -> {
+            recentMessageCache.onPrivateMessage(message);
+            webSocketHandler.sendPrivateMessage(receiverId, message);
+        });
 
         return message;
     }
@@ -387,29 +469,65 @@ public class ChatServiceImpl implements ChatService {
         IPage<ChatMessage> messages = messageMapper.findMessagesBetweenUsers(pageParam, userId, targetId);
         
         // 填充发送者信息
+        Map<Long, User> senders = userBatchLoader.loadMany(
+                messages.getRecords().stream().map(ChatMessage::getSenderId).collect(Collectors.toList()));
         for (ChatMessage msg : messages.getRecords()) {
-            msg.setSender(userMapper.selectById(msg.getSenderId()));
+            msg.setSender(senders.get(msg.getSenderId()));
         }
         
         return messages;
     }
 
+    @Override
+    public List<ChatMessage> getPrivateMessagesBefore(Long userId, Long targetId, Long beforeId, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        List<ChatMessage> messages = beforeId == null ? recentMessageCache.recentPrivate(userId, targetId, limit) : null;
+        if (messages == null) {
+            // 首屏未命中缓存时按缓存容量查询，顺便初始化缓存
+            int capacity = beforeId == null ? recentMessageCache.capacity() : 0;
+            List<ChatMessage> rows = loadPrivateBefore(userId, targetId, beforeId, Math.max(limit, capacity));
+            if (capacity > 0) {
+                recentMessageCache.fillPrivate(userId, targetId, rows.subList(0, Math.min(rows.size(), capacity)));
+            }
+            messages = rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        }
+
+        Map<Long, User> senders = userBatchLoader.loadMany(
+                messages.stream().map(ChatMessage::getSenderId).collect(Collectors.toList()));
+        for (ChatMessage msg : messages) {
+            msg.setSender(senders.get(msg.getSenderId()));
+        }
+        return messages;
+    }
+
     @Override
     @Transactional
     public void markMessagesAsRead(Long userId, Long conversationId) {
+        ChatConversation conv = conversationMapper.selectById(conversationId);
+        if (messageLog.isEnabled() && conv != null && conv.getUserId().equals(userId) && "PRIVATE".equals(conv.getType())) {
+            // 先标记未落库的消息，期间已落库的由下面的数据库更新覆盖
+            messageLog.markPrivateRead(userId, conv.getTargetId());
+        }
         messageMapper.markAsRead(conversationId, userId);
         
-        ChatConversation conv = conversationMapper.selectById(conversationId);
         if (conv != null && conv.getUserId().equals(userId)) {
-            conv.setUnreadCount(0);
-            conversationMapper.updateById(conv);
+            // 数据库未读数同事务清零：Redis 未读 Hash 过期后按数据库重新初始化时不会带回旧值
+            conversationMapper.update(null, new LambdaUpdateWrapper<ChatConversation>()
+                    .set(ChatConversation::getUnreadCount, 0)
+                    .eq(ChatConversation::getId, conversationId));
+            afterCommit(() -> updateUnreadState(
+                    () -> chatUnreadStore.reset(userId, conv.getType(), conv.getTargetId())));
+            if ("PRIVATE".equals(conv.getType())) {
+                // 缓存中的已读标记已过期，按数据库重新初始化
+                afterCommit(() -> refreshRecentPrivate(userId, conv.getTargetId()));
+            }
         }
     }
 
     @Override
     @Transactional
     public void recallMessage(Long userId, Long messageId) {
-        ChatMessage message = messageMapper.selectById(messageId);
+        ChatMessage message = findPrivateMessage(messageId);
         if (message == null || !message.getSenderId().equals(userId)) {
             throw new RuntimeException("无法撤回此消息");
         }
@@ -421,16 +539,22 @@ public class ChatServiceImpl implements ChatService {
 
         message.setIsRecalled(true);
         message.setContent("此消息已撤回");
-        messageMapper.updateById(message);
+        // 尚未落库的消息直接在日志中标记撤回
+        if (!messageLog.isEnabled() || !messageLog.recallPrivate(messageId, message.getContent())) {
+            messageMapper.updateById(message);
+        }
 
-        // 通知接收方
-        webSocketHandler.sendRecallNotice(message.getReceiverId(), messageId, "PRIVATE");
+        // 提交后丢弃最近消息缓存并通知接收方
+        afterCommit(() -> {
+            recentMessageCache.invalidatePrivate(message.getSenderId(), message.getReceiverId());
+            webSocketHandler.sendRecallNotice(message.getReceiverId(), messageId, "PRIVATE");
+        });
     }
 
     @Override
     @Transactional
     public ChatMessage forwardMessage(Long userId, Long messageId, Long targetId, String targetType) {
-        ChatMessage original = messageMapper.selectById(messageId);
+        ChatMessage original = findPrivateMessage(messageId);
         if (original == null) {
             throw new RuntimeException("消息不存在");
         }
@@ -498,15 +622,17 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public List<ChatGroup> getUserGroups(Long userId) {
         List<ChatGroupMember> memberships = groupMemberMapper.findByUserId(userId);
+        Map<Long, ChatGroup> groupMap = loadGroups(
+                memberships.stream().map(ChatGroupMember::getGroupId).collect(Collectors.toList()));
         List<ChatGroup> groups = new ArrayList<>();
-        
+
         for (ChatGroupMember membership : memberships) {
-            ChatGroup group = groupMapper.selectById(membership.getGroupId());
+            ChatGroup group = groupMap.get(membership.getGroupId());
             if (group != null) {
                 groups.add(group);
             }
         }
-        
+
         return groups;
     }
 
@@ -514,7 +640,7 @@ public class ChatServiceImpl implements ChatService {
     public ChatGroup getGroupDetail(Long groupId) {
         ChatGroup group = groupMapper.selectById(groupId);
         if (group != null) {
-            group.setOwner(userMapper.selectById(group.getOwnerId()));
+            group.setOwner(userBatchLoader.load(group.getOwnerId()));
             group.setMembers(getGroupMembers(groupId));
         }
         return group;
@@ -523,8 +649,10 @@ public class ChatServiceImpl implements ChatService {
     @Override
     public List<ChatGroupMember> getGroupMembers(Long groupId) {
         List<ChatGroupMember> members = groupMemberMapper.findByGroupId(groupId);
+        Map<Long, User> users = userBatchLoader.loadMany(
+                members.stream().map(ChatGroupMember::getUserId).collect(Collectors.toList()));
         for (ChatGroupMember member : members) {
-            member.setUser(userMapper.selectById(member.getUserId()));
+            member.setUser(users.get(member.getUserId()));
         }
         return members;
     }
@@ -603,6 +731,8 @@ public class ChatServiceImpl implements ChatService {
 
         User user = userMapper.selectById(userId);
         sendGroupMessage(groupId, userId, user.getRealName() + " 退出了群聊", "SYSTEM", null, null, null, null, null, false);
+
+        afterCommit(() -> updateUnreadState(() -> chatUnreadStore.remove(List.of(userId), "GROUP", groupId)));
     }
 
     @Override
@@ -615,6 +745,7 @@ public class ChatServiceImpl implements ChatService {
 
         // 发送解散通知
         sendGroupMessage(groupId, ownerId, "群聊已解散", "SYSTEM", null, null, null, null, null, false);
+        List<Long> memberIds = groupMemberMapper.findUserIdsByGroupId(groupId);
 
         // 删除群成员
         groupMemberMapper.delete(new LambdaQueryWrapper<ChatGroupMember>()
@@ -627,6 +758,11 @@ public class ChatServiceImpl implements ChatService {
 
         // 删除群
         groupMapper.deleteById(groupId);
+        // 晚于解散通知注册，提交后先计未读再整体移除
+        afterCommit(() -> {
+            updateUnreadState(() -> chatUnreadStore.remove(memberIds, "GROUP", groupId));
+            recentMessageCache.invalidateGroup(groupId);
+        });
 
         log.info("用户{}解散了群聊{}", ownerId, groupId);
     }
@@ -674,27 +810,35 @@ public class ChatServiceImpl implements ChatService {
         message.setAtAll(atAll);
         message.setIsRecalled(false);
         message.setReadCount(0);
-        groupMessageMapper.insert(message);
+        if (messageLog.isEnabled()) {
+            message.setId(chatIdGenerator.nextId());
+            message.setCreateTime(LocalDateTime.now());
+            message.setDeleted(0);
+            afterCommit(() -> appendGroupOrInsert(message));
+        } else {
+            groupMessageMapper.insert(message);
+        }
 
         // 设置发送者信息
-        message.setSender(userMapper.selectById(senderId));
+        message.setSender(userBatchLoader.load(senderId));
 
-        // 更新所有成员的会话
-        List<ChatGroupMember> members = groupMemberMapper.findByGroupId(groupId);
-        Set<Long> memberIds = new HashSet<>();
+        // 成员ID在事务内取快照（解散群时提交后成员已删除）
+        List<Long> memberIds = groupMemberMapper.findUserIdsByGroupId(groupId);
         String lastMsg = getLastMessagePreview(type, content);
-
-        for (ChatGroupMember member : members) {
-            memberIds.add(member.getUserId());
-            ChatConversation conv = conversationMapper.findGroupConversation(member.getUserId(), groupId);
-            if (conv != null) {
-                int unread = member.getUserId().equals(senderId) ? 0 : conv.getUnreadCount() + 1;
-                updateConversation(conv, lastMsg, unread);
-            }
-        }
-
-        // WebSocket推送给群成员
-        webSocketHandler.sendGroupMessage(groupId, message, memberIds);
+        LocalDateTime sentAt = LocalDateTime.now();
+
+        // 事务提交后：一次管道更新全部成员的未读数和群摘要，再异步推送给群成员
+        afterCommit(() -> {
+            updateUnreadState(() -> chatUnreadStore.onGroupMessage(groupId, senderId, memberIds, lastMsg, sentAt));
+            recentMessageCache.onGroupMessage(message);
+            chatFanoutExecutor.execute(() -> {
+                try {
+                    webSocketHandler.sendGroupMessage(groupId, message, new HashSet<>(memberIds));
+                } catch (Exception e) {
+                    log.error("群消息推送失败: groupId={}, messageId={}", groupId, message.getId(), e);
+                }
+            });
+        });
 
         return message;
     }
@@ -704,13 +848,36 @@ public class ChatServiceImpl implements ChatService {
         Page<ChatGroupMessage> pageParam = new Page<>(page, size);
         IPage<ChatGroupMessage> messages = groupMessageMapper.findByGroupId(pageParam, groupId);
         
+        Map<Long, User> senders = userBatchLoader.loadMany(
+                messages.getRecords().stream().map(ChatGroupMessage::getSenderId).collect(Collectors.toList()));
         for (ChatGroupMessage msg : messages.getRecords()) {
-            msg.setSender(userMapper.selectById(msg.getSenderId()));
+            msg.setSender(senders.get(msg.getSenderId()));
         }
         
         return messages;
     }
 
+    @Override
+    public List<ChatGroupMessage> getGroupMessagesBefore(Long groupId, Long beforeId, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        List<ChatGroupMessage> messages = beforeId == null ? recentMessageCache.recentGroup(groupId, limit) : null;
+        if (messages == null) {
+            int capacity = beforeId == null ? recentMessageCache.capacity() : 0;
+            List<ChatGroupMessage> rows = loadGroupBefore(groupId, beforeId, Math.max(limit, capacity));
+            if (capacity > 0) {
+                recentMessageCache.fillGroup(groupId, rows.subList(0, Math.min(rows.size(), capacity)));
+            }
+            messages = rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        }
+
+        Map<Long, User> senders = userBatchLoader.loadMany(
+                messages.stream().map(ChatGroupMessage::getSenderId).collect(Collectors.toList()));
+        for (ChatGroupMessage msg : messages) {
+            msg.setSender(senders.get(msg.getSenderId()));
+        }
+        return messages;
+    }
+
     @Override
     @Transactional
     public void setGroupAdmin(Long groupId, Long ownerId, Long userId, boolean isAdmin) {
@@ -749,11 +916,19 @@ public class ChatServiceImpl implements ChatService {
                 .eq(ChatGroupMember::getGroupId, groupId)
                 .eq(ChatGroupMember::getUserId, targetUserId));
 
+        // 删除被踢成员的群会话，否则群预览回写仍会按群更新该会话
+        conversationMapper.delete(new LambdaQueryWrapper<ChatConversation>()
+                .eq(ChatConversation::getUserId, targetUserId)
+                .eq(ChatConversation::getTargetId, groupId)
+                .eq(ChatConversation::getType, "GROUP"));
+
         group.setMemberCount((int) groupMemberMapper.countMembers(groupId));
         groupMapper.updateById(group);
 
         User targetUser = userMapper.selectById(targetUserId);
         sendGroupMessage(groupId, operatorId, targetUser.getRealName() + " 被移出了群聊", "SYSTEM", null, null, null, null, null, false);
+
+        afterCommit(() -> updateUnreadState(() -> chatUnreadStore.remove(List.of(targetUserId), "GROUP", groupId)));
     }
 
     @Override
@@ -864,7 +1039,7 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     public int getTotalUnreadCount(Long userId) {
-        return conversationMapper.getTotalUnreadCount(userId);
+        return chatUnreadStore.getTotalUnread(userId);
     }
 
     // ==================== 私有方法 ====================
@@ -898,11 +1073,126 @@ public class ChatServiceImpl implements ChatService {
         }
     }
 
-    private void updateConversation(ChatConversation conv, String lastMessage, int unreadCount) {
-        conv.setLastMessage(lastMessage);
-        conv.setLastMessageTime(LocalDateTime.now());
-        conv.setUnreadCount(unreadCount);
-        conversationMapper.updateById(conv);
+    /**
+     * 有事务时在提交后执行，避免推送出去的消息随后被回滚；无事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    /**
+     * 写入消息日志；日志写入失败（如 Redis 不可用）时直接写库，事务已提交的消息不能丢
+     */
+    private void appendPrivateOrInsert(ChatMessage message) {
+        try {
+            messageLog.appendPrivate(message);
+        } catch (Exception e) {
+            log.warn("写入消息日志失败，改为直接落库: messageId={}, reason={}", message.getId(), e.getMessage());
+            try {
+                messageMapper.insert(message);
+            } catch (Exception insertError) {
+                log.error("私聊消息落库失败: message={}", message, insertError);
+            }
+        }
+    }
+
+    private void appendGroupOrInsert(ChatGroupMessage message) {
+        try {
+            messageLog.appendGroup(message);
+        } catch (Exception e) {
+            log.warn("写入消息日志失败，改为直接落库: groupMessageId={}, reason={}", message.getId(), e.getMessage());
+            try {
+                groupMessageMapper.insert(message);
+            } catch (Exception insertError) {
+                log.error("群消息落库失败: message={}", message, insertError);
+            }
+        }
+    }
+
+    /**
+     * 按数据库重新初始化两人的最近消息缓存，失败时直接丢弃缓存
+     */
+    private void refreshRecentPrivate(Long userId, Long targetId) {
+        int capacity = recentMessageCache.capacity();
+        if (capacity == 0) {
+            return;
+        }
+        try {
+            recentMessageCache.fillPrivate(userId, targetId, loadPrivateBefore(userId, targetId, null, capacity));
+        } catch (Exception e) {
+            log.warn("刷新最近消息缓存失败: userId={}, targetId={}, reason={}", userId, targetId, e.getMessage());
+            recentMessageCache.invalidatePrivate(userId, targetId);
+        }
+    }
+
+    /**
+     * 写后落库模式下先查尚未落库的日志，再查数据库
+     */
+    private ChatMessage findPrivateMessage(Long messageId) {
+        ChatMessage message = messageLog.isEnabled() ? messageLog.findPrivate(messageId) : null;
+        return message != null ? message : messageMapper.selectById(messageId);
+    }
+
+    /**
+     * 数据库中 beforeId 之前最新的 limit 条（按ID倒序），写后落库模式下合并尚未落库的消息
+     */
+    private List<ChatMessage> loadPrivateBefore(Long userId, Long targetId, Long beforeId, int limit) {
+        List<ChatMessage> rows = messageMapper.findMessagesBetweenUsersBefore(userId, targetId, beforeId, limit);
+        if (!messageLog.isEnabled()) {
+            return rows;
+        }
+        return mergeNewestFirst(rows, messageLog.pendingPrivate(userId, targetId, beforeId, limit),
+                ChatMessage::getId, m -> Boolean.TRUE.equals(m.getIsRecalled()), limit);
+    }
+
+    private List<ChatGroupMessage> loadGroupBefore(Long groupId, Long beforeId, int limit) {
+        List<ChatGroupMessage> rows = groupMessageMapper.findByGroupIdBefore(groupId, beforeId, limit);
+        if (!messageLog.isEnabled()) {
+            return rows;
+        }
+        return mergeNewestFirst(rows, messageLog.pendingGroup(groupId, beforeId, limit),
+                ChatGroupMessage::getId, m -> Boolean.TRUE.equals(m.getIsRecalled()), limit);
+    }
+
+    /**
+     * 按ID去重（同ID以日志为准，落库与确认之间两边都有）后倒序取前 limit 条；
+     * 与数据库查询一致，不返回已撤回的消息
+     */
+    private static <T> List<T> mergeNewestFirst(List<T> rows, List<T> pending, Function<T, Long> idOf,
+                                                Predicate<T> recalled, int limit) {
+        if (pending.isEmpty()) {
+            return rows;
+        }
+        Map<Long, T> merged = new TreeMap<>(Comparator.reverseOrder());
+        rows.forEach(row -> merged.put(idOf.apply(row), row));
+        for (T message : pending) {
+            if (recalled.test(message)) {
+                merged.remove(idOf.apply(message));
+            } else {
+                merged.put(idOf.apply(message), message);
+            }
+        }
+        return merged.values().stream().limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * 未读状态更新在事务提交后执行，Redis 异常只记录，不影响已提交的消息
+     */
+    private void updateUnreadState(Runnable action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            log.error("更新会话未读状态失败", e);
+        }
     }
 
     private String getLastMessagePreview(String type, String content) {
@@ -924,4 +1214,16 @@ public class ChatServiceImpl implements ChatService {
             return "[消息]";
         }
     }
+
+    /**
+     * 批量查询群信息，按群ID索引
+     */
+    private Map<Long, ChatGroup> loadGroups(Collection<Long> groupIds) {
+        Set<Long> ids = groupIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return groupMapper.selectBatchIds(ids).stream()
+                .collect(Collectors.toMap(ChatGroup::getId, group -> group));
+    }
 }
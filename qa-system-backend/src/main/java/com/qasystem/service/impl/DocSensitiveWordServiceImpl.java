@@ -3,6 +3,7 @@ package com.qasystem.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.qasystem.doc.SensitiveWordMatcherHolder;
 import com.qasystem.entity.DocSensitiveWord;
 import com.qasystem.mapper.DocSensitiveWordMapper;
 import com.qasystem.service.DocSensitiveWordService;
@@ -22,6 +23,7 @@ import java.util.List;
 public class DocSensitiveWordServiceImpl implements DocSensitiveWordService {
 
     private final DocSensitiveWordMapper docSensitiveWordMapper;
+    private final SensitiveWordMatcherHolder sensitiveWordMatcherHolder;
 
     @Override
     public IPage<DocSensitiveWord> page(Integer page, Integer size, String keyword, String category, Boolean enabled) {
@@ -52,6 +54,7 @@ public class DocSensitiveWordServiceImpl implements DocSensitiveWordService {
         word.setCreatedAt(now);
         word.setUpdatedAt(now);
         docSensitiveWordMapper.insert(word);
+        sensitiveWordMatcherHolder.onWordsChanged();
         return word;
     }
 
@@ -68,12 +71,14 @@ public class DocSensitiveWordServiceImpl implements DocSensitiveWordService {
         db.setDescription(word.getDescription());
         db.setUpdatedAt(LocalDateTime.now());
         docSensitiveWordMapper.updateById(db);
+        sensitiveWordMatcherHolder.onWordsChanged();
         return db;
     }
 
     @Override
     public void delete(Long id) {
         docSensitiveWordMapper.deleteById(id);
+        sensitiveWordMatcherHolder.onWordsChanged();
     }
 
     @Override
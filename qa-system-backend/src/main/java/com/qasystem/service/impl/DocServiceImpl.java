@@ -1,6 +1,13 @@
 package com.qasystem.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.qasystem.config.DocRewriteProperties;
+import com.qasystem.doc.DocBatchRewriter;
+import com.qasystem.doc.ParagraphRewriteResult;
+import com.qasystem.doc.RewriteCache;
+import com.qasystem.doc.RewriteStreamListener;
+import com.qasystem.doc.WordParagraphReader;
+import com.qasystem.dto.DocBatchRewriteRequest;
 import com.qasystem.dto.DocRewriteRequest;
 import com.qasystem.dto.SaveDocVersionRequest;
 import com.qasystem.entity.DocDocument;
@@ -16,14 +23,23 @@ import com.qasystem.service.FileStorageService;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.xwpf.usermodel.IBody;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
 import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
@@ -34,7 +50,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * 文档查重与AI降重-用户侧服务实现
@@ -50,7 +67,13 @@ public class DocServiceImpl implements DocService {
     private final DocOperationLogService docOperationLogService;
     private final DocContentFilterService docContentFilterService;
     private final ChatLanguageModel chatLanguageModel;
+    private final StreamingChatLanguageModel streamingChatLanguageModel;
     private final FileStorageService fileStorageService;
+    private final WordParagraphReader wordParagraphReader;
+    private final DocBatchRewriter docBatchRewriter;
+    private final DocRewriteProperties docRewriteProperties;
+    private final TransactionTemplate transactionTemplate;
+    private final RewriteCache rewriteCache;
 
     /**
      * 上传目录（沿用 upload.path 配置约定，默认为 ./uploads）
@@ -113,6 +136,7 @@ public class DocServiceImpl implements DocService {
             document.setStatus("CHECKED");
             document.setOverallSimilarity(overallSimilarity);
             document.setAlgorithmDetail(null);
+            document.setParserVersion(WordParagraphReader.PARSER_VERSION);
             LocalDateTime now = LocalDateTime.now();
             document.setCreatedAt(now);
             document.setUpdatedAt(now);
@@ -180,29 +204,222 @@ public class DocServiceImpl implements DocService {
 
     @Override
     public Map<String, Object> rewriteText(Long userId, DocRewriteRequest request) {
+        List<dev.langchain4j.data.message.ChatMessage> messages = buildRewriteMessages(request);
+
+        RewriteCache.Entry cached = lookupRewriteCache(request);
+        if (cached != null) {
+            return completeRewrite(userId, request, cached.rewrittenText(), 0, cached);
+        }
+
+        log.info("调用AI进行文档降重，userId={}, documentId={}, paragraphId={}, style={}",
+                userId, request.getDocumentId(), request.getParagraphId(), request.getStyle());
+
+        Response<AiMessage> response = chatLanguageModel.generate(messages);
+        String rewritten = response.content().text();
+        int tokensUsed = extractTokenUsage(response);
+        rewriteCache.put(request.getText(), request.getStyle(), rewritten, tokensUsed);
+        return completeRewrite(userId, request, rewritten, tokensUsed, null);
+    }
+
+    @Override
+    public void rewriteTextStream(Long userId, DocRewriteRequest request, RewriteStreamListener listener) {
+        List<dev.langchain4j.data.message.ChatMessage> messages = buildRewriteMessages(request);
+
+        RewriteCache.Entry cached = lookupRewriteCache(request);
+        if (cached != null) {
+            // 命中缓存时整段作为一个片段推送
+            listener.onToken(cached.rewrittenText());
+            listener.onComplete(completeRewrite(userId, request, cached.rewrittenText(), 0, cached));
+            return;
+        }
+
+        log.info("调用AI进行流式文档降重，userId={}, documentId={}, paragraphId={}, style={}",
+                userId, request.getDocumentId(), request.getParagraphId(), request.getStyle());
+
+        StringBuilder streamed = new StringBuilder();
+        streamingChatLanguageModel.generate(messages, new StreamingResponseHandler<>() {
+
+            @Override
+            public void onNext(String token) {
+                streamed.append(token);
+                listener.onToken(token);
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                Map<String, Object> result;
+                try {
+                    String rewritten = response != null && response.content() != null && response.content().text() != null
+                            ? response.content().text()
+                            : streamed.toString();
+                    int tokensUsed = extractTokenUsage(response);
+                    rewriteCache.put(request.getText(), request.getStyle(), rewritten, tokensUsed);
+                    result = completeRewrite(userId, request, rewritten, tokensUsed, null);
+                } catch (Exception ex) {
+                    log.error("流式文档降重收尾失败，userId={}, documentId={}", userId, request.getDocumentId(), ex);
+                    listener.onError(ex);
+                    return;
+                }
+                listener.onComplete(result);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                log.error("流式文档降重失败，userId={}, documentId={}", userId, request.getDocumentId(), error);
+                listener.onError(error);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<DocRewriteVersion> batchRewrite(Long userId, DocBatchRewriteRequest request,
+                                                            Consumer<ParagraphRewriteResult> onParagraph) {
+        Long documentId = request.getDocumentId();
+        if (documentId == null || docDocumentMapper.selectById(documentId) == null) {
+            throw new RuntimeException("文档不存在");
+        }
+
+        List<DocParagraph> paragraphs = docParagraphMapper.selectList(
+                new LambdaQueryWrapper<DocParagraph>()
+                        .eq(DocParagraph::getDocumentId, documentId)
+                        .orderByAsc(DocParagraph::getParagraphIndex)
+        );
+        List<DocParagraph> selected = selectBatchParagraphs(paragraphs, request);
+        if (selected.isEmpty()) {
+            throw new RuntimeException("没有需要改写的段落");
+        }
+        if (selected.size() > docRewriteProperties.getMaxBatchParagraphs()) {
+            throw new RuntimeException("单次批量改写最多 " + docRewriteProperties.getMaxBatchParagraphs() + " 个段落");
+        }
+
+        log.info("调用AI进行批量文档降重，userId={}, documentId={}, paragraphs={}, style={}",
+                userId, documentId, selected.size(), request.getStyle());
+
+        SystemMessage systemMessage = new SystemMessage(buildRewriteSystemPrompt(request.getStyle()));
+        return docBatchRewriter.rewrite(selected, request.getConcurrency(), text -> {
+                    if (!request.isForceRefresh()) {
+                        Optional<RewriteCache.Entry> cached = rewriteCache.get(text, request.getStyle());
+                        if (cached.isPresent()) {
+                            // 命中时带上首次生成的消耗，批量合计与逐段改写的 tokensUsed 口径一致
+                            return Response.from(AiMessage.from(cached.get().rewrittenText()),
+                                    new TokenUsage(cached.get().tokensUsed()));
+                        }
+                    }
+                    Response<AiMessage> response = chatLanguageModel.generate(List.of(systemMessage, new UserMessage(text)));
+                    rewriteCache.put(text, request.getStyle(), response.content().text(), extractTokenUsage(response));
+                    return response;
+                }, onParagraph)
+                .thenApply(results -> transactionTemplate.execute(
+                        status -> saveBatchVersion(userId, request, paragraphs, results)));
+    }
+
+    /**
+     * 按请求选择段落：指定ID优先，其次按重复率阈值，都未指定时选择全文
+     */
+    private List<DocParagraph> selectBatchParagraphs(List<DocParagraph> paragraphs, DocBatchRewriteRequest request) {
+        if (request.getParagraphIds() != null && !request.getParagraphIds().isEmpty()) {
+            Set<Long> ids = new HashSet<>(request.getParagraphIds());
+            return paragraphs.stream().filter(p -> ids.contains(p.getId())).toList();
+        }
+        if (request.getMinSimilarity() != null) {
+            // 请求按 0~1 传入，段落重复率按百分比（0~100）存储
+            double threshold = request.getMinSimilarity() * 100.0;
+            return paragraphs.stream()
+                    .filter(p -> p.getSimilarity() != null && p.getSimilarity() >= threshold)
+                    .toList();
+        }
+        return paragraphs;
+    }
+
+    /**
+     * 用改写结果替换对应段落后拼成全文，保存为新版本；失败段落保留原文
+     */
+    private DocRewriteVersion saveBatchVersion(Long userId, DocBatchRewriteRequest request,
+                                               List<DocParagraph> paragraphs, List<ParagraphRewriteResult> results) {
+        Map<Long, String> rewrittenById = new HashMap<>();
+        int tokensUsed = 0;
+        List<String> failed = new ArrayList<>();
+        for (ParagraphRewriteResult result : results) {
+            if (result.succeeded()) {
+                rewrittenById.put(result.paragraphId(), result.rewrittenText());
+                tokensUsed += result.tokensUsed();
+            } else {
+                failed.add(String.valueOf(result.paragraphIndex()));
+            }
+        }
+        if (rewrittenById.isEmpty()) {
+            throw new RuntimeException("批量改写全部失败，未保存版本");
+        }
+
+        StringJoiner content = new StringJoiner("\n");
+        for (DocParagraph paragraph : paragraphs) {
+            content.add(rewrittenById.getOrDefault(paragraph.getId(), paragraph.getOriginalText()));
+        }
+
+        SaveDocVersionRequest versionRequest = new SaveDocVersionRequest();
+        versionRequest.setContent(content.toString());
+        versionRequest.setStyle(request.getStyle());
+        versionRequest.setRemark(request.getRemark() != null ? request.getRemark()
+                : "批量降重 " + rewrittenById.size() + "/" + results.size() + " 段");
+        DocRewriteVersion version = saveVersion(userId, request.getDocumentId(), versionRequest);
+
+        StringBuilder detail = new StringBuilder("批量AI降重 docId=").append(request.getDocumentId())
+                .append(", versionNo=").append(version.getVersionNo())
+                .append(", 成功=").append(rewrittenById.size())
+                .append(", 失败=").append(failed.size())
+                .append(", tokens=").append(tokensUsed);
+        if (!failed.isEmpty()) {
+            detail.append(", 失败段落: ").append(String.join("/", failed));
+        }
+        List<String> hits = docContentFilterService.findSensitiveWords(String.join("\n", rewrittenById.values()));
+        if (!hits.isEmpty()) {
+            detail.append(", 命中敏感词: ").append(String.join("/", hits));
+        }
+        docOperationLogService.log(userId, null, "BATCH_REWRITE", request.getDocumentId(), null, detail.toString());
+        return version;
+    }
+
+    /**
+     * 校验改写请求并构造模型消息
+     */
+    private List<dev.langchain4j.data.message.ChatMessage> buildRewriteMessages(DocRewriteRequest request) {
         String text = request.getText();
         if (text == null || text.isBlank()) {
             throw new RuntimeException("改写内容不能为空");
         }
-        String style = request.getStyle();
 
         // 构造系统提示词，后续可以从配置表/模板中加载
-        String systemPrompt = buildRewriteSystemPrompt(style);
+        String systemPrompt = buildRewriteSystemPrompt(request.getStyle());
 
         List<dev.langchain4j.data.message.ChatMessage> messages = new ArrayList<>();
         messages.add(new SystemMessage(systemPrompt));
         messages.add(new UserMessage(text));
+        return messages;
+    }
 
-        log.info("调用AI进行文档降重，userId={}, documentId={}, paragraphId={}, style={}",
-                userId, request.getDocumentId(), request.getParagraphId(), style);
-
-        Response<AiMessage> response = chatLanguageModel.generate(messages);
-        String rewritten = response.content().text();
+    /**
+     * 查询改写缓存；请求要求强制刷新时直接跳过
+     */
+    private RewriteCache.Entry lookupRewriteCache(DocRewriteRequest request) {
+        if (request.isForceRefresh()) {
+            return null;
+        }
+        return rewriteCache.get(request.getText(), request.getStyle()).orElse(null);
+    }
 
+    /**
+     * 改写完成后的收尾：组装结果，并对整段结果做一次敏感词检测和操作日志记录
+     *
+     * @param cached 命中的缓存条目，实时生成时为 null；命中时 tokensUsed 为 0，tokensSaved 为首次生成的消耗
+     */
+    private Map<String, Object> completeRewrite(Long userId, DocRewriteRequest request, String rewritten, int tokensUsed,
+                                                RewriteCache.Entry cached) {
         Map<String, Object> result = new HashMap<>();
         result.put("rewrittenText", rewritten);
-        result.put("style", style);
-        result.put("tokensUsed", response.tokenUsage() != null ? response.tokenUsage().totalTokenCount() : 0);
+        result.put("style", request.getStyle());
+        result.put("tokensUsed", tokensUsed);
+        result.put("cached", cached != null);
+        result.put("tokensSaved", cached != null ? cached.tokensUsed() : 0);
 
         // 记录敏感词和操作日志
         List<String> hits = docContentFilterService.findSensitiveWords(rewritten);
@@ -213,6 +430,9 @@ public class DocServiceImpl implements DocService {
         if (request.getParagraphId() != null) {
             detailBuilder.append(", paragraphId=").append(request.getParagraphId());
         }
+        if (cached != null) {
+            detailBuilder.append(", 命中改写缓存(节省tokens=").append(cached.tokensUsed()).append(")");
+        }
         if (!hits.isEmpty()) {
             detailBuilder.append(", 命中敏感词: ").append(String.join("/", hits));
         }
@@ -221,6 +441,13 @@ public class DocServiceImpl implements DocService {
         return result;
     }
 
+    private int extractTokenUsage(Response<AiMessage> response) {
+        if (response == null || response.tokenUsage() == null || response.tokenUsage().totalTokenCount() == null) {
+            return 0;
+        }
+        return response.tokenUsage().totalTokenCount();
+    }
+
     @Override
     public DocRewriteVersion saveVersion(Long userId, Long documentId, SaveDocVersionRequest request) {
         if (request.getContent() == null) {
@@ -278,16 +505,11 @@ public class DocServiceImpl implements DocService {
     }
 
     /**
-     * 解析Word文档为段落列表（忽略空白段落）
+     * 解析Word文档为段落列表（忽略空白段落）。
+     * 流式读取正文，不构建 XWPFDocument，嵌入图片等资源不会进入堆内存；.doc 与 .docx 均支持。
      */
     private List<String> parseWordParagraphs(MultipartFile file) throws IOException {
-        try (InputStream in = file.getInputStream(); XWPFDocument document = new XWPFDocument(in)) {
-            return document.getParagraphs().stream()
-                    .map(XWPFParagraph::getText)
-                    .map(text -> text == null ? "" : text.trim())
-                    .filter(text -> !text.isEmpty())
-                    .collect(Collectors.toList());
-        }
+        return wordParagraphReader.readParagraphs(file);
     }
 
     /**
@@ -521,8 +743,9 @@ public class DocServiceImpl implements DocService {
                     try (InputStream inputStream = Files.newInputStream(originalPath);
                          XWPFDocument wordDoc = new XWPFDocument(inputStream)) {
                         
-                        // 替换段落内容，保留格式
-                        List<XWPFParagraph> docParagraphs = wordDoc.getParagraphs();
+                        // 替换段落内容，保留格式；段落顺序与解析时一致，旧解析器保存的文档只按正文段落回填
+                        List<XWPFParagraph> docParagraphs = new ArrayList<>();
+                        collectParagraphs(wordDoc, includesTableCells(document), docParagraphs);
                         int paraIndex = 0;
                         
                         for (int i = 0; i < docParagraphs.size() && paraIndex < paragraphs.size(); i++) {
@@ -576,6 +799,28 @@ public class DocServiceImpl implements DocService {
         return out.toByteArray();
     }
 
+    private static boolean includesTableCells(DocDocument document) {
+        Integer version = document.getParserVersion();
+        return version != null && version > WordParagraphReader.PARSER_VERSION_BODY_ONLY;
+    }
+
+    /**
+     * 按文档顺序收集段落；withTables 时表格（含嵌套表格）逐单元格展开，与 WordParagraphReader 的解析顺序一致
+     */
+    private static void collectParagraphs(IBody body, boolean withTables, List<XWPFParagraph> out) {
+        for (IBodyElement element : body.getBodyElements()) {
+            if (element instanceof XWPFParagraph paragraph) {
+                out.add(paragraph);
+            } else if (withTables && element instanceof XWPFTable table) {
+                for (XWPFTableRow row : table.getRows()) {
+                    for (XWPFTableCell cell : row.getTableCells()) {
+                        collectParagraphs(cell, true, out);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * 根据风格构造系统Prompt
      */
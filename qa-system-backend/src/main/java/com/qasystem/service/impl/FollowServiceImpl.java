@@ -3,11 +3,12 @@ package com.qasystem.service.impl;
 import com.qasystem.common.util.RedisUtil;
 import com.qasystem.dto.UserProfileDTO;
 import com.qasystem.entity.Follow;
+import com.qasystem.entity.Teacher;
 import com.qasystem.entity.User;
 import com.qasystem.mapper.FollowMapper;
-import com.qasystem.mapper.TeacherMapper;
 import com.qasystem.mapper.UserMapper;
 import com.qasystem.service.FollowService;
+import com.qasystem.user.UserBatchLoader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -15,6 +16,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -27,8 +29,8 @@ public class FollowServiceImpl implements FollowService {
 
     private final FollowMapper followMapper;
     private final UserMapper userMapper;
-    private final TeacherMapper teacherMapper;
     private final RedisUtil redisUtil;
+    private final UserBatchLoader userBatchLoader;
 
     private static final String FOLLOW_KEY = "follow:";
 
@@ -80,10 +82,13 @@ public class FollowServiceImpl implements FollowService {
     @Override
     public List<UserProfileDTO> getFollowingTeachers(Long studentId) {
         List<Follow> follows = followMapper.findByFollower(studentId);
-        
+        List<Long> teacherIds = follows.stream().map(Follow::getFolloweeId).collect(Collectors.toList());
+        Map<Long, User> teachers = userBatchLoader.loadMany(teacherIds);
+        Map<Long, Teacher> teacherInfos = userBatchLoader.loadTeachers(teacherIds);
+
         return follows.stream()
                 .map(follow -> {
-                    User teacher = userMapper.selectById(follow.getFolloweeId());
+                    User teacher = teachers.get(follow.getFolloweeId());
                     if (teacher == null) return null;
                     
                     UserProfileDTO dto = new UserProfileDTO();
@@ -91,12 +96,13 @@ public class FollowServiceImpl implements FollowService {
                     dto.setUserId(teacher.getId());
                     
                     // 获取教师职称
-                    teacherMapper.findByUserId(teacher.getId()).ifPresent(t -> {
+                    Teacher t = teacherInfos.get(teacher.getId());
+                    if (t != null) {
                         dto.setTeacherNo(t.getTeacherNo());
                         dto.setTitle(t.getTitle());
                         dto.setResearch(t.getResearch());
                         dto.setCollege(t.getCollege());
-                    });
+                    }
                     
                     return dto;
                 })
@@ -107,10 +113,12 @@ public class FollowServiceImpl implements FollowService {
     @Override
     public List<UserProfileDTO> getFollowers(Long teacherId) {
         List<Follow> follows = followMapper.findByFollowee(teacherId);
-        
+        Map<Long, User> students = userBatchLoader.loadMany(
+                follows.stream().map(Follow::getFollowerId).collect(Collectors.toList()));
+
         return follows.stream()
                 .map(follow -> {
-                    User student = userMapper.selectById(follow.getFollowerId());
+                    User student = students.get(follow.getFollowerId());
                     if (student == null) return null;
                     
                     UserProfileDTO dto = new UserProfileDTO();
@@ -11,6 +11,7 @@ import com.qasystem.mapper.StudentMapper;
 import com.qasystem.mapper.TeacherMapper;
 import com.qasystem.mapper.UserMapper;
 import com.qasystem.service.ProfileService;
+import com.qasystem.user.UserBatchLoader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -39,6 +40,7 @@ public class ProfileServiceImpl implements ProfileService {
     private final TeacherMapper teacherMapper;
     private final PasswordEncoder passwordEncoder;
     private final RedisUtil redisUtil;
+    private final UserBatchLoader userBatchLoader;
 
     private static final String USER_PROFILE_CACHE_KEY = "profile:";
     private static final long CACHE_EXPIRE_DAYS = 7;
@@ -165,6 +167,7 @@ public class ProfileServiceImpl implements ProfileService {
         
         // 也清除用户信息缓存
         redisUtil.delete("user:info:" + userId);
+        userBatchLoader.evict(userId);
 
         log.info("用户信息更新成功: userId={}", userId);
 
@@ -0,0 +1,154 @@
+package com.qasystem.user;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.qasystem.entity.Teacher;
+import com.qasystem.entity.User;
+import com.qasystem.mapper.TeacherMapper;
+import com.qasystem.mapper.UserMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 用户信息批量加载器（DataLoader 风格）。
+ * <p>
+ * 调用方先收集一页数据里的全部用户ID，再一次性解析：
+ * 请求内记忆（同一 HTTP 请求中重复加载同一用户不再查询）→ 近端缓存 → 剩余ID一次 selectBatchIds。
+ * 不在 HTTP 请求线程上调用时（如 WebSocket、异步任务）跳过请求内记忆，其余行为相同。
+ * <p>
+ * 返回的 User 已去掉密码，且为共享实例，调用方只读不改。
+ */
+@Component
+@RequiredArgsConstructor
+public class UserBatchLoader {
+
+    private static final String USER_MEMO = UserBatchLoader.class.getName() + ".users";
+    private static final String TEACHER_MEMO = UserBatchLoader.class.getName() + ".teachers";
+
+    private final UserMapper userMapper;
+    private final TeacherMapper teacherMapper;
+    private final UserSummaryCache userSummaryCache;
+
+    public User load(Long userId) {
+        return userId == null ? null : loadMany(List.of(userId)).get(userId);
+    }
+
+    /**
+     * 批量加载用户，不存在的ID不会出现在结果中。
+     */
+    public Map<Long, User> loadMany(Collection<Long> userIds) {
+        Map<Long, User> memo = requestMemo(USER_MEMO);
+        Map<Long, User> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : distinct(userIds)) {
+            if (memo.containsKey(id)) {
+                putIfPresent(result, id, memo.get(id));
+                continue;
+            }
+            UserSummaryCache.Entry<User> cached = userSummaryCache.getUser(id);
+            if (cached != null) {
+                memo.put(id, cached.value());
+                putIfPresent(result, id, cached.value());
+                continue;
+            }
+            missing.add(id);
+        }
+
+        if (!missing.isEmpty()) {
+            for (User user : userMapper.selectBatchIds(missing)) {
+                User summary = new User();
+                BeanUtils.copyProperties(user, summary, "password");
+                userSummaryCache.putUser(summary.getId(), summary);
+                result.put(summary.getId(), summary);
+            }
+            for (Long id : missing) {
+                memo.put(id, result.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按用户ID批量加载教师扩展信息，非教师用户不会出现在结果中。
+     */
+    public Map<Long, Teacher> loadTeachers(Collection<Long> userIds) {
+        Map<Long, Teacher> memo = requestMemo(TEACHER_MEMO);
+        Map<Long, Teacher> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : distinct(userIds)) {
+            if (memo.containsKey(id)) {
+                putIfPresent(result, id, memo.get(id));
+                continue;
+            }
+            UserSummaryCache.Entry<Teacher> cached = userSummaryCache.getTeacher(id);
+            if (cached != null) {
+                memo.put(id, cached.value());
+                putIfPresent(result, id, cached.value());
+                continue;
+            }
+            missing.add(id);
+        }
+
+        if (!missing.isEmpty()) {
+            List<Teacher> teachers = teacherMapper.selectList(
+                    new LambdaQueryWrapper<Teacher>().in(Teacher::getUserId, missing));
+            for (Teacher teacher : teachers) {
+                result.put(teacher.getUserId(), teacher);
+            }
+            for (Long id : missing) {
+                Teacher teacher = result.get(id);
+                userSummaryCache.putTeacher(id, teacher);
+                memo.put(id, teacher);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 资料变更后调用：清掉当前请求内的记忆，并失效近端缓存（含其他节点）。
+     */
+    public void evict(Long userId) {
+        requestMemo(USER_MEMO).remove(userId);
+        requestMemo(TEACHER_MEMO).remove(userId);
+        userSummaryCache.evict(userId);
+    }
+
+    private static Set<Long> distinct(Collection<Long> ids) {
+        Set<Long> result = new LinkedHashSet<>();
+        if (ids != null) {
+            ids.stream().filter(Objects::nonNull).forEach(result::add);
+        }
+        return result;
+    }
+
+    private static <V> void putIfPresent(Map<Long, V> target, Long id, V value) {
+        if (value != null) {
+            target.put(id, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Map<Long, V> requestMemo(String name) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new HashMap<>();
+        }
+        Object memo = attributes.getAttribute(name, RequestAttributes.SCOPE_REQUEST);
+        if (memo == null) {
+            memo = new HashMap<Long, V>();
+            attributes.setAttribute(name, memo, RequestAttributes.SCOPE_REQUEST);
+        }
+        return (Map<Long, V>) memo;
+    }
+}
@@ -0,0 +1,112 @@
+package com.qasystem.user;
+
+import com.qasystem.entity.User;
+import com.qasystem.mapper.UserMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 聊天加好友的用户搜索（按用户名/姓名前缀匹配；关键词不少于 2 个字时另按姓名片段匹配，
+ * 可以只输入名字搜到中文姓名），按搜索人缓存最近一次结果。
+ * <p>
+ * 搜索框逐字输入时，连续请求的关键词通常是上一次的延长：
+ * 上一次结果不足一页（即已是该前缀的全部匹配）时，直接在上次结果里按新前缀过滤，不再查库；
+ * 关键词与上次相同（重复请求）时直接返回上次结果。缓存很短，新注册用户最多延迟 TTL 才能搜到。
+ * <p>
+ * 返回的 User 只含 id、username、realName、avatar、role，且为共享实例，调用方只读不改。
+ */
+@Component
+@RequiredArgsConstructor
+public class UserSearchCache {
+
+    /**
+     * 单次搜索返回的用户数
+     */
+    public static final int PAGE_SIZE = 20;
+
+    private static final int MAX_ENTRIES = 10_000;
+    private static final long TTL_MILLIS = 30 * 1000L;
+
+    /**
+     * 姓名全文索引的 ngram 分词长度，更短的关键词只做前缀匹配
+     */
+    private static final int NGRAM_TOKEN_SIZE = 2;
+
+    private final UserMapper userMapper;
+
+    private final Map<Long, Entry> lastSearch = new LinkedHashMap<>(256, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @param prefix   小写后的关键词
+     * @param complete 结果不足一页，即该前缀的全部匹配
+     */
+    private record Entry(String prefix, List<User> users, boolean complete, long expiresAt) {
+    }
+
+    /**
+     * 用户名或姓名以 keyword 开头、或姓名包含 keyword（至少 2 个字）的用户（不含搜索人自己），至多 PAGE_SIZE 个
+     */
+    public List<User> search(Long userId, String keyword) {
+        String prefix = keyword.trim().toLowerCase(Locale.ROOT);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        Entry last;
+        synchronized (lastSearch) {
+            last = lastSearch.get(userId);
+        }
+        if (last != null && last.expiresAt() >= System.currentTimeMillis()) {
+            if (last.prefix().equals(prefix)) {
+                return last.users();
+            }
+            // 上次未走片段匹配而这次要走时，上次结果不含片段匹配的用户，不能据此过滤
+            boolean sameScope = last.prefix().length() >= NGRAM_TOKEN_SIZE || prefix.length() < NGRAM_TOKEN_SIZE;
+            if (last.complete() && sameScope && prefix.startsWith(last.prefix())) {
+                List<User> narrowed = last.users().stream()
+                        .filter(user -> startsWith(user.getUsername(), prefix) || startsWith(user.getRealName(), prefix)
+                                || (prefix.length() >= NGRAM_TOKEN_SIZE && contains(user.getRealName(), prefix)))
+                        .toList();
+                remember(userId, new Entry(prefix, narrowed, true, last.expiresAt()));
+                return narrowed;
+            }
+        }
+
+        String trimmed = keyword.trim();
+        String phrase = trimmed.replace("\"", "");
+        List<User> users = List.copyOf(userMapper.searchByPrefix(escapeLike(trimmed),
+                phrase.length() >= NGRAM_TOKEN_SIZE ? phrase : null, userId, PAGE_SIZE));
+        remember(userId, new Entry(prefix, users, users.size() < PAGE_SIZE, System.currentTimeMillis() + TTL_MILLIS));
+        return users;
+    }
+
+    private void remember(Long userId, Entry entry) {
+        synchronized (lastSearch) {
+            lastSearch.put(userId, entry);
+        }
+    }
+
+    private static boolean startsWith(String value, String prefix) {
+        return value != null && value.toLowerCase(Locale.ROOT).startsWith(prefix);
+    }
+
+    private static boolean contains(String value, String keyword) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(keyword);
+    }
+
+    /**
+     * 转义 LIKE 通配符，关键词里的 % 和 _ 按字面匹配
+     */
+    private static String escapeLike(String keyword) {
+        return keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,108 @@
+package com.qasystem.user;
+
+import com.qasystem.common.cache.NearCacheInvalidator;
+import com.qasystem.entity.Teacher;
+import com.qasystem.entity.User;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 用户摘要近端缓存（进程内、有界、带 TTL）。
+ * <p>
+ * 缓存的是去掉密码后的 User 以及教师扩展信息（没有教师记录也会缓存，避免反复查询）。
+ * 资料变更时本节点立即失效，并通过 Redis 频道通知其他节点失效同一用户；
+ * 通知丢失时最多在 TTL 内读到旧资料。
+ */
+@Component
+@RequiredArgsConstructor
+public class UserSummaryCache {
+
+    static final String EVICT_CHANNEL = "user:summary:evict";
+
+    private static final int MAX_ENTRIES = 10_000;
+    private static final long TTL_MILLIS = 5 * 60 * 1000L;
+
+    private final NearCacheInvalidator nearCacheInvalidator;
+
+    private final Lru<User> users = new Lru<>();
+    private final Lru<Teacher> teachers = new Lru<>();
+    private NearCacheInvalidator.Channel evictChannel;
+
+    /**
+     * 缓存项；value 为 null 表示确认不存在（仅用于教师信息）。
+     */
+    record Entry<V>(V value, long expiresAt) {
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        evictChannel = nearCacheInvalidator.register(EVICT_CHANNEL, userId -> evictLocal(Long.parseLong(userId)));
+    }
+
+    Entry<User> getUser(Long userId) {
+        return users.get(userId);
+    }
+
+    void putUser(Long userId, User user) {
+        users.put(userId, user);
+    }
+
+    Entry<Teacher> getTeacher(Long userId) {
+        return teachers.get(userId);
+    }
+
+    void putTeacher(Long userId, Teacher teacher) {
+        teachers.put(userId, teacher);
+    }
+
+    /**
+     * 用户资料已变更：事务提交后（无事务则立即）失效本节点并广播给其他节点。
+     */
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        // 先失效本节点；提交前可能有并发请求把旧值读回缓存，提交后会再失效一次
+        evictLocal(userId);
+        evictChannel.invalidate(String.valueOf(userId));
+    }
+
+    private void evictLocal(Long userId) {
+        users.remove(userId);
+        teachers.remove(userId);
+    }
+
+    /**
+     * 按访问顺序淘汰的 LRU，读写都很短，直接用对象锁。
+     */
+    private static final class Lru<V> {
+
+        private final Map<Long, Entry<V>> map = new LinkedHashMap<>(256, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry<V>> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+        synchronized Entry<V> get(Long key) {
+            Entry<V> entry = map.get(key);
+            if (entry != null && entry.expiresAt() < System.currentTimeMillis()) {
+                map.remove(key);
+                return null;
+            }
+            return entry;
+        }
+
+        synchronized void put(Long key, V value) {
+            map.put(key, new Entry<>(value, System.currentTimeMillis() + TTL_MILLIS));
+        }
+
+        synchronized void remove(Long key) {
+            map.remove(key);
+        }
+    }
+}
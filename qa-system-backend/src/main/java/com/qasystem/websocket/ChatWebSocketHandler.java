@@ -1,6 +1,11 @@
 package com.qasystem.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qasystem.chat.ChatInbox;
+import com.qasystem.chat.ChatMessageRouter;
+import com.qasystem.chat.ChatPresenceNotifier;
+import com.qasystem.chat.ChatPresenceRegistry;
+import com.qasystem.chat.ChatSessionRegistry;
 import com.qasystem.entity.ChatMessage;
 import com.qasystem.entity.ChatGroupMessage;
 import lombok.RequiredArgsConstructor;
@@ -10,15 +15,20 @@ import org.springframework.web.socket.*;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
  * 聊天WebSocket处理器
  * 处理实时消息推送
+ *
+ * 同一用户可同时保持多个连接，推送写给其全部连接；每个连接有独立的发送队列，慢客户端不会拖住投递方。
+ * 私聊、群聊、撤回、好友申请等推送经 {@link ChatInbox} 写入收件箱并带上用户序号 seq，
+ * 客户端重连后发送 {"type":"SYNC","lastSeq":n} 补发缺失的帧，并按批发送 {"type":"ACK","seq":n} 确认。
+ * 会话只登记在连接所在节点（{@link ChatSessionRegistry}），在线状态写入 Redis（{@link ChatPresenceRegistry}），
+ * 所有推送经 {@link ChatMessageRouter} 投递，接收方连在其他节点时转发到该节点，多实例部署下同样可达。
  */
 @Slf4j
 @Component
@@ -26,19 +36,19 @@ import java.util.concurrent.CopyOnWriteArraySet;
 public class ChatWebSocketHandler extends TextWebSocketHandler {
 
     private final ObjectMapper objectMapper;
-
-    // 用户ID -> WebSocket会话映射
-    private static final Map<Long, WebSocketSession> userSessions = new ConcurrentHashMap<>();
-    
-    // 用户ID -> 用户所在群ID集合
-    private static final Map<Long, Set<Long>> userGroups = new ConcurrentHashMap<>();
+    private final ChatSessionRegistry sessionRegistry;
+    private final ChatPresenceRegistry presenceRegistry;
+    private final ChatMessageRouter messageRouter;
+    private final ChatPresenceNotifier presenceNotifier;
+    private final ChatInbox chatInbox;
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         Long userId = getUserIdFromSession(session);
         if (userId != null) {
-            userSessions.put(userId, session);
-            log.info("用户 {} WebSocket连接建立, 当前在线: {}", userId, userSessions.keySet());
+            boolean first = sessionRegistry.register(userId, session);
+            presenceRegistry.online(userId);
+            log.info("用户 {} WebSocket连接建立, sessionId={}", userId, session.getId());
             
             // 发送连接成功消息
             sendMessage(session, Map.of(
@@ -47,8 +57,10 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
                 "userId", userId
             ));
             
-            // 广播用户上线状态给所有在线用户
-            broadcastOnlineStatus(userId, true);
+            // 通知好友上线（同一用户再开连接时不重复通知）
+            if (first) {
+                broadcastOnlineStatus(userId, true);
+            }
         }
     }
 
@@ -56,38 +68,24 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         Long userId = getUserIdFromSession(session);
         if (userId != null) {
-            userSessions.remove(userId);
-            userGroups.remove(userId);
-            log.info("用户 {} WebSocket连接关闭", userId);
-            
-            // 广播用户离线状态给所有在线用户
-            broadcastOnlineStatus(userId, false);
+            log.info("用户 {} WebSocket连接关闭, sessionId={}", userId, session.getId());
+            // 该用户在本节点还有其他连接
+            if (!sessionRegistry.unregister(userId, session)) {
+                return;
+            }
+
+            // 其他节点上仍有连接时不算离线
+            if (presenceRegistry.offline(userId)) {
+                broadcastOnlineStatus(userId, false);
+            }
         }
     }
     
     /**
-     * 广播用户在线状态变化
+     * 广播用户在线状态变化：只推给好友，短窗口内合并后推送
      */
     private void broadcastOnlineStatus(Long userId, boolean online) {
-        Map<String, Object> statusMsg = Map.of(
-            "type", "ONLINE_STATUS",
-            "userId", userId,
-            "online", online
-        );
-        
-        for (Map.Entry<Long, WebSocketSession> entry : userSessions.entrySet()) {
-            // 不发送给自己
-            if (entry.getKey().equals(userId)) continue;
-            
-            WebSocketSession session = entry.getValue();
-            if (session != null && session.isOpen()) {
-                try {
-                    sendMessage(session, statusMsg);
-                } catch (Exception e) {
-                    log.error("广播在线状态失败: {}", e.getMessage());
-                }
-            }
-        }
+        presenceNotifier.onPresenceChange(userId, online);
     }
 
     @Override
@@ -98,9 +96,12 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             
             switch (type) {
                 case "PING" -> handlePing(session);
-                case "JOIN_GROUP" -> handleJoinGroup(session, payload);
-                case "LEAVE_GROUP" -> handleLeaveGroup(session, payload);
+                // 群消息按成员列表投递，不需要订阅；兼容旧客户端仍会发送的这两种帧
+                case "JOIN_GROUP", "LEAVE_GROUP" -> {
+                }
                 case "READ_MESSAGE" -> handleReadMessage(session, payload);
+                case "SYNC" -> handleSync(session, payload);
+                case "ACK" -> handleAck(session, payload);
                 default -> log.warn("未知消息类型: {}", type);
             }
         } catch (Exception e) {
@@ -110,148 +111,85 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
 
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        // 传输错误后容器会关闭连接并回调 afterConnectionClosed，会话与在线状态在那里统一清理
         log.error("WebSocket传输错误", exception);
-        Long userId = getUserIdFromSession(session);
-        if (userId != null) {
-            userSessions.remove(userId);
-        }
     }
 
     /**
      * 发送私聊消息给接收方
      */
     public void sendPrivateMessage(Long receiverId, ChatMessage message) {
-        log.info("尝试推送消息给用户 {}, 当前在线用户: {}", receiverId, userSessions.keySet());
-        WebSocketSession session = userSessions.get(receiverId);
-        if (session != null && session.isOpen()) {
-            try {
-                sendMessage(session, Map.of(
-                    "type", "PRIVATE_MESSAGE",
-                    "data", message
-                ));
-                log.info("成功推送消息给用户 {}", receiverId);
-            } catch (Exception e) {
-                log.error("发送私聊消息失败", e);
-            }
-        } else {
-            log.warn("用户 {} 不在线或会话已关闭, session={}", receiverId, session);
-        }
+        chatInbox.publish(receiverId, Map.of(
+            "type", "PRIVATE_MESSAGE",
+            "data", message
+        ));
     }
 
     /**
      * 发送群消息给群成员
      */
     public void sendGroupMessage(Long groupId, ChatGroupMessage message, Set<Long> memberIds) {
-        for (Long memberId : memberIds) {
-            // 不发送给发送者自己
-            if (memberId.equals(message.getSenderId())) {
-                continue;
-            }
-            
-            WebSocketSession session = userSessions.get(memberId);
-            if (session != null && session.isOpen()) {
-                try {
-                    sendMessage(session, Map.of(
-                        "type", "GROUP_MESSAGE",
-                        "groupId", groupId,
-                        "data", message
-                    ));
-                } catch (Exception e) {
-                    log.error("发送群消息失败", e);
-                }
-            }
-        }
+        // 不发送给发送者自己
+        Set<Long> receivers = new HashSet<>(memberIds);
+        receivers.remove(message.getSenderId());
+        chatInbox.publish(receivers, Map.of(
+            "type", "GROUP_MESSAGE",
+            "groupId", groupId,
+            "data", message
+        ));
     }
 
     /**
      * 发送好友申请通知
      */
     public void sendFriendRequest(Long toUserId, Map<String, Object> requestInfo) {
-        WebSocketSession session = userSessions.get(toUserId);
-        if (session != null && session.isOpen()) {
-            try {
-                sendMessage(session, Map.of(
-                    "type", "FRIEND_REQUEST",
-                    "data", requestInfo
-                ));
-            } catch (Exception e) {
-                log.error("发送好友申请通知失败", e);
-            }
-        }
+        chatInbox.publish(toUserId, Map.of(
+            "type", "FRIEND_REQUEST",
+            "data", requestInfo
+        ));
     }
 
     /**
      * 发送好友申请结果通知
      */
     public void sendFriendRequestResult(Long toUserId, boolean accepted, Map<String, Object> userInfo) {
-        WebSocketSession session = userSessions.get(toUserId);
-        if (session != null && session.isOpen()) {
-            try {
-                sendMessage(session, Map.of(
-                    "type", "FRIEND_REQUEST_RESULT",
-                    "accepted", accepted,
-                    "data", userInfo
-                ));
-            } catch (Exception e) {
-                log.error("发送好友申请结果失败", e);
-            }
-        }
+        chatInbox.publish(toUserId, Map.of(
+            "type", "FRIEND_REQUEST_RESULT",
+            "accepted", accepted,
+            "data", userInfo
+        ));
     }
 
     /**
      * 发送消息撤回通知
      */
     public void sendRecallNotice(Long receiverId, Long messageId, String conversationType) {
-        WebSocketSession session = userSessions.get(receiverId);
-        if (session != null && session.isOpen()) {
-            try {
-                sendMessage(session, Map.of(
-                    "type", "MESSAGE_RECALLED",
-                    "messageId", messageId,
-                    "conversationType", conversationType
-                ));
-            } catch (Exception e) {
-                log.error("发送撤回通知失败", e);
-            }
-        }
+        chatInbox.publish(receiverId, Map.of(
+            "type", "MESSAGE_RECALLED",
+            "messageId", messageId,
+            "conversationType", conversationType
+        ));
     }
 
     /**
-     * 发送在线状态变更
+     * 检查用户是否在线
      */
-    public void sendOnlineStatus(Long userId, boolean online, Set<Long> friendIds) {
-        for (Long friendId : friendIds) {
-            WebSocketSession session = userSessions.get(friendId);
-            if (session != null && session.isOpen()) {
-                try {
-                    sendMessage(session, Map.of(
-                        "type", "ONLINE_STATUS",
-                        "userId", userId,
-                        "online", online
-                    ));
-                } catch (Exception e) {
-                    log.error("发送在线状态失败", e);
-                }
-            }
-        }
+    public boolean isOnline(Long userId) {
+        return presenceRegistry.isOnline(userId);
     }
 
     /**
-     * 检查用户是否在线
+     * 批量检查在线状态，返回其中在线的用户
      */
-    public boolean isOnline(Long userId) {
-        WebSocketSession session = userSessions.get(userId);
-        boolean online = session != null && session.isOpen();
-        log.debug("检查用户 {} 在线状态: {}, 当前在线用户: {}", userId, online, userSessions.keySet());
-        return online;
+    public Set<Long> filterOnline(Collection<Long> userIds) {
+        return presenceRegistry.filterOnline(userIds);
     }
 
     /**
-     * 获取在线用户ID列表
+     * 获取在线用户ID列表（集群范围）
      */
     public Set<Long> getOnlineUserIds() {
-        log.info("获取在线用户列表: {}", userSessions.keySet());
-        return new HashSet<>(userSessions.keySet());
+        return presenceRegistry.getOnlineUserIds();
     }
 
     // ==================== 私有方法 ====================
@@ -260,39 +198,39 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         sendMessage(session, Map.of("type", "PONG"));
     }
 
-    private void handleJoinGroup(WebSocketSession session, Map<String, Object> payload) {
-        Long userId = getUserIdFromSession(session);
-        Long groupId = ((Number) payload.get("groupId")).longValue();
+    private void handleReadMessage(WebSocketSession session, Map<String, Object> payload) {
+        // 标记消息已读，可以通知发送方
+        Long senderId = ((Number) payload.get("senderId")).longValue();
+        Long messageId = ((Number) payload.get("messageId")).longValue();
         
-        userGroups.computeIfAbsent(userId, k -> new CopyOnWriteArraySet<>()).add(groupId);
-        log.info("用户 {} 加入群 {} 的实时推送", userId, groupId);
+        messageRouter.deliver(senderId, Map.of(
+            "type", "MESSAGE_READ",
+            "messageId", messageId
+        ));
     }
 
-    private void handleLeaveGroup(WebSocketSession session, Map<String, Object> payload) {
+    /**
+     * 断线重连补发：只发给当前会话，补发完成后回复 SYNC_DONE
+     */
+    private void handleSync(WebSocketSession session, Map<String, Object> payload) throws IOException {
         Long userId = getUserIdFromSession(session);
-        Long groupId = ((Number) payload.get("groupId")).longValue();
-        
-        Set<Long> groups = userGroups.get(userId);
-        if (groups != null) {
-            groups.remove(groupId);
+        Long lastSeq = payload.get("lastSeq") instanceof Number n ? n.longValue() : null;
+
+        ChatInbox.SyncResult result = chatInbox.sync(userId, lastSeq);
+        for (TextMessage frame : result.frames()) {
+            sessionRegistry.send(session, frame);
         }
+        sendMessage(session, Map.of(
+            "type", "SYNC_DONE",
+            "seq", result.seq(),
+            "count", result.frames().size(),
+            "resync", result.resync()
+        ));
     }
 
-    private void handleReadMessage(WebSocketSession session, Map<String, Object> payload) {
-        // 标记消息已读，可以通知发送方
-        Long senderId = ((Number) payload.get("senderId")).longValue();
-        Long messageId = ((Number) payload.get("messageId")).longValue();
-        
-        WebSocketSession senderSession = userSessions.get(senderId);
-        if (senderSession != null && senderSession.isOpen()) {
-            try {
-                sendMessage(senderSession, Map.of(
-                    "type", "MESSAGE_READ",
-                    "messageId", messageId
-                ));
-            } catch (Exception e) {
-                log.error("发送已读回执失败", e);
-            }
+    private void handleAck(WebSocketSession session, Map<String, Object> payload) {
+        if (payload.get("seq") instanceof Number seq) {
+            chatInbox.ack(getUserIdFromSession(session), seq.longValue());
         }
     }
 
@@ -310,8 +248,7 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     }
 
     private void sendMessage(WebSocketSession session, Object message) throws IOException {
-        if (session.isOpen()) {
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
-        }
+        // 经会话发送队列，与路由投递的帧保持顺序
+        sessionRegistry.send(session, new TextMessage(objectMapper.writeValueAsString(message)));
     }
 }
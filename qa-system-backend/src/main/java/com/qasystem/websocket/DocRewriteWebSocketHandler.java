@@ -2,43 +2,107 @@ package com.qasystem.websocket;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qasystem.common.websocket.QueuedWebSocketSender;
+import com.qasystem.common.websocket.QueuedWebSocketSession;
+import com.qasystem.config.DocRewriteProperties;
+import com.qasystem.doc.ParagraphRewriteResult;
+import com.qasystem.doc.RewriteStreamListener;
+import com.qasystem.dto.DocBatchRewriteRequest;
 import com.qasystem.dto.DocRewriteRequest;
 import com.qasystem.service.DocService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * 文档降重 WebSocket 处理器：
- * 客户端发送改写请求，服务端调用AI进行改写，并通过WebSocket按块推送结果，实现流式体验。
+ * 客户端发送改写请求，服务端调用流式模型改写，模型每生成一个片段即通过WebSocket推送。
  *
  * 协议约定：
- * 客户端发送：{"documentId":1,"paragraphId":101,"text":"原文...","style":"ACADEMIC"}
+ * 客户端发送：{"documentId":1,"paragraphId":101,"text":"原文...","style":"ACADEMIC","forceRefresh":false}
  * 服务端推送：
  *   {"type":"start"}
  *   {"type":"chunk","content":"部分改写文本"}
  *   ...
- *   {"type":"end"}
+ *   {"type":"end","tokensUsed":123,"cached":false,"tokensSaved":0}
+ *   （命中改写缓存时整段结果作为一个 chunk 推送，tokensUsed 为 0，tokensSaved 为首次生成的消耗）
  *   或 {"type":"error","message":"错误信息"}
+ *
+ * 批量改写：
+ * 客户端发送：{"action":"batch","documentId":1,"paragraphIds":[101,102],"style":"ACADEMIC"}
+ *   （paragraphIds 可换成 "minSimilarity":0.3（0~1），都省略则改写全文；可选 "concurrency":2 限制同时在途段落数）
+ * 服务端推送：
+ *   {"type":"batch_start","documentId":1}
+ *   {"type":"paragraph","paragraphId":101,"paragraphIndex":1,"rewrittenText":"...","tokensUsed":80}
+ *   {"type":"paragraph","paragraphId":102,"paragraphIndex":2,"error":"失败原因"}   （按完成先后推送）
+ *   ...
+ *   {"type":"batch_end","versionId":9,"versionNo":3}
+ *   或 {"type":"error","message":"错误信息"}
+ *
+ * 发送走降重专用的 {@link QueuedWebSocketSender}（线程与限制见 qa.doc.rewrite.ws-*，与聊天推送互不影响）：
+ * 模型回调线程只入队，由写线程池按会话顺序发送，慢客户端超过发送时限或缓冲上限时会被断开
+ * （计数 qa_doc_ws_slow_consumer_dropped），不会拖住模型回调线程。
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class DocRewriteWebSocketHandler extends TextWebSocketHandler {
 
+    private static final String METRIC_SLOW_CONSUMER_DROPPED = "qa_doc_ws_slow_consumer_dropped";
+
     private final DocService docService;
+    private final DocRewriteProperties docRewriteProperties;
+    private final MeterRegistry meterRegistry;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private QueuedWebSocketSender sender;
+
+    @PostConstruct
+    public void start() {
+        Counter slowConsumerDropped = Counter.builder(METRIC_SLOW_CONSUMER_DROPPED)
+                .description("Doc rewrite WebSocket sessions closed for exceeding send time or buffer limits")
+                .register(meterRegistry);
+        sender = new QueuedWebSocketSender("doc-ws", docRewriteProperties.getWsWriterThreads(),
+                docRewriteProperties.getWsSendTimeLimitMillis(), docRewriteProperties.getWsSendBufferSizeLimit(),
+                slowConsumerDropped::increment);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sender.shutdown();
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        sender.open(session);
+    }
+
     @Override
-    public void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sender.close(session);
+    }
+
+    @Override
+    public void handleTextMessage(WebSocketSession session, TextMessage message) {
         try {
             JsonNode root = objectMapper.readTree(message.getPayload());
+            if ("batch".equals(root.path("action").asText())) {
+                handleBatch(session, root);
+                return;
+            }
             DocRewriteRequest request = new DocRewriteRequest();
             if (root.hasNonNull("documentId")) {
                 request.setDocumentId(root.get("documentId").asLong());
@@ -52,49 +116,138 @@ public class DocRewriteWebSocketHandler extends TextWebSocketHandler {
             if (root.hasNonNull("style")) {
                 request.setStyle(root.get("style").asText());
             }
+            request.setForceRefresh(root.path("forceRefresh").asBoolean(false));
 
-            // 简化：从查询参数中读取 userId（前端可通过 ?userId=xxx 传递）
-            Long userId = null;
-            if (session.getUri() != null && session.getUri().getQuery() != null) {
-                String[] parts = session.getUri().getQuery().split("&");
-                for (String p : parts) {
-                    if (p.startsWith("userId=")) {
-                        userId = Long.parseLong(p.substring("userId=".length()));
-                    }
-                }
-            }
-            if (userId == null) {
-                userId = 0L;
-            }
+            Long userId = resolveUserId(session);
 
             log.info("WebSocket 文档降重请求: userId={}, documentId={}, paragraphId={}, style={}",
                     userId, request.getDocumentId(), request.getParagraphId(), request.getStyle());
 
-            session.sendMessage(new TextMessage("{\"type\":\"start\"}"));
+            send(session, Map.of("type", "start"));
+
+            // 提交后立即返回，片段由模型回调线程推送
+            docService.rewriteTextStream(userId, request, new RewriteStreamListener() {
+
+                @Override
+                public void onToken(String token) {
+                    send(session, Map.of("type", "chunk", "content", token));
+                }
+
+                @Override
+                public void onComplete(Map<String, Object> result) {
+                    Map<String, Object> end = new HashMap<>();
+                    end.put("type", "end");
+                    end.put("tokensUsed", result.getOrDefault("tokensUsed", 0));
+                    end.put("cached", result.getOrDefault("cached", false));
+                    end.put("tokensSaved", result.getOrDefault("tokensSaved", 0));
+                    send(session, end);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    sendError(session, error);
+                }
+            });
+        } catch (Exception e) {
+            log.error("WebSocket 文档降重处理失败", e);
+            sendError(session, e);
+        }
+    }
 
-            Map<String, Object> result = docService.rewriteText(userId, request);
-            String rewritten = (String) result.get("rewrittenText");
-            if (rewritten == null) {
-                rewritten = "";
+    /**
+     * 批量改写：段落在改写线程上逐个完成并推送，本方法提交后立即返回
+     */
+    private void handleBatch(WebSocketSession session, JsonNode root) {
+        if (!root.hasNonNull("documentId")) {
+            throw new RuntimeException("文档ID不能为空");
+        }
+        DocBatchRewriteRequest request = new DocBatchRewriteRequest();
+        request.setDocumentId(root.get("documentId").asLong());
+        if (root.path("paragraphIds").isArray()) {
+            List<Long> ids = new ArrayList<>();
+            root.get("paragraphIds").forEach(node -> ids.add(node.asLong()));
+            request.setParagraphIds(ids);
+        }
+        if (root.hasNonNull("minSimilarity")) {
+            double minSimilarity = root.get("minSimilarity").asDouble();
+            if (minSimilarity < 0 || minSimilarity > 1) {
+                throw new RuntimeException("重复率阈值须在 0~1 之间");
             }
+            request.setMinSimilarity(minSimilarity);
+        }
+        if (root.hasNonNull("concurrency")) {
+            request.setConcurrency(root.get("concurrency").asInt());
+        }
+        if (root.hasNonNull("style")) {
+            request.setStyle(root.get("style").asText());
+        }
+        if (root.hasNonNull("remark")) {
+            request.setRemark(root.get("remark").asText());
+        }
+        request.setForceRefresh(root.path("forceRefresh").asBoolean(false));
+
+        Long userId = resolveUserId(session);
+        log.info("WebSocket 批量文档降重请求: userId={}, documentId={}, style={}",
+                userId, request.getDocumentId(), request.getStyle());
 
-            // 将改写结果按小块推送，模拟流式输出体验
-            int chunkSize = 50;
-            for (int i = 0; i < rewritten.length(); i += chunkSize) {
-                int end = Math.min(rewritten.length(), i + chunkSize);
-                String chunk = rewritten.substring(i, end)
-                        .replace("\\", "\\\\")
-                        .replace("\"", "\\\"")
-                        .replace("\n", "\\n");
-                String json = "{\"type\":\"chunk\",\"content\":\"" + chunk + "\"}";
-                session.sendMessage(new TextMessage(json));
+        send(session, Map.of("type", "batch_start", "documentId", request.getDocumentId()));
+        docService.batchRewrite(userId, request, result -> send(session, paragraphFrame(result)))
+                .whenComplete((version, error) -> {
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        log.error("WebSocket 批量文档降重失败, documentId={}", request.getDocumentId(), cause);
+                        sendError(session, cause);
+                        return;
+                    }
+                    send(session, Map.of("type", "batch_end",
+                            "versionId", version.getId(),
+                            "versionNo", version.getVersionNo()));
+                });
+    }
+
+    private Map<String, Object> paragraphFrame(ParagraphRewriteResult result) {
+        Map<String, Object> frame = new HashMap<>();
+        frame.put("type", "paragraph");
+        frame.put("paragraphId", result.paragraphId());
+        frame.put("paragraphIndex", result.paragraphIndex());
+        if (result.succeeded()) {
+            frame.put("rewrittenText", result.rewrittenText());
+            frame.put("tokensUsed", result.tokensUsed());
+        } else {
+            frame.put("error", result.error());
+        }
+        return frame;
+    }
+
+    /**
+     * 简化：从查询参数中读取 userId（前端可通过 ?userId=xxx 传递）
+     */
+    private Long resolveUserId(WebSocketSession session) {
+        if (session.getUri() != null && session.getUri().getQuery() != null) {
+            String[] parts = session.getUri().getQuery().split("&");
+            for (String p : parts) {
+                if (p.startsWith("userId=")) {
+                    return Long.parseLong(p.substring("userId=".length()));
+                }
             }
+        }
+        return 0L;
+    }
+
+    private void sendError(WebSocketSession session, Throwable error) {
+        String msg = error.getMessage() == null ? "文档降重失败" : error.getMessage();
+        send(session, Map.of("type", "error", "message", msg));
+    }
 
-            session.sendMessage(new TextMessage("{\"type\":\"end\"}"));
+    private void send(WebSocketSession session, Map<String, Object> frame) {
+        try {
+            // 只入队；超过发送时限或缓冲上限时发送队列会关闭会话
+            QueuedWebSocketSession queued = sender.get(session);
+            if (queued == null || !queued.offer(new TextMessage(objectMapper.writeValueAsString(frame)))) {
+                log.debug("WebSocket 文档降重会话已关闭, 丢弃推送, sessionId={}", session.getId());
+            }
         } catch (Exception e) {
-            log.error("WebSocket 文档降重处理失败", e);
-            String msg = e.getMessage() == null ? "文档降重失败" : e.getMessage().replace("\"", "'");
-            session.sendMessage(new TextMessage("{\"type\":\"error\",\"message\":\"" + msg + "\"}"));
+            log.warn("WebSocket 文档降重推送失败, sessionId={}, reason={}", session.getId(), e.getMessage());
         }
     }
 }
@@ -0,0 +1,22 @@
+-- 按 (target_id, type) 定位一个群的全部成员会话：未读/预览回写（ChatUnreadStore）按群更新 last_message，
+-- 解散群时按群删除会话。未读数已改由 Redis 维护，不再在发消息时按群批量更新会话行
+-- 兼容重复执行：通过 information_schema 判断后再建索引
+SET @db = DATABASE();
+
+SET @conversation_idx_exists = (
+    SELECT COUNT(1)
+    FROM information_schema.statistics
+    WHERE table_schema = @db
+      AND table_name = 'chat_conversation'
+      AND index_name = 'idx_target_type'
+);
+
+SET @conversation_idx_ddl = IF(
+    @conversation_idx_exists = 0,
+    'ALTER TABLE `chat_conversation` ADD INDEX `idx_target_type` (`target_id`, `type`)',
+    'SELECT 1'
+);
+
+PREPARE stmt_conversation_idx FROM @conversation_idx_ddl;
+EXECUTE stmt_conversation_idx;
+DEALLOCATE PREPARE stmt_conversation_idx;
@@ -0,0 +1,39 @@
+-- 聊天记录改为按消息ID游标分页：私聊按 (sender_id, receiver_id, id)，群聊按 (group_id, id) 倒序取
+-- 兼容重复执行：通过 information_schema 判断后再建索引
+SET @db = DATABASE();
+
+SET @private_idx_exists = (
+    SELECT COUNT(1)
+    FROM information_schema.statistics
+    WHERE table_schema = @db
+      AND table_name = 'chat_message'
+      AND index_name = 'idx_sender_receiver_id'
+);
+
+SET @private_idx_ddl = IF(
+    @private_idx_exists = 0,
+    'ALTER TABLE `chat_message` ADD INDEX `idx_sender_receiver_id` (`sender_id`, `receiver_id`, `id`)',
+    'SELECT 1'
+);
+
+PREPARE stmt_private_idx FROM @private_idx_ddl;
+EXECUTE stmt_private_idx;
+DEALLOCATE PREPARE stmt_private_idx;
+
+SET @group_idx_exists = (
+    SELECT COUNT(1)
+    FROM information_schema.statistics
+    WHERE table_schema = @db
+      AND table_name = 'chat_group_message'
+      AND index_name = 'idx_group_id_id'
+);
+
+SET @group_idx_ddl = IF(
+    @group_idx_exists = 0,
+    'ALTER TABLE `chat_group_message` ADD INDEX `idx_group_id_id` (`group_id`, `id`)',
+    'SELECT 1'
+);
+
+PREPARE stmt_group_idx FROM @group_idx_ddl;
+EXECUTE stmt_group_idx;
+DEALLOCATE PREPARE stmt_group_idx;
@@ -0,0 +1,41 @@
+-- 聊天加好友的用户搜索改为前缀匹配（LIKE 'kw%'），用户名、姓名各自需要以该列开头的索引
+-- 兼容重复执行：已有以该列开头的索引（如用户名唯一索引）时不再新建
+SET @db = DATABASE();
+
+SET @username_idx_exists = (
+    SELECT COUNT(1)
+    FROM information_schema.statistics
+    WHERE table_schema = @db
+      AND table_name = 'user'
+      AND column_name = 'username'
+      AND seq_in_index = 1
+);
+
+SET @username_idx_ddl = IF(
+    @username_idx_exists = 0,
+    'ALTER TABLE `user` ADD INDEX `idx_username` (`username`)',
+    'SELECT 1'
+);
+
+PREPARE stmt_username_idx FROM @username_idx_ddl;
+EXECUTE stmt_username_idx;
+DEALLOCATE PREPARE stmt_username_idx;
+
+SET @real_name_idx_exists = (
+    SELECT COUNT(1)
+    FROM information_schema.statistics
+    WHERE table_schema = @db
+      AND table_name = 'user'
+      AND column_name = 'real_name'
+      AND seq_in_index = 1
+);
+
+SET @real_name_idx_ddl = IF(
+    @real_name_idx_exists = 0,
+    'ALTER TABLE `user` ADD INDEX `idx_real_name` (`real_name`)',
+    'SELECT 1'
+);
+
+PREPARE stmt_real_name_idx FROM @real_name_idx_ddl;
+EXECUTE stmt_real_name_idx;
+DEALLOCATE PREPARE stmt_real_name_idx;
@@ -0,0 +1,28 @@
+-- AI 会话索引表：会话列表和标题查询不再对 ai_conversation 做 GROUP BY 自连接
+-- 每个会话一行，由保存对话、重命名、删除会话、收藏时增量维护
+CREATE TABLE IF NOT EXISTS `ai_session` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+  `user_id` BIGINT NOT NULL COMMENT '用户ID',
+  `session_id` VARCHAR(100) NOT NULL COMMENT '会话ID',
+  `title` VARCHAR(200) NULL COMMENT '会话标题',
+  `last_at` DATETIME NOT NULL COMMENT '最后一轮对话时间',
+  `turn_count` INT NOT NULL DEFAULT 0 COMMENT '对话轮数',
+  `is_bookmarked` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '会话内是否有收藏的回答',
+  `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_user_session` (`user_id`, `session_id`),
+  -- 覆盖会话列表查询的全部列，按 last_at 倒序范围扫描即可，不回表
+  INDEX `idx_user_last_at` (`user_id`, `last_at`, `session_id`, `title`, `turn_count`, `is_bookmarked`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI会话索引表';
+
+-- 回填已有会话；重复执行时已存在的会话保持不变
+INSERT IGNORE INTO `ai_session` (`user_id`, `session_id`, `title`, `last_at`, `turn_count`, `is_bookmarked`)
+SELECT `user_id`,
+       `session_id`,
+       MAX(`session_title`),
+       MAX(`created_at`),
+       COUNT(1),
+       MAX(IFNULL(`is_bookmarked`, 0))
+FROM `ai_conversation`
+GROUP BY `user_id`, `session_id`;
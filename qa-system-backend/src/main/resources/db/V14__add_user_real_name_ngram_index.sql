@@ -0,0 +1,21 @@
+-- 用户搜索的姓名前缀匹配找不到按名字（不含姓）搜索的用户，补充 ngram 全文索引，按片段匹配姓名中任意位置
+-- 兼容重复执行：通过 information_schema 判断后再建索引
+SET @db = DATABASE();
+
+SET @real_name_ngram_exists = (
+    SELECT COUNT(1)
+    FROM information_schema.statistics
+    WHERE table_schema = @db
+      AND table_name = 'user'
+      AND index_name = 'idx_real_name_ngram'
+);
+
+SET @real_name_ngram_ddl = IF(
+    @real_name_ngram_exists = 0,
+    'ALTER TABLE `user` ADD FULLTEXT INDEX `idx_real_name_ngram` (`real_name`) WITH PARSER ngram',
+    'SELECT 1'
+);
+
+PREPARE stmt_real_name_ngram FROM @real_name_ngram_ddl;
+EXECUTE stmt_real_name_ngram;
+DEALLOCATE PREPARE stmt_real_name_ngram;
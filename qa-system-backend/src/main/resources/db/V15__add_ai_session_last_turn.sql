@@ -0,0 +1,35 @@
+-- 会话列表需要返回最新一轮的记录ID与用户消息（前端在没有标题时用它做预览），ai_session 补充这两列
+-- 兼容重复执行：通过 information_schema 判断后再加列，回填只处理尚未填写的会话
+SET @db = DATABASE();
+
+SET @last_turn_exists = (
+    SELECT COUNT(1)
+    FROM information_schema.columns
+    WHERE table_schema = @db
+      AND table_name = 'ai_session'
+      AND column_name = 'last_conversation_id'
+);
+
+SET @last_turn_ddl = IF(
+    @last_turn_exists = 0,
+    'ALTER TABLE `ai_session` ADD COLUMN `last_conversation_id` BIGINT NULL COMMENT ''最新一轮对话记录ID'' AFTER `is_bookmarked`, ADD COLUMN `last_user_message` VARCHAR(500) NULL COMMENT ''最新一轮用户消息（截断）'' AFTER `last_conversation_id`',
+    'SELECT 1'
+);
+
+PREPARE stmt_last_turn FROM @last_turn_ddl;
+EXECUTE stmt_last_turn;
+DEALLOCATE PREPARE stmt_last_turn;
+
+UPDATE `ai_session` s
+INNER JOIN (
+    SELECT c.`user_id`, c.`session_id`, c.`id`, c.`user_message`
+    FROM `ai_conversation` c
+    INNER JOIN (
+        SELECT `user_id`, `session_id`, MAX(`id`) AS `max_id`
+        FROM `ai_conversation`
+        GROUP BY `user_id`, `session_id`
+    ) m ON c.`id` = m.`max_id`
+) l ON s.`user_id` = l.`user_id` AND s.`session_id` = l.`session_id`
+SET s.`last_conversation_id` = l.`id`,
+    s.`last_user_message` = LEFT(l.`user_message`, 500)
+WHERE s.`last_conversation_id` IS NULL;
@@ -0,0 +1,22 @@
+-- 解析器改为把表格单元格内的段落也按文档顺序编号，旧文档保存的段落编号只含正文段落
+-- 记录每个文档的段落编号口径，导出时按口径回填，已有文档默认 1（仅正文段落），不需要重新解析
+-- 兼容重复执行：通过 information_schema 判断后再加列
+SET @db = DATABASE();
+
+SET @parser_version_exists = (
+    SELECT COUNT(1)
+    FROM information_schema.columns
+    WHERE table_schema = @db
+      AND table_name = 'doc_document'
+      AND column_name = 'parser_version'
+);
+
+SET @parser_version_ddl = IF(
+    @parser_version_exists = 0,
+    'ALTER TABLE `doc_document` ADD COLUMN `parser_version` INT NOT NULL DEFAULT 1 COMMENT ''段落编号口径：1=仅正文段落，2=含表格单元格段落'' AFTER `algorithm_detail`',
+    'SELECT 1'
+);
+
+PREPARE stmt_parser_version FROM @parser_version_ddl;
+EXECUTE stmt_parser_version;
+DEALLOCATE PREPARE stmt_parser_version;
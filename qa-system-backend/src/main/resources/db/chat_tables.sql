@@ -50,6 +50,7 @@ CREATE TABLE IF NOT EXISTS `chat_conversation` (
     `deleted` TINYINT DEFAULT 0 COMMENT '逻辑删除',
     UNIQUE KEY `uk_user_target_type` (`user_id`, `target_id`, `type`),
     INDEX `idx_user_id` (`user_id`),
+    INDEX `idx_target_type` (`target_id`, `type`),
     INDEX `idx_last_time` (`last_message_time` DESC)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='聊天会话表';
 
@@ -76,6 +77,7 @@ CREATE TABLE IF NOT EXISTS `chat_message` (
     INDEX `idx_conversation` (`conversation_id`),
     INDEX `idx_sender` (`sender_id`),
     INDEX `idx_receiver` (`receiver_id`),
+    INDEX `idx_sender_receiver_id` (`sender_id`, `receiver_id`, `id`),
     INDEX `idx_create_time` (`create_time` DESC)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='私聊消息表';
 
@@ -140,6 +142,7 @@ CREATE TABLE IF NOT EXISTS `chat_group_message` (
     `create_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '发送时间',
     `deleted` TINYINT DEFAULT 0 COMMENT '逻辑删除',
     INDEX `idx_group_id` (`group_id`),
+    INDEX `idx_group_id_id` (`group_id`, `id`),
     INDEX `idx_sender` (`sender_id`),
     INDEX `idx_create_time` (`create_time` DESC)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='群消息表';
@@ -9,6 +9,7 @@ CREATE TABLE IF NOT EXISTS `doc_document` (
     `status`       VARCHAR(50)  NOT NULL DEFAULT 'CHECKED' COMMENT '状态：UPLOADED/CHECKING/CHECKED/REWRITING/COMPLETED',
     `overall_similarity` DECIMAL(5,2) DEFAULT 0 COMMENT '整体查重率(0-100)',
     `algorithm_detail`   TEXT        NULL COMMENT '算法详细得分(JSON)',
+    `parser_version`     INT         NOT NULL DEFAULT 1 COMMENT '段落编号口径：1=仅正文段落，2=含表格单元格段落',
     `created_at`   DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `updated_at`   DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (`id`),
@@ -0,0 +1,68 @@
+package com.qasystem.ai;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void shouldRejectWhenLimitReachedAndNoQueue() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4, 0, 1000, 0.5);
+        Assertions.assertTrue(limiter.tryAcquire(0));
+        Assertions.assertTrue(limiter.tryAcquire(0));
+        Assertions.assertFalse(limiter.tryAcquire(100));
+        Assertions.assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    void shouldShrinkOnFailureAndGrowOnSuccess() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 8, 0, 1000, 0.5);
+        Assertions.assertTrue(limiter.tryAcquire(0));
+        limiter.release(false, -1L);
+        Assertions.assertEquals(2, limiter.limit());
+
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(limiter.tryAcquire(0));
+            limiter.release(true, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        Assertions.assertTrue(limiter.limit() > 2);
+    }
+
+    @Test
+    void shouldTreatSlowCallAsOverload() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 8, 0, 100, 0.5);
+        Assertions.assertTrue(limiter.tryAcquire(0));
+        limiter.release(true, TimeUnit.MILLISECONDS.toNanos(500));
+        Assertions.assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    void shouldKeepHeadroomForInteractiveCalls() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 4, 0, 1000, 0.5);
+        Assertions.assertTrue(limiter.tryAcquireLowPriority(0.5));
+        Assertions.assertTrue(limiter.tryAcquireLowPriority(0.5));
+        Assertions.assertFalse(limiter.tryAcquireLowPriority(0.5));
+        Assertions.assertTrue(limiter.tryAcquire(0));
+        Assertions.assertTrue(limiter.tryAcquire(0));
+        Assertions.assertEquals(4, limiter.inFlight());
+    }
+
+    @Test
+    void shouldWakeQueuedCallerOnRelease() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, 1, 1000, 0.5);
+        Assertions.assertTrue(limiter.tryAcquire(0));
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            limiter.release(true, 0L);
+        });
+        releaser.start();
+        Assertions.assertTrue(limiter.tryAcquire(2000));
+        releaser.join();
+    }
+}
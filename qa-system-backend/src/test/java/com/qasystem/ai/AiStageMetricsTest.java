@@ -0,0 +1,60 @@
+package com.qasystem.ai;
+
+import com.qasystem.ai.rag.InterviewScene;
+import com.qasystem.ai.rag.RagRetrievalMode;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+class AiStageMetricsTest {
+
+    @Test
+    void shouldRecordToPreRegisteredStageTimer() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AiStageMetrics metrics = new AiStageMetrics(registry);
+        metrics.register();
+
+        long modelCallStages = Arrays.stream(AiStageMetrics.Stage.values()).filter(AiStageMetrics.Stage::isModelCall).count();
+        int registered = registry.find(AiStageMetrics.METRIC_STAGE_LATENCY).timers().size();
+        Assertions.assertEquals(AiStageMetrics.Stage.values().length - modelCallStages
+                + modelCallStages * InterviewScene.values().length * RagRetrievalMode.values().length, registered);
+
+        metrics.record(AiStageMetrics.Stage.GENERATION, InterviewScene.CODING, RagRetrievalMode.HYBRID,
+                TimeUnit.MILLISECONDS.toNanos(12));
+        metrics.record(AiStageMetrics.Stage.GENERATION, null, null, TimeUnit.MILLISECONDS.toNanos(3));
+
+        Timer coding = registry.get(AiStageMetrics.METRIC_STAGE_LATENCY)
+                .tags("stage", "generation", "scene", "coding", "mode", "HYBRID")
+                .timer();
+        Assertions.assertEquals(1, coding.count());
+        Assertions.assertEquals(12D, coding.totalTime(TimeUnit.MILLISECONDS), 0.001D);
+
+        Timer fallback = registry.get(AiStageMetrics.METRIC_STAGE_LATENCY)
+                .tags("stage", "generation", "scene", "general", "mode", "NONE")
+                .timer();
+        Assertions.assertEquals(1, fallback.count());
+        Assertions.assertEquals(registered, registry.find(AiStageMetrics.METRIC_STAGE_LATENCY).timers().size());
+    }
+
+    @Test
+    void shouldRecordSubStagesWithoutSceneTags() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AiStageMetrics metrics = new AiStageMetrics(registry);
+        metrics.register();
+
+        metrics.record(AiStageMetrics.Stage.EMBEDDING, InterviewScene.CODING, RagRetrievalMode.HYBRID,
+                TimeUnit.MILLISECONDS.toNanos(12));
+        metrics.record(AiStageMetrics.Stage.EMBEDDING, null, null, TimeUnit.MILLISECONDS.toNanos(3));
+
+        Timer embedding = registry.get(AiStageMetrics.METRIC_STAGE_LATENCY).tags("stage", "embedding").timer();
+        Assertions.assertEquals(2, embedding.count());
+        Assertions.assertTrue(embedding.getId().getTags().stream().noneMatch(tag -> tag.getKey().equals("scene")));
+
+        Timer request = registry.get(AiStageMetrics.METRIC_AI_REQUEST_LATENCY_MS).timer();
+        Assertions.assertTrue(request.getId().getTags().isEmpty());
+    }
+}
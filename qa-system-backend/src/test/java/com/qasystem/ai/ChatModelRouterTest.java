@@ -0,0 +1,111 @@
+package com.qasystem.ai;
+
+import com.qasystem.config.LocalAiProviderProperties;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ChatModelRouterTest {
+
+    private final LocalAiProviderProperties properties = new LocalAiProviderProperties();
+    private ChatModelRouter router;
+
+    @BeforeEach
+    void setUp() {
+        properties.getFailover().setFailureThreshold(2);
+        router = new ChatModelRouter(properties);
+        router.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        router.stop();
+    }
+
+    @Test
+    void shouldFailoverToNextProvider() {
+        AtomicInteger backupCalls = new AtomicInteger();
+        router.setRoutes(List.of(
+                route("primary", 0, messages -> {
+                    throw new IllegalStateException("down");
+                }),
+                route("backup", 1, messages -> {
+                    backupCalls.incrementAndGet();
+                    return Response.from(AiMessage.from("ok"));
+                })
+        ));
+
+        Response<AiMessage> response = router.chatModel().generate(List.<ChatMessage>of(UserMessage.from("hi")));
+        Assertions.assertEquals("ok", response.content().text());
+        Assertions.assertEquals(1, backupCalls.get());
+    }
+
+    @Test
+    void shouldOpenCircuitAfterConsecutiveFailures() {
+        router.setRoutes(List.of(route("primary", 0, messages -> {
+            throw new IllegalStateException("down");
+        })));
+
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThrows(IllegalStateException.class,
+                    () -> router.chatModel().generate(List.<ChatMessage>of(UserMessage.from("hi"))));
+        }
+        Assertions.assertTrue(router.routes().get(0).health().isOpen());
+    }
+
+    @Test
+    void shouldPreferProviderWithoutFailures() {
+        AtomicInteger primaryCalls = new AtomicInteger();
+        router.setRoutes(List.of(
+                route("primary", 0, messages -> {
+                    primaryCalls.incrementAndGet();
+                    throw new IllegalStateException("down");
+                }),
+                route("backup", 1, messages -> Response.from(AiMessage.from("ok")))
+        ));
+
+        for (int i = 0; i < 3; i++) {
+            router.chatModel().generate(List.<ChatMessage>of(UserMessage.from("hi")));
+        }
+        Assertions.assertEquals(1, primaryCalls.get());
+    }
+
+    @Test
+    void shouldProbeOpenCircuitWithLiveRequest() throws InterruptedException {
+        properties.getFailover().setHealthCheckInterval(1);
+        AtomicInteger primaryCalls = new AtomicInteger();
+        router.setRoutes(List.of(
+                route("primary", 0, messages -> {
+                    primaryCalls.incrementAndGet();
+                    return Response.from(AiMessage.from("primary"));
+                }),
+                route("backup", 1, messages -> Response.from(AiMessage.from("backup")))
+        ));
+
+        router.routes().get(0).health().recordFailure(2);
+        router.routes().get(0).health().recordFailure(2);
+        Assertions.assertTrue(router.routes().get(0).health().isOpen());
+
+        // 探测间隔内熔断的供应商不接请求
+        Assertions.assertEquals("backup", router.chatModel().generate(List.<ChatMessage>of(UserMessage.from("hi"))).content().text());
+        Assertions.assertEquals(0, primaryCalls.get());
+
+        Thread.sleep(1100);
+        Assertions.assertEquals("primary", router.chatModel().generate(List.<ChatMessage>of(UserMessage.from("hi"))).content().text());
+        Assertions.assertEquals(1, primaryCalls.get());
+        Assertions.assertFalse(router.routes().get(0).health().isOpen());
+    }
+
+    private ChatModelRouter.Route route(String name, int rank, ChatLanguageModel model) {
+        return new ChatModelRouter.Route(name, rank, model, (messages, handler) -> handler.onError(new UnsupportedOperationException()));
+    }
+}
@@ -0,0 +1,34 @@
+package com.qasystem.doc;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class SensitiveWordMatcherTest {
+
+    @Test
+    void shouldFindOverlappingAndNestedWordsInOnePass() {
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(List.of("he", "she", "his", "hers", "作弊", "考试作弊"));
+
+        Assertions.assertEquals(List.of("she", "he", "hers"), matcher.findAll("ushers"));
+        Assertions.assertEquals(List.of("考试作弊", "作弊"), matcher.findAll("严禁考试作弊，作弊者处分"));
+        Assertions.assertTrue(matcher.containsAny("this is his"));
+        Assertions.assertFalse(matcher.containsAny("正常的学术内容"));
+    }
+
+    @Test
+    void shouldMatchCaseInsensitivelyAndReturnOriginalWord() {
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(List.of("ChatGPT"));
+
+        Assertions.assertEquals(List.of("ChatGPT"), matcher.findAll("本文由 chatgpt 生成"));
+    }
+
+    @Test
+    void emptyMatcherShouldMatchNothing() {
+        SensitiveWordMatcher matcher = SensitiveWordMatcher.build(List.of());
+
+        Assertions.assertEquals(0, matcher.size());
+        Assertions.assertTrue(matcher.findAll("任意文本").isEmpty());
+    }
+}
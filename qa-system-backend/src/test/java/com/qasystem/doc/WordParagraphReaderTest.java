@@ -0,0 +1,118 @@
+package com.qasystem.doc;
+
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class WordParagraphReaderTest {
+
+    private static final List<String> EXPECTED = List.of(
+            "第一段：线程池复用线程。", "第二段\t带制表符", "单元格甲", "单元格乙", "第三段");
+
+    private final WordParagraphReader reader = new WordParagraphReader();
+
+    @Test
+    void shouldReadDocxBodyAndTableCellParagraphs() throws IOException {
+        byte[] docx;
+        try (XWPFDocument document = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            document.createParagraph().createRun().setText("第一段：线程池复用线程。");
+            document.createParagraph().createRun().setText("   ");
+            XWPFParagraph multiRun = document.createParagraph();
+            multiRun.createRun().setText("第二段");
+            XWPFRun second = multiRun.createRun();
+            second.addTab();
+            second.setText("带制表符");
+            XWPFTable table = document.createTable(1, 2);
+            table.getRow(0).getCell(0).setText("单元格甲");
+            table.getRow(0).getCell(1).setText("单元格乙");
+            document.createParagraph().createRun().setText("第三段");
+            document.write(out);
+            docx = out.toByteArray();
+        }
+
+        List<String> paragraphs = reader.readParagraphs(new MockMultipartFile("file", "a.docx", null, docx));
+
+        Assertions.assertEquals(EXPECTED, paragraphs);
+    }
+
+    @Test
+    void shouldReadDocParagraphsLikeDocx() throws IOException {
+        // 单元格以 0x07 结束，行尾再跟一个 0x07；域只保留域结果；末段放在单字节压缩片段里
+        String unicodePiece = "第一段：线程池复用线程。\r   \r"
+                + "第二段\t带\u0013 HYPERLINK \"http://a\" \u0014制表符\u0015\r"
+                + "单元格甲\u0007单元格乙\u0007\u0007"
+                + "第三段\r";
+        String compressedPiece = "Tail\r";
+        byte[] doc = buildWord97(unicodePiece, compressedPiece);
+
+        List<String> paragraphs = reader.readParagraphs(new MockMultipartFile("file", "a.doc", null, doc));
+
+        Assertions.assertEquals(EXPECTED, paragraphs.subList(0, EXPECTED.size()));
+        Assertions.assertEquals(List.of("Tail"), paragraphs.subList(EXPECTED.size(), paragraphs.size()));
+    }
+
+    @Test
+    void shouldRejectUnknownFormat() {
+        MockMultipartFile file = new MockMultipartFile("file", "a.doc", null, "plain text".getBytes());
+        Assertions.assertThrows(IOException.class, () -> reader.readParagraphs(file));
+    }
+
+    /**
+     * 构造最小的 Word 97 文档：WordDocument 流只含 FIB 和正文，1Table 流只含两片段的 Clx
+     */
+    private static byte[] buildWord97(String unicodePiece, String compressedPiece) throws IOException {
+        byte[] unicode = unicodePiece.getBytes(StandardCharsets.UTF_16LE);
+        byte[] compressed = compressedPiece.getBytes(StandardCharsets.ISO_8859_1);
+        int unicodeFc = 1024;
+        int compressedFc = unicodeFc + unicode.length;
+
+        byte[] wordDocument = new byte[compressedFc + compressed.length];
+        LittleEndian.putUShort(wordDocument, 0, 0xA5EC);
+        LittleEndian.putUShort(wordDocument, 2, 193);
+        LittleEndian.putUShort(wordDocument, 0x0A, 0x0200);
+        // csw=14 -> fibRgW 28 字节；cslw=22 -> fibRgLw 88 字节；cbRgFcLcb=93
+        LittleEndian.putUShort(wordDocument, 32, 14);
+        int cslwOffset = 34 + 14 * 2;
+        LittleEndian.putUShort(wordDocument, cslwOffset, 22);
+        int ccpText = unicodePiece.length() + compressedPiece.length();
+        LittleEndian.putInt(wordDocument, cslwOffset + 2 + 3 * 4, ccpText);
+        int cbRgFcLcbOffset = cslwOffset + 2 + 22 * 4;
+        LittleEndian.putUShort(wordDocument, cbRgFcLcbOffset, 93);
+        System.arraycopy(unicode, 0, wordDocument, unicodeFc, unicode.length);
+        System.arraycopy(compressed, 0, wordDocument, compressedFc, compressed.length);
+
+        // Clx = 0x02 | lcb | PlcPcd(3 个 CP + 2 个 PCD)
+        int lcb = 3 * 4 + 2 * 8;
+        byte[] table = new byte[1 + 4 + lcb];
+        table[0] = 0x02;
+        LittleEndian.putInt(table, 1, lcb);
+        LittleEndian.putInt(table, 5, 0);
+        LittleEndian.putInt(table, 9, unicodePiece.length());
+        LittleEndian.putInt(table, 13, ccpText);
+        LittleEndian.putInt(table, 17 + 2, unicodeFc);
+        LittleEndian.putInt(table, 25 + 2, (compressedFc * 2) | 0x40000000);
+
+        int fcLcbClx = cbRgFcLcbOffset + 2 + 33 * 8;
+        LittleEndian.putInt(wordDocument, fcLcbClx, 0);
+        LittleEndian.putInt(wordDocument, fcLcbClx + 4, table.length);
+
+        try (POIFSFileSystem fs = new POIFSFileSystem(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            fs.createDocument(new ByteArrayInputStream(wordDocument), "WordDocument");
+            fs.createDocument(new ByteArrayInputStream(table), "1Table");
+            fs.writeFilesystem(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.qasystem.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 端到端压测工具：按目标 RPS 以开环方式发请求，结束后输出吞吐和 p50/p95/p99。
+ * <p>
+ * 场景：
+ * <ul>
+ *     <li>chat：POST /api/ai/chat</li>
+ *     <li>stream：POST /api/ai/chat/stream，额外统计首帧耗时（TTFT）</li>
+ *     <li>rag：POST /api/ai/knowledge/search</li>
+ *     <li>ws：建立 ws-connections 条 /ws/chat 连接，按 RPS 轮流发 PING，统计 PONG 往返耗时</li>
+ * </ul>
+ * 延迟从计划发出时刻算起而不是实际发出时刻，服务端变慢导致的排队会计入结果（避免 coordinated omission）；
+ * 在途请求达到 max-in-flight 时本次请求记为 dropped，不会静默降低实际压力。
+ * <p>
+ * 示例（先启动 {@link OpenAiStubServer} 并让后端指向它）：
+ * <pre>
+ * java ... com.qasystem.perf.LoadHarness --base-url=http://127.0.0.1:8080 --scenario=stream \
+ *     --username=student1 --password=123456 --rps=20 --duration=60 --warmup=10
+ * </pre>
+ */
+public class LoadHarness {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+    private final String scenario;
+    private final double rps;
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final int maxInFlight;
+    private final int wsConnections;
+    private final long wsUserIdStart;
+    private final String message;
+    private final boolean newSessionPerRequest;
+    private final boolean distinctMessages;
+    private final Duration requestTimeout;
+
+    private final HttpClient httpClient;
+    private final ExecutorService workers;
+    private final Semaphore inFlight;
+
+    private final LatencyRecorder latency = new LatencyRecorder();
+    private final LatencyRecorder firstFrame = new LatencyRecorder();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong socketCursor = new AtomicLong();
+    private final AtomicLong messageSeq = new AtomicLong();
+
+    private String token;
+    private volatile long measureFromNanos;
+
+    LoadHarness(Map<String, String> params) {
+        this.baseUrl = trimSlash(params.getOrDefault("base-url", "http://127.0.0.1:8080"));
+        this.scenario = params.getOrDefault("scenario", "chat").toLowerCase(Locale.ROOT);
+        this.rps = Double.parseDouble(params.getOrDefault("rps", "10"));
+        this.durationSeconds = Long.parseLong(params.getOrDefault("duration", "60"));
+        this.warmupSeconds = Long.parseLong(params.getOrDefault("warmup", "5"));
+        this.maxInFlight = Integer.parseInt(params.getOrDefault("max-in-flight", "500"));
+        this.wsConnections = Integer.parseInt(params.getOrDefault("ws-connections", "50"));
+        this.wsUserIdStart = Long.parseLong(params.getOrDefault("ws-user-id-start", "1"));
+        this.message = params.getOrDefault("message", "HashMap 和 ConcurrentHashMap 的区别是什么？");
+        this.newSessionPerRequest = Boolean.parseBoolean(params.getOrDefault("new-session", "true"));
+        this.distinctMessages = Boolean.parseBoolean(params.getOrDefault("distinct-messages", "false"));
+        this.requestTimeout = Duration.ofSeconds(Long.parseLong(params.getOrDefault("timeout", "120")));
+        this.token = params.get("token");
+
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "load-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inFlight = new Semaphore(maxInFlight);
+
+        if (token == null && params.containsKey("username")) {
+            this.token = login(params.get("username"), params.getOrDefault("password", ""));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadHarness harness = new LoadHarness(parseArgs(args));
+        harness.run();
+    }
+
+    void run() throws Exception {
+        List<WebSocketClient> sockets = "ws".equals(scenario) ? openSockets() : List.of();
+        long periodNanos = (long) (1_000_000_000L / Math.max(0.001D, rps));
+        long startNanos = System.nanoTime();
+        measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        System.out.printf("scenario=%s rps=%.1f warmup=%ds duration=%ds max-in-flight=%d%n",
+                scenario, rps, warmupSeconds, durationSeconds, maxInFlight);
+
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicLong tick = new AtomicLong();
+        ticker.scheduleAtFixedRate(() -> {
+            long intendedNanos = startNanos + tick.getAndIncrement() * periodNanos;
+            if (intendedNanos >= endNanos) {
+                finished.countDown();
+                return;
+            }
+            fire(intendedNanos, sockets);
+        }, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+        finished.await();
+        ticker.shutdownNow();
+        // 等在途请求结束，超过单次超时仍未结束的按失败处理
+        if (!inFlight.tryAcquire(maxInFlight, requestTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            System.out.println("some requests still in flight after timeout, counted as not completed");
+        }
+        sockets.forEach(WebSocketClient::close);
+        report(TimeUnit.NANOSECONDS.toMillis(Math.min(System.nanoTime(), endNanos) - measureFromNanos));
+        workers.shutdownNow();
+    }
+
+    private void fire(long intendedNanos, List<WebSocketClient> sockets) {
+        boolean measured = intendedNanos >= measureFromNanos;
+        if (measured) {
+            sent.incrementAndGet();
+        }
+        if (!inFlight.tryAcquire()) {
+            if (measured) {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+        if ("ws".equals(scenario)) {
+            WebSocketClient socket = sockets.get((int) (socketCursor.getAndIncrement() % sockets.size()));
+            workers.execute(() -> socket.ping(intendedNanos, measured));
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                boolean ok = switch (scenario) {
+                    case "chat" -> post("/api/ai/chat", chatBody());
+                    case "stream" -> stream(intendedNanos, measured);
+                    case "rag" -> post("/api/ai/knowledge/search", Map.of("query", message, "limit", 6));
+                    default -> throw new IllegalArgumentException("unknown scenario " + scenario);
+                };
+                record(intendedNanos, measured, ok);
+            } catch (Exception ex) {
+                record(intendedNanos, measured, false);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void record(long intendedNanos, boolean measured, boolean ok) {
+        if (!measured) {
+            return;
+        }
+        if (ok) {
+            succeeded.incrementAndGet();
+            latency.record(System.nanoTime() - intendedNanos);
+        } else {
+            failed.incrementAndGet();
+        }
+    }
+
+    private Map<String, Object> chatBody() {
+        Map<String, Object> body = new HashMap<>();
+        // 相同问题会被服务端合并成一次模型调用，测单次调用成本时加上序号区分
+        body.put("message", distinctMessages ? message + " #" + messageSeq.incrementAndGet() : message);
+        if (!newSessionPerRequest) {
+            body.put("sessionId", "load-test-session");
+        }
+        return body;
+    }
+
+    private boolean post(String path, Object body) throws Exception {
+        HttpResponse<String> response = httpClient.send(request(path, body).build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            return false;
+        }
+        JsonNode result = OBJECT_MAPPER.readTree(response.body());
+        return result.path("code").asInt(200) == 200;
+    }
+
+    private boolean stream(long intendedNanos, boolean measured) throws Exception {
+        HttpResponse<InputStream> response = httpClient.send(
+                request("/api/ai/chat/stream", chatBody()).header("Accept", "text/event-stream").build(),
+                HttpResponse.BodyHandlers.ofInputStream()
+        );
+        if (response.statusCode() != 200) {
+            response.body().close();
+            return false;
+        }
+        boolean firstFrameSeen = false;
+        String event = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("event:")) {
+                    event = line.substring("event:".length()).trim();
+                } else if (line.startsWith("data:")) {
+                    if ("message".equals(event) && !firstFrameSeen) {
+                        firstFrameSeen = true;
+                        if (measured) {
+                            firstFrame.record(System.nanoTime() - intendedNanos);
+                        }
+                    } else if ("done".equals(event)) {
+                        return true;
+                    } else if ("error".equals(event)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private HttpRequest.Builder request(String path, Object body) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(OBJECT_MAPPER.writeValueAsBytes(body)));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private String login(String username, String password) {
+        try {
+            HttpResponse<String> response = httpClient.send(
+                    request("/api/v1/auth/login", Map.of("username", username, "password", password)).build(),
+                    HttpResponse.BodyHandlers.ofString()
+            );
+            String accessToken = OBJECT_MAPPER.readTree(response.body()).path("data").path("accessToken").asText(null);
+            if (accessToken == null) {
+                throw new IllegalStateException("login failed: " + response.body());
+            }
+            return accessToken;
+        } catch (IllegalStateException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException("login failed", ex);
+        }
+    }
+
+    private List<WebSocketClient> openSockets() {
+        String wsBase = baseUrl.replaceFirst("^http", "ws");
+        List<WebSocketClient> sockets = new ArrayList<>();
+        for (int i = 0; i < wsConnections; i++) {
+            WebSocketClient client = new WebSocketClient();
+            client.socket = httpClient.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .buildAsync(URI.create(wsBase + "/ws/chat?userId=" + (wsUserIdStart + i)), client)
+                    .join();
+            sockets.add(client);
+        }
+        System.out.printf("opened %d websocket connections%n", sockets.size());
+        return sockets;
+    }
+
+    private void report(long elapsedMillis) {
+        double seconds = Math.max(0.001D, elapsedMillis / 1000D);
+        System.out.println("---------------------------------------------");
+        System.out.printf("sent=%d ok=%d failed=%d dropped=%d%n", sent.get(), succeeded.get(), failed.get(), dropped.get());
+        System.out.printf("throughput=%.2f req/s (target %.2f)%n", succeeded.get() / seconds, rps);
+        System.out.println("latency   " + latency.summary());
+        if ("stream".equals(scenario)) {
+            System.out.println("ttft      " + firstFrame.summary());
+        }
+    }
+
+    /**
+     * 一条 WebSocket 连接：PING 按发出顺序排队，收到 PONG 时与队头配对
+     */
+    private final class WebSocketClient implements WebSocket.Listener {
+
+        private final ConcurrentLinkedQueue<long[]> pending = new ConcurrentLinkedQueue<>();
+        private final StringBuilder partial = new StringBuilder();
+        private volatile WebSocket socket;
+
+        void ping(long intendedNanos, boolean measured) {
+            // sendText 要求上一帧发送完成，入队与发送放在同一把锁里保证顺序一致
+            synchronized (this) {
+                pending.add(new long[]{intendedNanos, measured ? 1 : 0});
+                try {
+                    socket.sendText("{\"type\":\"PING\"}", true).join();
+                } catch (Exception ex) {
+                    long[] entry = pending.poll();
+                    if (entry != null) {
+                        record(entry[0], entry[1] == 1, false);
+                        inFlight.release();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String frame = partial.toString();
+                partial.setLength(0);
+                if (frame.contains("\"PONG\"")) {
+                    long[] entry = pending.poll();
+                    if (entry != null) {
+                        record(entry[0], entry[1] == 1, true);
+                        inFlight.release();
+                    }
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            long[] entry;
+            while ((entry = pending.poll()) != null) {
+                record(entry[0], entry[1] == 1, false);
+                inFlight.release();
+            }
+        }
+
+        void close() {
+            if (socket != null) {
+                socket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+            }
+        }
+    }
+
+    /**
+     * 收集所有样本，结束时排序取分位数；压测规模下内存足够
+     */
+    static final class LatencyRecorder {
+
+        private final ConcurrentLinkedQueue<Long> samples = new ConcurrentLinkedQueue<>();
+
+        void record(long nanos) {
+            samples.add(nanos);
+        }
+
+        String summary() {
+            long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+            if (sorted.length == 0) {
+                return "no samples";
+            }
+            return String.format("n=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms",
+                    sorted.length,
+                    millis(percentile(sorted, 0.50)),
+                    millis(percentile(sorted, 0.95)),
+                    millis(percentile(sorted, 0.99)),
+                    millis(sorted[sorted.length - 1]));
+        }
+
+        static long percentile(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000D;
+        }
+    }
+
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                params.put(arg.substring(2), "true");
+            } else {
+                params.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return params;
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
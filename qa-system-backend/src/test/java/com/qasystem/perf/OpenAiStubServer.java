@@ -0,0 +1,347 @@
+package com.qasystem.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地 OpenAI 兼容桩服务，压测时代替真实模型供应商，不消耗额度。
+ * <p>
+ * 支持 POST /v1/chat/completions（含 stream=true 的 SSE 分片）和 POST /v1/embeddings。
+ * 首 token 延迟、生成速率、回答长度、错误注入比例都可配置；向量按文本哈希生成，同一文本结果固定。
+ * <p>
+ * 独立运行：
+ * <pre>
+ * java ... com.qasystem.perf.OpenAiStubServer --port=8089 --first-token-ms=300 --tokens-per-second=40 --error-rate=0.01
+ * </pre>
+ * 然后把后端的 AI_SILICONFLOW_BASE_URL 与 RAG_EMBEDDING_BASE_URL 指向 http://127.0.0.1:8089/v1。
+ */
+public class OpenAiStubServer implements AutoCloseable {
+
+    private static final String[] WORDS = {
+            "这个", "问题", "可以", "从", "三个", "角度", "回答", "：", "首先", "是", "原理", "，",
+            "其次", "是", "实现", "细节", "，", "最后", "结合", "项目", "经验", "说明", "取舍", "。"
+    };
+
+    public static class Options {
+        /** 收到请求到第一个 token 的延迟 */
+        public long firstTokenMillis = 300;
+        /** 之后每秒生成的 token 数，<= 0 表示一次性返回 */
+        public double tokensPerSecond = 40;
+        /** 每次回答的 token 数 */
+        public int completionTokens = 64;
+        /** 按比例注入错误 */
+        public double errorRate = 0;
+        /** 注入错误时返回的状态码，429 可用于验证限流退避 */
+        public int errorStatus = 500;
+        public long embeddingMillis = 20;
+        public int embeddingDimension = 384;
+    }
+
+    private final Options options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong chatRequests = new AtomicLong();
+    private final AtomicLong embeddingRequests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public OpenAiStubServer(Options options) {
+        this.options = options;
+    }
+
+    public OpenAiStubServer start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 512);
+        // 流式回答在处理线程上按速率 sleep，连接数多少就需要多少线程
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "openai-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + port() + "/v1";
+    }
+
+    public long chatRequests() {
+        return chatRequests.get();
+    }
+
+    public long embeddingRequests() {
+        return embeddingRequests.get();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, error("method not allowed", "invalid_request_error"));
+                return;
+            }
+            JsonNode body = readBody(exchange.getRequestBody());
+            if (path.endsWith("/chat/completions")) {
+                chatRequests.incrementAndGet();
+                if (injectError(exchange)) {
+                    return;
+                }
+                if (body.path("stream").asBoolean(false)) {
+                    streamCompletion(exchange, body);
+                } else {
+                    completion(exchange, body);
+                }
+            } else if (path.endsWith("/embeddings")) {
+                embeddingRequests.incrementAndGet();
+                if (injectError(exchange)) {
+                    return;
+                }
+                embeddings(exchange, body);
+            } else {
+                sendJson(exchange, 404, error("unknown path " + path, "invalid_request_error"));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            // 客户端提前断开（取消、超时）属于正常情况
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean injectError(HttpExchange exchange) throws IOException {
+        if (options.errorRate <= 0 || ThreadLocalRandom.current().nextDouble() >= options.errorRate) {
+            return false;
+        }
+        injectedErrors.incrementAndGet();
+        String type = options.errorStatus == 429 ? "rate_limit_exceeded" : "server_error";
+        sendJson(exchange, options.errorStatus, error("injected by stub", type));
+        return true;
+    }
+
+    private void completion(HttpExchange exchange, JsonNode body) throws IOException, InterruptedException {
+        sleep(options.firstTokenMillis + generationMillis(options.completionTokens));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < options.completionTokens; i++) {
+            text.append(word(i));
+        }
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", "chatcmpl-stub-" + chatRequests.get());
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", body.path("model").asText("stub"));
+        ObjectNode choice = response.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("message").put("role", "assistant").put("content", text.toString());
+        choice.put("finish_reason", "stop");
+        putUsage(response, promptTokens(body), options.completionTokens);
+        sendJson(exchange, 200, response);
+    }
+
+    private void streamCompletion(HttpExchange exchange, JsonNode body) throws IOException, InterruptedException {
+        String id = "chatcmpl-stub-" + chatRequests.get();
+        String model = body.path("model").asText("stub");
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        OutputStream out = exchange.getResponseBody();
+        sleep(options.firstTokenMillis);
+        long perToken = options.tokensPerSecond <= 0 ? 0 : (long) (1_000_000_000L / options.tokensPerSecond);
+        for (int i = 0; i < options.completionTokens; i++) {
+            ObjectNode delta = objectMapper.createObjectNode();
+            if (i == 0) {
+                delta.put("role", "assistant");
+            }
+            delta.put("content", word(i));
+            writeChunk(out, chunk(id, model, delta, null));
+            if (perToken > 0) {
+                TimeUnit.NANOSECONDS.sleep(perToken);
+            }
+        }
+        ObjectNode last = chunk(id, model, objectMapper.createObjectNode(), "stop");
+        putUsage(last, promptTokens(body), options.completionTokens);
+        writeChunk(out, last);
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void embeddings(HttpExchange exchange, JsonNode body) throws IOException, InterruptedException {
+        sleep(options.embeddingMillis);
+        List<String> inputs = new ArrayList<>();
+        JsonNode input = body.path("input");
+        if (input.isArray()) {
+            input.forEach(node -> inputs.add(node.asText()));
+        } else {
+            inputs.add(input.asText(""));
+        }
+        int dimension = body.path("dimensions").asInt(options.embeddingDimension);
+
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("object", "list");
+        response.put("model", body.path("model").asText("stub-embedding"));
+        ArrayNode data = response.putArray("data");
+        int tokens = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            ObjectNode item = data.addObject();
+            item.put("object", "embedding");
+            item.put("index", i);
+            ArrayNode vector = item.putArray("embedding");
+            for (float value : vectorOf(inputs.get(i), dimension)) {
+                vector.add(value);
+            }
+            tokens += estimateTokens(inputs.get(i));
+        }
+        response.putObject("usage").put("prompt_tokens", tokens).put("total_tokens", tokens);
+        sendJson(exchange, 200, response);
+    }
+
+    private ObjectNode chunk(String id, String model, ObjectNode delta, String finishReason) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", System.currentTimeMillis() / 1000);
+        chunk.put("model", model);
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.set("delta", delta);
+        if (finishReason == null) {
+            choice.putNull("finish_reason");
+        } else {
+            choice.put("finish_reason", finishReason);
+        }
+        return chunk;
+    }
+
+    private void writeChunk(OutputStream out, ObjectNode chunk) throws IOException {
+        out.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void putUsage(ObjectNode node, int promptTokens, int completionTokens) {
+        node.putObject("usage")
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+    }
+
+    private int promptTokens(JsonNode body) {
+        int tokens = 0;
+        for (JsonNode message : body.path("messages")) {
+            tokens += estimateTokens(message.path("content").asText(""));
+        }
+        return tokens;
+    }
+
+    private int estimateTokens(String text) {
+        return Math.max(1, text.length() / 2);
+    }
+
+    private long generationMillis(int tokens) {
+        return options.tokensPerSecond <= 0 ? 0 : (long) (tokens * 1000 / options.tokensPerSecond);
+    }
+
+    private String word(int index) {
+        return WORDS[index % WORDS.length];
+    }
+
+    /**
+     * 按文本哈希生成单位向量，相同文本得到相同向量
+     */
+    static float[] vectorOf(String text, int dimension) {
+        float[] vector = new float[Math.max(1, dimension)];
+        long seed = text.hashCode();
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            vector[i] = (float) ((seed >>> 40) / (double) (1L << 24) - 0.5D);
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1D / Math.sqrt(norm == 0 ? 1 : norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private ObjectNode error(String message, String type) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.putObject("error").put("message", message).put("type", type);
+        return node;
+    }
+
+    private JsonNode readBody(InputStream in) throws IOException {
+        byte[] bytes = in.readAllBytes();
+        return bytes.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(bytes);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> params = LoadHarness.parseArgs(args);
+        Options options = new Options();
+        options.firstTokenMillis = Long.parseLong(params.getOrDefault("first-token-ms", String.valueOf(options.firstTokenMillis)));
+        options.tokensPerSecond = Double.parseDouble(params.getOrDefault("tokens-per-second", String.valueOf(options.tokensPerSecond)));
+        options.completionTokens = Integer.parseInt(params.getOrDefault("completion-tokens", String.valueOf(options.completionTokens)));
+        options.errorRate = Double.parseDouble(params.getOrDefault("error-rate", String.valueOf(options.errorRate)));
+        options.errorStatus = Integer.parseInt(params.getOrDefault("error-status", String.valueOf(options.errorStatus)));
+        options.embeddingMillis = Long.parseLong(params.getOrDefault("embedding-ms", String.valueOf(options.embeddingMillis)));
+        options.embeddingDimension = Integer.parseInt(params.getOrDefault("dimension", String.valueOf(options.embeddingDimension)));
+
+        OpenAiStubServer server = new OpenAiStubServer(options).start(Integer.parseInt(params.getOrDefault("port", "8089")));
+        System.out.println("OpenAI stub listening on " + server.baseUrl());
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        Thread.currentThread().join();
+    }
+}
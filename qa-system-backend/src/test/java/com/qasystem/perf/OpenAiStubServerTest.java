@@ -0,0 +1,96 @@
+package com.qasystem.perf;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class OpenAiStubServerTest {
+
+    private OpenAiStubServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        OpenAiStubServer.Options options = new OpenAiStubServer.Options();
+        options.firstTokenMillis = 0;
+        options.tokensPerSecond = 0;
+        options.completionTokens = 8;
+        options.embeddingMillis = 0;
+        options.embeddingDimension = 16;
+        server = new OpenAiStubServer(options).start(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void shouldServeChatCompletion() {
+        OpenAiChatModel model = OpenAiChatModel.builder()
+                .baseUrl(server.baseUrl())
+                .apiKey("stub")
+                .modelName("stub-chat")
+                .maxRetries(0)
+                .build();
+
+        Assertions.assertEquals("这个问题可以从三个角度回答：", model.generate("hi"));
+    }
+
+    @Test
+    void shouldStreamChatCompletion() throws Exception {
+        OpenAiStreamingChatModel model = OpenAiStreamingChatModel.builder()
+                .baseUrl(server.baseUrl())
+                .apiKey("stub")
+                .modelName("stub-chat")
+                .build();
+
+        StringBuilder tokens = new StringBuilder();
+        CompletableFuture<Response<AiMessage>> done = new CompletableFuture<>();
+        model.generate("hi", new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+                tokens.append(token);
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                done.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+        });
+
+        Response<AiMessage> response = done.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals("这个问题可以从三个角度回答：", tokens.toString());
+        Assertions.assertEquals(tokens.toString(), response.content().text());
+    }
+
+    @Test
+    void shouldReturnStableEmbeddings() {
+        OpenAiEmbeddingModel model = OpenAiEmbeddingModel.builder()
+                .baseUrl(server.baseUrl())
+                .apiKey("stub")
+                .modelName("stub-embedding")
+                .maxRetries(0)
+                .build();
+
+        float[] first = model.embed("HashMap").content().vector();
+        float[] second = model.embed("HashMap").content().vector();
+        Assertions.assertEquals(16, first.length);
+        Assertions.assertArrayEquals(first, second);
+        Assertions.assertEquals(2, server.embeddingRequests());
+    }
+}
@@ -184,6 +184,17 @@ export function getPrivateMessages(targetId, page = 1, size = 20) {
   })
 }
 
+/**
+ * 游标分页获取私聊消息记录（按消息ID倒序），向上翻页时传当前最早一条消息的ID
+ */
+export function getPrivateMessageHistory(targetId, beforeId, size = 20) {
+  return request({
+    url: `/v1/chat/messages/private/${targetId}/history`,
+    method: 'get',
+    params: { beforeId, size }
+  })
+}
+
 /**
  * 标记消息已读
  */
@@ -322,6 +333,17 @@ export function getGroupMessages(groupId, page = 1, size = 20) {
   })
 }
 
+/**
+ * 游标分页获取群消息记录（按消息ID倒序），向上翻页时传当前最早一条消息的ID
+ */
+export function getGroupMessageHistory(groupId, beforeId, size = 20) {
+  return request({
+    url: `/v1/chat/messages/group/${groupId}/history`,
+    method: 'get',
+    params: { beforeId, size }
+  })
+}
+
 /**
  * 设置/取消管理员
  */